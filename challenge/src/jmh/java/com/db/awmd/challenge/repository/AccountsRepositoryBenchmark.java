@@ -0,0 +1,145 @@
+package com.db.awmd.challenge.repository;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountUpdate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks account creation, lookups and batch updates of the heap repositories.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AccountsRepositoryBenchmark {
+
+    /** The number of ids drawn, a power of two. */
+    private static final int DRAWS = 1 << 16;
+
+    /** The repository type. */
+    @Param({"in-memory", "columnar"})
+    private String repository;
+
+    /** The number of existing accounts. */
+    @Param({"100000"})
+    private int accounts;
+
+    /** The repository holding the existing accounts. */
+    private AccountsRepository accountsRepository;
+
+    /** The repository accounts are created in. */
+    private AccountsRepository creationRepository;
+
+    /** Existing account ids, drawn at random. */
+    private String[] existingIds;
+
+    /** Account ids that do not exist. */
+    private String[] missingIds;
+
+    /** Batches of a debit and a credit between existing accounts. */
+    private List<List<AccountUpdate>> updates;
+
+    /** Account ids to create, in order. */
+    private String[] newIds;
+
+    /** The next draw. */
+    private int next;
+
+    /** The next account to create. */
+    private int nextNew;
+
+    /**
+     * Creates the existing accounts and draws the ids.
+     */
+    @Setup
+    public void setUp() {
+        accountsRepository = newRepository();
+        creationRepository = newRepository();
+        for (int i = 0; i < accounts; i++) {
+            accountsRepository.createAccount(new Account("Id-" + i, Long.MAX_VALUE / 4));
+        }
+        final Random random = new Random(42L);
+        existingIds = new String[DRAWS];
+        missingIds = new String[DRAWS];
+        updates = new ArrayList<>(DRAWS);
+        for (int i = 0; i < DRAWS; i++) {
+            existingIds[i] = "Id-" + random.nextInt(accounts);
+            missingIds[i] = "Missing-" + i;
+            updates.add(Arrays.asList(new AccountUpdate(existingIds[i], 100L),
+                    new AccountUpdate("Id-" + random.nextInt(accounts), -100L)));
+        }
+        newIds = new String[accounts];
+        for (int i = 0; i < accounts; i++) {
+            newIds[i] = "New-" + i;
+        }
+    }
+
+    /**
+     * Looks up an existing account.
+     *
+     * @return the account
+     */
+    @Benchmark
+    public Account getAccount() {
+        return accountsRepository.getAccount(existingIds[next++ & (DRAWS - 1)]);
+    }
+
+    /**
+     * Looks up an account that does not exist.
+     *
+     * @return null
+     */
+    @Benchmark
+    public Account getAccountMissing() {
+        return accountsRepository.getAccount(missingIds[next++ & (DRAWS - 1)]);
+    }
+
+    /**
+     * Applies the two legs of a transfer.
+     *
+     * @return true, if successful
+     */
+    @Benchmark
+    public boolean updateAccountsBatch() {
+        return accountsRepository.updateAccountsBatch(updates.get(next++ & (DRAWS - 1)));
+    }
+
+    /**
+     * Creates an account, starting over with an empty repository once every id was used.
+     */
+    @Benchmark
+    public void createAccount() {
+        if (nextNew == newIds.length) {
+            creationRepository.clearAccounts();
+            nextNew = 0;
+        }
+        creationRepository.createAccount(new Account(newIds[nextNew++], 0L));
+    }
+
+    /**
+     * Creates an empty repository of the benchmarked type.
+     *
+     * @return the accounts repository
+     */
+    private AccountsRepository newRepository() {
+        return "columnar".equals(repository) ? new AccountsRepositoryColumnar() : new AccountsRepositoryInMemory();
+    }
+}
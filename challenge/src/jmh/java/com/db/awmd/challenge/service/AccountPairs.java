@@ -0,0 +1,108 @@
+package com.db.awmd.challenge.service;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Pre-drawn sequences of (from, to) account indices, so that benchmarks measure transfers rather
+ * than random number generation.
+ */
+public final class AccountPairs {
+
+    /** The number of pairs drawn per sequence, a power of two. */
+    public static final int PAIRS = 1 << 16;
+
+    /** The Zipf exponent of the hot-account distribution, as used by YCSB. */
+    private static final double ZIPF_EXPONENT = 0.99;
+
+    /**
+     * How the accounts of a transfer are chosen.
+     */
+    public enum Distribution {
+
+        /** Every account is equally likely. */
+        UNIFORM,
+
+        /** A few hot accounts take part in most transfers. */
+        ZIPFIAN,
+
+        /** Each thread only uses its own accounts, so threads never contend. */
+        DISJOINT
+    }
+
+    /**
+     * Instantiates new account pairs.
+     */
+    private AccountPairs() {
+    }
+
+    /**
+     * Draws a sequence of pairs of distinct accounts.
+     *
+     * @param distribution the distribution
+     * @param accounts the number of accounts
+     * @param thread the index of the thread the sequence is for
+     * @param threads the number of threads
+     * @return the from indices followed by the to indices, {@link #PAIRS} each
+     */
+    public static int[] draw(Distribution distribution, int accounts, int thread, int threads) {
+        final Random random = new Random(31L * thread + distribution.ordinal());
+        final double[] cumulative = distribution == Distribution.ZIPFIAN ? zipf(accounts) : null;
+        final int share = accounts / threads;
+        final int[] pairs = new int[2 * PAIRS];
+        for (int i = 0; i < PAIRS; i++) {
+            int from;
+            int to;
+            do {
+                switch (distribution) {
+                case ZIPFIAN:
+                    from = sample(cumulative, random);
+                    to = sample(cumulative, random);
+                    break;
+                case DISJOINT:
+                    from = thread * share + random.nextInt(share);
+                    to = thread * share + random.nextInt(share);
+                    break;
+                default:
+                    from = random.nextInt(accounts);
+                    to = random.nextInt(accounts);
+                    break;
+                }
+            } while (from == to);
+            pairs[i] = from;
+            pairs[PAIRS + i] = to;
+        }
+        return pairs;
+    }
+
+    /**
+     * Builds the cumulative Zipf distribution over the accounts.
+     *
+     * @param accounts the number of accounts
+     * @return the cumulative probabilities
+     */
+    private static double[] zipf(int accounts) {
+        final double[] cumulative = new double[accounts];
+        double sum = 0.0;
+        for (int i = 0; i < accounts; i++) {
+            sum += 1.0 / Math.pow(i + 1, ZIPF_EXPONENT);
+            cumulative[i] = sum;
+        }
+        for (int i = 0; i < accounts; i++) {
+            cumulative[i] /= sum;
+        }
+        return cumulative;
+    }
+
+    /**
+     * Samples an account index from a cumulative distribution.
+     *
+     * @param cumulative the cumulative probabilities
+     * @param random the random
+     * @return the account index
+     */
+    private static int sample(double[] cumulative, Random random) {
+        final int index = Arrays.binarySearch(cumulative, random.nextDouble());
+        return Math.min(index >= 0 ? index : -index - 1, cumulative.length - 1);
+    }
+}
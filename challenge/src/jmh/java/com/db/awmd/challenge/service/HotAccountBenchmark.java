@@ -0,0 +1,104 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.journal.TransferJournal;
+import com.db.awmd.challenge.metrics.TransferMetrics;
+import com.db.awmd.challenge.notification.DirectNotificationDispatcher;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks credits per second to a single merchant account that every thread pays into, each
+ * from its own source account, with and without the merchant marked hot.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HotAccountBenchmark {
+
+    /** The number of threads paying into the merchant. */
+    private static final int THREADS = 4;
+
+    /** The id of the merchant account. */
+    private static final String MERCHANT = "Merchant";
+
+    /** Whether the merchant account is marked hot. */
+    @Param({"false", "true"})
+    private boolean hot;
+
+    /** The accounts service. */
+    private AccountsService accountsService;
+
+    /** Hands out thread indices. */
+    private final AtomicInteger threadIndices = new AtomicInteger();
+
+    /**
+     * Creates the merchant and one source account per thread, with balances large enough never to
+     * run out.
+     */
+    @Setup
+    public void setUp() {
+        accountsService = new AccountsService(new AccountsRepositoryInMemory(),
+                new DirectNotificationDispatcher((account, description) -> { }), new TransferValidatorImpl(),
+                new AccountLocks(AccountLocks.DEFAULT_STRIPES), TransferJournal.DISABLED,
+                TransferMetrics.DISABLED, Optional.empty());
+        accountsService.createAccount(new Account(MERCHANT, 0L));
+        for (int i = 0; i < THREADS; i++) {
+            accountsService.createAccount(new Account("Id-" + i, Long.MAX_VALUE / (2 * THREADS)));
+        }
+        if (hot) {
+            accountsService.markHot(MERCHANT);
+        }
+    }
+
+    /**
+     * The payment of one benchmark thread.
+     */
+    @State(Scope.Thread)
+    public static class Payment {
+
+        /** The payment, made over and over. */
+        private Transfer transfer;
+
+        /**
+         * Creates the payment of this thread.
+         *
+         * @param benchmark the benchmark
+         */
+        @Setup
+        public void setUp(HotAccountBenchmark benchmark) {
+            final int thread = benchmark.threadIndices.getAndIncrement() % THREADS;
+            transfer = new Transfer("Id-" + thread, MERCHANT, 1L);
+        }
+    }
+
+    /**
+     * Pays into the merchant on several threads at once.
+     *
+     * @param payment the payment
+     */
+    @Benchmark
+    @Threads(THREADS)
+    public void payMerchant(Payment payment) {
+        accountsService.makeTransfer(payment.transfer);
+    }
+}
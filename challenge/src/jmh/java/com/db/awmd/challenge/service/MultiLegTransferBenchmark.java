@@ -0,0 +1,141 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.MultiLegTransfer;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.domain.TransferLeg;
+import com.db.awmd.challenge.journal.Durability;
+import com.db.awmd.challenge.journal.FileTransferJournal;
+import com.db.awmd.challenge.journal.TransferJournal;
+import com.db.awmd.challenge.metrics.TransferMetrics;
+import com.db.awmd.challenge.notification.DirectNotificationDispatcher;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import com.db.awmd.challenge.repository.AccountsRepositoryColumnar;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks a payout from one account to many, made as one
+ * {@link AccountsService#tryMultiLegTransfer(MultiLegTransfer)} against the equivalent sequence of
+ * {@link AccountsService#makeTransfer(Transfer)} calls, without a journal and with one forcing every
+ * record to disk.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MultiLegTransferBenchmark {
+
+    /** The number of accounts credited by each payout. */
+    @Param({"2", "10", "100"})
+    private int credits;
+
+    /** The repository type. */
+    @Param({"in-memory", "columnar"})
+    private String repository;
+
+    /** The journal durability, or {@code disabled} to run without a journal. */
+    @Param({"disabled", "per-transfer"})
+    private String journal;
+
+    /** The file journal, null without a journal. */
+    private FileTransferJournal fileJournal;
+
+    /** The accounts service. */
+    private AccountsService accountsService;
+
+    /** The payout as one multi-leg transfer. */
+    private MultiLegTransfer multiLegTransfer;
+
+    /** The payout as single transfers. */
+    private Transfer[] transfers;
+
+    /**
+     * Creates the paying account, with a balance large enough never to run out, and the accounts it
+     * pays.
+     *
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    @Setup
+    public void setUp() throws IOException {
+        final AccountsRepository accountsRepository = "columnar".equals(repository)
+                ? new AccountsRepositoryColumnar() : new AccountsRepositoryInMemory();
+        if (!"disabled".equals(journal)) {
+            fileJournal = new FileTransferJournal(Files.createTempDirectory("journal").toFile(),
+                    Durability.parse(journal), 64L << 20);
+            fileJournal.replay(accountsRepository);
+        }
+        accountsService = new AccountsService(accountsRepository,
+                new DirectNotificationDispatcher((account, description) -> { }), new TransferValidatorImpl(),
+                new AccountLocks(AccountLocks.DEFAULT_STRIPES),
+                fileJournal == null ? TransferJournal.DISABLED : fileJournal, TransferMetrics.DISABLED);
+        accountsService.createAccount(new Account("Id-payer", Long.MAX_VALUE / 4));
+
+        final List<TransferLeg> legs = new ArrayList<>(credits + 1);
+        legs.add(new TransferLeg("Id-payer", -100L * credits));
+        transfers = new Transfer[credits];
+        for (int i = 0; i < credits; i++) {
+            final String accountId = "Id-" + i;
+            accountsService.createAccount(new Account(accountId, 0L));
+            legs.add(new TransferLeg(accountId, 100L));
+            transfers[i] = new Transfer("Id-payer", accountId, 100L);
+        }
+        multiLegTransfer = new MultiLegTransfer(legs);
+    }
+
+    /**
+     * Closes the journal and deletes its files.
+     */
+    @TearDown
+    public void tearDown() {
+        if (fileJournal != null) {
+            final File directory = fileJournal.getDirectory();
+            fileJournal.close();
+            final File[] files = directory.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+            directory.delete();
+        }
+    }
+
+    /**
+     * Pays out with one multi-leg transfer.
+     */
+    @Benchmark
+    public void multiLegTransfer() {
+        accountsService.tryMultiLegTransfer(multiLegTransfer);
+    }
+
+    /**
+     * Pays out with one single transfer per credited account.
+     */
+    @Benchmark
+    public void singleTransfers() {
+        for (Transfer transfer : transfers) {
+            accountsService.makeTransfer(transfer);
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.history.TransactionHistory;
+import com.db.awmd.challenge.journal.TransferJournal;
+import com.db.awmd.challenge.metrics.TransferMetrics;
+import com.db.awmd.challenge.notification.BalancePublisher;
+import com.db.awmd.challenge.notification.DirectNotificationDispatcher;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import com.db.awmd.challenge.repository.AccountsRepositoryColumnar;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import com.db.awmd.challenge.repository.AccountsRepositoryOptimistic;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+
+/**
+ * Benchmarks {@link AccountsService#makeTransfer(Transfer)} on one thread and on several contending
+ * ones, with uniform, hot-account (Zipfian) and disjoint-pair choices of accounts. The
+ * {@code optimistic} repository is driven by the {@link OptimisticTransferEngine}, committing by
+ * compare-and-set instead of under the account locks.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransferBenchmark {
+
+    /** The number of threads of the contended benchmark. */
+    private static final int CONTENDED_THREADS = 4;
+
+    /** The account distribution. */
+    @Param({"UNIFORM", "ZIPFIAN", "DISJOINT"})
+    private AccountPairs.Distribution distribution;
+
+    /** The number of accounts. */
+    @Param({"1024"})
+    private int accounts;
+
+    /** The repository type. */
+    @Param({"in-memory", "columnar", "optimistic"})
+    private String repository;
+
+    /** The accounts service. */
+    private AccountsService accountsService;
+
+    /** The account ids, by index. */
+    private String[] accountIds;
+
+    /** Hands out thread indices. */
+    private final AtomicInteger threadIndices = new AtomicInteger();
+
+    /**
+     * Creates the accounts, with balances large enough never to run out.
+     */
+    @Setup
+    public void setUp() {
+        final AccountsRepository accountsRepository = "columnar".equals(repository)
+                ? new AccountsRepositoryColumnar()
+                : "optimistic".equals(repository) ? new AccountsRepositoryOptimistic() : new AccountsRepositoryInMemory();
+        final DirectNotificationDispatcher notificationDispatcher =
+                new DirectNotificationDispatcher((account, description) -> { });
+        final TransferValidatorImpl transferValidator = new TransferValidatorImpl();
+        final Optional<TransferEngine> transferEngine = "optimistic".equals(repository)
+                ? Optional.of(new OptimisticTransferEngine(accountsRepository, notificationDispatcher, transferValidator,
+                        TransferJournal.DISABLED, TransferMetrics.DISABLED, TransactionHistory.DISABLED,
+                        BalancePublisher.DISABLED))
+                : Optional.empty();
+        accountsService = new AccountsService(accountsRepository, notificationDispatcher, transferValidator,
+                new AccountLocks(AccountLocks.DEFAULT_STRIPES), TransferJournal.DISABLED,
+                TransferMetrics.DISABLED, transferEngine);
+        accountIds = new String[accounts];
+        for (int i = 0; i < accounts; i++) {
+            accountIds[i] = "Id-" + i;
+            accountsService.createAccount(new Account(accountIds[i], Long.MAX_VALUE / 4));
+        }
+    }
+
+    /**
+     * The transfers of one benchmark thread.
+     */
+    @State(Scope.Thread)
+    public static class Transfers {
+
+        /** The transfers, cycled through. */
+        private Transfer[] transfers;
+
+        /** The next transfer. */
+        private int next;
+
+        /**
+         * Draws the transfers of this thread.
+         *
+         * @param benchmark the benchmark
+         * @param params the benchmark params
+         */
+        @Setup
+        public void setUp(TransferBenchmark benchmark, BenchmarkParams params) {
+            final int thread = benchmark.threadIndices.getAndIncrement() % params.getThreads();
+            final int[] pairs = AccountPairs.draw(benchmark.distribution, benchmark.accounts, thread,
+                    params.getThreads());
+            transfers = new Transfer[AccountPairs.PAIRS];
+            for (int i = 0; i < AccountPairs.PAIRS; i++) {
+                transfers[i] = new Transfer(benchmark.accountIds[pairs[i]],
+                        benchmark.accountIds[pairs[AccountPairs.PAIRS + i]], 100L);
+            }
+        }
+
+        /**
+         * Gets the next transfer.
+         *
+         * @return the transfer
+         */
+        private Transfer next() {
+            return transfers[next++ & (AccountPairs.PAIRS - 1)];
+        }
+    }
+
+    /**
+     * Transfers on a single thread.
+     *
+     * @param transfers the transfers
+     */
+    @Benchmark
+    @Threads(1)
+    public void makeTransfer(Transfers transfers) {
+        accountsService.makeTransfer(transfers.next());
+    }
+
+    /**
+     * Transfers on several threads at once.
+     *
+     * @param transfers the transfers
+     */
+    @Benchmark
+    @Threads(CONTENDED_THREADS)
+    public void makeTransferContended(Transfers transfers) {
+        accountsService.makeTransfer(transfers.next());
+    }
+}
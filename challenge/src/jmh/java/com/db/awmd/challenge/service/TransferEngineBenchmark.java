@@ -0,0 +1,178 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.domain.TransferResult;
+import com.db.awmd.challenge.journal.TransferJournal;
+import com.db.awmd.challenge.metrics.TransferMetrics;
+import com.db.awmd.challenge.notification.DirectNotificationDispatcher;
+import com.db.awmd.challenge.notification.NotificationDispatcher;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+
+/**
+ * Compares the locking path of {@link AccountsService#makeTransfer(Transfer)} with the
+ * {@link RingBufferTransferEngine}, the {@link ShardedTransferEngine} and the
+ * {@link NettingTransferEngine}, when a few hot accounts take part in most transfers and when all are
+ * equally likely, with callers waiting for each transfer and with bursts submitted at once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransferEngineBenchmark {
+
+    /** The number of transfers of a burst. */
+    private static final int BURST = 1024;
+
+    /** The engine: locking, ring-buffer, sharded or netting. */
+    @Param({"locking", "ring-buffer", "sharded", "netting"})
+    private String engine;
+
+    /** The account distribution. */
+    @Param({"ZIPFIAN", "UNIFORM"})
+    private AccountPairs.Distribution distribution;
+
+    /** The number of accounts, few enough for the Zipfian head to be hot. */
+    @Param({"64"})
+    private int accounts;
+
+    /** The accounts service. */
+    private AccountsService accountsService;
+
+    /** The engine, null when locking. */
+    private TransferEngine transferEngine;
+
+    /** The account ids, by index. */
+    private String[] accountIds;
+
+    /** Hands out thread indices. */
+    private final AtomicInteger threadIndices = new AtomicInteger();
+
+    /**
+     * Creates the accounts, with balances large enough never to run out.
+     */
+    @Setup
+    public void setUp() {
+        final AccountsRepository accountsRepository = new AccountsRepositoryInMemory();
+        final NotificationDispatcher notificationDispatcher =
+                new DirectNotificationDispatcher((account, description) -> { });
+        final TransferValidator transferValidator = new TransferValidatorImpl();
+        final AccountLocks accountLocks = new AccountLocks(AccountLocks.DEFAULT_STRIPES);
+        if ("ring-buffer".equals(engine)) {
+            transferEngine = new RingBufferTransferEngine(accountsRepository, notificationDispatcher, transferValidator,
+                    accountLocks, TransferJournal.DISABLED, TransferMetrics.DISABLED, 1 << 16);
+        } else if ("sharded".equals(engine)) {
+            transferEngine = new ShardedTransferEngine(accountsRepository, notificationDispatcher, transferValidator,
+                    TransferJournal.DISABLED, TransferMetrics.DISABLED, 0);
+        } else if ("netting".equals(engine)) {
+            transferEngine = new NettingTransferEngine(accountsRepository, notificationDispatcher, transferValidator,
+                    accountLocks, TransferJournal.DISABLED, TransferMetrics.DISABLED, 100L, BURST, 1 << 16);
+        }
+        accountsService = new AccountsService(accountsRepository, notificationDispatcher, transferValidator,
+                accountLocks, TransferJournal.DISABLED, TransferMetrics.DISABLED, Optional.ofNullable(transferEngine));
+        accountIds = new String[accounts];
+        for (int i = 0; i < accounts; i++) {
+            accountIds[i] = "Id-" + i;
+            accountsService.createAccount(new Account(accountIds[i], Long.MAX_VALUE / 4));
+        }
+    }
+
+    /**
+     * Stops the engine.
+     *
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    @TearDown
+    public void tearDown() throws IOException {
+        if (transferEngine instanceof Closeable) {
+            ((Closeable) transferEngine).close();
+        }
+    }
+
+    /**
+     * The transfers of one benchmark thread.
+     */
+    @State(Scope.Thread)
+    public static class Transfers {
+
+        /** The transfers, cycled through. */
+        private Transfer[] transfers;
+
+        /** The next transfer. */
+        private int next;
+
+        /**
+         * Draws the transfers of this thread.
+         *
+         * @param benchmark the benchmark
+         * @param params the benchmark params
+         */
+        @Setup
+        public void setUp(TransferEngineBenchmark benchmark, BenchmarkParams params) {
+            final int thread = benchmark.threadIndices.getAndIncrement() % params.getThreads();
+            final int[] pairs = AccountPairs.draw(benchmark.distribution, benchmark.accounts, thread,
+                    params.getThreads());
+            transfers = new Transfer[AccountPairs.PAIRS];
+            for (int i = 0; i < AccountPairs.PAIRS; i++) {
+                transfers[i] = new Transfer(benchmark.accountIds[pairs[i]],
+                        benchmark.accountIds[pairs[AccountPairs.PAIRS + i]], 100L);
+            }
+        }
+    }
+
+    /**
+     * Transfers on eight threads, each waiting for its transfer to complete.
+     *
+     * @param transfers the transfers
+     */
+    @Benchmark
+    @Threads(8)
+    public void makeTransfer(Transfers transfers) {
+        accountsService.makeTransfer(transfers.transfers[transfers.next++ & (AccountPairs.PAIRS - 1)]);
+    }
+
+    /**
+     * Transfers in bursts, submitted at once from a single thread, which then waits for all of them.
+     *
+     * @param transfers the transfers
+     */
+    @Benchmark
+    @Threads(1)
+    @OperationsPerInvocation(BURST)
+    public void submitBurst(Transfers transfers) {
+        final List<CompletableFuture<TransferResult>> futures = new ArrayList<>(BURST);
+        for (int i = 0; i < BURST; i++) {
+            futures.add(accountsService.submitTransfer(transfers.transfers[transfers.next++ & (AccountPairs.PAIRS - 1)]));
+        }
+        for (CompletableFuture<TransferResult> future : futures) {
+            future.join();
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.domain.TransferResult;
+import com.db.awmd.challenge.exception.NotEnoughFundsException;
+import com.db.awmd.challenge.journal.TransferJournal;
+import com.db.awmd.challenge.metrics.TransferMetrics;
+import com.db.awmd.challenge.notification.DirectNotificationDispatcher;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks a transfer rejected for insufficient funds, signalled with an exception and with a
+ * {@link TransferResult}, in the validator alone and through {@link AccountsService}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransferRejectionBenchmark {
+
+    /** The transfer validator. */
+    private final TransferValidator transferValidator = new TransferValidatorImpl();
+
+    /** The account from, without funds. */
+    private final Account accountFrom = new Account("Id-1", 0L);
+
+    /** The account to. */
+    private final Account accountTo = new Account("Id-2", 0L);
+
+    /** The transfer, always rejected. */
+    private final Transfer transfer = new Transfer("Id-1", "Id-2", 100L);
+
+    /** The accounts service. */
+    private AccountsService accountsService;
+
+    /**
+     * Creates the accounts of the service.
+     */
+    @Setup
+    public void setUp() {
+        accountsService = new AccountsService(new AccountsRepositoryInMemory(),
+                new DirectNotificationDispatcher((account, description) -> { }), new TransferValidatorImpl(),
+                new AccountLocks(AccountLocks.DEFAULT_STRIPES), TransferJournal.DISABLED, TransferMetrics.DISABLED);
+        accountsService.createAccount(new Account("Id-1", 0L));
+        accountsService.createAccount(new Account("Id-2", 0L));
+    }
+
+    /**
+     * Validates, catching the exception thrown.
+     *
+     * @return the exception
+     */
+    @Benchmark
+    public Object validateThrowing() {
+        try {
+            transferValidator.validate(accountFrom, accountTo, transfer);
+            return null;
+        } catch (NotEnoughFundsException e) {
+            return e;
+        }
+    }
+
+    /**
+     * Evaluates, without building the message.
+     *
+     * @return the transfer result
+     */
+    @Benchmark
+    public TransferResult evaluate() {
+        return transferValidator.evaluate(accountFrom, accountTo, transfer);
+    }
+
+    /**
+     * Evaluates, then builds the message as a response would.
+     *
+     * @return the message
+     */
+    @Benchmark
+    public String evaluateWithMessage() {
+        return transferValidator.evaluate(accountFrom, accountTo, transfer).getMessage();
+    }
+
+    /**
+     * Makes the transfer through the service, catching the exception thrown.
+     *
+     * @return the exception
+     */
+    @Benchmark
+    public Object makeTransferThrowing() {
+        try {
+            accountsService.makeTransfer(transfer);
+            return null;
+        } catch (NotEnoughFundsException e) {
+            return e;
+        }
+    }
+
+    /**
+     * Tries the transfer through the service, getting the rejection as a result.
+     *
+     * @return the transfer result
+     */
+    @Benchmark
+    public TransferResult tryTransfer() {
+        return accountsService.tryTransfer(transfer);
+    }
+}
@@ -0,0 +1,58 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.domain.TransferStatus;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks {@link TransferValidatorImpl} on an accepted transfer.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransferValidatorBenchmark {
+
+    /** The transfer validator. */
+    private final TransferValidator transferValidator = new TransferValidatorImpl();
+
+    /** The account from. */
+    private final Account accountFrom = new Account("Id-1", 100_000L);
+
+    /** The account to. */
+    private final Account accountTo = new Account("Id-2", 0L);
+
+    /** The transfer. */
+    private final Transfer transfer = new Transfer("Id-1", "Id-2", 100L);
+
+    /**
+     * Validates, throwing on a rejected transfer.
+     */
+    @Benchmark
+    public void validate() {
+        transferValidator.validate(accountFrom, accountTo, transfer);
+    }
+
+    /**
+     * Checks, reporting a status instead of throwing.
+     *
+     * @return the transfer status
+     */
+    @Benchmark
+    public TransferStatus check() {
+        return transferValidator.check(accountFrom, accountTo, transfer);
+    }
+}
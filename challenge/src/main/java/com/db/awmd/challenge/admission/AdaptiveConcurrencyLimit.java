@@ -0,0 +1,153 @@
+package com.db.awmd.challenge.admission;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A limit on the requests in progress at once that follows their latency: additive increase while
+ * latency stays near the lowest seen, multiplicative decrease once it grows beyond it.
+ * <p>
+ * Latencies are summed over windows of a fixed number of requests. At the end of each window the
+ * average is compared with the lowest window average seen, which creeps up a little every window so
+ * that it follows a lasting change. If the average is more than the tolerance above it, requests
+ * are queueing somewhere downstream and the limit shrinks by a tenth; otherwise, if the requests in
+ * progress came near the limit, it grows by one. Acquiring and releasing only touch atomics; the
+ * window is closed by whichever thread completes it.
+ */
+final class AdaptiveConcurrencyLimit {
+
+    /** The lowest limit. */
+    private final int minLimit;
+
+    /** The highest limit. */
+    private final int maxLimit;
+
+    /** How much the average latency may exceed the lowest before the limit shrinks. */
+    private final double tolerance;
+
+    /** The number of requests per window. */
+    private final int windowSize;
+
+    /** The requests in progress. */
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    /** The most requests in progress at once during the current window. */
+    private final AtomicInteger peakInFlight = new AtomicInteger();
+
+    /** The latencies of the current window, in nanoseconds. */
+    private final LongAdder windowNanos = new LongAdder();
+
+    /** The requests of the current window. */
+    private final LongAdder windowCount = new LongAdder();
+
+    /** Whether a thread is closing the window. */
+    private final AtomicBoolean closing = new AtomicBoolean();
+
+    /** The lowest window average, in nanoseconds; written only while closing a window. */
+    private volatile long minLatencyNanos = Long.MAX_VALUE;
+
+    /** The current limit; written only while closing a window. */
+    private volatile int limit;
+
+    /**
+     * Instantiates a new adaptive concurrency limit.
+     *
+     * @param initialLimit the initial limit
+     * @param minLimit the lowest limit
+     * @param maxLimit the highest limit
+     * @param tolerance how much the average latency may exceed the lowest before the limit shrinks,
+     *        as a ratio above 1
+     * @param windowSize the number of requests per window
+     */
+    AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, double tolerance, int windowSize) {
+        if (minLimit < 1 || minLimit > initialLimit || initialLimit > maxLimit || !(tolerance > 1) || windowSize < 1) {
+            throw new IllegalArgumentException("Concurrency limits must satisfy 1 <= min <= initial <= max, "
+                    + "with a tolerance above 1 and a positive window: " + minLimit + ", " + initialLimit + ", "
+                    + maxLimit + ", " + tolerance + ", " + windowSize);
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+        this.windowSize = windowSize;
+        this.limit = initialLimit;
+    }
+
+    /**
+     * Takes a place among the requests in progress, if the limit allows.
+     *
+     * @return true, if taken
+     */
+    boolean tryAcquire() {
+        while (true) {
+            final int current = inFlight.get();
+            if (current >= limit) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                if (current + 1 > peakInFlight.get()) {
+                    peakInFlight.accumulateAndGet(current + 1, Math::max);
+                }
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Gives a place back and records how long its request took.
+     *
+     * @param latencyNanos the latency, in nanoseconds
+     */
+    void release(long latencyNanos) {
+        inFlight.decrementAndGet();
+        windowNanos.add(latencyNanos);
+        windowCount.increment();
+        if (windowCount.sum() >= windowSize && closing.compareAndSet(false, true)) {
+            try {
+                closeWindow();
+            } finally {
+                closing.set(false);
+            }
+        }
+    }
+
+    /**
+     * Gets the current limit.
+     *
+     * @return the limit
+     */
+    int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Gets the requests in progress.
+     *
+     * @return the number of requests
+     */
+    int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * Compares the average latency of the window with the lowest seen, adjusts the limit and starts
+     * the next window.
+     */
+    private void closeWindow() {
+        final long count = windowCount.sumThenReset();
+        final long nanos = windowNanos.sumThenReset();
+        final int peak = peakInFlight.getAndSet(inFlight.get());
+        if (count == 0) {
+            return;
+        }
+        final long average = nanos / count;
+        final long minimum = minLatencyNanos;
+        minLatencyNanos = minimum == Long.MAX_VALUE ? average : Math.min(average, minimum + (minimum >> 6) + 1);
+
+        if (average > minLatencyNanos * tolerance) {
+            limit = Math.max(minLimit, limit * 9 / 10);
+        } else if (peak >= limit / 2) {
+            limit = Math.min(maxLimit, limit + 1);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.db.awmd.challenge.admission;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configures the admission of transfer requests.
+ */
+@Configuration
+public class AdmissionConfiguration {
+
+    /**
+     * Transfer admission.
+     *
+     * @param enabled whether transfer requests are rate limited
+     * @param clientRate the requests a client may send per second
+     * @param clientBurst the requests a client may send at once
+     * @param accountRate the requests per second that may debit an account
+     * @param accountBurst the requests that may debit an account at once
+     * @param capacity the largest number of client and of account buckets kept
+     * @param initialLimit the initial limit on the requests in progress
+     * @param minLimit the lowest limit on the requests in progress
+     * @param maxLimit the highest limit on the requests in progress
+     * @param tolerance how much the average latency may exceed the lowest before the limit shrinks
+     * @param windowSize the number of requests the latency is averaged over
+     * @return the transfer admission
+     */
+    @Bean
+    public TransferAdmission transferAdmission(@Value("${accounts.admission.enabled:false}") boolean enabled,
+                                               @Value("${accounts.admission.client-rate:1000}") double clientRate,
+                                               @Value("${accounts.admission.client-burst:100}") int clientBurst,
+                                               @Value("${accounts.admission.account-rate:200}") double accountRate,
+                                               @Value("${accounts.admission.account-burst:20}") int accountBurst,
+                                               @Value("${accounts.admission.capacity:65536}") int capacity,
+                                               @Value("${accounts.admission.concurrency.initial-limit:64}") int initialLimit,
+                                               @Value("${accounts.admission.concurrency.min-limit:8}") int minLimit,
+                                               @Value("${accounts.admission.concurrency.max-limit:200}") int maxLimit,
+                                               @Value("${accounts.admission.concurrency.tolerance:2.0}") double tolerance,
+                                               @Value("${accounts.admission.concurrency.window:100}") int windowSize) {
+        if (!enabled) {
+            return TransferAdmission.DISABLED;
+        }
+        return new RateLimitingTransferAdmission(
+                new TokenBuckets(clientRate, clientBurst, capacity, System::nanoTime),
+                new TokenBuckets(accountRate, accountBurst, capacity, System::nanoTime),
+                new AdaptiveConcurrencyLimit(initialLimit, minLimit, maxLimit, tolerance, windowSize));
+    }
+}
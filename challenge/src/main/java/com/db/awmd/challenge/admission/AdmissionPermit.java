@@ -0,0 +1,101 @@
+package com.db.awmd.challenge.admission;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The answer of a {@link TransferAdmission}: either a permit to go ahead, to be released once the
+ * request completes, or a rejection telling why and when to try again.
+ */
+public final class AdmissionPermit {
+
+    /** A granted permit that limits nothing. */
+    static final AdmissionPermit UNLIMITED = new AdmissionPermit(null, 0L, null, 0L);
+
+    /** The concurrency limit to release the permit to, null if none. */
+    private final AdaptiveConcurrencyLimit concurrencyLimit;
+
+    /** When the permit was granted. */
+    private final long grantedNanos;
+
+    /** Why the request was rejected, null if it was not. */
+    private final String rejection;
+
+    /** How long the client should wait before trying again, in nanoseconds. */
+    private final long retryAfterNanos;
+
+    /**
+     * Instantiates a new admission permit.
+     *
+     * @param concurrencyLimit the concurrency limit to release the permit to, null if none
+     * @param grantedNanos when the permit was granted
+     * @param rejection why the request was rejected, null if it was not
+     * @param retryAfterNanos how long the client should wait before trying again, in nanoseconds
+     */
+    private AdmissionPermit(AdaptiveConcurrencyLimit concurrencyLimit, long grantedNanos, String rejection,
+                            long retryAfterNanos) {
+        this.concurrencyLimit = concurrencyLimit;
+        this.grantedNanos = grantedNanos;
+        this.rejection = rejection;
+        this.retryAfterNanos = retryAfterNanos;
+    }
+
+    /**
+     * Creates a granted permit.
+     *
+     * @param concurrencyLimit the concurrency limit the permit was taken from
+     * @param grantedNanos when the permit was granted
+     * @return the permit
+     */
+    static AdmissionPermit granted(AdaptiveConcurrencyLimit concurrencyLimit, long grantedNanos) {
+        return new AdmissionPermit(concurrencyLimit, grantedNanos, null, 0L);
+    }
+
+    /**
+     * Creates a rejection.
+     *
+     * @param rejection why the request was rejected
+     * @param retryAfterNanos how long the client should wait before trying again, in nanoseconds
+     * @return the rejection
+     */
+    static AdmissionPermit rejected(String rejection, long retryAfterNanos) {
+        return new AdmissionPermit(null, 0L, rejection, retryAfterNanos);
+    }
+
+    /**
+     * Tells whether the request may go ahead.
+     *
+     * @return true, if granted
+     */
+    public boolean isGranted() {
+        return rejection == null;
+    }
+
+    /**
+     * Gets why the request was rejected.
+     *
+     * @return the rejection, null if granted
+     */
+    public String getRejection() {
+        return rejection;
+    }
+
+    /**
+     * Gets how long the client should wait before trying again, rounded up to whole seconds as the
+     * {@code Retry-After} header has it.
+     *
+     * @return the seconds, at least 1
+     */
+    public long getRetryAfterSeconds() {
+        return Math.max(1L, (retryAfterNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+    }
+
+    /**
+     * Releases a granted permit once its request completed, whatever the outcome, reporting how long
+     * it took. Must be called once per granted permit; does nothing for a rejection.
+     */
+    public void release() {
+        if (concurrencyLimit != null) {
+            concurrencyLimit.release(System.nanoTime() - grantedNanos);
+        }
+    }
+}
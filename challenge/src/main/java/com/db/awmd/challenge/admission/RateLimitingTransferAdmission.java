@@ -0,0 +1,134 @@
+package com.db.awmd.challenge.admission;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Admits transfer requests through a token bucket per client, a token bucket per debited account
+ * and an {@link AdaptiveConcurrencyLimit adaptive limit} on the requests in progress, in that order,
+ * so that the client sending too much is usually turned away by the first and cheapest check.
+ * Nothing is locked on the way: each check is a few atomic operations. A request carrying several
+ * transfers takes as many tokens; tokens already taken when a later check rejects it are spent.
+ */
+public class RateLimitingTransferAdmission implements TransferAdmission {
+
+    /** How long a client turned away by the concurrency limit is asked to wait. */
+    private static final long CONCURRENCY_RETRY_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    /** The buckets of the clients. */
+    private final TokenBuckets clientBuckets;
+
+    /** The buckets of the accounts. */
+    private final TokenBuckets accountBuckets;
+
+    /** The limit on the requests in progress. */
+    private final AdaptiveConcurrencyLimit concurrencyLimit;
+
+    /** The requests rejected by the client buckets. */
+    private final LongAdder clientRejections = new LongAdder();
+
+    /** The requests rejected by the account buckets. */
+    private final LongAdder accountRejections = new LongAdder();
+
+    /** The requests rejected by the concurrency limit. */
+    private final LongAdder concurrencyRejections = new LongAdder();
+
+    /**
+     * Instantiates a new rate limiting transfer admission.
+     *
+     * @param clientBuckets the buckets of the clients
+     * @param accountBuckets the buckets of the accounts
+     * @param concurrencyLimit the limit on the requests in progress
+     */
+    RateLimitingTransferAdmission(TokenBuckets clientBuckets, TokenBuckets accountBuckets,
+                                  AdaptiveConcurrencyLimit concurrencyLimit) {
+        this.clientBuckets = clientBuckets;
+        this.accountBuckets = accountBuckets;
+        this.concurrencyLimit = concurrencyLimit;
+    }
+
+    /* (non-Javadoc)
+     * @see com.db.awmd.challenge.admission.TransferAdmission#admit(java.lang.String, int, java.util.List)
+     */
+    @Override
+    public AdmissionPermit admit(String clientId, int transfers, List<String> debitedAccountIds) {
+        long wait = clientBuckets.tryTake(clientId, transfers);
+        if (wait > 0) {
+            clientRejections.increment();
+            return AdmissionPermit.rejected("Too many transfers from client " + clientId + ".", wait);
+        }
+        if (debitedAccountIds.size() == 1) {
+            wait = accountBuckets.tryTake(debitedAccountIds.get(0));
+            if (wait > 0) {
+                return rejectAccount(debitedAccountIds.get(0), wait);
+            }
+        } else {
+            final Map<String, Integer> debits = new LinkedHashMap<>();
+            for (String accountId : debitedAccountIds) {
+                debits.merge(accountId, 1, Integer::sum);
+            }
+            for (Map.Entry<String, Integer> debit : debits.entrySet()) {
+                wait = accountBuckets.tryTake(debit.getKey(), debit.getValue());
+                if (wait > 0) {
+                    return rejectAccount(debit.getKey(), wait);
+                }
+            }
+        }
+        if (!concurrencyLimit.tryAcquire()) {
+            concurrencyRejections.increment();
+            return AdmissionPermit.rejected("Too many transfers in progress.", CONCURRENCY_RETRY_NANOS);
+        }
+        return AdmissionPermit.granted(concurrencyLimit, System.nanoTime());
+    }
+
+    /**
+     * Rejects a request because an account it debits was debited too often.
+     *
+     * @param accountId the account id
+     * @param wait how long until the account has tokens again, in nanoseconds
+     * @return the rejection
+     */
+    private AdmissionPermit rejectAccount(String accountId, long wait) {
+        accountRejections.increment();
+        return AdmissionPermit.rejected("Too many transfers from account " + accountId + ".", wait);
+    }
+
+    /**
+     * Gets the number of requests rejected because their client sent too many.
+     *
+     * @return the number of rejections
+     */
+    public long getClientRejections() {
+        return clientRejections.sum();
+    }
+
+    /**
+     * Gets the number of requests rejected because their account was debited too often.
+     *
+     * @return the number of rejections
+     */
+    public long getAccountRejections() {
+        return accountRejections.sum();
+    }
+
+    /**
+     * Gets the number of requests rejected because too many were in progress.
+     *
+     * @return the number of rejections
+     */
+    public long getConcurrencyRejections() {
+        return concurrencyRejections.sum();
+    }
+
+    /**
+     * Gets the current limit on the requests in progress.
+     *
+     * @return the limit
+     */
+    public int getConcurrencyLimit() {
+        return concurrencyLimit.getLimit();
+    }
+}
@@ -0,0 +1,132 @@
+package com.db.awmd.challenge.admission;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.LongSupplier;
+
+/**
+ * A token bucket per key, each refilled at the same rate up to the same burst, in a map of bounded
+ * size.
+ * <p>
+ * A bucket is a single {@link AtomicLong} holding the theoretical arrival time of the next token, as
+ * in the generic cell rate algorithm: a token may be taken while that time is at most one burst
+ * ahead of now, and taking it moves the time one refill interval on. Taking a token is thus one
+ * compare-and-set, without locks or allocation, and an idle bucket refills without being touched.
+ * <p>
+ * Keys are also kept, in the order they were added, in a ring of fixed capacity, as in the
+ * idempotency cache; adding a key evicts the one it takes the ring slot of, which starts over with
+ * a full bucket if it comes back. Memory therefore stays bounded however many keys arrive.
+ */
+final class TokenBuckets {
+
+    /** The time between two tokens, in nanoseconds. */
+    private final long intervalNanos;
+
+    /** How far the next token may be ahead of now, in nanoseconds: the burst less one token. */
+    private final long toleranceNanos;
+
+    /** The theoretical arrival time of the next token, by key. */
+    private final ConcurrentHashMap<String, AtomicLong> buckets;
+
+    /** The keys, in the order they were added. */
+    private final AtomicReferenceArray<String> ring;
+
+    /** The number of keys added. */
+    private final AtomicLong added = new AtomicLong();
+
+    /** The clock, in nanoseconds. */
+    private final LongSupplier clock;
+
+    /**
+     * Instantiates new token buckets.
+     *
+     * @param ratePerSecond the tokens added to a bucket per second
+     * @param burst the tokens a full bucket holds
+     * @param capacity the largest number of buckets kept
+     * @param clock the clock, in nanoseconds
+     */
+    TokenBuckets(double ratePerSecond, int burst, int capacity, LongSupplier clock) {
+        if (!(ratePerSecond > 0) || burst < 1 || capacity < 1) {
+            throw new IllegalArgumentException("Token bucket rate, burst and capacity must be positive: "
+                    + ratePerSecond + ", " + burst + ", " + capacity);
+        }
+        this.intervalNanos = Math.max(1L, (long) (TimeUnit.SECONDS.toNanos(1) / ratePerSecond));
+        this.toleranceNanos = intervalNanos * (burst - 1);
+        this.buckets = new ConcurrentHashMap<>(capacity * 4 / 3 + 1);
+        this.ring = new AtomicReferenceArray<>(capacity);
+        this.clock = clock;
+    }
+
+    /**
+     * Takes a token from the bucket of a key.
+     *
+     * @param key the key
+     * @return 0 if a token was taken, otherwise how long until one is available, in nanoseconds
+     */
+    long tryTake(String key) {
+        return tryTake(key, 1);
+    }
+
+    /**
+     * Takes tokens from the bucket of a key, all or none. More tokens than a full bucket holds are
+     * taken from a full bucket, leaving it in debt until it has refilled.
+     *
+     * @param key the key
+     * @param tokens the number of tokens, at least one
+     * @return 0 if the tokens were taken, otherwise how long until they are available, in nanoseconds
+     */
+    long tryTake(String key, int tokens) {
+        final long cost = intervalNanos * tokens;
+        // the tokens beyond the first must be in the bucket too, as far as a full bucket holds them
+        final long tolerance = Math.max(0L, toleranceNanos - (cost - intervalNanos));
+        final long now = clock.getAsLong();
+        AtomicLong bucket = buckets.get(key);
+        if (bucket == null) {
+            bucket = add(key, now);
+        }
+        while (true) {
+            final long arrival = bucket.get();
+            final long start = arrival - now > 0 ? arrival : now;
+            final long wait = start - now - tolerance;
+            if (wait > 0) {
+                return wait;
+            }
+            if (bucket.compareAndSet(arrival, start + cost)) {
+                return 0L;
+            }
+        }
+    }
+
+    /**
+     * Gets the number of buckets kept.
+     *
+     * @return the size
+     */
+    int size() {
+        return buckets.size();
+    }
+
+    /**
+     * Adds a full bucket for a key, unless another thread just did, evicting the key whose ring slot
+     * it takes.
+     *
+     * @param key the key
+     * @param now the current time
+     * @return the bucket of the key
+     */
+    private AtomicLong add(String key, long now) {
+        final AtomicLong created = new AtomicLong(now);
+        final AtomicLong existing = buckets.putIfAbsent(key, created);
+        if (existing != null) {
+            return existing;
+        }
+        final int slot = (int) (added.getAndIncrement() % ring.length());
+        final String evicted = ring.getAndSet(slot, key);
+        if (evicted != null && !evicted.equals(key)) {
+            buckets.remove(evicted);
+        }
+        return created;
+    }
+}
@@ -0,0 +1,40 @@
+package com.db.awmd.challenge.admission;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Decides whether a transfer request is let in, before any work is done for it, so that a client
+ * sending more than its share is turned away at once instead of holding up everybody else's
+ * requests.
+ */
+public interface TransferAdmission {
+
+    /** An admission that lets every request in. */
+    TransferAdmission DISABLED = (clientId, transfers, debitedAccountIds) -> AdmissionPermit.UNLIMITED;
+
+    /**
+     * Admits a transfer request, or rejects it. A granted permit must be released once the request
+     * completes.
+     *
+     * @param clientId the client sending the request
+     * @param accountId the account the transfer debits
+     * @return the permit
+     */
+    default AdmissionPermit admit(String clientId, String accountId) {
+        return admit(clientId, 1, Collections.singletonList(accountId));
+    }
+
+    /**
+     * Admits a request carrying several transfers, such as a batch or the legs of a multi-leg
+     * transfer, or rejects it. The client is charged for each transfer, and each account for each
+     * debit, as if they had come one request at a time; the request holds a single permit, which
+     * must be released once it completes.
+     *
+     * @param clientId the client sending the request
+     * @param transfers the number of transfers, or legs, of the request
+     * @param debitedAccountIds the account of each debit, an account appearing once per debit
+     * @return the permit
+     */
+    AdmissionPermit admit(String clientId, int transfers, List<String> debitedAccountIds);
+}
@@ -1,17 +1,39 @@
 package com.db.awmd.challenge.domain;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 import java.math.BigDecimal;
+import java.util.concurrent.atomic.LongAdder;
 import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
 
+import lombok.AccessLevel;
 import lombok.Data;
-import org.hibernate.validator.constraints.NotBlank;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
 import org.hibernate.validator.constraints.NotEmpty;
 
+/**
+ * The Class Account.
+ * <p>
+ * The balance is guarded by a sequence lock: a write makes the sequence odd, updates the balance and
+ * makes it even again, so {@link #snapshot()} and {@link #getBalanceMinor()} read a consistent balance
+ * without locking, retrying if a write overlapped. Writes to one account must be serialized by the
+ * caller.
+ * <p>
+ * A {@link #markHot() hot} account, one most transfers pay into, takes credits into a
+ * {@link LongAdder} instead, whose cells let concurrent credits proceed without writing the same
+ * memory or being serialized; they need not be. The balance is the sum of both, and the pending
+ * credits are folded into the balance by the next debit or set, so that a debit is checked against
+ * the full balance. Credits do not change the version.
+ */
 @Data
+@EqualsAndHashCode(exclude = {"sequence", "pendingCredits"})
+@ToString(exclude = {"sequence", "pendingCredits"})
 public class Account {
 
     /** The account id. */
@@ -19,10 +41,20 @@ public class Account {
     @NotEmpty
     private final String accountId;
 
-    /** The balance. */
-    @NotNull
+    /** The balance, in minor units (see {@link Money}). */
+    @JsonIgnore
     @Min(value = 0, message = "Initial balance must be positive.")
-    private BigDecimal balance;
+    private volatile long balanceMinor;
+
+    /** The sequence, odd while a write is in progress; half of it is the number of writes. */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private volatile long sequence;
+
+    /** The credits not folded into the balance yet, null unless the account is hot. */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private volatile LongAdder pendingCredits;
 
     /**
      * Instantiates a new account.
@@ -31,7 +63,7 @@ public class Account {
      */
     public Account(String accountId) {
         this.accountId = accountId;
-        this.balance = BigDecimal.ZERO;
+        this.balanceMinor = 0L;
     }
 
     /**
@@ -39,11 +71,146 @@ public class Account {
      *
      * @param accountId the account id
      * @param balance the balance
+     * @throws IllegalArgumentException if the balance is missing
+     * @throws ArithmeticException if the balance has more decimal places than {@link Money#SCALE}
      */
     @JsonCreator
     public Account(@JsonProperty("accountId") String accountId,
                    @JsonProperty("balance") BigDecimal balance) {
         this.accountId = accountId;
-        this.balance = balance;
+        this.balanceMinor = Money.toMinorUnits(balance);
+    }
+
+    /**
+     * Instantiates a new account.
+     *
+     * @param accountId the account id
+     * @param balanceMinor the balance in minor units
+     */
+    public Account(String accountId, long balanceMinor) {
+        this.accountId = accountId;
+        this.balanceMinor = balanceMinor;
+    }
+
+    /**
+     * Gets the balance in minor units, including the credits not folded yet, retrying while a write
+     * overlaps the read, as a debit folding the credits moves them between the two.
+     *
+     * @return the balance in minor units
+     */
+    public long getBalanceMinor() {
+        while (true) {
+            final long before = sequence;
+            if ((before & 1L) == 0L) {
+                final LongAdder pending = pendingCredits;
+                final long balance = pending == null ? balanceMinor : balanceMinor + pending.sum();
+                if (sequence == before) {
+                    return balance;
+                }
+            }
+            Thread.yield();
+        }
+    }
+
+    /**
+     * Sets the balance in minor units. Credits pending when it is set are dropped; credits that
+     * land meanwhile count on top of it.
+     *
+     * @param balanceMinor the new balance in minor units
+     */
+    public void setBalanceMinor(long balanceMinor) {
+        final LongAdder pending = pendingCredits;
+        final long current = sequence;
+        sequence = current + 1;
+        if (pending != null) {
+            pending.add(-pending.sum());
+        }
+        this.balanceMinor = balanceMinor;
+        sequence = current + 2;
+    }
+
+    /**
+     * Adds an amount to the balance. On a hot account a credit goes to the pending credits and may
+     * run concurrently with other credits; anything else must be serialized with all the writes.
+     *
+     * @param amountMinor the amount in minor units, negative for a debit
+     * @throws ArithmeticException if the balance overflows
+     */
+    public void addBalanceMinor(long amountMinor) {
+        final LongAdder pending = pendingCredits;
+        if (pending == null) {
+            setBalanceMinor(Money.add(balanceMinor, amountMinor));
+            return;
+        }
+        if (amountMinor > 0L) {
+            Money.add(getBalanceMinor(), amountMinor);
+            pending.add(amountMinor);
+            return;
+        }
+        final long folded = pending.sum();
+        final long updated = Money.add(Money.add(balanceMinor, folded), amountMinor);
+        final long current = sequence;
+        sequence = current + 1;
+        pending.add(-folded);
+        this.balanceMinor = updated;
+        sequence = current + 2;
+    }
+
+    /**
+     * Makes the account hot, so that credits to it go to per-cell counters. Must be serialized with
+     * the writes.
+     */
+    public void markHot() {
+        if (pendingCredits == null) {
+            pendingCredits = new LongAdder();
+        }
+    }
+
+    /**
+     * Tells whether the account is hot.
+     *
+     * @return true, if hot
+     */
+    @JsonIgnore
+    public boolean isHot() {
+        return pendingCredits != null;
+    }
+
+    /**
+     * Takes a consistent, immutable view of the account without locking.
+     *
+     * @return the account snapshot
+     */
+    public AccountSnapshot snapshot() {
+        while (true) {
+            final long before = sequence;
+            if ((before & 1L) == 0L) {
+                final LongAdder pending = pendingCredits;
+                final long balance = pending == null ? balanceMinor : balanceMinor + pending.sum();
+                if (sequence == before) {
+                    return new AccountSnapshot(accountId, balance, before >>> 1);
+                }
+            }
+            Thread.yield();
+        }
+    }
+
+    /**
+     * Gets the balance.
+     *
+     * @return the balance
+     */
+    @JsonProperty("balance")
+    public BigDecimal getBalance() {
+        return Money.toBigDecimal(getBalanceMinor());
+    }
+
+    /**
+     * Sets the balance.
+     *
+     * @param balance the new balance
+     */
+    public void setBalance(BigDecimal balance) {
+        setBalanceMinor(Money.toMinorUnits(balance));
     }
 }
@@ -0,0 +1,81 @@
+package com.db.awmd.challenge.domain;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+import java.math.BigDecimal;
+
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+
+/**
+ * An immutable view of an account at one version, served by {@code GET /v1/accounts/{id}} in place of
+ * the live {@link Account}, which transfers keep updating while it is serialized.
+ */
+@EqualsAndHashCode
+@ToString
+@JsonPropertyOrder({"accountId", "balance"})
+public final class AccountSnapshot {
+
+    /** The account id. */
+    private final String accountId;
+
+    /** The balance, in minor units. */
+    private final long balanceMinor;
+
+    /** The version, the number of updates applied to the account. */
+    private final long version;
+
+    /**
+     * Instantiates a new account snapshot.
+     *
+     * @param accountId the account id
+     * @param balanceMinor the balance in minor units
+     * @param version the version
+     */
+    public AccountSnapshot(String accountId, long balanceMinor, long version) {
+        this.accountId = accountId;
+        this.balanceMinor = balanceMinor;
+        this.version = version;
+    }
+
+    /**
+     * Gets the account id.
+     *
+     * @return the account id
+     */
+    public String getAccountId() {
+        return accountId;
+    }
+
+    /**
+     * Gets the balance in minor units.
+     *
+     * @return the balance in minor units
+     */
+    @JsonIgnore
+    public long getBalanceMinor() {
+        return balanceMinor;
+    }
+
+    /**
+     * Gets the balance.
+     *
+     * @return the balance
+     */
+    @JsonProperty("balance")
+    public BigDecimal getBalance() {
+        return Money.toBigDecimal(balanceMinor);
+    }
+
+    /**
+     * Gets the version, the number of updates applied to the account.
+     *
+     * @return the version
+     */
+    @JsonIgnore
+    public long getVersion() {
+        return version;
+    }
+}
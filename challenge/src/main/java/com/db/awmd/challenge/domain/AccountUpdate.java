@@ -2,21 +2,19 @@ package com.db.awmd.challenge.domain;
 
 import lombok.Data;
 
-import java.math.BigDecimal;
-
 /**
  * Instantiates a new account update.
  *
  * @param accountId the account id
- * @param amount the amount
+ * @param amountMinor the amount in minor units
  */
 @Data
 public class AccountUpdate {
 
     /** The account id. */
     private final String accountId;
-    
-    /** The amount. */
-    private final BigDecimal amount;
+
+    /** The amount, in minor units (see {@link Money}). */
+    private final long amountMinor;
 
 }
@@ -0,0 +1,16 @@
+package com.db.awmd.challenge.domain;
+
+import lombok.Data;
+
+/**
+ * A line of a bulk import that was not imported.
+ */
+@Data
+public class ImportFailure {
+
+    /** The line number, from 1. */
+    private final long line;
+
+    /** Why the line was not imported. */
+    private final String message;
+}
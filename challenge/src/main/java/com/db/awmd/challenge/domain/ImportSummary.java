@@ -0,0 +1,24 @@
+package com.db.awmd.challenge.domain;
+
+import java.util.List;
+
+import lombok.Data;
+
+/**
+ * The outcome of a bulk import of accounts.
+ */
+@Data
+public class ImportSummary {
+
+    /** The number of lines read, blank ones included. */
+    private final long lines;
+
+    /** The number of accounts created. */
+    private final long created;
+
+    /** The number of lines not imported. */
+    private final long failed;
+
+    /** The lines not imported, in line order, up to the configured limit. */
+    private final List<ImportFailure> failures;
+}
@@ -0,0 +1,85 @@
+package com.db.awmd.challenge.domain;
+
+import java.math.BigDecimal;
+
+/**
+ * Fixed-point arithmetic on amounts held as a {@code long} number of minor units (cents).
+ * <p>
+ * Balances and transfer amounts are kept in minor units throughout the domain so that the transfer
+ * path does not allocate; {@link BigDecimal} is only used when converting at the JSON boundary.
+ * All arithmetic is overflow-checked and throws {@link ArithmeticException} rather than wrapping.
+ */
+public final class Money {
+
+    /** The number of decimal places of an amount. */
+    public static final int SCALE = 2;
+
+    /** The number of minor units in one major unit. */
+    public static final long MINOR_UNITS_PER_UNIT = 100L;
+
+    /**
+     * Instantiates a new money.
+     */
+    private Money() {
+    }
+
+    /**
+     * Converts a decimal amount to minor units.
+     *
+     * @param amount the amount
+     * @return the amount in minor units
+     * @throws IllegalArgumentException if the amount is null
+     * @throws ArithmeticException if the amount has more than {@link #SCALE} decimal places or does not fit in a long
+     */
+    public static long toMinorUnits(BigDecimal amount) {
+        if (amount == null) {
+            throw new IllegalArgumentException("Amount must not be null.");
+        }
+        return amount.movePointRight(SCALE).longValueExact();
+    }
+
+    /**
+     * Converts an amount in minor units to a decimal amount with {@link #SCALE} decimal places.
+     *
+     * @param minorUnits the amount in minor units
+     * @return the decimal amount
+     */
+    public static BigDecimal toBigDecimal(long minorUnits) {
+        return BigDecimal.valueOf(minorUnits, SCALE);
+    }
+
+    /**
+     * Adds two amounts.
+     *
+     * @param minorUnits the amount in minor units
+     * @param otherMinorUnits the other amount in minor units
+     * @return the sum
+     * @throws ArithmeticException if the sum overflows
+     */
+    public static long add(long minorUnits, long otherMinorUnits) {
+        return Math.addExact(minorUnits, otherMinorUnits);
+    }
+
+    /**
+     * Subtracts an amount from another.
+     *
+     * @param minorUnits the amount in minor units
+     * @param otherMinorUnits the amount to subtract in minor units
+     * @return the difference
+     * @throws ArithmeticException if the difference overflows
+     */
+    public static long subtract(long minorUnits, long otherMinorUnits) {
+        return Math.subtractExact(minorUnits, otherMinorUnits);
+    }
+
+    /**
+     * Negates an amount.
+     *
+     * @param minorUnits the amount in minor units
+     * @return the negated amount
+     * @throws ArithmeticException if the amount is {@link Long#MIN_VALUE}
+     */
+    public static long negate(long minorUnits) {
+        return Math.negateExact(minorUnits);
+    }
+}
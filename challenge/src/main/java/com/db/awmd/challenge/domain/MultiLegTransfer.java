@@ -0,0 +1,69 @@
+package com.db.awmd.challenge.domain;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Data;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A transfer between any number of accounts, made of legs that debit or credit one account each.
+ * The legs must sum to zero, so that money only moves between the accounts, and are applied all
+ * or none.
+ */
+@Data
+public class MultiLegTransfer {
+
+    /** The largest number of legs a transfer may have. */
+    public static final int MAX_LEGS = 1000;
+
+    /** The legs. */
+    @NotNull
+    @Size(min = 2, max = MAX_LEGS)
+    @Valid
+    private final List<TransferLeg> legs;
+
+    /**
+     * Instantiates a new multi-leg transfer.
+     *
+     * @param legs the legs
+     */
+    @JsonCreator
+    public MultiLegTransfer(@JsonProperty("legs") List<TransferLeg> legs) {
+        this.legs = legs;
+    }
+
+    /**
+     * Checks what bean validation cannot: that every leg is present and moves money, that no
+     * account has two legs, and that the legs sum to zero.
+     *
+     * @return why the transfer is malformed, null if it is not
+     */
+    public String findProblem() {
+        final Set<String> accountIds = new HashSet<>(legs.size() * 2);
+        long sum = 0L;
+        for (int i = 0; i < legs.size(); i++) {
+            final TransferLeg leg = legs.get(i);
+            if (leg == null) {
+                return "Leg " + i + " is missing.";
+            }
+            if (leg.getAmountMinor() == 0L) {
+                return "Leg " + i + " has no amount.";
+            }
+            if (!accountIds.add(leg.getAccountId())) {
+                return "Account " + leg.getAccountId() + " has more than one leg.";
+            }
+            try {
+                sum = Money.add(sum, leg.getAmountMinor());
+            } catch (ArithmeticException e) {
+                return "Legs overflow.";
+            }
+        }
+        return sum == 0L ? null : "Legs sum to " + Money.toBigDecimal(sum) + " instead of zero.";
+    }
+}
@@ -0,0 +1,35 @@
+package com.db.awmd.challenge.domain;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.math.BigDecimal;
+
+import lombok.Data;
+
+/**
+ * A movement on an account, as kept by its transaction history.
+ */
+@Data
+public class Transaction {
+
+    /** The position of the movement in the history of the account, from zero. */
+    private final long index;
+
+    /** When the movement was applied, in epoch milliseconds. */
+    private final long timestamp;
+
+    /** The amount, in minor units, negative for a debit. */
+    @JsonIgnore
+    private final long amountMinor;
+
+    /**
+     * Gets the amount.
+     *
+     * @return the amount, negative for a debit
+     */
+    @JsonProperty("amount")
+    public BigDecimal getAmount() {
+        return Money.toBigDecimal(amountMinor);
+    }
+}
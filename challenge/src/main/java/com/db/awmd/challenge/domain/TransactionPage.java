@@ -0,0 +1,21 @@
+package com.db.awmd.challenge.domain;
+
+import java.util.List;
+
+import lombok.Data;
+
+/**
+ * A page of the transaction history of an account, newest first.
+ */
+@Data
+public class TransactionPage {
+
+    /** The account id. */
+    private final String accountId;
+
+    /** The transactions, newest first. */
+    private final List<Transaction> transactions;
+
+    /** The cursor of the next, older page, null once the oldest transaction is included. */
+    private final Long nextCursor;
+}
@@ -2,6 +2,7 @@ package com.db.awmd.challenge.domain;
 
 
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Data;
 import org.hibernate.validator.constraints.NotEmpty;
@@ -26,10 +27,10 @@ public class Transfer {
     @NotEmpty
     private String accountToId;
 
-    /** The amount. */
-    @NotNull
-    @Min(value = 1, message = "Transfer amount must be positive.")
-    private BigDecimal amount;
+    /** The amount, in minor units (see {@link Money}). */
+    @JsonIgnore
+    @Min(value = Money.MINOR_UNITS_PER_UNIT, message = "Transfer amount must be positive.")
+    private long amountMinor;
 
     /**
      * Instantiates a new transfer.
@@ -37,14 +38,37 @@ public class Transfer {
      * @param accountFromId the account from id
      * @param accountToId the account to id
      * @param amount the amount
+     * @throws IllegalArgumentException if the amount is missing
+     * @throws ArithmeticException if the amount has more decimal places than {@link Money#SCALE}
      */
     @JsonCreator
     public Transfer(@JsonProperty("accountFromId") String accountFromId,
                     @JsonProperty("accountToId") String accountToId,
                     @JsonProperty("amount") BigDecimal amount){
+        this(accountFromId, accountToId, Money.toMinorUnits(amount));
+    }
+
+    /**
+     * Instantiates a new transfer.
+     *
+     * @param accountFromId the account from id
+     * @param accountToId the account to id
+     * @param amountMinor the amount in minor units
+     */
+    public Transfer(String accountFromId, String accountToId, long amountMinor){
         this.accountFromId = accountFromId;
         this.accountToId = accountToId;
-        this.amount = amount;
+        this.amountMinor = amountMinor;
+    }
+
+    /**
+     * Gets the amount.
+     *
+     * @return the amount
+     */
+    @JsonProperty("amount")
+    public BigDecimal getAmount() {
+        return Money.toBigDecimal(amountMinor);
     }
 
 }
@@ -0,0 +1,72 @@
+package com.db.awmd.challenge.domain;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Data;
+import org.hibernate.validator.constraints.NotEmpty;
+
+import javax.validation.constraints.NotNull;
+import java.math.BigDecimal;
+
+/**
+ * One leg of a {@link MultiLegTransfer}: an amount debited from an account when negative, or
+ * credited to it when positive.
+ */
+@Data
+public class TransferLeg {
+
+    /** The account id. */
+    @NotNull
+    @NotEmpty
+    private final String accountId;
+
+    /** The signed amount, in minor units (see {@link Money}). */
+    @JsonIgnore
+    private final long amountMinor;
+
+    /**
+     * Instantiates a new transfer leg.
+     *
+     * @param accountId the account id
+     * @param amount the signed amount, negative for a debit
+     * @throws IllegalArgumentException if the amount is missing
+     * @throws ArithmeticException if the amount has more decimal places than {@link Money#SCALE}
+     */
+    @JsonCreator
+    public TransferLeg(@JsonProperty("accountId") String accountId,
+                       @JsonProperty("amount") BigDecimal amount) {
+        this(accountId, Money.toMinorUnits(amount));
+    }
+
+    /**
+     * Instantiates a new transfer leg.
+     *
+     * @param accountId the account id
+     * @param amountMinor the signed amount in minor units, negative for a debit
+     */
+    public TransferLeg(String accountId, long amountMinor) {
+        this.accountId = accountId;
+        this.amountMinor = amountMinor;
+    }
+
+    /**
+     * Gets the signed amount.
+     *
+     * @return the amount
+     */
+    @JsonProperty("amount")
+    public BigDecimal getAmount() {
+        return Money.toBigDecimal(amountMinor);
+    }
+
+    /**
+     * Tells whether the leg takes money out of its account.
+     *
+     * @return true, if a debit
+     */
+    @JsonIgnore
+    public boolean isDebit() {
+        return amountMinor < 0;
+    }
+}
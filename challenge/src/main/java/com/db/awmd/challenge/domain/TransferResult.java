@@ -0,0 +1,129 @@
+package com.db.awmd.challenge.domain;
+
+import com.db.awmd.challenge.exception.AccountNotFoundException;
+import com.db.awmd.challenge.exception.NotEnoughFundsException;
+import com.db.awmd.challenge.exception.TransferBetweenSameAccountException;
+
+/**
+ * The outcome of a transfer, reported instead of thrown.
+ * <p>
+ * Accepted transfers and transfers to self share preallocated instances; the other rejections only
+ * keep what their message needs, which is built when asked for. A rejection therefore costs neither
+ * a stack trace nor a string concatenation unless the message is actually used.
+ */
+public final class TransferResult {
+
+    /** The result of an accepted transfer. */
+    public static final TransferResult OK = new TransferResult(TransferStatus.OK, null, 0L);
+
+    /** The result of a transfer to self. */
+    public static final TransferResult SAME_ACCOUNT = new TransferResult(TransferStatus.SAME_ACCOUNT, null, 0L);
+
+    /** The status. */
+    private final TransferStatus status;
+
+    /** The account the rejection is about, null unless there is one. */
+    private final String accountId;
+
+    /** The balance of the account, in minor units, when rejected for insufficient funds. */
+    private final long balanceMinor;
+
+    /**
+     * Instantiates a new transfer result.
+     *
+     * @param status the status
+     * @param accountId the account the rejection is about
+     * @param balanceMinor the balance of the account, in minor units
+     */
+    private TransferResult(TransferStatus status, String accountId, long balanceMinor) {
+        this.status = status;
+        this.accountId = accountId;
+        this.balanceMinor = balanceMinor;
+    }
+
+    /**
+     * The result of a transfer involving an account that does not exist.
+     *
+     * @param accountId the missing account id
+     * @return the transfer result
+     */
+    public static TransferResult notFound(String accountId) {
+        return new TransferResult(TransferStatus.NOT_FOUND, accountId, 0L);
+    }
+
+    /**
+     * The result of a transfer from an account that does not hold enough funds.
+     *
+     * @param accountId the account id
+     * @param balanceMinor the balance of the account, in minor units
+     * @return the transfer result
+     */
+    public static TransferResult insufficientFunds(String accountId, long balanceMinor) {
+        return new TransferResult(TransferStatus.INSUFFICIENT_FUNDS, accountId, balanceMinor);
+    }
+
+    /**
+     * Gets the status.
+     *
+     * @return the status
+     */
+    public TransferStatus getStatus() {
+        return status;
+    }
+
+    /**
+     * Tells whether the transfer was accepted.
+     *
+     * @return true, if accepted
+     */
+    public boolean isOk() {
+        return status == TransferStatus.OK;
+    }
+
+    /**
+     * Builds the message describing the rejection.
+     *
+     * @return the message, null if the transfer was accepted
+     */
+    public String getMessage() {
+        switch (status) {
+        case NOT_FOUND:
+            return "Account " + accountId + " not found.";
+        case SAME_ACCOUNT:
+            return "Transfer to self not permitted.";
+        case INSUFFICIENT_FUNDS:
+            return "Not enough funds on account " + accountId + " balance=" + Money.toBigDecimal(balanceMinor);
+        default:
+            return null;
+        }
+    }
+
+    /**
+     * Throws the exception matching the rejection, for callers of the exception-based API.
+     *
+     * @throws AccountNotFoundException When an account does not exist
+     * @throws NotEnoughFundsException When there are not enough funds to complete the transfer
+     * @throws TransferBetweenSameAccountException Transfer to self account is not permitted
+     */
+    public void throwIfRejected() throws AccountNotFoundException, NotEnoughFundsException,
+            TransferBetweenSameAccountException {
+        switch (status) {
+        case NOT_FOUND:
+            throw new AccountNotFoundException(getMessage());
+        case SAME_ACCOUNT:
+            throw new TransferBetweenSameAccountException(getMessage());
+        case INSUFFICIENT_FUNDS:
+            throw new NotEnoughFundsException(getMessage());
+        default:
+            break;
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return isOk() ? status.name() : status + ": " + getMessage();
+    }
+}
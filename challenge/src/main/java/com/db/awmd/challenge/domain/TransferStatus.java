@@ -0,0 +1,19 @@
+package com.db.awmd.challenge.domain;
+
+/**
+ * The outcome of a single transfer.
+ */
+public enum TransferStatus {
+
+    /** The transfer was applied. */
+    OK,
+
+    /** The source or destination account does not exist. */
+    NOT_FOUND,
+
+    /** The source account does not hold enough funds. */
+    INSUFFICIENT_FUNDS,
+
+    /** The source and destination accounts are the same. */
+    SAME_ACCOUNT
+}
@@ -0,0 +1,26 @@
+package com.db.awmd.challenge.exception;
+
+/**
+ * The Class JournalException.
+ */
+public class JournalException extends RuntimeException {
+
+    /**
+     * Instantiates a new journal exception.
+     *
+     * @param message the message
+     */
+    public JournalException(String message) {
+        super(message);
+    }
+
+    /**
+     * Instantiates a new journal exception.
+     *
+     * @param message the message
+     * @param cause the cause
+     */
+    public JournalException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,399 @@
+package com.db.awmd.challenge.history;
+
+import com.db.awmd.challenge.domain.AccountUpdate;
+import com.db.awmd.challenge.domain.Transaction;
+import com.db.awmd.challenge.domain.TransactionPage;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Transaction history keeping the movements of each account in chunks of primitive longs.
+ * <p>
+ * An account owns a list of chunks, each an array of (timestamp, amount) pairs; the first chunk holds
+ * a few entries and each next one twice as many, up to {@code chunkSize}, so that quiet accounts stay
+ * small. A movement is recorded by writing two longs and publishing the new size, without allocating
+ * outside chunk boundaries; the monitor of the account history it holds meanwhile is uncontended
+ * unless transfers run without the account locks. Readers see every movement up to the size they read.
+ * <p>
+ * When an account has more than {@code chunksInMemory} full chunks, the oldest one is handed to a
+ * background thread that appends it to a spill file and drops the array; reads of that chunk then go
+ * to the file. The spill file only extends memory: it is created empty when the first chunk is
+ * spilled and deleted on close, and the history starts empty with each run.
+ */
+@Slf4j
+public class ChunkedTransactionHistory implements TransactionHistory, Closeable {
+
+    /** The number of entries of the first chunk of an account. */
+    private static final int FIRST_CHUNK_SIZE = 4;
+
+    /** The number of longs per entry: the timestamp, then the amount. */
+    private static final int ENTRY_LONGS = 2;
+
+    /** The number of bytes per entry in the spill file. */
+    private static final int ENTRY_BYTES = ENTRY_LONGS * 8;
+
+    /** The histories, by account id. */
+    private final ConcurrentHashMap<String, AccountHistory> histories = new ConcurrentHashMap<>();
+
+    /** The number of entries of a full-grown chunk. */
+    private final int chunkSize;
+
+    /** The number of full chunks an account keeps in memory, 0 to keep them all. */
+    private final int chunksInMemory;
+
+    /** The spill file, null when chunks are not spilled. */
+    private final File spillFile;
+
+    /** The spill channel, opened by the spilling thread with the first chunk spilled. */
+    private volatile FileChannel spillChannel;
+
+    /** The chunks waiting to be spilled. */
+    private final BlockingQueue<Chunk> spillQueue = new LinkedBlockingQueue<>();
+
+    /** The spilling thread, null when chunks are not spilled. */
+    private final Thread spiller;
+
+    /** The end of the spill file, written by the spilling thread only. */
+    private long spillPosition;
+
+    /**
+     * Instantiates a new chunked transaction history keeping every chunk in memory.
+     *
+     * @param chunkSize the number of entries of a full-grown chunk
+     */
+    public ChunkedTransactionHistory(int chunkSize) {
+        this(chunkSize, 0, null);
+    }
+
+    /**
+     * Instantiates a new chunked transaction history.
+     *
+     * @param chunkSize the number of entries of a full-grown chunk
+     * @param chunksInMemory the number of full chunks an account keeps in memory, 0 to keep them all
+     * @param spillFile the spill file, replaced once a chunk is spilled; needed unless chunksInMemory is 0
+     */
+    public ChunkedTransactionHistory(int chunkSize, int chunksInMemory, File spillFile) {
+        if (chunkSize < FIRST_CHUNK_SIZE || Integer.bitCount(chunkSize) != 1) {
+            throw new IllegalArgumentException("Chunk size must be a power of two of at least " + FIRST_CHUNK_SIZE
+                    + ": " + chunkSize);
+        }
+        if (chunksInMemory < 0) {
+            throw new IllegalArgumentException("Chunks in memory must not be negative: " + chunksInMemory);
+        }
+        this.chunkSize = chunkSize;
+        this.chunksInMemory = chunksInMemory;
+        if (chunksInMemory == 0) {
+            this.spillFile = null;
+            this.spiller = null;
+            return;
+        }
+
+        this.spillFile = spillFile;
+        this.spiller = new Thread(this::spillLoop, "transaction-history-spill");
+        this.spiller.setDaemon(true);
+        this.spiller.start();
+    }
+
+    /* (non-Javadoc)
+     * @see com.db.awmd.challenge.history.TransactionHistory#record(java.util.List)
+     */
+    @Override
+    public void record(List<AccountUpdate> accountUpdates) {
+        final long now = System.currentTimeMillis();
+        for (int i = 0; i < accountUpdates.size(); i++) {
+            final AccountUpdate accountUpdate = accountUpdates.get(i);
+            AccountHistory history = histories.get(accountUpdate.getAccountId());
+            if (history == null) {
+                history = histories.computeIfAbsent(accountUpdate.getAccountId(), id -> new AccountHistory());
+            }
+            history.append(now, accountUpdate.getAmountMinor());
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see com.db.awmd.challenge.history.TransactionHistory#page(java.lang.String, long, int)
+     */
+    @Override
+    public TransactionPage page(String accountId, long cursor, int limit) {
+        final AccountHistory history = histories.get(accountId);
+        if (history == null || cursor <= 0 || limit <= 0) {
+            return new TransactionPage(accountId, Collections.emptyList(), null);
+        }
+        // size, chunk count and chunks are read in the reverse order of their writes
+        final long end = Math.min(cursor, history.size);
+        final int count = history.chunkCount;
+        final Chunk[] chunks = history.chunks;
+        final long start = Math.max(0L, end - limit);
+        final List<Transaction> transactions = new ArrayList<>((int) (end - start));
+        long index = end - 1;
+        int chunkIndex = chunkAt(chunks, count, index);
+        while (index >= start) {
+            final Chunk chunk = chunks[chunkIndex--];
+            final long from = Math.max(start, chunk.firstIndex);
+            read(chunk, from, index + 1, transactions);
+            index = from - 1;
+        }
+        return new TransactionPage(accountId, transactions, start > 0 ? start : null);
+    }
+
+    /**
+     * Gets the number of movements recorded for an account.
+     *
+     * @param accountId the account id
+     * @return the size
+     */
+    public long size(String accountId) {
+        final AccountHistory history = histories.get(accountId);
+        return history == null ? 0L : history.size;
+    }
+
+    /**
+     * Gets the number of chunks written to the spill file.
+     *
+     * @return the number of spilled chunks
+     */
+    public long spilledChunks() {
+        long spilled = 0;
+        for (AccountHistory history : histories.values()) {
+            final int count = history.chunkCount;
+            final Chunk[] chunks = history.chunks;
+            for (int i = 0; i < count; i++) {
+                if (chunks[i].entries == null) {
+                    spilled++;
+                }
+            }
+        }
+        return spilled;
+    }
+
+    /* (non-Javadoc)
+     * @see java.io.Closeable#close()
+     */
+    @Override
+    public void close() throws IOException {
+        if (spiller == null) {
+            return;
+        }
+        spiller.interrupt();
+        try {
+            spiller.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        final FileChannel channel = spillChannel;
+        if (channel != null) {
+            channel.close();
+            if (!spillFile.delete()) {
+                log.warn("Cannot delete transaction history spill file {}", spillFile);
+            }
+        }
+    }
+
+    /**
+     * Reads a range of entries of a chunk, newest first, from memory or from the spill file.
+     *
+     * @param chunk the chunk
+     * @param from the index of the oldest entry to read
+     * @param to the index following the newest entry to read
+     * @param transactions the list the transactions are added to
+     */
+    private void read(Chunk chunk, long from, long to, List<Transaction> transactions) {
+        final long[] entries = chunk.entries;
+        if (entries != null) {
+            for (long index = to - 1; index >= from; index--) {
+                final int offset = (int) (index - chunk.firstIndex) * ENTRY_LONGS;
+                transactions.add(new Transaction(index, entries[offset], entries[offset + 1]));
+            }
+            return;
+        }
+
+        final ByteBuffer buffer = ByteBuffer.allocate((int) (to - from) * ENTRY_BYTES);
+        final long position = chunk.spillPosition + (from - chunk.firstIndex) * ENTRY_BYTES;
+        try {
+            while (buffer.hasRemaining()) {
+                if (spillChannel.read(buffer, position + buffer.position()) < 0) {
+                    throw new IOException("Unexpected end of " + spillFile);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read transaction history from " + spillFile, e);
+        }
+        for (long index = to - 1; index >= from; index--) {
+            final int offset = (int) (index - from) * ENTRY_BYTES;
+            transactions.add(new Transaction(index, buffer.getLong(offset), buffer.getLong(offset + 8)));
+        }
+    }
+
+    /**
+     * Finds the chunk holding an entry.
+     *
+     * @param chunks the chunks
+     * @param count the number of chunks used
+     * @param index the index of the entry, below the size
+     * @return the position of the chunk
+     */
+    private static int chunkAt(Chunk[] chunks, int count, long index) {
+        int low = 0;
+        int high = count - 1;
+        while (low < high) {
+            final int middle = (low + high + 1) >>> 1;
+            if (chunks[middle].firstIndex <= index) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Appends the chunks handed over to the spill file and drops their arrays, until interrupted.
+     */
+    private void spillLoop() {
+        try {
+            while (true) {
+                final Chunk chunk = spillQueue.take();
+                final FileChannel channel = spillChannel == null ? openSpillFile() : spillChannel;
+                final long[] entries = chunk.entries;
+                final ByteBuffer buffer = ByteBuffer.allocate(entries.length * 8);
+                buffer.asLongBuffer().put(entries);
+                final long position = spillPosition;
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer, position + buffer.position());
+                }
+                spillPosition = position + buffer.capacity();
+                chunk.spillPosition = position;
+                chunk.entries = null;
+            }
+        } catch (InterruptedException | ClosedByInterruptException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            log.error("Cannot spill transaction history to {}, keeping it in memory", spillFile, e);
+        }
+    }
+
+    /**
+     * Creates the spill file, replacing any left by a previous run.
+     *
+     * @return the spill channel
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private FileChannel openSpillFile() throws IOException {
+        final File directory = spillFile.getAbsoluteFile().getParentFile();
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create directory " + directory);
+        }
+        spillChannel = FileChannel.open(spillFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        log.info("Spilling older transaction history to {}", spillFile);
+        return spillChannel;
+    }
+
+    /**
+     * The movements of one account.
+     */
+    private final class AccountHistory {
+
+        /** The chunks, of which the first chunkCount are used. */
+        private volatile Chunk[] chunks = new Chunk[4];
+
+        /** The number of chunks used. */
+        private volatile int chunkCount;
+
+        /** The number of movements, published after the movements themselves. */
+        private volatile long size;
+
+        /** The index of the oldest chunk still in memory, for the writer. */
+        private int oldestInMemory;
+
+        /**
+         * Appends a movement.
+         *
+         * @param timestamp the timestamp, in epoch milliseconds
+         * @param amountMinor the amount in minor units
+         */
+        synchronized void append(long timestamp, long amountMinor) {
+            final long index = size;
+            Chunk chunk = chunkCount == 0 ? null : chunks[chunkCount - 1];
+            if (chunk == null || index == chunk.firstIndex + chunk.capacity) {
+                chunk = addChunk(index, chunk == null ? FIRST_CHUNK_SIZE : Math.min(chunk.capacity * 2, chunkSize));
+            }
+            final long[] entries = chunk.entries;
+            final int offset = (int) (index - chunk.firstIndex) * ENTRY_LONGS;
+            entries[offset] = timestamp;
+            entries[offset + 1] = amountMinor;
+            size = index + 1;
+        }
+
+        /**
+         * Starts a chunk, handing the oldest full chunk in memory over to be spilled if there are
+         * too many.
+         *
+         * @param firstIndex the index of the first entry of the chunk
+         * @param capacity the number of entries of the chunk
+         * @return the chunk
+         */
+        private Chunk addChunk(long firstIndex, int capacity) {
+            Chunk[] current = chunks;
+            final int count = chunkCount;
+            if (count == current.length) {
+                final Chunk[] grown = new Chunk[count * 2];
+                System.arraycopy(current, 0, grown, 0, count);
+                chunks = current = grown;
+            }
+            final Chunk chunk = new Chunk(firstIndex, capacity);
+            current[count] = chunk;
+            chunkCount = count + 1;
+
+            if (chunksInMemory > 0 && count - oldestInMemory > chunksInMemory) {
+                spillQueue.add(current[oldestInMemory++]);
+            }
+            return chunk;
+        }
+    }
+
+    /**
+     * A run of consecutive movements of an account.
+     */
+    private static final class Chunk {
+
+        /** The index of the first entry. */
+        private final long firstIndex;
+
+        /** The number of entries. */
+        private final int capacity;
+
+        /** The entries, null once spilled. */
+        private volatile long[] entries;
+
+        /** The position of the entries in the spill file, set before they are dropped. */
+        private volatile long spillPosition = -1L;
+
+        /**
+         * Instantiates a new chunk.
+         *
+         * @param firstIndex the index of the first entry
+         * @param capacity the number of entries
+         */
+        Chunk(long firstIndex, int capacity) {
+            this.firstIndex = firstIndex;
+            this.capacity = capacity;
+            this.entries = new long[capacity * ENTRY_LONGS];
+        }
+    }
+}
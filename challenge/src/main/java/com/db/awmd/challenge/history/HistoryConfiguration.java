@@ -0,0 +1,35 @@
+package com.db.awmd.challenge.history;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.File;
+
+/**
+ * Configures the transaction history of the accounts.
+ */
+@Configuration
+public class HistoryConfiguration {
+
+    /**
+     * Transaction history.
+     *
+     * @param enabled whether the updates of the accounts are recorded
+     * @param chunkSize the number of entries of a full-grown chunk
+     * @param chunksInMemory the number of full chunks an account keeps in memory, 0 to keep them all
+     * @param spillFile the file older chunks are spilled to
+     * @return the transaction history
+     */
+    @Bean
+    public TransactionHistory transactionHistory(@Value("${accounts.history.enabled:true}") boolean enabled,
+                                                 @Value("${accounts.history.chunk-size:1024}") int chunkSize,
+                                                 @Value("${accounts.history.chunks-in-memory:16}") int chunksInMemory,
+                                                 @Value("${accounts.history.spill-file:history/transactions.spill}")
+                                                         String spillFile) {
+        if (!enabled) {
+            return TransactionHistory.DISABLED;
+        }
+        return new ChunkedTransactionHistory(chunkSize, chunksInMemory, new File(spillFile));
+    }
+}
@@ -0,0 +1,50 @@
+package com.db.awmd.challenge.history;
+
+import com.db.awmd.challenge.domain.AccountUpdate;
+import com.db.awmd.challenge.domain.TransactionPage;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An append-only history of the updates applied to each account.
+ * <p>
+ * Updates are recorded right after {@code updateAccountsBatch} applied them, usually while the
+ * caller still serializes the updates of the accounts involved, so that the updates of one account
+ * are recorded in the order they were applied. The optimistic engine holds nothing once it has
+ * committed, so updates of one account may reach the history from several threads at once and,
+ * when they do, in either order.
+ */
+public interface TransactionHistory {
+
+    /** A history that records nothing. */
+    TransactionHistory DISABLED = new TransactionHistory() {
+
+        @Override
+        public void record(List<AccountUpdate> accountUpdates) {
+        }
+
+        @Override
+        public TransactionPage page(String accountId, long cursor, int limit) {
+            return new TransactionPage(accountId, Collections.emptyList(), null);
+        }
+    };
+
+    /**
+     * Records a batch of account updates applied together.
+     *
+     * @param accountUpdates the account updates
+     */
+    void record(List<AccountUpdate> accountUpdates);
+
+    /**
+     * Reads a page of the history of an account, newest first.
+     *
+     * @param accountId the account id
+     * @param cursor the index following the newest transaction to return, {@link Long#MAX_VALUE}
+     *        for the latest ones
+     * @param limit the largest number of transactions to return
+     * @return the page
+     */
+    TransactionPage page(String accountId, long cursor, int limit);
+}
@@ -0,0 +1,26 @@
+package com.db.awmd.challenge.journal;
+
+/**
+ * How long a change waits for the journal before it is acknowledged.
+ */
+public enum Durability {
+
+    /** Records are written by the journal writer in the background and never forced to disk. */
+    NONE,
+
+    /** Records appended concurrently are forced to disk together, in one group commit. */
+    BATCHED,
+
+    /** Every record is forced to disk on its own. */
+    PER_TRANSFER;
+
+    /**
+     * Parses a durability from its configuration name, such as {@code per-transfer}.
+     *
+     * @param name the name
+     * @return the durability
+     */
+    public static Durability parse(String name) {
+        return valueOf(name.trim().replace('-', '_').toUpperCase());
+    }
+}
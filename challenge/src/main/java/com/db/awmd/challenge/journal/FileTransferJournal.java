@@ -0,0 +1,863 @@
+package com.db.awmd.challenge.journal;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountUpdate;
+import com.db.awmd.challenge.exception.JournalException;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Journal kept in append-only segment files, with group commit.
+ * <p>
+ * Appending only encodes the record into an in-memory buffer. A single writer thread swaps that
+ * buffer for an empty one, writes everything that accumulated while it was busy with one system
+ * call and, with {@link Durability#BATCHED}, forces it to disk with one fsync for all of the records.
+ * Concurrent writers therefore share a disk flush instead of queueing for one each.
+ * <p>
+ * Each record is framed as {@code length, crc32, body} so that a torn tail left by a crash is
+ * detected and cut off on replay. A new segment file, named after its first sequence number, is
+ * started once the current one exceeds the configured size.
+ * <p>
+ * Replay starts from the latest {@link SnapshotFile} in the directory, if any, and applies only the
+ * records the snapshot does not already reflect. Segments made redundant by a snapshot are deleted
+ * through {@link #compact(long)}.
+ */
+@Slf4j
+public class FileTransferJournal implements TransferJournal, Closeable {
+
+    /** The Constant SEGMENT_PREFIX. */
+    static final String SEGMENT_PREFIX = "journal-";
+
+    /** The Constant SEGMENT_SUFFIX. */
+    static final String SEGMENT_SUFFIX = ".log";
+
+    /** The record type of an account creation. */
+    private static final byte CREATE = 1;
+
+    /** The record type of a batch of account updates. */
+    private static final byte UPDATE = 2;
+
+    /** The size of the frame preceding a record body: length and checksum. */
+    private static final int FRAME_SIZE = 8;
+
+    /** The largest record body accepted on replay. */
+    private static final int MAX_RECORD_SIZE = 64 << 20;
+
+    /** The amount of buffered records beyond which appenders wait for the writer. */
+    private static final int MAX_PENDING_BYTES = 16 << 20;
+
+    /** The journal directory. */
+    private final File directory;
+
+    /** The durability. */
+    private final Durability durability;
+
+    /** The size beyond which a new segment is started. */
+    private final long segmentSize;
+
+    /** The lock guarding the buffers and sequence numbers. */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /** Signalled when records are appended or the journal is closed. */
+    private final Condition recordsPending = lock.newCondition();
+
+    /** Signalled when the writer made progress. */
+    private final Condition recordsWritten = lock.newCondition();
+
+    /** The checksum of the record being appended. */
+    private final CRC32 checksum = new CRC32();
+
+    /** The buffer records are appended to. */
+    private RecordBuffer filling = new RecordBuffer();
+
+    /** The buffer being written by the writer thread. */
+    private RecordBuffer flushing = new RecordBuffer();
+
+    /** The sequence number of the last appended record, only changed holding the lock. */
+    private volatile long lastSequence;
+
+    /** The sequence number of the last record written as durably as configured. */
+    private volatile long durableSequence;
+
+    /** The failure that stopped the writer, if any. */
+    private IOException failure;
+
+    /** The callers of {@link #whenDurable(long)} still waiting, the lowest sequence number first. */
+    private final PriorityQueue<DurableWaiter> waiters = new PriorityQueue<>();
+
+    /**
+     * Completes the futures of {@link #whenDurable(long)}, each in a task of its own, so that what the
+     * callers chained to them never runs on the writer thread nor holds up the other callers.
+     */
+    private final ExecutorService completions;
+
+    /** Whether the journal was replayed and accepts appends. */
+    private boolean open;
+
+    /** Whether the journal is closed. */
+    private boolean closed;
+
+    /** The current segment, only used by the writer thread once open. */
+    private FileChannel segment;
+
+    /** The number of bytes written to the current segment. */
+    private long segmentBytes;
+
+    /** The writer thread. */
+    private Thread writer;
+
+    /**
+     * Instantiates a new file transfer journal.
+     *
+     * @param directory the journal directory
+     * @param durability the durability
+     * @param segmentSize the size beyond which a new segment is started
+     */
+    public FileTransferJournal(File directory, Durability durability, long segmentSize) {
+        this.directory = directory;
+        this.durability = durability;
+        this.segmentSize = segmentSize;
+        final AtomicInteger count = new AtomicInteger();
+        this.completions = Executors.newCachedThreadPool(runnable -> {
+            final Thread thread = new Thread(runnable, "journal-completion-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /* (non-Javadoc)
+     * @see com.db.awmd.challenge.journal.TransferJournal#appendAccount(com.db.awmd.challenge.domain.Account)
+     */
+    @Override
+    public long appendAccount(Account account) {
+        lock.lock();
+        try {
+            final RecordBuffer buffer = beginRecord();
+            final int start = buffer.size;
+            try {
+                buffer.putByte(CREATE);
+                buffer.putLong(lastSequence + 1);
+                buffer.putString(account.getAccountId());
+                buffer.putLong(account.getBalanceMinor());
+            } catch (RuntimeException e) {
+                discardRecord(buffer, start);
+                throw e;
+            }
+            return endRecord(buffer, start);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see com.db.awmd.challenge.journal.TransferJournal#appendUpdates(java.util.List)
+     */
+    @Override
+    public long appendUpdates(List<AccountUpdate> accountUpdates) {
+        lock.lock();
+        try {
+            final RecordBuffer buffer = beginRecord();
+            final int start = buffer.size;
+            try {
+                buffer.putByte(UPDATE);
+                buffer.putLong(lastSequence + 1);
+                buffer.putInt(accountUpdates.size());
+                for (AccountUpdate accountUpdate : accountUpdates) {
+                    buffer.putString(accountUpdate.getAccountId());
+                    buffer.putLong(accountUpdate.getAmountMinor());
+                }
+            } catch (RuntimeException e) {
+                discardRecord(buffer, start);
+                throw e;
+            }
+            return endRecord(buffer, start);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see com.db.awmd.challenge.journal.TransferJournal#awaitDurable(long)
+     */
+    @Override
+    public void awaitDurable(long sequence) throws JournalException {
+        if (durability == Durability.NONE || durableSequence >= sequence) {
+            return;
+        }
+        lock.lock();
+        try {
+            while (durableSequence < sequence && failure == null) {
+                recordsWritten.await();
+            }
+            if (durableSequence < sequence) {
+                throw new JournalException("Journal record " + sequence + " could not be written.", failure);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new JournalException("Interrupted while waiting for journal record " + sequence + ".", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see com.db.awmd.challenge.journal.TransferJournal#whenDurable(long)
+     */
+    @Override
+    public CompletableFuture<Void> whenDurable(long sequence) {
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+        if (durability == Durability.NONE || durableSequence >= sequence) {
+            future.complete(null);
+            return future;
+        }
+        lock.lock();
+        try {
+            if (durableSequence >= sequence) {
+                future.complete(null);
+            } else if (failure != null) {
+                future.completeExceptionally(new JournalException("Journal record " + sequence + " could not be written.",
+                        failure));
+            } else {
+                waiters.add(new DurableWaiter(sequence, future));
+            }
+        } finally {
+            lock.unlock();
+        }
+        return future;
+    }
+
+    /* (non-Javadoc)
+     * @see com.db.awmd.challenge.journal.TransferJournal#replay(com.db.awmd.challenge.repository.AccountsRepository)
+     */
+    @Override
+    public void replay(AccountsRepository accountsRepository) throws JournalException {
+        lock.lock();
+        try {
+            if (open || closed) {
+                throw new IllegalStateException("Journal already replayed.");
+            }
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new JournalException("Cannot create journal directory " + directory);
+            }
+
+            final long started = System.nanoTime();
+            final SnapshotFile.Loaded snapshot = SnapshotFile.loadLatest(directory, accountsRepository);
+            final long loaded = System.nanoTime();
+            if (snapshot.getFile() != null) {
+                log.info("Loaded {} accounts up to journal record {} from {} in {} ms", snapshot.getAccounts(),
+                        snapshot.getSequence(), snapshot.getFile(), (loaded - started) / 1_000_000);
+            }
+
+            final File[] segments = segments();
+            long sequence = 0L;
+            for (int i = 0; i < segments.length; i++) {
+                // numbers up to the highest watermark may have been skipped after losing an unsynced tail
+                final long first = firstSequence(segments[i]);
+                final long limit = i == 0 ? snapshot.getSequence() : Math.max(sequence, snapshot.getMaxWatermark());
+                if (first > limit + 1 || i > 0 && first <= sequence) {
+                    throw new JournalException("Journal segment " + segments[i] + " does not continue record "
+                            + (i == 0 ? snapshot.getSequence() : sequence) + ".");
+                }
+                sequence = replaySegment(segments[i], first - 1, i == segments.length - 1, snapshot, accountsRepository);
+            }
+            log.info("Replayed journal records {} to {} from {} segment(s) in {} in {} ms",
+                    snapshot.getSequence() + 1, Math.max(sequence, snapshot.getSequence()), segments.length, directory,
+                    (System.nanoTime() - loaded) / 1_000_000);
+
+            // the snapshot may reflect records lost from an unsynced tail: never hand out their numbers again
+            lastSequence = Math.max(sequence, Math.max(snapshot.getSequence(), snapshot.getMaxWatermark()));
+            durableSequence = lastSequence;
+            openSegment(lastSequence + 1);
+            open = true;
+
+            writer = new Thread(this::writeLoop, "journal-writer");
+            writer.setDaemon(true);
+            writer.start();
+        } catch (IOException e) {
+            throw new JournalException("Cannot replay journal in " + directory, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits for every appended record to be written, then closes the journal.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            recordsPending.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        if (writer != null) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        completions.shutdown();
+        try {
+            if (segment != null) {
+                segment.close();
+            }
+        } catch (IOException e) {
+            log.warn("Cannot close journal segment", e);
+        }
+    }
+
+    /**
+     * Gets the sequence number of the last appended record. A caller holding the locks of an account
+     * sees every record touching that account numbered at most this, and none numbered above it.
+     *
+     * @return the last sequence
+     */
+    public long getLastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * Gets the journal directory.
+     *
+     * @return the directory
+     */
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Deletes the segments holding only records up to a sequence number, together with the
+     * snapshots older than it. Called once a snapshot reflecting these records is committed.
+     *
+     * @param sequence the sequence number covered by the latest snapshot
+     * @return the number of segments deleted
+     */
+    public int compact(long sequence) {
+        final File[] segments = segments();
+        int deleted = 0;
+        for (int i = 0; i + 1 < segments.length && firstSequence(segments[i + 1]) <= sequence + 1; i++) {
+            if (segments[i].delete()) {
+                deleted++;
+            } else {
+                log.warn("Cannot delete journal segment {}", segments[i]);
+            }
+        }
+        SnapshotFile.deleteOlderThan(directory, sequence);
+        return deleted;
+    }
+
+    /**
+     * Prepares the filling buffer for a new record, waiting while the writer lags too far behind.
+     * Must be called holding the lock.
+     *
+     * @return the buffer
+     */
+    private RecordBuffer beginRecord() {
+        if (!open || closed) {
+            throw new IllegalStateException("Journal must be replayed, and not yet closed, to append.");
+        }
+        while (filling.size >= MAX_PENDING_BYTES && failure == null) {
+            recordsWritten.awaitUninterruptibly();
+        }
+        if (failure != null) {
+            throw new JournalException("Journal writer failed.", failure);
+        }
+        if (filling.records == 0) {
+            filling.firstSequence = lastSequence + 1;
+        }
+        filling.reserve(FRAME_SIZE);
+        return filling;
+    }
+
+    /**
+     * Completes the frame of the record just encoded, numbered one past the last sequence, and
+     * hands it to the writer. Must be called holding the lock.
+     *
+     * @param buffer the buffer
+     * @param start the offset of the record body
+     * @return the sequence number of the record
+     */
+    private long endRecord(RecordBuffer buffer, int start) {
+        final int length = buffer.size - start;
+        checksum.reset();
+        checksum.update(buffer.bytes, start, length);
+        buffer.putInt(start - FRAME_SIZE, length);
+        buffer.putInt(start - FRAME_SIZE + 4, (int) checksum.getValue());
+        buffer.endRecord();
+        recordsPending.signal();
+        return ++lastSequence;
+    }
+
+    /**
+     * Drops a record that could not be encoded. Must be called holding the lock.
+     *
+     * @param buffer the buffer
+     * @param start the offset of the record body
+     */
+    private void discardRecord(RecordBuffer buffer, int start) {
+        buffer.size = start - FRAME_SIZE;
+    }
+
+    /**
+     * Writes the appended records until the journal is closed.
+     */
+    private void writeLoop() {
+        while (true) {
+            final RecordBuffer batch;
+            lock.lock();
+            try {
+                while (filling.records == 0 && !closed) {
+                    recordsPending.awaitUninterruptibly();
+                }
+                if (filling.records == 0) {
+                    return;
+                }
+                batch = filling;
+                filling = flushing;
+                flushing = batch;
+                recordsWritten.signalAll();
+            } finally {
+                lock.unlock();
+            }
+
+            try {
+                write(batch);
+            } catch (IOException e) {
+                log.error("Journal writer failed, no further changes can be acknowledged", e);
+                final List<DurableWaiter> failed;
+                lock.lock();
+                try {
+                    failure = e;
+                    recordsWritten.signalAll();
+                    failed = new ArrayList<>(waiters);
+                    waiters.clear();
+                } finally {
+                    lock.unlock();
+                }
+                for (DurableWaiter waiter : failed) {
+                    final JournalException cause = new JournalException("Journal record " + waiter.sequence
+                            + " could not be written.", e);
+                    completions.execute(() -> waiter.future.completeExceptionally(cause));
+                }
+                return;
+            }
+            batch.clear();
+        }
+    }
+
+    /**
+     * Writes a batch of records, forcing it as the durability requires.
+     *
+     * @param batch the batch
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private void write(RecordBuffer batch) throws IOException {
+        if (durability == Durability.PER_TRANSFER) {
+            int start = 0;
+            for (int i = 0; i < batch.records; i++) {
+                writeFully(batch.bytes, start, batch.ends[i] - start);
+                segment.force(false);
+                start = batch.ends[i];
+                published(batch.firstSequence + i);
+            }
+        } else {
+            writeFully(batch.bytes, 0, batch.size);
+            if (durability == Durability.BATCHED) {
+                segment.force(false);
+            }
+            published(batch.firstSequence + batch.records - 1);
+        }
+
+        if (segmentBytes >= segmentSize) {
+            segment.close();
+            openSegment(batch.firstSequence + batch.records);
+        }
+    }
+
+    /**
+     * Writes bytes to the current segment.
+     *
+     * @param bytes the bytes
+     * @param offset the offset
+     * @param length the length
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private void writeFully(byte[] bytes, int offset, int length) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.wrap(bytes, offset, length);
+        while (buffer.hasRemaining()) {
+            segment.write(buffer);
+        }
+        segmentBytes += length;
+    }
+
+    /**
+     * Publishes the progress of the writer.
+     *
+     * @param sequence the sequence number of the last durable record
+     */
+    private void published(long sequence) {
+        List<DurableWaiter> durable = null;
+        lock.lock();
+        try {
+            durableSequence = sequence;
+            recordsWritten.signalAll();
+            while (!waiters.isEmpty() && waiters.peek().sequence <= sequence) {
+                if (durable == null) {
+                    durable = new ArrayList<>();
+                }
+                durable.add(waiters.poll());
+            }
+        } finally {
+            lock.unlock();
+        }
+        // the callers continue on the completion threads, while this one goes on writing
+        if (durable != null) {
+            for (DurableWaiter waiter : durable) {
+                completions.execute(() -> waiter.future.complete(null));
+            }
+        }
+    }
+
+    /**
+     * Starts a new segment.
+     *
+     * @param firstSequence the sequence number of its first record
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private void openSegment(long firstSequence) throws IOException {
+        final File file = new File(directory, segmentName(firstSequence));
+        segment = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        segmentBytes = 0L;
+    }
+
+    /**
+     * Lists the segments, oldest first.
+     *
+     * @return the segments
+     */
+    File[] segments() {
+        final File[] segments = directory.listFiles(
+                (dir, name) -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+        if (segments == null) {
+            return new File[0];
+        }
+        Arrays.sort(segments);
+        return segments;
+    }
+
+    /**
+     * Gets the sequence number of the first record of a segment, from its name.
+     *
+     * @param segment the segment
+     * @return the first sequence
+     */
+    static long firstSequence(File segment) {
+        final String name = segment.getName();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    /**
+     * Replays a segment, cutting off a torn tail if it is the last one.
+     *
+     * @param file the segment
+     * @param sequence the sequence number preceding the first record of the segment
+     * @param last whether this is the last segment
+     * @param snapshot the snapshot loaded before
+     * @param accountsRepository the accounts repository
+     * @return the sequence number of the last record read
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private long replaySegment(File file, long sequence, boolean last, SnapshotFile.Loaded snapshot,
+                               AccountsRepository accountsRepository) throws IOException {
+        final CRC32 crc = new CRC32();
+        long validBytes = 0L;
+        String torn = null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+            while (true) {
+                final int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                try {
+                    final int expectedChecksum = in.readInt();
+                    if (length <= 0 || length > MAX_RECORD_SIZE) {
+                        torn = "invalid record length " + length;
+                        break;
+                    }
+                    final byte[] body = new byte[length];
+                    in.readFully(body);
+                    crc.reset();
+                    crc.update(body, 0, length);
+                    if ((int) crc.getValue() != expectedChecksum) {
+                        torn = "checksum mismatch";
+                        break;
+                    }
+                    sequence = apply(ByteBuffer.wrap(body), sequence, snapshot, accountsRepository);
+                    validBytes += FRAME_SIZE + length;
+                } catch (EOFException e) {
+                    torn = "truncated record";
+                    break;
+                }
+            }
+        }
+
+        if (torn != null) {
+            if (!last) {
+                throw new JournalException("Journal segment " + file + " is corrupt: " + torn);
+            }
+            log.warn("Cutting torn tail of journal segment {} at byte {}: {}", file, validBytes, torn);
+            try (RandomAccessFile truncated = new RandomAccessFile(file, "rw")) {
+                truncated.setLength(validBytes);
+            }
+        }
+        return sequence;
+    }
+
+    /**
+     * Applies a record to the repository, leaving out what the snapshot already reflects.
+     *
+     * @param body the record body
+     * @param previous the sequence number of the previous record
+     * @param snapshot the snapshot loaded before
+     * @param accountsRepository the accounts repository
+     * @return the sequence number of the record
+     */
+    private static long apply(ByteBuffer body, long previous, SnapshotFile.Loaded snapshot,
+                              AccountsRepository accountsRepository) {
+        final byte type = body.get();
+        final long sequence = body.getLong();
+        if (sequence != previous + 1) {
+            throw new JournalException("Journal record " + sequence + " follows record " + previous + ".");
+        }
+        if (sequence <= snapshot.getSequence()) {
+            return sequence;
+        }
+        if (type == CREATE) {
+            final String accountId = getString(body);
+            final long balance = body.getLong();
+            if (snapshot.getWatermark(accountId) < sequence) {
+                accountsRepository.createAccount(new Account(accountId, balance));
+            }
+        } else if (type == UPDATE) {
+            final int legs = body.getInt();
+            final List<AccountUpdate> accountUpdates = new ArrayList<>(legs);
+            for (int i = 0; i < legs; i++) {
+                accountUpdates.add(new AccountUpdate(getString(body), body.getLong()));
+            }
+            for (Iterator<AccountUpdate> it = accountUpdates.iterator(); it.hasNext(); ) {
+                if (snapshot.getWatermark(it.next().getAccountId()) >= sequence) {
+                    it.remove();
+                }
+            }
+            accountsRepository.updateAccountsBatch(accountUpdates);
+        } else {
+            throw new JournalException("Unknown journal record type " + type + " in record " + sequence + ".");
+        }
+        return sequence;
+    }
+
+    /**
+     * Reads a string encoded by {@link RecordBuffer#putString(String)}.
+     *
+     * @param body the body
+     * @return the string
+     */
+    static String getString(ByteBuffer body) {
+        final byte[] bytes = new byte[body.getShort() & 0xFFFF];
+        body.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Gets the file name of the segment starting at a sequence number.
+     *
+     * @param firstSequence the first sequence
+     * @return the segment name
+     */
+    static String segmentName(long firstSequence) {
+        return String.format("%s%020d%s", SEGMENT_PREFIX, firstSequence, SEGMENT_SUFFIX);
+    }
+
+    /**
+     * A caller of {@link #whenDurable(long)} waiting for the writer.
+     */
+    private static final class DurableWaiter implements Comparable<DurableWaiter> {
+
+        /** The sequence number waited for. */
+        private final long sequence;
+
+        /** The future completed once the record is durable. */
+        private final CompletableFuture<Void> future;
+
+        /**
+         * Instantiates a new durable waiter.
+         *
+         * @param sequence the sequence number waited for
+         * @param future the future completed once the record is durable
+         */
+        private DurableWaiter(long sequence, CompletableFuture<Void> future) {
+            this.sequence = sequence;
+            this.future = future;
+        }
+
+        /* (non-Javadoc)
+         * @see java.lang.Comparable#compareTo(java.lang.Object)
+         */
+        @Override
+        public int compareTo(DurableWaiter other) {
+            return Long.compare(sequence, other.sequence);
+        }
+    }
+
+    /**
+     * A growable buffer of encoded records.
+     */
+    private static final class RecordBuffer {
+
+        /** The bytes. */
+        private byte[] bytes = new byte[1 << 16];
+
+        /** The number of bytes used. */
+        private int size;
+
+        /** The end offset of each record. */
+        private int[] ends = new int[1 << 10];
+
+        /** The number of records. */
+        private int records;
+
+        /** The sequence number of the first record. */
+        private long firstSequence;
+
+        /**
+         * Reserves bytes at the end of the buffer, to be filled in later.
+         *
+         * @param length the length
+         */
+        private void reserve(int length) {
+            ensureCapacity(length);
+            size += length;
+        }
+
+        /**
+         * Marks the end of a record.
+         */
+        private void endRecord() {
+            if (records == ends.length) {
+                ends = Arrays.copyOf(ends, records * 2);
+            }
+            ends[records++] = size;
+        }
+
+        /**
+         * Put byte.
+         *
+         * @param value the value
+         */
+        private void putByte(byte value) {
+            ensureCapacity(1);
+            bytes[size++] = value;
+        }
+
+        /**
+         * Put int.
+         *
+         * @param value the value
+         */
+        private void putInt(int value) {
+            ensureCapacity(4);
+            putInt(size, value);
+            size += 4;
+        }
+
+        /**
+         * Put int at an offset.
+         *
+         * @param offset the offset
+         * @param value the value
+         */
+        private void putInt(int offset, int value) {
+            bytes[offset] = (byte) (value >>> 24);
+            bytes[offset + 1] = (byte) (value >>> 16);
+            bytes[offset + 2] = (byte) (value >>> 8);
+            bytes[offset + 3] = (byte) value;
+        }
+
+        /**
+         * Put long.
+         *
+         * @param value the value
+         */
+        private void putLong(long value) {
+            putInt((int) (value >>> 32));
+            putInt((int) value);
+        }
+
+        /**
+         * Puts a string as its UTF-8 length and bytes.
+         *
+         * @param value the value
+         */
+        private void putString(String value) {
+            final byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+            if (encoded.length > 0xFFFF) {
+                throw new IllegalArgumentException("String too long for the journal: " + encoded.length + " bytes.");
+            }
+            ensureCapacity(2 + encoded.length);
+            bytes[size++] = (byte) (encoded.length >>> 8);
+            bytes[size++] = (byte) encoded.length;
+            System.arraycopy(encoded, 0, bytes, size, encoded.length);
+            size += encoded.length;
+        }
+
+        /**
+         * Ensure capacity.
+         *
+         * @param length the number of bytes about to be added
+         */
+        private void ensureCapacity(int length) {
+            if (size + length > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + length));
+            }
+        }
+
+        /**
+         * Clear.
+         */
+        private void clear() {
+            size = 0;
+            records = 0;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.db.awmd.challenge.journal;
+
+import com.db.awmd.challenge.repository.AccountsRepository;
+import com.db.awmd.challenge.repository.AccountsRepositoryMapped;
+import com.db.awmd.challenge.service.AccountLocks;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.File;
+
+/**
+ * Configures the transfer journal, loading the latest snapshot and replaying the journal into the
+ * repository before the application serves any request.
+ */
+@Configuration
+public class JournalConfiguration {
+
+    /**
+     * Transfer journal.
+     *
+     * @param accountsRepository the accounts repository
+     * @param enabled whether changes are journaled
+     * @param directory the journal directory
+     * @param durability the durability: none, batched or per-transfer
+     * @param segmentSize the size beyond which a new segment is started
+     * @return the transfer journal
+     */
+    @Bean
+    public TransferJournal transferJournal(AccountsRepository accountsRepository,
+                                           @Value("${accounts.journal.enabled:false}") boolean enabled,
+                                           @Value("${accounts.journal.directory:journal}") String directory,
+                                           @Value("${accounts.journal.durability:batched}") String durability,
+                                           @Value("${accounts.journal.segment-size:67108864}") long segmentSize) {
+        if (!enabled) {
+            return TransferJournal.DISABLED;
+        }
+        if (accountsRepository instanceof AccountsRepositoryMapped) {
+            throw new IllegalStateException("The journal rebuilds an empty repository on startup and cannot be "
+                    + "combined with the mapped repository, which keeps its accounts across restarts.");
+        }
+
+        final FileTransferJournal journal = new FileTransferJournal(new File(directory),
+                Durability.parse(durability), segmentSize);
+        journal.replay(accountsRepository);
+        return journal;
+    }
+
+    /**
+     * Journal snapshotter, taking snapshots while the journal is enabled.
+     *
+     * @param transferJournal the transfer journal
+     * @param accountsRepository the accounts repository
+     * @param accountLocks the account locks
+     * @param interval the interval between snapshots, in milliseconds
+     * @return the journal snapshotter
+     */
+    @Bean
+    @ConditionalOnProperty(name = "accounts.journal.enabled", havingValue = "true")
+    public JournalSnapshotter journalSnapshotter(TransferJournal transferJournal, AccountsRepository accountsRepository,
+                                                 AccountLocks accountLocks,
+                                                 @Value("${accounts.journal.snapshot-interval:60000}") long interval) {
+        final JournalSnapshotter snapshotter = new JournalSnapshotter((FileTransferJournal) transferJournal,
+                accountsRepository, accountLocks);
+        snapshotter.start(interval);
+        return snapshotter;
+    }
+}
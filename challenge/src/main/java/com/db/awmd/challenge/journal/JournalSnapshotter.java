@@ -0,0 +1,131 @@
+package com.db.awmd.challenge.journal;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.exception.JournalException;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import com.db.awmd.challenge.service.AccountLocks;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Periodically writes a snapshot of the accounts next to the journal and deletes the segments it
+ * makes redundant, so that startup loads the snapshot and replays only the tail of the journal.
+ * <p>
+ * Transfers keep running while the snapshot is taken. Each account is read under its own stripe lock
+ * together with the sequence number of the last journal record; as records are appended under the
+ * same locks, that number tells exactly which records the balance already reflects. The snapshot is
+ * thus a consistent cut per account rather than a global pause, and replay skips the reflected legs.
+ */
+@Slf4j
+public class JournalSnapshotter implements Closeable {
+
+    /** The journal. */
+    private final FileTransferJournal journal;
+
+    /** The accounts repository. */
+    private final AccountsRepository accountsRepository;
+
+    /** The account locks. */
+    private final AccountLocks accountLocks;
+
+    /** The scheduler, null until started. */
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Instantiates a new journal snapshotter.
+     *
+     * @param journal the journal
+     * @param accountsRepository the accounts repository
+     * @param accountLocks the account locks
+     */
+    public JournalSnapshotter(FileTransferJournal journal, AccountsRepository accountsRepository,
+                              AccountLocks accountLocks) {
+        this.journal = journal;
+        this.accountsRepository = accountsRepository;
+        this.accountLocks = accountLocks;
+    }
+
+    /**
+     * Starts taking a snapshot at a fixed interval. Does nothing if the interval is not positive.
+     *
+     * @param intervalMillis the interval, in milliseconds
+     */
+    public synchronized void start(long intervalMillis) {
+        if (intervalMillis <= 0) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "journal-snapshotter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::snapshotQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Takes a snapshot, then deletes the journal segments and snapshots it supersedes.
+     *
+     * @return the sequence number of the last record every account of the snapshot reflects
+     * @throws JournalException if the snapshot cannot be written
+     */
+    public synchronized long snapshot() throws JournalException {
+        final long started = System.nanoTime();
+        final long sequence = journal.getLastSequence();
+        final File file;
+        final long accounts;
+        try (SnapshotFile.Writer writer = new SnapshotFile.Writer(journal.getDirectory(), sequence)) {
+            accountsRepository.forEachAccountId(accountId -> {
+                final Account account;
+                final long watermark;
+                try (AccountLocks.Guard ignored = accountLocks.lock(accountId)) {
+                    account = accountsRepository.getAccount(accountId);
+                    watermark = journal.getLastSequence();
+                }
+                if (account != null) {
+                    writer.add(accountId, account.getBalanceMinor(), watermark);
+                }
+            });
+            // never let the snapshot get ahead of what a restart finds in the journal
+            journal.awaitDurable(writer.getMaxWatermark());
+            file = writer.commit();
+            accounts = writer.getAccounts();
+        } catch (IOException e) {
+            throw new JournalException("Cannot write snapshot in " + journal.getDirectory(), e);
+        }
+
+        final int deleted = journal.compact(sequence);
+        log.info("Wrote {} accounts to {} in {} ms, deleted {} journal segment(s)", accounts, file,
+                (System.nanoTime() - started) / 1_000_000, deleted);
+        return sequence;
+    }
+
+    /**
+     * Stops the scheduled snapshots and takes a last one, so the next startup has no tail to replay.
+     */
+    @Override
+    public synchronized void close() {
+        if (scheduler == null) {
+            return;
+        }
+        scheduler.shutdown();
+        scheduler = null;
+        snapshotQuietly();
+    }
+
+    /**
+     * Takes a snapshot, logging rather than throwing failures so the schedule carries on.
+     */
+    private void snapshotQuietly() {
+        try {
+            snapshot();
+        } catch (RuntimeException e) {
+            log.error("Snapshot failed, the journal is kept until the next one succeeds", e);
+        }
+    }
+}
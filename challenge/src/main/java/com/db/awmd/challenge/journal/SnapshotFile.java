@@ -0,0 +1,454 @@
+package com.db.awmd.challenge.journal;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.exception.JournalException;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+
+import lombok.Getter;
+
+/**
+ * A point-in-time image of the accounts, kept next to the journal segments.
+ * <p>
+ * Besides id and balance, every account carries a watermark: the sequence number of the last journal
+ * record at the moment it was read. Its balance reflects exactly the records touching it up to the
+ * watermark, so replay applies the later ones only. The file holds
+ * <pre>
+ *  header   magic, format, sequence number every account reflects at least
+ *  chunks   length, crc32, body of an account count and per account id, balance and watermark
+ *  trailer  an empty frame, then the number of accounts
+ * </pre>
+ * Chunks are checksummed on their own and loaded in parallel. A snapshot is written to a temporary
+ * file and renamed once complete, so a crash never leaves a partial snapshot behind.
+ */
+final class SnapshotFile {
+
+    /** The Constant SNAPSHOT_PREFIX. */
+    static final String SNAPSHOT_PREFIX = "snapshot-";
+
+    /** The Constant SNAPSHOT_SUFFIX. */
+    static final String SNAPSHOT_SUFFIX = ".snap";
+
+    /** The suffix of a snapshot being written. */
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    /** The Constant MAGIC. */
+    private static final int MAGIC = 0x534E_4150;
+
+    /** The Constant FORMAT_VERSION. */
+    private static final int FORMAT_VERSION = 1;
+
+    /** The size of the header. */
+    private static final int HEADER_SIZE = 16;
+
+    /** The size of the frame preceding a chunk body: length and checksum. */
+    private static final int FRAME_SIZE = 8;
+
+    /** The number of accounts per chunk. */
+    static final int CHUNK_ACCOUNTS = 16_384;
+
+    /**
+     * Instantiates a new snapshot file.
+     */
+    private SnapshotFile() {
+    }
+
+    /**
+     * Gets the file name of the snapshot reflecting the records up to a sequence number.
+     *
+     * @param sequence the sequence
+     * @return the snapshot name
+     */
+    static String snapshotName(long sequence) {
+        return String.format("%s%020d%s", SNAPSHOT_PREFIX, sequence, SNAPSHOT_SUFFIX);
+    }
+
+    /**
+     * Lists the complete snapshots in a directory, oldest first.
+     *
+     * @param directory the directory
+     * @return the snapshots
+     */
+    static File[] snapshots(File directory) {
+        final File[] snapshots = directory.listFiles(
+                (dir, name) -> name.startsWith(SNAPSHOT_PREFIX) && name.endsWith(SNAPSHOT_SUFFIX));
+        if (snapshots == null) {
+            return new File[0];
+        }
+        Arrays.sort(snapshots);
+        return snapshots;
+    }
+
+    /**
+     * Deletes the snapshots older than a sequence number, and any left unfinished.
+     *
+     * @param directory the directory
+     * @param sequence the sequence of the snapshot to keep
+     */
+    static void deleteOlderThan(File directory, long sequence) {
+        final String kept = snapshotName(sequence);
+        final File[] stale = directory.listFiles((dir, name) -> name.startsWith(SNAPSHOT_PREFIX)
+                && (name.endsWith(TEMPORARY_SUFFIX) || name.endsWith(SNAPSHOT_SUFFIX) && name.compareTo(kept) < 0));
+        if (stale != null) {
+            for (File file : stale) {
+                if (!file.delete()) {
+                    throw new JournalException("Cannot delete snapshot " + file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Loads the latest snapshot of a directory into the repository.
+     *
+     * @param directory the directory
+     * @param accountsRepository the accounts repository
+     * @return the loaded snapshot, empty if there is none
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    static Loaded loadLatest(File directory, AccountsRepository accountsRepository) throws IOException {
+        final File[] snapshots = snapshots(directory);
+        if (snapshots.length == 0) {
+            return new Loaded(null, 0L, 0L, Collections.emptyMap(), 0L);
+        }
+        return load(snapshots[snapshots.length - 1], accountsRepository);
+    }
+
+    /**
+     * Loads a snapshot into the repository, decoding its chunks in parallel.
+     *
+     * @param file the snapshot
+     * @param accountsRepository the accounts repository
+     * @return the loaded snapshot
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    static Loaded load(File file, AccountsRepository accountsRepository) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            final ByteBuffer header = read(channel, 0L, HEADER_SIZE);
+            if (header.getInt() != MAGIC || header.getInt() != FORMAT_VERSION) {
+                throw new JournalException("Not a snapshot of a supported format: " + file);
+            }
+            final long sequence = header.getLong();
+
+            final List<long[]> chunks = new ArrayList<>();
+            long position = HEADER_SIZE;
+            while (true) {
+                final ByteBuffer frame = read(channel, position, FRAME_SIZE);
+                final int length = frame.getInt();
+                final int checksum = frame.getInt();
+                position += FRAME_SIZE;
+                if (length == 0) {
+                    break;
+                }
+                if (length < 0) {
+                    throw new JournalException("Snapshot " + file + " is corrupt: invalid chunk length " + length);
+                }
+                chunks.add(new long[] {position, length, checksum});
+                position += length;
+            }
+            final long expectedAccounts = read(channel, position, 8).getLong();
+
+            final LongAdder accounts = new LongAdder();
+            final List<Map<String, Long>> watermarks;
+            try {
+                watermarks = chunks.parallelStream()
+                        .map(chunk -> loadChunk(file, channel, chunk, sequence, accountsRepository, accounts))
+                        .collect(Collectors.toList());
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            if (accounts.sum() != expectedAccounts) {
+                throw new JournalException("Snapshot " + file + " holds " + accounts.sum() + " accounts instead of "
+                        + expectedAccounts + ".");
+            }
+
+            final Map<String, Long> merged = new HashMap<>();
+            long maxWatermark = sequence;
+            for (Map<String, Long> chunkWatermarks : watermarks) {
+                merged.putAll(chunkWatermarks);
+                for (long watermark : chunkWatermarks.values()) {
+                    maxWatermark = Math.max(maxWatermark, watermark);
+                }
+            }
+            return new Loaded(file, sequence, expectedAccounts, merged, maxWatermark);
+        }
+    }
+
+    /**
+     * Loads a chunk of a snapshot into the repository.
+     *
+     * @param file the snapshot
+     * @param channel the channel
+     * @param chunk the position, length and checksum of the chunk body
+     * @param sequence the sequence every account reflects at least
+     * @param accountsRepository the accounts repository
+     * @param accounts the count of loaded accounts
+     * @return the watermarks above the sequence, by account id
+     */
+    private static Map<String, Long> loadChunk(File file, FileChannel channel, long[] chunk, long sequence,
+                                               AccountsRepository accountsRepository, LongAdder accounts) {
+        final ByteBuffer body;
+        try {
+            body = read(channel, chunk[0], (int) chunk[1]);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        final CRC32 crc = new CRC32();
+        crc.update(body.array(), 0, body.limit());
+        if ((int) crc.getValue() != (int) chunk[2]) {
+            throw new JournalException("Snapshot " + file + " is corrupt: checksum mismatch at byte " + chunk[0]);
+        }
+
+        final int count = body.getInt();
+        final Map<String, Long> watermarks = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            final String accountId = FileTransferJournal.getString(body);
+            final long balance = body.getLong();
+            final long watermark = body.getLong();
+            accountsRepository.createAccount(new Account(accountId, balance));
+            if (watermark > sequence) {
+                watermarks.put(accountId, watermark);
+            }
+        }
+        accounts.add(count);
+        return watermarks;
+    }
+
+    /**
+     * Reads bytes at a position of a channel.
+     *
+     * @param channel the channel
+     * @param position the position
+     * @param length the length
+     * @return the buffer, flipped
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Snapshot truncated at byte " + (position + buffer.position()));
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * A snapshot loaded into a repository.
+     */
+    @Getter
+    static final class Loaded {
+
+        /** The snapshot file, null if there was none. */
+        private final File file;
+
+        /** The sequence number every account reflects at least. */
+        private final long sequence;
+
+        /** The number of accounts. */
+        private final long accounts;
+
+        /** The watermarks above the sequence, by account id. */
+        private final Map<String, Long> watermarks;
+
+        /** The highest watermark. */
+        private final long maxWatermark;
+
+        /**
+         * Instantiates a new loaded snapshot.
+         *
+         * @param file the file
+         * @param sequence the sequence
+         * @param accounts the accounts
+         * @param watermarks the watermarks
+         * @param maxWatermark the max watermark
+         */
+        private Loaded(File file, long sequence, long accounts, Map<String, Long> watermarks, long maxWatermark) {
+            this.file = file;
+            this.sequence = sequence;
+            this.accounts = accounts;
+            this.watermarks = watermarks;
+            this.maxWatermark = maxWatermark;
+        }
+
+        /**
+         * Gets the sequence number of the last record reflected by the balance of an account.
+         *
+         * @param accountId the account id
+         * @return the watermark
+         */
+        long getWatermark(String accountId) {
+            final Long watermark = watermarks.get(accountId);
+            return watermark == null ? sequence : watermark;
+        }
+    }
+
+    /**
+     * Writes a snapshot, account by account.
+     */
+    static final class Writer implements Closeable {
+
+        /** The temporary file. */
+        private final File temporary;
+
+        /** The snapshot file. */
+        private final File target;
+
+        /** The file output. */
+        private final FileOutputStream file;
+
+        /** The output. */
+        private final DataOutputStream out;
+
+        /** The chunk being filled. */
+        private final ByteArrayOutputStream chunkBytes = new ByteArrayOutputStream(1 << 20);
+
+        /** The output of the chunk being filled. */
+        private final DataOutputStream chunk = new DataOutputStream(chunkBytes);
+
+        /** The checksum. */
+        private final CRC32 crc = new CRC32();
+
+        /** The number of accounts in the chunk being filled. */
+        private int chunkAccounts;
+
+        /** The number of accounts written. */
+        @Getter
+        private long accounts;
+
+        /** The highest watermark written. */
+        @Getter
+        private long maxWatermark;
+
+        /** Whether the snapshot was committed. */
+        private boolean committed;
+
+        /**
+         * Starts a snapshot reflecting at least the records up to a sequence number.
+         *
+         * @param directory the directory
+         * @param sequence the sequence
+         * @throws IOException Signals that an I/O exception has occurred.
+         */
+        Writer(File directory, long sequence) throws IOException {
+            this.target = new File(directory, snapshotName(sequence));
+            this.temporary = new File(directory, target.getName() + TEMPORARY_SUFFIX);
+            this.file = new FileOutputStream(temporary);
+            this.out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16));
+            this.maxWatermark = sequence;
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(sequence);
+        }
+
+        /**
+         * Adds an account.
+         *
+         * @param accountId the account id
+         * @param balanceMinor the balance, in minor units
+         * @param watermark the sequence number of the last record its balance reflects
+         */
+        void add(String accountId, long balanceMinor, long watermark) {
+            final byte[] encoded = accountId.getBytes(StandardCharsets.UTF_8);
+            if (encoded.length > 0xFFFF) {
+                throw new IllegalArgumentException("Account id too long for a snapshot: " + encoded.length + " bytes.");
+            }
+            try {
+                chunk.writeShort(encoded.length);
+                chunk.write(encoded);
+                chunk.writeLong(balanceMinor);
+                chunk.writeLong(watermark);
+                maxWatermark = Math.max(maxWatermark, watermark);
+                accounts++;
+                if (++chunkAccounts == CHUNK_ACCOUNTS) {
+                    writeChunk();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * Writes the remaining accounts and the trailer, forces the snapshot to disk and gives it its
+         * final name.
+         *
+         * @return the snapshot file
+         * @throws IOException Signals that an I/O exception has occurred.
+         */
+        File commit() throws IOException {
+            if (chunkAccounts > 0) {
+                writeChunk();
+            }
+            out.writeInt(0);
+            out.writeInt(0);
+            out.writeLong(accounts);
+            out.flush();
+            file.getChannel().force(true);
+            out.close();
+            Files.move(temporary.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            committed = true;
+            return target;
+        }
+
+        /**
+         * Closes the output, deleting the temporary file unless committed.
+         */
+        @Override
+        public void close() {
+            if (committed) {
+                return;
+            }
+            try {
+                out.close();
+            } catch (IOException e) {
+                // the snapshot is abandoned anyway
+            }
+            if (!temporary.delete()) {
+                temporary.deleteOnExit();
+            }
+        }
+
+        /**
+         * Frames the chunk being filled and writes it out.
+         *
+         * @throws IOException Signals that an I/O exception has occurred.
+         */
+        private void writeChunk() throws IOException {
+            final ByteArrayOutputStream body = new ByteArrayOutputStream(4 + chunkBytes.size());
+            new DataOutputStream(body).writeInt(chunkAccounts);
+            chunkBytes.writeTo(body);
+            final byte[] bytes = body.toByteArray();
+            crc.reset();
+            crc.update(bytes, 0, bytes.length);
+            out.writeInt(bytes.length);
+            out.writeInt((int) crc.getValue());
+            out.write(bytes);
+            chunkBytes.reset();
+            chunkAccounts = 0;
+        }
+    }
+}
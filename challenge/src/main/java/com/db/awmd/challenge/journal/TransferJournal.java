@@ -0,0 +1,96 @@
+package com.db.awmd.challenge.journal;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountUpdate;
+import com.db.awmd.challenge.exception.JournalException;
+import com.db.awmd.challenge.repository.AccountsRepository;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * An append-only journal of the changes applied to the accounts.
+ * <p>
+ * Records are appended while the locks of the accounts they touch are held, and before the changes
+ * are applied, so the journal order of the changes to an account matches the order they were
+ * applied in and nothing is applied that the journal failed to take. Callers then release the
+ * locks and wait for {@link #awaitDurable(long)} before acknowledging the change.
+ */
+public interface TransferJournal {
+
+    /** A journal that records nothing. */
+    TransferJournal DISABLED = new TransferJournal() {
+
+        @Override
+        public long appendAccount(Account account) {
+            return 0L;
+        }
+
+        @Override
+        public long appendUpdates(List<AccountUpdate> accountUpdates) {
+            return 0L;
+        }
+
+        @Override
+        public void awaitDurable(long sequence) {
+        }
+
+        @Override
+        public void replay(AccountsRepository accountsRepository) {
+        }
+    };
+
+    /**
+     * Appends the creation of an account.
+     *
+     * @param account the account
+     * @return the sequence number of the record
+     */
+    long appendAccount(Account account);
+
+    /**
+     * Appends a batch of account updates applied together.
+     *
+     * @param accountUpdates the account updates
+     * @return the sequence number of the record
+     */
+    long appendUpdates(List<AccountUpdate> accountUpdates);
+
+    /**
+     * Waits until the record with the given sequence number is as durable as configured.
+     *
+     * @param sequence the sequence number
+     * @throws JournalException if the journal failed or the wait was interrupted
+     */
+    void awaitDurable(long sequence) throws JournalException;
+
+    /**
+     * Tells when the record with the given sequence number is as durable as configured, without
+     * waiting for it. The future completes on a thread that may block in what is chained to it, never
+     * on one that makes records durable, or on the calling thread if the record already is; it
+     * completes exceptionally with {@link JournalException}.
+     * <p>
+     * This default waits with {@link #awaitDurable(long)} before returning.
+     *
+     * @param sequence the sequence number
+     * @return the future
+     */
+    default CompletableFuture<Void> whenDurable(long sequence) {
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+        try {
+            awaitDurable(sequence);
+            future.complete(null);
+        } catch (JournalException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Replays the journal into the repository. Must be called once, before anything is appended.
+     *
+     * @param accountsRepository the accounts repository
+     * @throws JournalException if the journal cannot be read
+     */
+    void replay(AccountsRepository accountsRepository) throws JournalException;
+}
@@ -0,0 +1,115 @@
+package com.db.awmd.challenge.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of latencies in nanoseconds, safe for concurrent recording and free of allocation.
+ * <p>
+ * As in an HDR histogram, values below {@value #SUB_BUCKETS} have a bucket each, and every power of
+ * two above is split into {@value #HALF} equal buckets, so a recorded value is known to within 1/64
+ * of itself whatever its magnitude. Values from 2^36 nanoseconds (about 68 seconds) up
+ * are counted in the last bucket.
+ */
+public final class LatencyHistogram {
+
+    /** The number of bits of a value kept exactly. */
+    private static final int SUB_BUCKET_BITS = 7;
+
+    /** The number of buckets below the first split power of two. */
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /** The number of buckets per power of two above. */
+    private static final int HALF = SUB_BUCKETS / 2;
+
+    /** The largest value told apart from larger ones. */
+    private static final long MAX_VALUE = (1L << 36) - 1;
+
+    /** The bucket counts. */
+    private final AtomicLongArray counts = new AtomicLongArray(indexOf(MAX_VALUE) + 1);
+
+    /** The largest value recorded. */
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a latency.
+     *
+     * @param nanos the latency, in nanoseconds
+     */
+    public void record(long nanos) {
+        counts.incrementAndGet(indexOf(nanos));
+        long current = max.get();
+        while (nanos > current && !max.compareAndSet(current, nanos)) {
+            current = max.get();
+        }
+    }
+
+    /**
+     * Summarizes the latencies recorded so far. Recording may go on meanwhile; its values may or
+     * may not be included.
+     *
+     * @return the latency summary
+     */
+    public LatencySummary summarize() {
+        final long[] snapshot = new long[counts.length()];
+        long count = 0L;
+        for (int i = 0; i < snapshot.length; i++) {
+            snapshot[i] = counts.get(i);
+            count += snapshot[i];
+        }
+        final long highest = max.get();
+        return new LatencySummary(count, percentile(snapshot, count, 50.0, highest),
+                percentile(snapshot, count, 99.0, highest), percentile(snapshot, count, 99.9, highest), highest);
+    }
+
+    /**
+     * Gets the bucket of a value.
+     *
+     * @param value the value
+     * @return the bucket index
+     */
+    static int indexOf(long value) {
+        final long clamped = Math.min(Math.max(value, 0L), MAX_VALUE);
+        final int shift = Math.max(0, 64 - Long.numberOfLeadingZeros(clamped) - SUB_BUCKET_BITS);
+        return shift * HALF + (int) (clamped >>> shift);
+    }
+
+    /**
+     * Gets the largest value of a bucket.
+     *
+     * @param index the bucket index
+     * @return the largest value counted in the bucket
+     */
+    static long highestValueOf(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        final int shift = index / HALF - 1;
+        final long top = index - shift * HALF;
+        return ((top + 1) << shift) - 1;
+    }
+
+    /**
+     * Gets the value below or at which a percentage of the counts lie.
+     *
+     * @param snapshot the bucket counts
+     * @param count the total count
+     * @param percentile the percentage
+     * @param highest the largest value recorded
+     * @return the value, 0 if nothing was recorded
+     */
+    private static long percentile(long[] snapshot, long count, double percentile, long highest) {
+        if (count == 0) {
+            return 0L;
+        }
+        final long rank = Math.max(1L, (long) Math.ceil(percentile / 100.0 * count));
+        long seen = 0L;
+        for (int i = 0; i < snapshot.length; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(highestValueOf(i), highest);
+            }
+        }
+        return highest;
+    }
+}
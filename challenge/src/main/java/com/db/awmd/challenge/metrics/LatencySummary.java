@@ -0,0 +1,25 @@
+package com.db.awmd.challenge.metrics;
+
+import lombok.Data;
+
+/**
+ * The percentiles of a latency histogram, in nanoseconds.
+ */
+@Data
+public class LatencySummary {
+
+    /** The number of latencies recorded. */
+    private final long count;
+
+    /** The median. */
+    private final long p50;
+
+    /** The 99th percentile. */
+    private final long p99;
+
+    /** The 99.9th percentile. */
+    private final long p999;
+
+    /** The largest latency recorded. */
+    private final long max;
+}
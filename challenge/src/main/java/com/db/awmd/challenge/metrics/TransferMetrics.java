@@ -0,0 +1,104 @@
+package com.db.awmd.challenge.metrics;
+
+import com.db.awmd.challenge.domain.TransferStatus;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Records how long each {@link TransferStage} of a transfer takes and counts the transfers of each
+ * outcome.
+ * <p>
+ * Stages are timed by chaining marks: {@link #start()} takes the first one and each
+ * {@link #record(TransferStage, long)} records the time since the previous mark and returns the
+ * next. Recording neither allocates nor takes a lock, so it can stay on in production; when
+ * {@code accounts.metrics.enabled=false} it does not even read the clock.
+ */
+@Component
+public class TransferMetrics {
+
+    /** Metrics that record nothing. */
+    public static final TransferMetrics DISABLED = new TransferMetrics(false);
+
+    /** Whether recording is on. */
+    private final boolean enabled;
+
+    /** The latency histograms, by stage ordinal. */
+    private final LatencyHistogram[] histograms = new LatencyHistogram[TransferStage.values().length];
+
+    /** The outcome counters, by transfer status ordinal. */
+    private final LongAdder[] outcomes = new LongAdder[TransferStatus.values().length];
+
+    /**
+     * Instantiates new transfer metrics.
+     *
+     * @param enabled whether recording is on
+     */
+    @Autowired
+    public TransferMetrics(@Value("${accounts.metrics.enabled:true}") boolean enabled) {
+        this.enabled = enabled;
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+        for (int i = 0; i < outcomes.length; i++) {
+            outcomes[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Takes the first mark of a transfer.
+     *
+     * @return the mark
+     */
+    public long start() {
+        return enabled ? System.nanoTime() : 0L;
+    }
+
+    /**
+     * Records the time a stage took since the previous mark.
+     *
+     * @param stage the stage
+     * @param mark the previous mark
+     * @return the next mark
+     */
+    public long record(TransferStage stage, long mark) {
+        if (!enabled) {
+            return 0L;
+        }
+        final long now = System.nanoTime();
+        histograms[stage.ordinal()].record(now - mark);
+        return now;
+    }
+
+    /**
+     * Counts a transfer of the given outcome.
+     *
+     * @param status the outcome
+     */
+    public void recordOutcome(TransferStatus status) {
+        if (enabled) {
+            outcomes[status.ordinal()].increment();
+        }
+    }
+
+    /**
+     * Summarizes what was recorded since startup.
+     *
+     * @return the transfer metrics snapshot
+     */
+    public TransferMetricsSnapshot snapshot() {
+        final Map<String, LatencySummary> stages = new LinkedHashMap<>();
+        for (TransferStage stage : TransferStage.values()) {
+            stages.put(stage.name(), histograms[stage.ordinal()].summarize());
+        }
+        final Map<String, Long> counts = new LinkedHashMap<>();
+        for (TransferStatus status : TransferStatus.values()) {
+            counts.put(status.name(), outcomes[status.ordinal()].sum());
+        }
+        return new TransferMetricsSnapshot(stages, counts);
+    }
+}
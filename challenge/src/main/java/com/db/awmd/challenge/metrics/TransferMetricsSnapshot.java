@@ -0,0 +1,18 @@
+package com.db.awmd.challenge.metrics;
+
+import java.util.Map;
+
+import lombok.Data;
+
+/**
+ * The transfer latencies per stage and the number of transfers per outcome.
+ */
+@Data
+public class TransferMetricsSnapshot {
+
+    /** The latency summary of each stage, keyed by stage name. */
+    private final Map<String, LatencySummary> stages;
+
+    /** The number of transfers of each outcome, keyed by transfer status name. */
+    private final Map<String, Long> outcomes;
+}
@@ -0,0 +1,31 @@
+package com.db.awmd.challenge.metrics;
+
+/**
+ * A stage of a transfer request, timed by {@link TransferMetrics}.
+ */
+public enum TransferStage {
+
+    /** Reading the transfer from the JSON request body. */
+    BINDING,
+
+    /** Acquiring the locks of both accounts. */
+    LOCK,
+
+    /** Looking both accounts up in the repository. */
+    LOOKUP,
+
+    /** Validating the transfer against the accounts. */
+    VALIDATION,
+
+    /** Updating the balances and appending the transfer to the journal. */
+    UPDATE,
+
+    /** Releasing the locks and waiting for the journal to make the transfer durable. */
+    DURABILITY,
+
+    /** Notifying the owners of the accounts. */
+    NOTIFICATION,
+
+    /** The whole of the transfer in the service, from locking to notifying. */
+    TOTAL
+}
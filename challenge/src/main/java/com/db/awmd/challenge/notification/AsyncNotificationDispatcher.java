@@ -0,0 +1,369 @@
+package com.db.awmd.challenge.notification;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.service.NotificationService;
+import com.db.awmd.challenge.service.VirtualThreads;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.annotation.PreDestroy;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Queues the notifications about completed transfers and delivers them from a pool of workers, so
+ * that the latency of the notification backend stays out of the transfer response time.
+ * <p>
+ * Each worker owns a bounded queue, and a notification goes to the worker its account id hashes
+ * to: the notifications of an account are delivered in order, and a worker draining its queue finds
+ * them together and hands them to the notification service as one batch per account. A full queue
+ * is handled as the {@link OverflowPolicy} says. This is the default, unless
+ * {@code accounts.notifications.async=false}.
+ * <p>
+ * With {@code accounts.threads.virtual=true}, a worker fans the accounts of a batch out to virtual
+ * threads, one per account, and waits for them all before its next batch: the notification service
+ * is called for many accounts at once, and the notifications of an account stay in order.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "accounts.notifications.async", havingValue = "true", matchIfMissing = true)
+public class AsyncNotificationDispatcher implements NotificationDispatcher, Closeable {
+
+    /** How long an idle worker waits for a notification before checking its spill file. */
+    private static final long POLL_MILLIS = 100L;
+
+    /** The notification service. */
+    private final NotificationService notificationService;
+
+    /** The overflow policy. */
+    private final OverflowPolicy overflowPolicy;
+
+    /** The largest number of notifications delivered in one batch. */
+    private final int maxBatch;
+
+    /** The workers. */
+    private final Worker[] workers;
+
+    /** The executor the deliveries of a batch are fanned out to, null to deliver on the worker. */
+    private final ExecutorService fanOut;
+
+    /** The number of notifications dropped. */
+    private final LongAdder dropped = new LongAdder();
+
+    /** The number of notifications delivered. */
+    private final LongAdder delivered = new LongAdder();
+
+    /** The number of notifications the notification service failed on. */
+    private final LongAdder failed = new LongAdder();
+
+    /** Whether the dispatcher is closing. */
+    private volatile boolean closed;
+
+    /**
+     * Instantiates a new async notification dispatcher and starts its workers.
+     *
+     * @param notificationService the notification service
+     * @param workers the number of workers
+     * @param queueCapacity the number of notifications queued in memory, shared out between the workers
+     * @param maxBatch the largest number of notifications delivered in one batch
+     * @param overflowPolicy the overflow policy: block, drop or spill
+     * @param spillDirectory the directory of the spill files
+     */
+    public AsyncNotificationDispatcher(NotificationService notificationService, int workers, int queueCapacity,
+                                       int maxBatch, String overflowPolicy, String spillDirectory) {
+        this(notificationService, workers, queueCapacity, maxBatch, overflowPolicy, spillDirectory, false);
+    }
+
+    /**
+     * Instantiates a new async notification dispatcher and starts its workers.
+     *
+     * @param notificationService the notification service
+     * @param workers the number of workers
+     * @param queueCapacity the number of notifications queued in memory, shared out between the workers
+     * @param maxBatch the largest number of notifications delivered in one batch
+     * @param overflowPolicy the overflow policy: block, drop or spill
+     * @param spillDirectory the directory of the spill files
+     * @param virtualThreads whether the deliveries of a batch are fanned out to virtual threads
+     */
+    @Autowired
+    public AsyncNotificationDispatcher(NotificationService notificationService,
+                                       @Value("${accounts.notifications.workers:2}") int workers,
+                                       @Value("${accounts.notifications.queue-capacity:65536}") int queueCapacity,
+                                       @Value("${accounts.notifications.max-batch:256}") int maxBatch,
+                                       @Value("${accounts.notifications.overflow:block}") String overflowPolicy,
+                                       @Value("${accounts.notifications.spill-directory:notification-spill}")
+                                               String spillDirectory,
+                                       @Value("${accounts.threads.virtual:false}") boolean virtualThreads) {
+        if (workers < 1 || queueCapacity < workers || maxBatch < 1) {
+            throw new IllegalArgumentException("Notifications need at least one worker, one queued notification "
+                    + "per worker and a positive batch size.");
+        }
+        this.notificationService = notificationService;
+        this.overflowPolicy = OverflowPolicy.parse(overflowPolicy);
+        this.maxBatch = maxBatch;
+        this.workers = new Worker[workers];
+        this.fanOut = virtualThreads ? VirtualThreads.newThreadPerTaskExecutor("notification-virtual-") : null;
+
+        final File directory = new File(spillDirectory);
+        if (this.overflowPolicy == OverflowPolicy.SPILL && !directory.isDirectory() && !directory.mkdirs()) {
+            throw new IllegalStateException("Cannot create notification spill directory " + directory);
+        }
+        for (int i = 0; i < workers; i++) {
+            this.workers[i] = new Worker(i, queueCapacity / workers,
+                    this.overflowPolicy == OverflowPolicy.SPILL ? new File(directory, "notifications-" + i + ".spill") : null);
+        }
+        for (Worker worker : this.workers) {
+            worker.thread.start();
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see com.db.awmd.challenge.notification.NotificationDispatcher#notifyAboutTransfer(com.db.awmd.challenge.domain.Account, com.db.awmd.challenge.domain.Account, com.db.awmd.challenge.domain.Transfer)
+     */
+    @Override
+    public void notifyAboutTransfer(Account accountFrom, Account accountTo, Transfer transfer) {
+        final long now = System.currentTimeMillis();
+        enqueue(TransferNotification.toSender(accountFrom, accountTo, transfer, now));
+        enqueue(TransferNotification.toRecipient(accountFrom, accountTo, transfer, now));
+    }
+
+    /* (non-Javadoc)
+     * @see com.db.awmd.challenge.notification.NotificationDispatcher#getStatus()
+     */
+    @Override
+    public NotificationQueueStatus getStatus() {
+        final long now = System.currentTimeMillis();
+        long depth = 0L;
+        long spilled = 0L;
+        long oldest = now;
+        for (Worker worker : workers) {
+            depth += worker.queue.size();
+            final TransferNotification head = worker.queue.peek();
+            if (head != null) {
+                oldest = Math.min(oldest, head.getCreatedMillis());
+            }
+            if (worker.spill != null) {
+                spilled += worker.spill.size();
+                final long spillOldest = worker.spill.oldestCreatedMillis();
+                if (spillOldest >= 0) {
+                    oldest = Math.min(oldest, spillOldest);
+                }
+            }
+        }
+        return new NotificationQueueStatus(depth + spilled, now - oldest, spilled, dropped.sum(), delivered.sum(),
+                failed.sum());
+    }
+
+    /**
+     * Delivers the queued notifications, then stops the workers.
+     */
+    @PreDestroy
+    @Override
+    public void close() {
+        closed = true;
+        for (Worker worker : workers) {
+            try {
+                worker.thread.join(TimeUnit.SECONDS.toMillis(30));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (worker.spill != null) {
+                try {
+                    worker.spill.close();
+                } catch (IOException e) {
+                    log.warn("Cannot close notification spill file", e);
+                }
+            }
+        }
+        if (fanOut != null) {
+            fanOut.shutdown();
+        }
+    }
+
+    /**
+     * Queues a notification with the worker of its account.
+     *
+     * @param notification the notification
+     */
+    private void enqueue(TransferNotification notification) {
+        final Worker worker = workers[Math.floorMod(notification.getAccount().getAccountId().hashCode(), workers.length)];
+        switch (overflowPolicy) {
+        case BLOCK:
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    worker.queue.put(notification);
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            break;
+        case DROP:
+            if (!worker.queue.offer(notification)) {
+                dropped.increment();
+            }
+            break;
+        case SPILL:
+            // once spilling, keep spilling until the file is drained so the order is kept; the
+            // decision and the append are made under the lock of the worker, so that a notification
+            // cannot overtake an earlier one of the same account that is on its way to the file
+            worker.spillLock.lock();
+            try {
+                if (worker.spill.size() > 0 || !worker.queue.offer(notification)) {
+                    worker.spill.append(notification);
+                }
+            } finally {
+                worker.spillLock.unlock();
+            }
+            break;
+        default:
+            throw new IllegalStateException("Unknown overflow policy " + overflowPolicy);
+        }
+    }
+
+    /**
+     * Delivers a batch, with one call to the notification service per account.
+     *
+     * @param batch the batch
+     */
+    private void deliver(List<TransferNotification> batch) {
+        final Map<String, List<TransferNotification>> byAccount = new LinkedHashMap<>();
+        for (TransferNotification notification : batch) {
+            byAccount.computeIfAbsent(notification.getAccount().getAccountId(), id -> new ArrayList<>(1))
+                    .add(notification);
+        }
+        if (fanOut == null || byAccount.size() == 1) {
+            for (List<TransferNotification> notifications : byAccount.values()) {
+                deliverToAccount(notifications);
+            }
+            return;
+        }
+
+        final CompletableFuture<?>[] deliveries = new CompletableFuture<?>[byAccount.size()];
+        int i = 0;
+        for (List<TransferNotification> notifications : byAccount.values()) {
+            deliveries[i++] = CompletableFuture.runAsync(() -> deliverToAccount(notifications), fanOut);
+        }
+        CompletableFuture.allOf(deliveries).join();
+    }
+
+    /**
+     * Delivers the notifications of one account with one call to the notification service.
+     *
+     * @param notifications the notifications, all of the same account
+     */
+    private void deliverToAccount(List<TransferNotification> notifications) {
+        final Account account = notifications.get(0).getAccount();
+        try {
+            if (notifications.size() == 1) {
+                notificationService.notifyAboutTransfer(account, notifications.get(0).getDescription());
+            } else {
+                final List<String> descriptions = new ArrayList<>(notifications.size());
+                for (TransferNotification notification : notifications) {
+                    descriptions.add(notification.getDescription());
+                }
+                notificationService.notifyAboutTransfers(account, descriptions);
+            }
+            delivered.add(notifications.size());
+        } catch (RuntimeException e) {
+            failed.add(notifications.size());
+            log.error("Cannot notify the owner of {} about {} transfer(s)", account.getAccountId(),
+                    notifications.size(), e);
+        }
+    }
+
+    /**
+     * A worker thread with its queue and spill file.
+     */
+    private final class Worker implements Runnable {
+
+        /** The queue. */
+        private final BlockingQueue<TransferNotification> queue;
+
+        /** The spill file, null unless spilling. */
+        private final NotificationSpill spill;
+
+        /** The lock under which producers choose between the queue and the spill file. */
+        private final ReentrantLock spillLock = new ReentrantLock();
+
+        /** The thread. */
+        private final Thread thread;
+
+        /**
+         * Instantiates a new worker.
+         *
+         * @param index the index
+         * @param capacity the queue capacity
+         * @param spillFile the spill file, null unless spilling
+         */
+        private Worker(int index, int capacity, File spillFile) {
+            this.queue = new ArrayBlockingQueue<>(capacity);
+            try {
+                this.spill = spillFile == null ? null : new NotificationSpill(spillFile);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot open notification spill file " + spillFile, e);
+            }
+            this.thread = new Thread(this, "notification-worker-" + index);
+            this.thread.setDaemon(true);
+        }
+
+        /* (non-Javadoc)
+         * @see java.lang.Runnable#run()
+         */
+        @Override
+        public void run() {
+            final List<TransferNotification> batch = new ArrayList<>(maxBatch);
+            while (true) {
+                try {
+                    // while notifications wait in the spill file, new ones go there too and the queue only
+                    // holds those from before, so the file is read as soon as the queue is empty
+                    final TransferNotification first = spill != null && spill.size() > 0
+                            ? queue.poll()
+                            : queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                    if (first != null) {
+                        batch.add(first);
+                        queue.drainTo(batch, maxBatch - 1);
+                    } else if (spill != null) {
+                        spill.poll(batch, maxBatch);
+                    }
+                } catch (InterruptedException e) {
+                    // keep delivering until closed
+                } catch (RuntimeException e) {
+                    log.error("Cannot read back spilled notifications", e);
+                }
+
+                if (batch.isEmpty()) {
+                    if (closed) {
+                        return;
+                    }
+                    continue;
+                }
+                deliver(batch);
+                batch.clear();
+            }
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.db.awmd.challenge.notification;
+
+import com.db.awmd.challenge.domain.AccountUpdate;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Passes the balance changes applied to the accounts on to their subscribers.
+ * <p>
+ * Updates are published right after {@code updateAccountsBatch} applied them, on the transfer path,
+ * so publishing must neither block nor wait for a subscriber.
+ */
+public interface BalancePublisher {
+
+    /** A publisher without subscribers. */
+    BalancePublisher DISABLED = new BalancePublisher() {
+
+        @Override
+        public void publish(List<AccountUpdate> accountUpdates) {
+        }
+
+        @Override
+        public BalanceSubscription subscribe(Collection<String> accountIds, BalanceSubscriber subscriber) {
+            throw new UnsupportedOperationException("Balance subscriptions are disabled.");
+        }
+    };
+
+    /**
+     * Publishes a batch of account updates applied together.
+     *
+     * @param accountUpdates the account updates
+     */
+    void publish(List<AccountUpdate> accountUpdates);
+
+    /**
+     * Subscribes to the balance changes of accounts. The current balance of each account is passed
+     * on first.
+     *
+     * @param accountIds the account ids
+     * @param subscriber the subscriber
+     * @return the subscription
+     */
+    BalanceSubscription subscribe(Collection<String> accountIds, BalanceSubscriber subscriber);
+}
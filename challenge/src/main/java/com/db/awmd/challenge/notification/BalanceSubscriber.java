@@ -0,0 +1,19 @@
+package com.db.awmd.challenge.notification;
+
+import com.db.awmd.challenge.domain.AccountSnapshot;
+
+import java.io.IOException;
+
+/**
+ * Receives the balances of the accounts it subscribed to, as they change.
+ */
+public interface BalanceSubscriber {
+
+    /**
+     * Receives the latest balance of an account. Calls for one subscriber never overlap.
+     *
+     * @param snapshot the account snapshot
+     * @throws IOException if the balance cannot be passed on, which ends the subscription
+     */
+    void balanceChanged(AccountSnapshot snapshot) throws IOException;
+}
@@ -0,0 +1,12 @@
+package com.db.awmd.challenge.notification;
+
+/**
+ * A subscription to the balance changes of a set of accounts.
+ */
+public interface BalanceSubscription {
+
+    /**
+     * Stops passing balance changes to the subscriber. Calling it again has no effect.
+     */
+    void cancel();
+}
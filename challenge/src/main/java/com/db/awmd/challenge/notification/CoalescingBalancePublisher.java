@@ -0,0 +1,222 @@
+package com.db.awmd.challenge.notification;
+
+import com.db.awmd.challenge.domain.AccountSnapshot;
+import com.db.awmd.challenge.domain.AccountUpdate;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import com.db.awmd.challenge.service.VirtualThreads;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Publishes balance changes by marking the changed accounts of each subscription and letting a
+ * sender thread read their latest snapshot.
+ * <p>
+ * The transfer path only adds the account id to the pending set of the subscriptions of the account
+ * and, if the subscription was idle, hands it to a sender; it never touches the subscriber. A
+ * subscriber slower than the changes therefore receives the latest balance of each account once its
+ * previous call returns, rather than every intermediate one: what is pending per subscription is
+ * bounded by the number of accounts it subscribed to. A subscriber blocks at most its own sender;
+ * with {@code accounts.threads.virtual=true} every send runs on a virtual thread of its own.
+ */
+@Slf4j
+@Component
+public class CoalescingBalancePublisher implements BalancePublisher, Closeable {
+
+    /** The accounts repository the balances are read from. */
+    private final AccountsRepository accountsRepository;
+
+    /** The executor the subscribers are called on. */
+    private final ExecutorService senders;
+
+    /** The subscriptions, by account id. */
+    private final ConcurrentHashMap<String, List<Subscription>> subscriptions = new ConcurrentHashMap<>();
+
+    /**
+     * Instantiates a new coalescing balance publisher.
+     *
+     * @param accountsRepository the accounts repository the balances are read from
+     * @param senders the number of sender threads, unless on virtual threads
+     * @param virtualThreads whether each send runs on a virtual thread of its own
+     */
+    @Autowired
+    public CoalescingBalancePublisher(AccountsRepository accountsRepository,
+                                      @Value("${accounts.streams.senders:4}") int senders,
+                                      @Value("${accounts.threads.virtual:false}") boolean virtualThreads) {
+        this.accountsRepository = accountsRepository;
+        if (virtualThreads) {
+            this.senders = VirtualThreads.newThreadPerTaskExecutor("balance-sender-");
+        } else {
+            final AtomicInteger count = new AtomicInteger();
+            this.senders = Executors.newFixedThreadPool(senders, runnable -> {
+                final Thread thread = new Thread(runnable, "balance-sender-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see com.db.awmd.challenge.notification.BalancePublisher#publish(java.util.List)
+     */
+    @Override
+    public void publish(List<AccountUpdate> accountUpdates) {
+        if (subscriptions.isEmpty()) {
+            return;
+        }
+        for (int i = 0; i < accountUpdates.size(); i++) {
+            final String accountId = accountUpdates.get(i).getAccountId();
+            final List<Subscription> subscribed = subscriptions.get(accountId);
+            if (subscribed != null) {
+                for (Subscription subscription : subscribed) {
+                    subscription.changed(accountId);
+                }
+            }
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see com.db.awmd.challenge.notification.BalancePublisher#subscribe(java.util.Collection, com.db.awmd.challenge.notification.BalanceSubscriber)
+     */
+    @Override
+    public BalanceSubscription subscribe(Collection<String> accountIds, BalanceSubscriber subscriber) {
+        final Subscription subscription = new Subscription(accountIds, subscriber);
+        for (String accountId : subscription.accountIds) {
+            subscriptions.compute(accountId, (id, subscribed) -> {
+                final List<Subscription> added = subscribed == null ? new CopyOnWriteArrayList<>() : subscribed;
+                added.add(subscription);
+                return added;
+            });
+        }
+        for (String accountId : subscription.accountIds) {
+            subscription.changed(accountId);
+        }
+        return subscription;
+    }
+
+    /**
+     * Gets the number of subscriptions to an account.
+     *
+     * @param accountId the account id
+     * @return the number of subscriptions
+     */
+    public int subscriptionCount(String accountId) {
+        final List<Subscription> subscribed = subscriptions.get(accountId);
+        return subscribed == null ? 0 : subscribed.size();
+    }
+
+    /* (non-Javadoc)
+     * @see java.io.Closeable#close()
+     */
+    @Override
+    public void close() {
+        senders.shutdownNow();
+    }
+
+    /**
+     * A subscriber together with the accounts changed since it was last called.
+     */
+    private final class Subscription implements BalanceSubscription {
+
+        /** The account ids subscribed to. */
+        private final Set<String> accountIds = ConcurrentHashMap.newKeySet();
+
+        /** The subscriber. */
+        private final BalanceSubscriber subscriber;
+
+        /** The accounts changed since they were last passed on. */
+        private final Set<String> pending = ConcurrentHashMap.newKeySet();
+
+        /** Whether a sender is on its way, so that a subscriber is never called concurrently. */
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        /** Whether the subscription is cancelled. */
+        private volatile boolean cancelled;
+
+        /**
+         * Instantiates a new subscription.
+         *
+         * @param accountIds the account ids
+         * @param subscriber the subscriber
+         */
+        Subscription(Collection<String> accountIds, BalanceSubscriber subscriber) {
+            this.accountIds.addAll(accountIds);
+            this.subscriber = subscriber;
+        }
+
+        /**
+         * Marks an account as changed and schedules a sender unless one is on its way.
+         *
+         * @param accountId the account id
+         */
+        void changed(String accountId) {
+            pending.add(accountId);
+            schedule();
+        }
+
+        /**
+         * Schedules a sender unless one is on its way or nothing is pending.
+         */
+        private void schedule() {
+            if (!cancelled && !pending.isEmpty() && scheduled.compareAndSet(false, true)) {
+                try {
+                    senders.execute(this::send);
+                } catch (RejectedExecutionException e) {
+                    cancel();
+                }
+            }
+        }
+
+        /**
+         * Passes the latest balance of every pending account on to the subscriber.
+         */
+        private void send() {
+            try {
+                final Iterator<String> accounts = pending.iterator();
+                while (!cancelled && accounts.hasNext()) {
+                    final String accountId = accounts.next();
+                    accounts.remove();
+                    final AccountSnapshot snapshot = accountsRepository.getAccountSnapshot(accountId);
+                    if (snapshot != null) {
+                        subscriber.balanceChanged(snapshot);
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                log.debug("Ending balance subscription to {}: {}", accountIds, e.toString());
+                cancel();
+            } finally {
+                scheduled.set(false);
+            }
+            schedule();
+        }
+
+        /* (non-Javadoc)
+         * @see com.db.awmd.challenge.notification.BalanceSubscription#cancel()
+         */
+        @Override
+        public void cancel() {
+            cancelled = true;
+            for (String accountId : accountIds) {
+                subscriptions.computeIfPresent(accountId, (id, subscribed) -> {
+                    subscribed.remove(this);
+                    return subscribed.isEmpty() ? null : subscribed;
+                });
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.db.awmd.challenge.notification;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.service.NotificationService;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Calls the notification service on the thread completing the transfer. Selected with
+ * {@code accounts.notifications.async=false}.
+ */
+@Component
+@ConditionalOnProperty(name = "accounts.notifications.async", havingValue = "false")
+public class DirectNotificationDispatcher implements NotificationDispatcher {
+
+    /** The notification service. */
+    private final NotificationService notificationService;
+
+    /** The number of notifications delivered. */
+    private final LongAdder delivered = new LongAdder();
+
+    /**
+     * Instantiates a new direct notification dispatcher.
+     *
+     * @param notificationService the notification service
+     */
+    @Autowired
+    public DirectNotificationDispatcher(NotificationService notificationService) {
+        this.notificationService = notificationService;
+    }
+
+    /* (non-Javadoc)
+     * @see com.db.awmd.challenge.notification.NotificationDispatcher#notifyAboutTransfer(com.db.awmd.challenge.domain.Account, com.db.awmd.challenge.domain.Account, com.db.awmd.challenge.domain.Transfer)
+     */
+    @Override
+    public void notifyAboutTransfer(Account accountFrom, Account accountTo, Transfer transfer) {
+        final long now = System.currentTimeMillis();
+        final TransferNotification toSender = TransferNotification.toSender(accountFrom, accountTo, transfer, now);
+        final TransferNotification toRecipient = TransferNotification.toRecipient(accountFrom, accountTo, transfer, now);
+        notificationService.notifyAboutTransfer(toSender.getAccount(), toSender.getDescription());
+        notificationService.notifyAboutTransfer(toRecipient.getAccount(), toRecipient.getDescription());
+        delivered.add(2);
+    }
+
+    /* (non-Javadoc)
+     * @see com.db.awmd.challenge.notification.NotificationDispatcher#getStatus()
+     */
+    @Override
+    public NotificationQueueStatus getStatus() {
+        return new NotificationQueueStatus(0L, 0L, 0L, 0L, delivered.sum(), 0L);
+    }
+}
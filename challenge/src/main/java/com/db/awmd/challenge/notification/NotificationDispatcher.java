@@ -0,0 +1,26 @@
+package com.db.awmd.challenge.notification;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.Transfer;
+
+/**
+ * Hands the notifications about completed transfers to the {@link com.db.awmd.challenge.service.NotificationService}.
+ */
+public interface NotificationDispatcher {
+
+    /**
+     * Notifies the owners of both accounts about a completed transfer.
+     *
+     * @param accountFrom the account from
+     * @param accountTo the account to
+     * @param transfer the transfer
+     */
+    void notifyAboutTransfer(Account accountFrom, Account accountTo, Transfer transfer);
+
+    /**
+     * Gets the state of the notifications not yet delivered.
+     *
+     * @return the queue status
+     */
+    NotificationQueueStatus getStatus();
+}
@@ -0,0 +1,28 @@
+package com.db.awmd.challenge.notification;
+
+import lombok.Data;
+
+/**
+ * The state of the notifications queued for delivery.
+ */
+@Data
+public class NotificationQueueStatus {
+
+    /** The number of notifications waiting, in memory or spilled. */
+    private final long depth;
+
+    /** The age of the oldest notification waiting, in milliseconds. */
+    private final long lagMillis;
+
+    /** The number of notifications waiting in the spill files. */
+    private final long spilled;
+
+    /** The number of notifications discarded because the queue was full. */
+    private final long dropped;
+
+    /** The number of notifications delivered. */
+    private final long delivered;
+
+    /** The number of notifications the notification service failed on. */
+    private final long failed;
+}
@@ -0,0 +1,256 @@
+package com.db.awmd.challenge.notification;
+
+import com.db.awmd.challenge.domain.Account;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * A first-in first-out file of notifications that did not fit the in-memory queue.
+ * <p>
+ * Notifications are appended at the end and read from a position that advances through the file;
+ * once everything is read the file is emptied. Notifications left over by a previous run are
+ * delivered after a restart. Only the id and balance of the account are kept.
+ * <p>
+ * The file is guarded by a {@link ReentrantLock} rather than {@code synchronized}, so that a virtual
+ * thread appending to it from the transfer path does not pin its carrier thread during the I/O.
+ */
+@Slf4j
+final class NotificationSpill implements Closeable {
+
+    /** The size of the buffer records are read through. */
+    private static final int READ_SIZE = 1 << 16;
+
+    /** The spill file. */
+    private final File file;
+
+    /** The file access. */
+    private final RandomAccessFile access;
+
+    /** The lock guarding the file and the positions. */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /** The position of the next record to read. */
+    private long readPosition;
+
+    /** The position after the last record. */
+    private long writePosition;
+
+    /** The number of records not yet read. */
+    private long size;
+
+    /**
+     * Opens a spill file, keeping the complete records a previous run left in it.
+     *
+     * @param file the file
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    NotificationSpill(File file) throws IOException {
+        this.file = file;
+        this.access = new RandomAccessFile(file, "rw");
+        long position = 0L;
+        while (position < access.length()) {
+            final int length = recordLength(position);
+            if (length < 0) {
+                break;
+            }
+            position += length;
+            size++;
+        }
+        if (position < access.length()) {
+            log.warn("Cutting incomplete notification at byte {} of {}", position, file);
+            access.setLength(position);
+        }
+        writePosition = position;
+        if (size > 0) {
+            log.info("Found {} undelivered notifications in {}", size, file);
+        }
+    }
+
+    /**
+     * Appends a notification.
+     *
+     * @param notification the notification
+     */
+    void append(TransferNotification notification) {
+        final byte[] accountId = notification.getAccount().getAccountId().getBytes(StandardCharsets.UTF_8);
+        final byte[] counterpartyId = notification.getCounterpartyId().getBytes(StandardCharsets.UTF_8);
+        final ByteBuffer record = ByteBuffer.allocate(4 + 8 + 2 + accountId.length + 8 + 2 + counterpartyId.length + 8 + 1);
+        record.putInt(record.capacity());
+        record.putLong(notification.getCreatedMillis());
+        putBytes(record, accountId);
+        record.putLong(notification.getAccount().getBalanceMinor());
+        putBytes(record, counterpartyId);
+        record.putLong(notification.getAmountMinor());
+        record.put((byte) (notification.isOutgoing() ? 1 : 0));
+        lock.lock();
+        try {
+            access.seek(writePosition);
+            access.write(record.array());
+            writePosition += record.capacity();
+            size++;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot spill notification to " + file, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Moves the oldest notifications into a batch.
+     *
+     * @param batch the batch
+     * @param max the maximum number of notifications to move
+     * @return the number of notifications moved
+     */
+    int poll(List<TransferNotification> batch, int max) {
+        int polled = 0;
+        lock.lock();
+        try {
+            while (polled < max && readPosition < writePosition) {
+                final int available = (int) Math.min(Math.max(READ_SIZE, recordLength(readPosition)),
+                        writePosition - readPosition);
+                final byte[] bytes = new byte[available];
+                access.seek(readPosition);
+                access.readFully(bytes);
+                final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+                while (polled < max && buffer.remaining() >= 4 && buffer.getInt(buffer.position()) <= buffer.remaining()) {
+                    final int start = buffer.position();
+                    batch.add(decode(buffer));
+                    readPosition += buffer.position() - start;
+                    polled++;
+                }
+                if (buffer.position() == 0) {
+                    throw new IOException("Invalid notification at byte " + readPosition);
+                }
+            }
+            size -= polled;
+            if (readPosition == writePosition) {
+                access.setLength(0L);
+                readPosition = 0L;
+                writePosition = 0L;
+            }
+        } catch (IOException | BufferUnderflowException e) {
+            throw new IllegalStateException("Cannot read notifications back from " + file, e);
+        } finally {
+            lock.unlock();
+        }
+        return polled;
+    }
+
+    /**
+     * Gets the number of notifications not yet read back.
+     *
+     * @return the size
+     */
+    long size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets when the oldest notification not yet read back was raised.
+     *
+     * @return the epoch milliseconds, or -1 if there is none
+     */
+    long oldestCreatedMillis() {
+        lock.lock();
+        try {
+            if (size == 0) {
+                return -1L;
+            }
+            access.seek(readPosition + 4);
+            return access.readLong();
+        } catch (IOException e) {
+            return -1L;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see java.io.Closeable#close()
+     */
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            access.close();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Reads the length of the record at a position.
+     *
+     * @param position the position
+     * @return the length, or -1 if there is no complete record there
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private int recordLength(long position) throws IOException {
+        if (access.length() - position < 4) {
+            return -1;
+        }
+        access.seek(position);
+        final int length = access.readInt();
+        return length > 4 && position + length <= access.length() ? length : -1;
+    }
+
+    /**
+     * Decodes the record at the position of a buffer.
+     *
+     * @param buffer the buffer
+     * @return the notification
+     */
+    private static TransferNotification decode(ByteBuffer buffer) {
+        buffer.getInt();
+        final long createdMillis = buffer.getLong();
+        final String accountId = getString(buffer);
+        final long balanceMinor = buffer.getLong();
+        final String counterpartyId = getString(buffer);
+        final long amountMinor = buffer.getLong();
+        final boolean outgoing = buffer.get() != 0;
+        return new TransferNotification(new Account(accountId, balanceMinor), counterpartyId, amountMinor, outgoing,
+                createdMillis);
+    }
+
+    /**
+     * Puts bytes preceded by their length.
+     *
+     * @param buffer the buffer
+     * @param bytes the bytes
+     */
+    private static void putBytes(ByteBuffer buffer, byte[] bytes) {
+        if (bytes.length > 0xFFFF) {
+            throw new IllegalArgumentException("Account id too long to spill: " + bytes.length + " bytes.");
+        }
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    /**
+     * Reads a string written by {@link #putBytes(ByteBuffer, byte[])}.
+     *
+     * @param buffer the buffer
+     * @return the string
+     */
+    private static String getString(ByteBuffer buffer) {
+        final byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
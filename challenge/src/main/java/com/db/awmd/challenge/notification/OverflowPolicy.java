@@ -0,0 +1,26 @@
+package com.db.awmd.challenge.notification;
+
+/**
+ * What happens to a notification raised while the queue is full.
+ */
+public enum OverflowPolicy {
+
+    /** The transfer waits for room in the queue. */
+    BLOCK,
+
+    /** The notification is discarded and counted. */
+    DROP,
+
+    /** The notification is appended to a file and delivered once the queue has drained. */
+    SPILL;
+
+    /**
+     * Parses a policy from its configuration name.
+     *
+     * @param name the name
+     * @return the overflow policy
+     */
+    public static OverflowPolicy parse(String name) {
+        return valueOf(name.trim().replace('-', '_').toUpperCase());
+    }
+}
@@ -0,0 +1,73 @@
+package com.db.awmd.challenge.notification;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.Money;
+import com.db.awmd.challenge.domain.Transfer;
+import lombok.Data;
+
+/**
+ * A notification owed to the owner of an account about a completed transfer. Its description is
+ * only formatted when the notification is delivered, off the transfer path.
+ */
+@Data
+public class TransferNotification {
+
+    /** The account whose owner is notified. */
+    private final Account account;
+
+    /** The id of the other account of the transfer. */
+    private final String counterpartyId;
+
+    /** The amount, in minor units. */
+    private final long amountMinor;
+
+    /** Whether the money left the account. */
+    private final boolean outgoing;
+
+    /** When the notification was raised, in epoch milliseconds. */
+    private final long createdMillis;
+
+    /**
+     * Creates the notification for the sender of a transfer.
+     *
+     * @param accountFrom the account from
+     * @param accountTo the account to
+     * @param transfer the transfer
+     * @param createdMillis when the notification was raised
+     * @return the transfer notification
+     */
+    public static TransferNotification toSender(Account accountFrom, Account accountTo, Transfer transfer,
+                                                long createdMillis) {
+        return new TransferNotification(accountFrom, accountTo.getAccountId(), transfer.getAmountMinor(), true,
+                createdMillis);
+    }
+
+    /**
+     * Creates the notification for the recipient of a transfer.
+     *
+     * @param accountFrom the account from
+     * @param accountTo the account to
+     * @param transfer the transfer
+     * @param createdMillis when the notification was raised
+     * @return the transfer notification
+     */
+    public static TransferNotification toRecipient(Account accountFrom, Account accountTo, Transfer transfer,
+                                                   long createdMillis) {
+        return new TransferNotification(accountTo, accountFrom.getAccountId(), transfer.getAmountMinor(), false,
+                createdMillis);
+    }
+
+    /**
+     * Gets the description sent to the owner of the account.
+     *
+     * @return the description
+     */
+    public String getDescription() {
+        if (outgoing) {
+            return "The transfer to the account with ID " + counterpartyId + " is now complete for the amount of "
+                    + Money.toBigDecimal(amountMinor) + ".";
+        }
+        return "The account with ID + " + counterpartyId + " has transferred " + Money.toBigDecimal(amountMinor)
+                + " into your account.";
+    }
+}
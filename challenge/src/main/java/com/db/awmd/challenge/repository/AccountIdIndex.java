@@ -0,0 +1,298 @@
+package com.db.awmd.challenge.repository;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Interns account ids to dense {@code int} indices, assigned in insertion order from zero.
+ * <p>
+ * Ids are copied once into chunked byte arrays (one byte per character when the id is ASCII, two
+ * otherwise) and located through an open-addressing hash table of indices, so an entry costs a few
+ * bytes beyond the characters of the id instead of a {@link String} plus a map node. Lookups are
+ * lock-free and do not allocate; additions must be serialised by the caller.
+ */
+final class AccountIdIndex {
+
+    /** The Constant CHUNK_BITS. */
+    private static final int CHUNK_BITS = 20;
+
+    /** The size of a chunk of id characters, in bytes. */
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+    /** The Constant SEGMENT_BITS. */
+    private static final int SEGMENT_BITS = 16;
+
+    /** The number of indices per segment of id positions. */
+    private static final int SEGMENT_SIZE = 1 << SEGMENT_BITS;
+
+    /** The Constant SEGMENT_MASK. */
+    private static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+    /** The longest id that can be stored, in characters. */
+    static final int MAX_ID_LENGTH = 0x7FFF;
+
+    /** The flag marking an id stored with two bytes per character. */
+    private static final int WIDE = 0x8000;
+
+    /** The initial hash table capacity. */
+    private static final int INITIAL_CAPACITY = 1 << 10;
+
+    /** The hash table, holding index + 1 per used slot and 0 per free one. */
+    private volatile AtomicIntegerArray table = new AtomicIntegerArray(INITIAL_CAPACITY);
+
+    /** The chunks holding the id characters, each id prefixed by its length and width. */
+    private volatile byte[][] chunks = new byte[][] {new byte[CHUNK_SIZE]};
+
+    /** The position of each id within the chunks, by index. */
+    private volatile long[][] positions = new long[][] {new long[SEGMENT_SIZE]};
+
+    /** The number of interned ids. */
+    private volatile int size;
+
+    /** The next free position within the chunks. */
+    private long nextPosition;
+
+    /**
+     * Finds the index of an id.
+     *
+     * @param accountId the account id
+     * @return the index, or -1 if the id is not interned
+     */
+    int indexOf(String accountId) {
+        final AtomicIntegerArray slots = table;
+        final int mask = slots.length() - 1;
+        for (int slot = spread(accountId.hashCode()) & mask; ; slot = (slot + 1) & mask) {
+            final int entry = slots.get(slot);
+            if (entry == 0) {
+                return -1;
+            }
+            if (matches(entry - 1, accountId)) {
+                return entry - 1;
+            }
+        }
+    }
+
+    /**
+     * Interns an id that is not interned yet. Callers must serialise additions.
+     *
+     * @param accountId the account id
+     * @return the new index
+     * @throws IllegalArgumentException if the id is longer than {@link #MAX_ID_LENGTH}
+     */
+    int add(String accountId) {
+        final int length = accountId.length();
+        if (length > MAX_ID_LENGTH) {
+            throw new IllegalArgumentException("Account id longer than " + MAX_ID_LENGTH + " characters.");
+        }
+        final int index = size;
+        if ((index + 1) * 4L > table.length() * 3L) {
+            table = rehash(table.length() << 1);
+        }
+
+        positions(index)[index & SEGMENT_MASK] = writeId(accountId);
+        insert(table, index);
+        size = index + 1;
+        return index;
+    }
+
+    /**
+     * Gets the number of interned ids.
+     *
+     * @return the size
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Gets the id interned at an index.
+     *
+     * @param index the index, below {@link #size()}
+     * @return the account id
+     */
+    String get(int index) {
+        final long position = positions[index >>> SEGMENT_BITS][index & SEGMENT_MASK];
+        final byte[] chunk = chunks[(int) (position >>> CHUNK_BITS)];
+        int offset = (int) (position & (CHUNK_SIZE - 1));
+
+        final int header = ((chunk[offset] & 0xFF) << 8) | (chunk[offset + 1] & 0xFF);
+        final int length = header & MAX_ID_LENGTH;
+        final boolean wide = (header & WIDE) != 0;
+        offset += 2;
+        final char[] id = new char[length];
+        for (int i = 0; i < length; i++) {
+            id[i] = wide
+                    ? (char) (((chunk[offset++] & 0xFF) << 8) | (chunk[offset++] & 0xFF))
+                    : (char) (chunk[offset++] & 0xFF);
+        }
+        return new String(id);
+    }
+
+    /**
+     * Gets the number of bytes reserved by the index.
+     *
+     * @return the reserved bytes
+     */
+    long reservedBytes() {
+        return table.length() * 4L + chunks.length * (long) CHUNK_SIZE + positions.length * SEGMENT_SIZE * 8L;
+    }
+
+    /**
+     * Checks whether the id stored at an index equals the given one, without allocating.
+     *
+     * @param index the index
+     * @param accountId the account id
+     * @return true, if the ids are equal
+     */
+    private boolean matches(int index, String accountId) {
+        final long position = positions[index >>> SEGMENT_BITS][index & SEGMENT_MASK];
+        final byte[] chunk = chunks[(int) (position >>> CHUNK_BITS)];
+        int offset = (int) (position & (CHUNK_SIZE - 1));
+
+        final int header = ((chunk[offset] & 0xFF) << 8) | (chunk[offset + 1] & 0xFF);
+        final int length = header & MAX_ID_LENGTH;
+        if (length != accountId.length()) {
+            return false;
+        }
+        offset += 2;
+        if ((header & WIDE) == 0) {
+            for (int i = 0; i < length; i++) {
+                if (chunk[offset + i] != accountId.charAt(i)) {
+                    return false;
+                }
+            }
+        } else {
+            for (int i = 0; i < length; i++, offset += 2) {
+                final char c = (char) (((chunk[offset] & 0xFF) << 8) | (chunk[offset + 1] & 0xFF));
+                if (c != accountId.charAt(i)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Copies an id into the chunks.
+     *
+     * @param accountId the account id
+     * @return the position of the id
+     */
+    private long writeId(String accountId) {
+        final int length = accountId.length();
+        boolean wide = false;
+        for (int i = 0; i < length && !wide; i++) {
+            wide = accountId.charAt(i) >= 0x80;
+        }
+        final int bytes = 2 + (wide ? length * 2 : length);
+
+        long position = nextPosition;
+        if ((position & (CHUNK_SIZE - 1)) + bytes > CHUNK_SIZE) {
+            position = ((position >>> CHUNK_BITS) + 1) << CHUNK_BITS;
+        }
+        final int chunkIndex = (int) (position >>> CHUNK_BITS);
+        byte[][] current = chunks;
+        if (chunkIndex == current.length) {
+            final byte[][] grown = new byte[chunkIndex + 1][];
+            System.arraycopy(current, 0, grown, 0, chunkIndex);
+            grown[chunkIndex] = new byte[CHUNK_SIZE];
+            chunks = current = grown;
+        }
+
+        final byte[] chunk = current[chunkIndex];
+        int offset = (int) (position & (CHUNK_SIZE - 1));
+        final int header = wide ? length | WIDE : length;
+        chunk[offset++] = (byte) (header >>> 8);
+        chunk[offset++] = (byte) header;
+        for (int i = 0; i < length; i++) {
+            final char c = accountId.charAt(i);
+            if (wide) {
+                chunk[offset++] = (byte) (c >>> 8);
+            }
+            chunk[offset++] = (byte) c;
+        }
+        nextPosition = position + bytes;
+        return position;
+    }
+
+    /**
+     * Gets the segment of positions holding an index, growing the segments if needed.
+     *
+     * @param index the index
+     * @return the segment
+     */
+    private long[] positions(int index) {
+        final int segment = index >>> SEGMENT_BITS;
+        long[][] current = positions;
+        if (segment == current.length) {
+            final long[][] grown = new long[segment + 1][];
+            System.arraycopy(current, 0, grown, 0, segment);
+            grown[segment] = new long[SEGMENT_SIZE];
+            positions = current = grown;
+        }
+        return current[segment];
+    }
+
+    /**
+     * Builds a larger table holding every interned index.
+     *
+     * @param capacity the capacity, a power of two
+     * @return the table
+     */
+    private AtomicIntegerArray rehash(int capacity) {
+        final AtomicIntegerArray rehashed = new AtomicIntegerArray(capacity);
+        for (int index = 0; index < size; index++) {
+            insert(rehashed, index);
+        }
+        return rehashed;
+    }
+
+    /**
+     * Inserts an index into a table, publishing it to concurrent readers.
+     *
+     * @param slots the table
+     * @param index the index
+     */
+    private void insert(AtomicIntegerArray slots, int index) {
+        final int mask = slots.length() - 1;
+        int slot = spread(idHash(index)) & mask;
+        while (slots.get(slot) != 0) {
+            slot = (slot + 1) & mask;
+        }
+        slots.set(slot, index + 1);
+    }
+
+    /**
+     * Computes the {@link String#hashCode()} of the id stored at an index.
+     *
+     * @param index the index
+     * @return the hash
+     */
+    private int idHash(int index) {
+        final long position = positions[index >>> SEGMENT_BITS][index & SEGMENT_MASK];
+        final byte[] chunk = chunks[(int) (position >>> CHUNK_BITS)];
+        int offset = (int) (position & (CHUNK_SIZE - 1));
+
+        final int header = ((chunk[offset] & 0xFF) << 8) | (chunk[offset + 1] & 0xFF);
+        final int length = header & MAX_ID_LENGTH;
+        final boolean wide = (header & WIDE) != 0;
+        offset += 2;
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+            final char c = wide
+                    ? (char) (((chunk[offset++] & 0xFF) << 8) | (chunk[offset++] & 0xFF))
+                    : (char) (chunk[offset++] & 0xFF);
+            hash = 31 * hash + c;
+        }
+        return hash;
+    }
+
+    /**
+     * Spreads the bits of a hash.
+     *
+     * @param hash the hash
+     * @return the spread hash
+     */
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
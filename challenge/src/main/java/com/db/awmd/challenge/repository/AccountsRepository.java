@@ -1,11 +1,13 @@
 package com.db.awmd.challenge.repository;
 
 import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountSnapshot;
 import com.db.awmd.challenge.domain.AccountUpdate;
 import com.db.awmd.challenge.exception.DuplicateAccountIdException;
 
 import java.math.BigDecimal;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * The Interface AccountsRepository.
@@ -28,6 +30,40 @@ public interface AccountsRepository {
    */
   Account getAccount(String accountId);
 
+  /**
+   * Gets a consistent, immutable view of the account, without blocking transfers to it.
+   * Repositories whose {@link #getAccount(String)} returns a detached copy report version 0.
+   *
+   * @param accountId the account id
+   * @return the account snapshot, null if the account does not exist
+   */
+  default AccountSnapshot getAccountSnapshot(String accountId) {
+    final Account account = getAccount(accountId);
+    return account == null ? null : account.snapshot();
+  }
+
+  /**
+   * Marks an account as hot: credits to it may then be applied concurrently, each by its own thread,
+   * without being serialized with one another (see {@link Account#markHot()}). Repositories that
+   * cannot do so leave the account as it is.
+   *
+   * @param accountId the account id
+   * @return true, if the account is now hot; false if it does not exist or cannot be made hot
+   */
+  default boolean markHot(String accountId) {
+    return false;
+  }
+
+  /**
+   * Tells whether credits to an account may be applied without serializing them with one another.
+   *
+   * @param accountId the account id
+   * @return true, if the account is hot
+   */
+  default boolean isHot(String accountId) {
+    return false;
+  }
+
   /**
    * Clear accounts.
    */
@@ -41,4 +77,12 @@ public interface AccountsRepository {
    */
   boolean updateAccountsBatch(List<AccountUpdate> accountUpdates);
 
+  /**
+   * Passes the id of every account to the action. Accounts created while iterating may or may not
+   * be included; accounts existing throughout are included exactly once.
+   *
+   * @param action the action
+   */
+  void forEachAccountId(Consumer<String> action);
+
 }
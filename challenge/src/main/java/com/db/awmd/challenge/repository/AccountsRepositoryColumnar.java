@@ -0,0 +1,167 @@
+package com.db.awmd.challenge.repository;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountUpdate;
+import com.db.awmd.challenge.domain.Money;
+import com.db.awmd.challenge.exception.DuplicateAccountIdException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Compact account store keeping balances in columns of primitive longs.
+ * <p>
+ * Account ids are interned once to dense int indices by an {@link AccountIdIndex}, and the balance of
+ * the account with index {@code i} lives at position {@code i} of a segmented long column that grows
+ * one segment at a time. Reads never lock; {@link #getAccount(String)} returns a detached
+ * {@link Account} built from the columns. Selected with {@code accounts.repository.type=columnar}.
+ */
+@Repository
+@ConditionalOnProperty(name = "accounts.repository.type", havingValue = "columnar")
+public class AccountsRepositoryColumnar implements AccountsRepository {
+
+    /** The Constant SEGMENT_BITS. */
+    private static final int SEGMENT_BITS = 16;
+
+    /** The number of balances per segment. */
+    private static final int SEGMENT_SIZE = 1 << SEGMENT_BITS;
+
+    /** The Constant SEGMENT_MASK. */
+    private static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+    /** The columns, replaced as a whole when the accounts are cleared. */
+    private volatile Columns columns = new Columns();
+
+    /* (non-Javadoc)
+     * @see com.db.awmd.challenge.repository.AccountsRepository#createAccount(com.db.awmd.challenge.domain.Account)
+     */
+    @Override
+    public synchronized void createAccount(Account account) throws DuplicateAccountIdException {
+        final Columns current = columns;
+        final AccountIdIndex index = current.ids;
+        if (index.indexOf(account.getAccountId()) >= 0) {
+            throw new DuplicateAccountIdException(
+                    "Account id " + account.getAccountId() + " already exists!");
+        }
+
+        final int accountIndex = index.size();
+        final int segment = accountIndex >>> SEGMENT_BITS;
+        AtomicLongArray[] balances = current.balances;
+        if (segment == balances.length) {
+            final AtomicLongArray[] grown = new AtomicLongArray[segment + 1];
+            System.arraycopy(balances, 0, grown, 0, segment);
+            grown[segment] = new AtomicLongArray(SEGMENT_SIZE);
+            current.balances = balances = grown;
+        }
+        balances[segment].set(accountIndex & SEGMENT_MASK, account.getBalanceMinor());
+        index.add(account.getAccountId());
+    }
+
+    /* (non-Javadoc)
+     * @see com.db.awmd.challenge.repository.AccountsRepository#getAccount(java.lang.String)
+     */
+    @Override
+    public Account getAccount(String accountId) {
+        final Columns current = columns;
+        final int accountIndex = current.ids.indexOf(accountId);
+        if (accountIndex < 0) {
+            return null;
+        }
+        return new Account(accountId, current.segment(accountIndex).get(accountIndex & SEGMENT_MASK));
+    }
+
+    /* (non-Javadoc)
+     * @see com.db.awmd.challenge.repository.AccountsRepository#clearAccounts()
+     */
+    @Override
+    public synchronized void clearAccounts() {
+        columns = new Columns();
+    }
+
+    /* (non-Javadoc)
+     * @see com.db.awmd.challenge.repository.AccountsRepository#updateAccountsBatch(java.util.List)
+     */
+    @Override
+    public boolean updateAccountsBatch(List<AccountUpdate> accountUpdates) {
+        final Columns current = columns;
+        for (AccountUpdate accountUpdate : accountUpdates) {
+            updateAccount(current, accountUpdate);
+        }
+        return true;
+    }
+
+    /* (non-Javadoc)
+     * @see com.db.awmd.challenge.repository.AccountsRepository#forEachAccountId(java.util.function.Consumer)
+     */
+    @Override
+    public void forEachAccountId(Consumer<String> action) {
+        final AccountIdIndex index = columns.ids;
+        final int size = index.size();
+        for (int accountIndex = 0; accountIndex < size; accountIndex++) {
+            action.accept(index.get(accountIndex));
+        }
+    }
+
+    /**
+     * Gets the number of accounts.
+     *
+     * @return the number of accounts
+     */
+    public int size() {
+        return columns.ids.size();
+    }
+
+    /**
+     * Gets the number of bytes reserved by the columns and the id index.
+     *
+     * @return the reserved bytes
+     */
+    public long reservedBytes() {
+        final Columns current = columns;
+        return current.balances.length * (long) SEGMENT_SIZE * 8L + current.ids.reservedBytes();
+    }
+
+    /**
+     * Update account.
+     *
+     * @param current the columns
+     * @param accountUpdate the account update
+     */
+    private static void updateAccount(final Columns current, final AccountUpdate accountUpdate) {
+        final int accountIndex = current.ids.indexOf(accountUpdate.getAccountId());
+        if (accountIndex < 0) {
+            return;
+        }
+        final AtomicLongArray segment = current.segment(accountIndex);
+        final int offset = accountIndex & SEGMENT_MASK;
+        long balance;
+        do {
+            balance = segment.get(offset);
+        } while (!segment.compareAndSet(offset, balance, Money.add(balance, accountUpdate.getAmountMinor())));
+    }
+
+    /**
+     * The id index together with the balance column it indexes.
+     */
+    private static final class Columns {
+
+        /** The account id index. */
+        private final AccountIdIndex ids = new AccountIdIndex();
+
+        /** The balance column, in minor units, by account index. */
+        private volatile AtomicLongArray[] balances = new AtomicLongArray[] {new AtomicLongArray(SEGMENT_SIZE)};
+
+        /**
+         * Gets the balance segment holding an account index.
+         *
+         * @param accountIndex the account index
+         * @return the segment
+         */
+        private AtomicLongArray segment(int accountIndex) {
+            return balances[accountIndex >>> SEGMENT_BITS];
+        }
+    }
+}
@@ -6,13 +6,20 @@ import com.db.awmd.challenge.exception.DuplicateAccountIdException;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Repository;
 
 /**
  * The Class AccountsRepositoryInMemory.
+ * <p>
+ * Accounts are updated in place, one writer at a time per account as {@code computeIfPresent} holds
+ * the bin; readers take {@link Account#snapshot()}s instead of locking. Credits to a hot account
+ * skip the bin and go straight to its pending credits, so that they do not queue up behind each other.
  */
 @Repository
+@ConditionalOnProperty(name = "accounts.repository.type", havingValue = "in-memory", matchIfMissing = true)
 public class AccountsRepositoryInMemory implements AccountsRepository {
 
     /** The accounts. */
@@ -38,6 +45,26 @@ public class AccountsRepositoryInMemory implements AccountsRepository {
         return accounts.get(accountId);
     }
 
+    /* (non-Javadoc)
+     * @see com.db.awmd.challenge.repository.AccountsRepository#markHot(java.lang.String)
+     */
+    @Override
+    public boolean markHot(String accountId) {
+        return accounts.computeIfPresent(accountId, (key, account) -> {
+            account.markHot();
+            return account;
+        }) != null;
+    }
+
+    /* (non-Javadoc)
+     * @see com.db.awmd.challenge.repository.AccountsRepository#isHot(java.lang.String)
+     */
+    @Override
+    public boolean isHot(String accountId) {
+        final Account account = accounts.get(accountId);
+        return account != null && account.isHot();
+    }
+
     /* (non-Javadoc)
      * @see com.db.awmd.challenge.repository.AccountsRepository#clearAccounts()
      */
@@ -58,6 +85,14 @@ public class AccountsRepositoryInMemory implements AccountsRepository {
         return true;
     }
 
+    /* (non-Javadoc)
+     * @see com.db.awmd.challenge.repository.AccountsRepository#forEachAccountId(java.util.function.Consumer)
+     */
+    @Override
+    public void forEachAccountId(Consumer<String> action) {
+        accounts.keySet().forEach(action);
+    }
+
     /**
      * Update account.
      *
@@ -65,8 +100,15 @@ public class AccountsRepositoryInMemory implements AccountsRepository {
      */
     private void updateAccount(final AccountUpdate accountUpdate) {
         final String accountId = accountUpdate.getAccountId();
+        if (accountUpdate.getAmountMinor() > 0L) {
+            final Account account = accounts.get(accountId);
+            if (account != null && account.isHot()) {
+                account.addBalanceMinor(accountUpdate.getAmountMinor());
+                return;
+            }
+        }
         accounts.computeIfPresent(accountId, (key, account) -> {
-            account.setBalance(account.getBalance().add(accountUpdate.getAmount()));
+            account.addBalanceMinor(accountUpdate.getAmountMinor());
             return account;
         });
     }
@@ -0,0 +1,515 @@
+package com.db.awmd.challenge.repository;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountSnapshot;
+import com.db.awmd.challenge.domain.AccountUpdate;
+import com.db.awmd.challenge.domain.Money;
+import com.db.awmd.challenge.exception.DuplicateAccountIdException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+
+import javax.annotation.PreDestroy;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Account store living in a memory-mapped file, outside the Java heap.
+ * <p>
+ * The file is an open-addressing hash table of fixed-width records, so it is usable as soon as it is
+ * mapped: there is no index to rebuild and nothing to load on restart. Each record holds
+ * <pre>
+ *  offset  size  field
+ *       0     2  id header: id length, plus a flag when stored with two bytes per char; 0 when free
+ *       2    46  id characters
+ *      48     8  balance, in minor units
+ *      56     8  version, incremented by every update
+ * </pre>
+ * Lookups probe the records under an optimistic read of a {@link StampedLock} that only account
+ * creation takes exclusively; balance and version of a record are read and written under one of a set
+ * of striped monitors. Selected with {@code accounts.repository.type=mapped}.
+ */
+@Slf4j
+@Repository
+@ConditionalOnProperty(name = "accounts.repository.type", havingValue = "mapped")
+public class AccountsRepositoryMapped implements AccountsRepository {
+
+    /** The Constant MAGIC. */
+    private static final long MAGIC = 0x4157_4D44_4143_4354L;
+
+    /** The Constant FORMAT_VERSION. */
+    private static final int FORMAT_VERSION = 1;
+
+    /** The size of the file header. */
+    private static final int HEADER_SIZE = 64;
+
+    /** The Constant CAPACITY_OFFSET. */
+    private static final int CAPACITY_OFFSET = 16;
+
+    /** The Constant SIZE_OFFSET. */
+    private static final int SIZE_OFFSET = 24;
+
+    /** The size of a record. */
+    static final int RECORD_SIZE = 64;
+
+    /** The longest id that fits a record, in bytes. */
+    static final int MAX_ID_BYTES = 46;
+
+    /** The Constant ID_OFFSET. */
+    private static final int ID_OFFSET = 2;
+
+    /** The Constant BALANCE_OFFSET. */
+    private static final int BALANCE_OFFSET = 48;
+
+    /** The Constant VERSION_OFFSET. */
+    private static final int VERSION_OFFSET = 56;
+
+    /** The flag marking an id stored with two bytes per character. */
+    private static final int WIDE = 0x8000;
+
+    /** The Constant REGION_BITS. */
+    private static final int REGION_BITS = 24;
+
+    /** The number of records mapped by one buffer. */
+    private static final int REGION_RECORDS = 1 << REGION_BITS;
+
+    /** The Constant REGION_MASK. */
+    private static final int REGION_MASK = REGION_RECORDS - 1;
+
+    /** The number of record monitors. */
+    private static final int RECORD_LOCKS = 256;
+
+    /** The header buffer. */
+    private final MappedByteBuffer header;
+
+    /** The record buffers, each mapping {@link #REGION_RECORDS} records. */
+    private final MappedByteBuffer[] regions;
+
+    /** The number of records, a power of two. */
+    private final long capacity;
+
+    /** The lock guarding the layout of the hash table. */
+    private final StampedLock structure = new StampedLock();
+
+    /** The monitors guarding balance and version of the records. */
+    private final Object[] recordLocks = new Object[RECORD_LOCKS];
+
+    /**
+     * Maps the store file, creating it when missing. An existing file keeps the capacity it was
+     * created with.
+     *
+     * @param file the store file
+     * @param capacity the number of records of a new file, rounded up to a power of two
+     */
+    @Autowired
+    public AccountsRepositoryMapped(@Value("${accounts.repository.mapped.file:accounts.dat}") String file,
+                                    @Value("${accounts.repository.mapped.capacity:1048576}") long capacity) {
+        for (int i = 0; i < RECORD_LOCKS; i++) {
+            recordLocks[i] = new Object();
+        }
+        try (RandomAccessFile store = new RandomAccessFile(new File(file), "rw");
+             FileChannel channel = store.getChannel()) {
+            final boolean created = store.length() == 0;
+            if (created) {
+                store.setLength(HEADER_SIZE + tableSize(capacity) * RECORD_SIZE);
+            }
+            this.header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+            if (created) {
+                header.putLong(0, MAGIC);
+                header.putInt(8, FORMAT_VERSION);
+                header.putInt(12, RECORD_SIZE);
+                header.putLong(CAPACITY_OFFSET, tableSize(capacity));
+                header.putLong(SIZE_OFFSET, 0L);
+            } else if (header.getLong(0) != MAGIC || header.getInt(8) != FORMAT_VERSION
+                    || header.getInt(12) != RECORD_SIZE) {
+                throw new IllegalStateException("File " + file + " is not an account store.");
+            }
+            this.capacity = header.getLong(CAPACITY_OFFSET);
+
+            this.regions = new MappedByteBuffer[(int) ((this.capacity + REGION_RECORDS - 1) >>> REGION_BITS)];
+            for (int i = 0; i < regions.length; i++) {
+                final long records = Math.min(REGION_RECORDS, this.capacity - ((long) i << REGION_BITS));
+                regions[i] = channel.map(FileChannel.MapMode.READ_WRITE,
+                        HEADER_SIZE + ((long) i << REGION_BITS) * RECORD_SIZE, records * RECORD_SIZE);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot map account store " + file, e);
+        }
+        log.info("Mapped account store {} with {} of {} records in use", file, size(), this.capacity);
+    }
+
+    /* (non-Javadoc)
+     * @see com.db.awmd.challenge.repository.AccountsRepository#createAccount(com.db.awmd.challenge.domain.Account)
+     */
+    @Override
+    public void createAccount(Account account) throws DuplicateAccountIdException {
+        final String accountId = account.getAccountId();
+        final boolean wide = isWide(accountId);
+        if (accountId.isEmpty() || (wide ? accountId.length() * 2 : accountId.length()) > MAX_ID_BYTES) {
+            throw new IllegalArgumentException("Account id must have between 1 and " + MAX_ID_BYTES + " bytes.");
+        }
+
+        final long stamp = structure.writeLock();
+        try {
+            long slot = slotOf(hash(accountId));
+            while (true) {
+                final int idHeader = buffer(slot).getShort(offset(slot)) & 0xFFFF;
+                if (idHeader == 0) {
+                    break;
+                }
+                if (matches(slot, idHeader, accountId)) {
+                    throw new DuplicateAccountIdException(
+                            "Account id " + accountId + " already exists!");
+                }
+                slot = (slot + 1) & (capacity - 1);
+            }
+            final long size = header.getLong(SIZE_OFFSET);
+            if ((size + 1) * 10 > capacity * 9) {
+                throw new IllegalStateException("Account store is full: " + size + " of " + capacity + " records in use.");
+            }
+
+            final MappedByteBuffer buffer = buffer(slot);
+            final int position = offset(slot);
+            synchronized (lockFor(slot)) {
+                buffer.putLong(position + BALANCE_OFFSET, account.getBalanceMinor());
+                buffer.putLong(position + VERSION_OFFSET, 0L);
+            }
+            for (int i = 0, at = position + ID_OFFSET; i < accountId.length(); i++) {
+                final char c = accountId.charAt(i);
+                if (wide) {
+                    buffer.put(at++, (byte) (c >>> 8));
+                }
+                buffer.put(at++, (byte) c);
+            }
+            buffer.putShort(position, (short) (wide ? accountId.length() | WIDE : accountId.length()));
+            header.putLong(SIZE_OFFSET, size + 1);
+        } finally {
+            structure.unlockWrite(stamp);
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see com.db.awmd.challenge.repository.AccountsRepository#getAccount(java.lang.String)
+     */
+    @Override
+    public Account getAccount(String accountId) {
+        final long slot = find(accountId);
+        if (slot < 0) {
+            return null;
+        }
+        synchronized (lockFor(slot)) {
+            return new Account(accountId, buffer(slot).getLong(offset(slot) + BALANCE_OFFSET));
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see com.db.awmd.challenge.repository.AccountsRepository#getAccountSnapshot(java.lang.String)
+     */
+    @Override
+    public AccountSnapshot getAccountSnapshot(String accountId) {
+        final long slot = find(accountId);
+        if (slot < 0) {
+            return null;
+        }
+        final MappedByteBuffer buffer = buffer(slot);
+        final int position = offset(slot);
+        synchronized (lockFor(slot)) {
+            return new AccountSnapshot(accountId, buffer.getLong(position + BALANCE_OFFSET),
+                    buffer.getLong(position + VERSION_OFFSET));
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see com.db.awmd.challenge.repository.AccountsRepository#clearAccounts()
+     */
+    @Override
+    public void clearAccounts() {
+        final long stamp = structure.writeLock();
+        try {
+            for (long slot = 0; slot < capacity; slot++) {
+                final MappedByteBuffer buffer = buffer(slot);
+                final int position = offset(slot);
+                for (int i = 0; i < RECORD_SIZE; i += 8) {
+                    buffer.putLong(position + i, 0L);
+                }
+            }
+            header.putLong(SIZE_OFFSET, 0L);
+        } finally {
+            structure.unlockWrite(stamp);
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see com.db.awmd.challenge.repository.AccountsRepository#updateAccountsBatch(java.util.List)
+     */
+    @Override
+    public boolean updateAccountsBatch(List<AccountUpdate> accountUpdates) {
+        for (AccountUpdate accountUpdate : accountUpdates) {
+            updateAccount(accountUpdate);
+        }
+        return true;
+    }
+
+    /* (non-Javadoc)
+     * @see com.db.awmd.challenge.repository.AccountsRepository#forEachAccountId(java.util.function.Consumer)
+     */
+    @Override
+    public void forEachAccountId(Consumer<String> action) {
+        for (long slot = 0; slot < capacity; slot++) {
+            final String accountId;
+            final long stamp = structure.readLock();
+            try {
+                accountId = idAt(slot);
+            } finally {
+                structure.unlockRead(stamp);
+            }
+            if (accountId != null) {
+                action.accept(accountId);
+            }
+        }
+    }
+
+    /**
+     * Gets the number of accounts.
+     *
+     * @return the number of accounts
+     */
+    public long size() {
+        return header.getLong(SIZE_OFFSET);
+    }
+
+    /**
+     * Gets the version of an account, the number of updates applied to it.
+     *
+     * @param accountId the account id
+     * @return the version, or -1 if the account does not exist
+     */
+    public long getVersion(String accountId) {
+        final long slot = find(accountId);
+        if (slot < 0) {
+            return -1L;
+        }
+        synchronized (lockFor(slot)) {
+            return buffer(slot).getLong(offset(slot) + VERSION_OFFSET);
+        }
+    }
+
+    /**
+     * Flushes the mapped records to the storage device.
+     */
+    @PreDestroy
+    public void force() {
+        header.force();
+        for (MappedByteBuffer region : regions) {
+            region.force();
+        }
+    }
+
+    /**
+     * Update account.
+     *
+     * @param accountUpdate the account update
+     */
+    private void updateAccount(final AccountUpdate accountUpdate) {
+        final long slot = find(accountUpdate.getAccountId());
+        if (slot < 0) {
+            return;
+        }
+        final MappedByteBuffer buffer = buffer(slot);
+        final int position = offset(slot);
+        synchronized (lockFor(slot)) {
+            final long balance = buffer.getLong(position + BALANCE_OFFSET);
+            buffer.putLong(position + BALANCE_OFFSET, Money.add(balance, accountUpdate.getAmountMinor()));
+            buffer.putLong(position + VERSION_OFFSET, buffer.getLong(position + VERSION_OFFSET) + 1);
+        }
+    }
+
+    /**
+     * Finds the record of an account, optimistically first and under the read lock if account
+     * creation interfered.
+     *
+     * @param accountId the account id
+     * @return the slot, or -1 if the account does not exist
+     */
+    private long find(String accountId) {
+        final int hash = hash(accountId);
+        long stamp = structure.tryOptimisticRead();
+        if (stamp != 0) {
+            final long slot = probe(hash, accountId);
+            if (structure.validate(stamp)) {
+                return slot;
+            }
+        }
+        stamp = structure.readLock();
+        try {
+            return probe(hash, accountId);
+        } finally {
+            structure.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Probes the table for an account. Tolerates records changing underneath, in which case the
+     * caller discards the result.
+     *
+     * @param hash the hash of the account id
+     * @param accountId the account id
+     * @return the slot, or -1 if the account was not found
+     */
+    private long probe(int hash, String accountId) {
+        long slot = slotOf(hash);
+        for (long probes = 0; probes < capacity; probes++) {
+            final int idHeader = buffer(slot).getShort(offset(slot)) & 0xFFFF;
+            if (idHeader == 0) {
+                return -1L;
+            }
+            if (matches(slot, idHeader, accountId)) {
+                return slot;
+            }
+            slot = (slot + 1) & (capacity - 1);
+        }
+        return -1L;
+    }
+
+    /**
+     * Checks whether the id of a record equals the given one, without allocating.
+     *
+     * @param slot the slot
+     * @param idHeader the id header of the record
+     * @param accountId the account id
+     * @return true, if the ids are equal
+     */
+    private boolean matches(long slot, int idHeader, String accountId) {
+        final int length = idHeader & ~WIDE;
+        final boolean wide = (idHeader & WIDE) != 0;
+        if (length != accountId.length() || (wide ? length * 2 : length) > MAX_ID_BYTES) {
+            return false;
+        }
+        final MappedByteBuffer buffer = buffer(slot);
+        int at = offset(slot) + ID_OFFSET;
+        for (int i = 0; i < length; i++) {
+            final char c = wide
+                    ? (char) (((buffer.get(at++) & 0xFF) << 8) | (buffer.get(at++) & 0xFF))
+                    : (char) (buffer.get(at++) & 0xFF);
+            if (c != accountId.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Decodes the id of a record.
+     *
+     * @param slot the slot
+     * @return the account id, or null if the record is free
+     */
+    private String idAt(long slot) {
+        final MappedByteBuffer buffer = buffer(slot);
+        int at = offset(slot);
+        final int idHeader = buffer.getShort(at) & 0xFFFF;
+        if (idHeader == 0) {
+            return null;
+        }
+        final int length = idHeader & ~WIDE;
+        final boolean wide = (idHeader & WIDE) != 0;
+        at += ID_OFFSET;
+        final char[] id = new char[length];
+        for (int i = 0; i < length; i++) {
+            id[i] = wide
+                    ? (char) (((buffer.get(at++) & 0xFF) << 8) | (buffer.get(at++) & 0xFF))
+                    : (char) (buffer.get(at++) & 0xFF);
+        }
+        return new String(id);
+    }
+
+    /**
+     * Gets the buffer mapping a slot.
+     *
+     * @param slot the slot
+     * @return the buffer
+     */
+    private MappedByteBuffer buffer(long slot) {
+        return regions[(int) (slot >>> REGION_BITS)];
+    }
+
+    /**
+     * Gets the offset of a slot within its buffer.
+     *
+     * @param slot the slot
+     * @return the offset
+     */
+    private static int offset(long slot) {
+        return (int) (slot & REGION_MASK) * RECORD_SIZE;
+    }
+
+    /**
+     * Gets the monitor guarding the balance and version of a slot.
+     *
+     * @param slot the slot
+     * @return the monitor
+     */
+    private Object lockFor(long slot) {
+        return recordLocks[(int) (slot & (RECORD_LOCKS - 1))];
+    }
+
+    /**
+     * Gets the home slot of a hash.
+     *
+     * @param hash the hash
+     * @return the slot
+     */
+    private long slotOf(int hash) {
+        return (hash & 0xFFFF_FFFFL) & (capacity - 1);
+    }
+
+    /**
+     * Hashes an account id. Must stay stable across releases, as records are placed by it.
+     *
+     * @param accountId the account id
+     * @return the hash
+     */
+    private static int hash(String accountId) {
+        final int hash = accountId.hashCode();
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Checks whether an id needs two bytes per character.
+     *
+     * @param accountId the account id
+     * @return true, if the id is not ASCII
+     */
+    private static boolean isWide(String accountId) {
+        for (int i = 0; i < accountId.length(); i++) {
+            if (accountId.charAt(i) >= 0x80) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Rounds a capacity up to a power of two.
+     *
+     * @param capacity the requested capacity
+     * @return the table size
+     */
+    private static long tableSize(long capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Account store capacity must be positive: " + capacity);
+        }
+        final long size = Long.highestOneBit(capacity);
+        return size < capacity ? size << 1 : size;
+    }
+}
@@ -0,0 +1,265 @@
+package com.db.awmd.challenge.repository;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountSnapshot;
+import com.db.awmd.challenge.domain.AccountUpdate;
+import com.db.awmd.challenge.domain.Money;
+import com.db.awmd.challenge.exception.DuplicateAccountIdException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Account store in which each account is an immutable {@link AccountSnapshot} of its balance and
+ * version behind an atomic reference, replaced by compare-and-set instead of under a lock.
+ * <p>
+ * {@link #compareAndSetBalances} replaces the states of two accounts at once, provided neither
+ * changed since it was read. It first installs a commit descriptor in both references, in account id
+ * order, then decides the outcome with a single compare-and-set on the descriptor and finally puts
+ * the new or the old states back. A thread that finds a descriptor in its way completes it before
+ * going on, so no thread waits for another; readers resolve a descriptor to the state it stands for
+ * without writing anything. {@link #getAccount(String)} returns a detached {@link Account}. Selected
+ * with {@code accounts.repository.type=optimistic}.
+ */
+@Repository
+@ConditionalOnProperty(name = "accounts.repository.type", havingValue = "optimistic")
+public class AccountsRepositoryOptimistic implements AccountsRepository {
+
+    /** The accounts, each holding its {@link AccountSnapshot} or a {@link Commit} in progress. */
+    private final Map<String, AtomicReference<Object>> accounts = new ConcurrentHashMap<>();
+
+    /* (non-Javadoc)
+     * @see com.db.awmd.challenge.repository.AccountsRepository#createAccount(com.db.awmd.challenge.domain.Account)
+     */
+    @Override
+    public void createAccount(Account account) throws DuplicateAccountIdException {
+        final AccountSnapshot state = new AccountSnapshot(account.getAccountId(), account.getBalanceMinor(), 0L);
+        if (accounts.putIfAbsent(account.getAccountId(), new AtomicReference<>(state)) != null) {
+            throw new DuplicateAccountIdException(
+                    "Account id " + account.getAccountId() + " already exists!");
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see com.db.awmd.challenge.repository.AccountsRepository#getAccount(java.lang.String)
+     */
+    @Override
+    public Account getAccount(String accountId) {
+        final AccountSnapshot state = getAccountSnapshot(accountId);
+        return state == null ? null : new Account(accountId, state.getBalanceMinor());
+    }
+
+    /* (non-Javadoc)
+     * @see com.db.awmd.challenge.repository.AccountsRepository#getAccountSnapshot(java.lang.String)
+     */
+    @Override
+    public AccountSnapshot getAccountSnapshot(String accountId) {
+        final AtomicReference<Object> account = accounts.get(accountId);
+        return account == null ? null : resolve(account, account.get());
+    }
+
+    /* (non-Javadoc)
+     * @see com.db.awmd.challenge.repository.AccountsRepository#clearAccounts()
+     */
+    @Override
+    public void clearAccounts() {
+        accounts.clear();
+    }
+
+    /* (non-Javadoc)
+     * @see com.db.awmd.challenge.repository.AccountsRepository#updateAccountsBatch(java.util.List)
+     */
+    @Override
+    public boolean updateAccountsBatch(List<AccountUpdate> accountUpdates) {
+        for (AccountUpdate accountUpdate : accountUpdates) {
+            final AtomicReference<Object> account = accounts.get(accountUpdate.getAccountId());
+            if (account == null) {
+                continue;
+            }
+            while (true) {
+                final Object current = account.get();
+                if (current instanceof Commit) {
+                    ((Commit) current).help();
+                    continue;
+                }
+                final AccountSnapshot state = (AccountSnapshot) current;
+                final AccountSnapshot updated = new AccountSnapshot(state.getAccountId(),
+                        Money.add(state.getBalanceMinor(), accountUpdate.getAmountMinor()), state.getVersion() + 1);
+                if (account.compareAndSet(state, updated)) {
+                    break;
+                }
+            }
+        }
+        return true;
+    }
+
+    /* (non-Javadoc)
+     * @see com.db.awmd.challenge.repository.AccountsRepository#forEachAccountId(java.util.function.Consumer)
+     */
+    @Override
+    public void forEachAccountId(Consumer<String> action) {
+        accounts.keySet().forEach(action);
+    }
+
+    /**
+     * Sets the balances of two distinct accounts at once, provided both are still in the states
+     * given. Each account that is changed moves to the next version.
+     *
+     * @param first the state of the first account, as read by {@link #getAccountSnapshot(String)}
+     * @param firstBalanceMinor the new balance of the first account, in minor units
+     * @param second the state of the second account, as read by {@link #getAccountSnapshot(String)}
+     * @param secondBalanceMinor the new balance of the second account, in minor units
+     * @return true, if both balances were set; false if either account changed or was removed since
+     * @throws IllegalArgumentException if both states are of the same account
+     */
+    public boolean compareAndSetBalances(AccountSnapshot first, long firstBalanceMinor,
+                                         AccountSnapshot second, long secondBalanceMinor) {
+        final int order = first.getAccountId().compareTo(second.getAccountId());
+        if (order == 0) {
+            throw new IllegalArgumentException("Cannot set two balances of account " + first.getAccountId() + ".");
+        }
+        final AtomicReference<Object> firstAccount = accounts.get(first.getAccountId());
+        final AtomicReference<Object> secondAccount = accounts.get(second.getAccountId());
+        if (firstAccount == null || secondAccount == null) {
+            return false;
+        }
+        final AccountSnapshot firstUpdated = new AccountSnapshot(first.getAccountId(), firstBalanceMinor,
+                first.getVersion() + 1);
+        final AccountSnapshot secondUpdated = new AccountSnapshot(second.getAccountId(), secondBalanceMinor,
+                second.getVersion() + 1);
+        final Commit commit = order < 0
+                ? new Commit(firstAccount, first, firstUpdated, secondAccount, second, secondUpdated)
+                : new Commit(secondAccount, second, secondUpdated, firstAccount, first, firstUpdated);
+        return commit.help();
+    }
+
+    /**
+     * Resolves what an account holds to its state.
+     *
+     * @param account the account
+     * @param current what the account holds
+     * @return the state
+     */
+    private static AccountSnapshot resolve(AtomicReference<Object> account, Object current) {
+        return current instanceof Commit ? ((Commit) current).stateOf(account) : (AccountSnapshot) current;
+    }
+
+    /**
+     * A change of two accounts in progress. It is installed in both accounts in order, decided once
+     * through {@link #status}, then replaced by the new states if it succeeded or by the old ones if
+     * it failed; any thread may carry any of these steps out.
+     */
+    private static final class Commit {
+
+        /** The status of a commit not decided yet. */
+        private static final int UNDECIDED = 0;
+
+        /** The status of a commit whose new states take effect. */
+        private static final int SUCCEEDED = 1;
+
+        /** The status of a commit that found an account changed. */
+        private static final int FAILED = 2;
+
+        /** The account with the lower id. */
+        private final AtomicReference<Object> first;
+
+        /** The state the first account must be in. */
+        private final AccountSnapshot firstExpected;
+
+        /** The state the first account moves to. */
+        private final AccountSnapshot firstUpdated;
+
+        /** The account with the higher id. */
+        private final AtomicReference<Object> second;
+
+        /** The state the second account must be in. */
+        private final AccountSnapshot secondExpected;
+
+        /** The state the second account moves to. */
+        private final AccountSnapshot secondUpdated;
+
+        /** The status. */
+        private final AtomicInteger status = new AtomicInteger(UNDECIDED);
+
+        /**
+         * Instantiates a new commit.
+         *
+         * @param first the account with the lower id
+         * @param firstExpected the state it must be in
+         * @param firstUpdated the state it moves to
+         * @param second the account with the higher id
+         * @param secondExpected the state it must be in
+         * @param secondUpdated the state it moves to
+         */
+        Commit(AtomicReference<Object> first, AccountSnapshot firstExpected, AccountSnapshot firstUpdated,
+               AtomicReference<Object> second, AccountSnapshot secondExpected, AccountSnapshot secondUpdated) {
+            this.first = first;
+            this.firstExpected = firstExpected;
+            this.firstUpdated = firstUpdated;
+            this.second = second;
+            this.secondExpected = secondExpected;
+            this.secondUpdated = secondUpdated;
+        }
+
+        /**
+         * Carries the commit through to the end, from whatever step it is at.
+         *
+         * @return true, if the commit succeeded
+         */
+        boolean help() {
+            if (install(first, firstExpected)) {
+                install(second, secondExpected);
+            }
+            status.compareAndSet(UNDECIDED, SUCCEEDED);
+            final boolean succeeded = status.get() == SUCCEEDED;
+            first.compareAndSet(this, succeeded ? firstUpdated : firstExpected);
+            second.compareAndSet(this, succeeded ? secondUpdated : secondExpected);
+            return succeeded;
+        }
+
+        /**
+         * Installs the commit in an account still in the expected state, unless it is decided
+         * already, or fails it if the account changed.
+         *
+         * @param account the account
+         * @param expected the state it must be in
+         * @return true, if the commit is installed and still undecided
+         */
+        private boolean install(AtomicReference<Object> account, AccountSnapshot expected) {
+            while (status.get() == UNDECIDED) {
+                final Object current = account.get();
+                if (current == this) {
+                    return true;
+                }
+                if (current instanceof Commit) {
+                    ((Commit) current).help();
+                } else if (current != expected) {
+                    status.compareAndSet(UNDECIDED, FAILED);
+                } else if (account.compareAndSet(expected, this)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Gets the state an account in which the commit is installed is in.
+         *
+         * @param account the account
+         * @return the new state if the commit succeeded, otherwise the old one
+         */
+        AccountSnapshot stateOf(AtomicReference<Object> account) {
+            final boolean succeeded = status.get() == SUCCEEDED;
+            if (account == first) {
+                return succeeded ? firstUpdated : firstExpected;
+            }
+            return succeeded ? secondUpdated : secondExpected;
+        }
+    }
+}
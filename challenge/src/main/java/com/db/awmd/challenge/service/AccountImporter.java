@@ -0,0 +1,350 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.ImportFailure;
+import com.db.awmd.challenge.domain.ImportSummary;
+import com.db.awmd.challenge.domain.Money;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Imports accounts from newline-delimited JSON, one account per line, as
+ * {@code {"accountId":"Id-1","balance":100.50}}.
+ * <p>
+ * Each line is read into a reused buffer and parsed with the Jackson streaming parser, without data
+ * binding, then checked against the same rules as {@link Account} and queued; queued accounts are
+ * created a chunk at a time through {@link AccountsService#createAccounts(List)}. Memory therefore
+ * stays the same whatever the size of the upload: one line, one chunk and the reported failures,
+ * of which only the first few are kept.
+ */
+@Service
+public class AccountImporter {
+
+    /** The longest line accepted, in characters. */
+    static final int MAX_LINE_LENGTH = 4096;
+
+    /** The JSON factory. */
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    /** The accounts service. */
+    private final AccountsService accountsService;
+
+    /** The number of accounts created at a time. */
+    private final int chunkSize;
+
+    /** The number of failed lines reported. */
+    private final int maxReportedFailures;
+
+    /**
+     * Instantiates a new account importer.
+     *
+     * @param accountsService the accounts service
+     * @param chunkSize the number of accounts created at a time
+     * @param maxReportedFailures the number of failed lines reported
+     */
+    @Autowired
+    public AccountImporter(AccountsService accountsService,
+                           @Value("${accounts.import.chunk-size:1024}") int chunkSize,
+                           @Value("${accounts.import.max-reported-failures:1000}") int maxReportedFailures) {
+        if (chunkSize < 1 || maxReportedFailures < 0) {
+            throw new IllegalArgumentException("Import chunk size must be positive and reported failures not negative.");
+        }
+        this.accountsService = accountsService;
+        this.chunkSize = chunkSize;
+        this.maxReportedFailures = maxReportedFailures;
+    }
+
+    /**
+     * Imports the accounts of a stream of newline-delimited JSON. Blank lines are skipped; a line
+     * that is not a valid account, or whose account id is taken, is reported and the import goes on.
+     *
+     * @param input the input, in UTF-8
+     * @return the import summary
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public ImportSummary importAccounts(InputStream input) throws IOException {
+        final Import running = new Import();
+        final LineReader lines = new LineReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        while (lines.next()) {
+            running.lines++;
+            if (lines.tooLong) {
+                running.fail(running.lines, "Line longer than " + MAX_LINE_LENGTH + " characters.");
+            } else if (!lines.isBlank()) {
+                try {
+                    running.queue(parse(lines.buffer, lines.length), running.lines);
+                } catch (InvalidAccountException e) {
+                    running.fail(running.lines, e.getMessage());
+                }
+            }
+        }
+        running.flush();
+        // duplicates are only found as their chunk is created, after later lines were checked
+        running.failures.sort(Comparator.comparingLong(ImportFailure::getLine));
+        return new ImportSummary(running.lines, running.created, running.failed, running.failures);
+    }
+
+    /**
+     * Parses and checks an account.
+     *
+     * @param line the characters of the line
+     * @param length the length of the line
+     * @return the account
+     * @throws InvalidAccountException if the line is not a valid account
+     */
+    private Account parse(char[] line, int length) throws InvalidAccountException {
+        String accountId = null;
+        BigDecimal balance = null;
+        try (JsonParser parser = jsonFactory.createParser(line, 0, length)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new InvalidAccountException("Expected an account object.");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String field = parser.getCurrentName();
+                final JsonToken value = parser.nextToken();
+                if ("accountId".equals(field)) {
+                    if (value != JsonToken.VALUE_STRING) {
+                        throw new InvalidAccountException("accountId must be a string.");
+                    }
+                    accountId = parser.getText();
+                } else if ("balance".equals(field)) {
+                    balance = decimalValue(parser, value);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            if (parser.nextToken() != null) {
+                throw new InvalidAccountException("Unexpected content after the account object.");
+            }
+        } catch (JsonProcessingException e) {
+            throw new InvalidAccountException("Malformed JSON: " + e.getOriginalMessage());
+        } catch (IOException e) {
+            throw new InvalidAccountException("Unreadable JSON: " + e.getMessage());
+        }
+
+        if (accountId == null || accountId.isEmpty()) {
+            throw new InvalidAccountException("accountId may not be empty.");
+        }
+        if (balance == null) {
+            throw new InvalidAccountException("balance may not be null.");
+        }
+        if (balance.signum() < 0) {
+            throw new InvalidAccountException("Initial balance must be positive.");
+        }
+        try {
+            return new Account(accountId, Money.toMinorUnits(balance));
+        } catch (ArithmeticException e) {
+            throw new InvalidAccountException("balance must have at most " + Money.SCALE + " decimal places and fit in "
+                    + "the balance range.");
+        }
+    }
+
+    /**
+     * Reads a number, given as a JSON number or a string as data binding accepts.
+     *
+     * @param parser the parser
+     * @param value the current token
+     * @return the number
+     * @throws IOException Signals that an I/O exception has occurred.
+     * @throws InvalidAccountException if the value is not a number
+     */
+    private static BigDecimal decimalValue(JsonParser parser, JsonToken value) throws IOException, InvalidAccountException {
+        if (value == JsonToken.VALUE_NUMBER_INT || value == JsonToken.VALUE_NUMBER_FLOAT) {
+            return parser.getDecimalValue();
+        }
+        if (value == JsonToken.VALUE_STRING) {
+            try {
+                return new BigDecimal(parser.getText().trim());
+            } catch (NumberFormatException e) {
+                throw new InvalidAccountException("balance must be a number.");
+            }
+        }
+        if (value == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        throw new InvalidAccountException("balance must be a number.");
+    }
+
+    /**
+     * The state of an import under way.
+     */
+    private final class Import {
+
+        /** The accounts queued for the next chunk. */
+        private final List<Account> chunk = new ArrayList<>(chunkSize);
+
+        /** The line numbers of the queued accounts. */
+        private final long[] chunkLines = new long[chunkSize];
+
+        /** The reported failures. */
+        private final List<ImportFailure> failures = new ArrayList<>();
+
+        /** The number of lines read. */
+        private long lines;
+
+        /** The number of accounts created. */
+        private long created;
+
+        /** The number of lines not imported. */
+        private long failed;
+
+        /**
+         * Queues an account, creating the chunk once full.
+         *
+         * @param account the account
+         * @param line the line number
+         */
+        private void queue(Account account, long line) {
+            chunkLines[chunk.size()] = line;
+            chunk.add(account);
+            if (chunk.size() == chunkSize) {
+                flush();
+            }
+        }
+
+        /**
+         * Creates the queued accounts.
+         */
+        private void flush() {
+            if (chunk.isEmpty()) {
+                return;
+            }
+            final List<String> errors = accountsService.createAccounts(chunk);
+            for (int i = 0; i < errors.size(); i++) {
+                if (errors.get(i) == null) {
+                    created++;
+                } else {
+                    fail(chunkLines[i], errors.get(i));
+                }
+            }
+            chunk.clear();
+        }
+
+        /**
+         * Counts a failed line, and reports it while under the limit.
+         *
+         * @param line the line number
+         * @param message why the line failed
+         */
+        private void fail(long line, String message) {
+            failed++;
+            if (failures.size() < maxReportedFailures) {
+                failures.add(new ImportFailure(line, message));
+            }
+        }
+    }
+
+    /**
+     * Reads lines into a reused buffer, cutting lines that do not fit it.
+     */
+    private static final class LineReader {
+
+        /** The reader. */
+        private final Reader reader;
+
+        /** The characters read ahead. */
+        private final char[] input = new char[1 << 16];
+
+        /** The position of the next character to read ahead. */
+        private int position;
+
+        /** The number of characters read ahead. */
+        private int limit;
+
+        /** The current line. */
+        private final char[] buffer = new char[MAX_LINE_LENGTH];
+
+        /** The length of the current line. */
+        private int length;
+
+        /** Whether the current line did not fit the buffer. */
+        private boolean tooLong;
+
+        /**
+         * Instantiates a new line reader.
+         *
+         * @param reader the reader
+         */
+        private LineReader(Reader reader) {
+            this.reader = reader;
+        }
+
+        /**
+         * Reads the next line, without its line terminator.
+         *
+         * @return false at the end of the input
+         * @throws IOException Signals that an I/O exception has occurred.
+         */
+        private boolean next() throws IOException {
+            length = 0;
+            tooLong = false;
+            boolean any = false;
+            while (true) {
+                if (position == limit) {
+                    limit = reader.read(input);
+                    position = 0;
+                    if (limit < 0) {
+                        limit = 0;
+                        return any;
+                    }
+                }
+                final char c = input[position++];
+                any = true;
+                if (c == '\n') {
+                    if (length > 0 && buffer[length - 1] == '\r') {
+                        length--;
+                    }
+                    return true;
+                }
+                if (length < buffer.length) {
+                    buffer[length++] = c;
+                } else {
+                    tooLong = true;
+                }
+            }
+        }
+
+        /**
+         * Tells whether the current line holds only whitespace.
+         *
+         * @return true, if blank
+         */
+        private boolean isBlank() {
+            for (int i = 0; i < length; i++) {
+                if (!Character.isWhitespace(buffer[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * A line that is not a valid account.
+     */
+    private static final class InvalidAccountException extends Exception {
+
+        /**
+         * Instantiates a new invalid account exception.
+         *
+         * @param message the message
+         */
+        private InvalidAccountException(String message) {
+            super(message, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.db.awmd.challenge.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Striped locks guarding account balances.
+ * <p>
+ * Every account id maps to one of a fixed number of lock stripes. A group of accounts is always
+ * locked in ascending stripe order, so two operations can never wait on each other in a cycle,
+ * while operations on accounts that fall into different stripes run fully in parallel.
+ */
+@Component
+public class AccountLocks {
+
+    /** The default number of stripes. */
+    public static final int DEFAULT_STRIPES = 1024;
+
+    /** The stripes. */
+    private final ReentrantLock[] stripes;
+
+    /** The mask used to map a hash onto a stripe. */
+    private final int mask;
+
+    /**
+     * Instantiates new account locks.
+     *
+     * @param stripes the requested number of stripes, rounded up to a power of two
+     */
+    @Autowired
+    public AccountLocks(@Value("${accounts.locks.stripes:" + DEFAULT_STRIPES + "}") int stripes) {
+        if (stripes < 1) {
+            throw new IllegalArgumentException("Number of lock stripes must be positive: " + stripes);
+        }
+        int size = Integer.highestOneBit(stripes);
+        if (size < stripes) {
+            size <<= 1;
+        }
+        this.stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            this.stripes[i] = new ReentrantLock();
+        }
+        this.mask = size - 1;
+    }
+
+    /**
+     * Locks the stripe of the given account.
+     *
+     * @param accountId the account id
+     * @return the guard releasing the lock when closed
+     */
+    public Guard lock(String accountId) {
+        return acquire(new int[] {stripeOf(accountId)});
+    }
+
+    /**
+     * Locks the stripes of the two given accounts.
+     *
+     * @param accountId the first account id
+     * @param otherAccountId the second account id
+     * @return the guard releasing the locks when closed
+     */
+    public Guard lock(String accountId, String otherAccountId) {
+        final int first = stripeOf(accountId);
+        final int second = stripeOf(otherAccountId);
+        final int[] held;
+        if (first == second) {
+            held = new int[] {first};
+        } else if (first < second) {
+            held = new int[] {first, second};
+        } else {
+            held = new int[] {second, first};
+        }
+        return acquire(held);
+    }
+
+    /**
+     * Locks the stripes of all the given accounts.
+     *
+     * @param accountIds the account ids, duplicates allowed
+     * @return the guard releasing the locks when closed
+     */
+    public Guard lockAll(Collection<String> accountIds) {
+        int[] indices = new int[accountIds.size()];
+        int count = 0;
+        for (String accountId : accountIds) {
+            indices[count++] = stripeOf(accountId);
+        }
+        Arrays.sort(indices);
+
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (distinct == 0 || indices[distinct - 1] != indices[i]) {
+                indices[distinct++] = indices[i];
+            }
+        }
+        return acquire(distinct == indices.length ? indices : Arrays.copyOf(indices, distinct));
+    }
+
+    /**
+     * Stripe of.
+     *
+     * @param accountId the account id
+     * @return the stripe index
+     */
+    int stripeOf(String accountId) {
+        final int hash = accountId.hashCode();
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    /**
+     * Acquires the given stripes, which must be sorted and distinct.
+     *
+     * @param held the stripe indices
+     * @return the guard
+     */
+    private Guard acquire(int[] held) {
+        int locked = 0;
+        try {
+            for (; locked < held.length; locked++) {
+                stripes[held[locked]].lock();
+            }
+        } catch (RuntimeException | Error e) {
+            release(held, locked);
+            throw e;
+        }
+        return new Guard(held);
+    }
+
+    /**
+     * Releases the first {@code count} stripes, in reverse acquisition order.
+     *
+     * @param held the stripe indices
+     * @param count the number of stripes to release
+     */
+    private void release(int[] held, int count) {
+        for (int i = count - 1; i >= 0; i--) {
+            stripes[held[i]].unlock();
+        }
+    }
+
+    /**
+     * Holds a set of acquired stripes until closed.
+     */
+    public final class Guard implements AutoCloseable {
+
+        /** The held stripes. */
+        private final int[] held;
+
+        /**
+         * Instantiates a new guard.
+         *
+         * @param held the held stripes
+         */
+        private Guard(int[] held) {
+            this.held = held;
+        }
+
+        /* (non-Javadoc)
+         * @see java.lang.AutoCloseable#close()
+         */
+        @Override
+        public void close() {
+            release(held, held.length);
+        }
+    }
+}
@@ -1,18 +1,37 @@
 package com.db.awmd.challenge.service;
 
 import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountSnapshot;
 import com.db.awmd.challenge.domain.AccountUpdate;
+import com.db.awmd.challenge.domain.Money;
+import com.db.awmd.challenge.domain.MultiLegTransfer;
+import com.db.awmd.challenge.domain.TransactionPage;
 import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.domain.TransferLeg;
+import com.db.awmd.challenge.domain.TransferResult;
+import com.db.awmd.challenge.domain.TransferStatus;
 import com.db.awmd.challenge.exception.AccountNotFoundException;
+import com.db.awmd.challenge.exception.DuplicateAccountIdException;
+import com.db.awmd.challenge.exception.JournalException;
 import com.db.awmd.challenge.exception.NotEnoughFundsException;
 import com.db.awmd.challenge.exception.TransferBetweenSameAccountException;
+import com.db.awmd.challenge.history.TransactionHistory;
+import com.db.awmd.challenge.journal.TransferJournal;
+import com.db.awmd.challenge.metrics.TransferMetrics;
+import com.db.awmd.challenge.metrics.TransferStage;
+import com.db.awmd.challenge.notification.BalancePublisher;
+import com.db.awmd.challenge.notification.NotificationDispatcher;
 import com.db.awmd.challenge.repository.AccountsRepository;
 import lombok.Getter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * The Class AccountsService.
@@ -28,39 +47,158 @@ public class AccountsService {
     @Getter
     private final AccountsRepository accountsRepository;
 
-    /** The notification service. */
+    /** The notification dispatcher. */
     
     /**
-     * Gets the notification service.
+     * Gets the notification dispatcher.
      *
-     * @return the notification service
+     * @return the notification dispatcher
      */
     @Getter
-    private final NotificationService notificationService;
+    private final NotificationDispatcher notificationDispatcher;
 
     /** The transfer validator. */
-    @Autowired
-    private TransferValidator transferValidator;
+    private final TransferValidator transferValidator;
+
+    /** The account locks. */
+    private final AccountLocks accountLocks;
+
+    /** The transfer journal. */
+    private final TransferJournal transferJournal;
+
+    /** The transfer metrics. */
+    private final TransferMetrics transferMetrics;
+
+    /** The engine single transfers are handed to, null to apply them on the calling thread. */
+    private final TransferEngine transferEngine;
+
+    /** The transaction history. */
+    private final TransactionHistory transactionHistory;
+
+    /** The publisher of balance changes. */
+    private final BalancePublisher balancePublisher;
+
+    /** Whether credits to hot accounts skip their locks, which journal snapshots rely on. */
+    private final boolean hotCreditsUnlocked;
+
+    /** Whether changes are journaled, so that failing to apply one after its append is fatal. */
+    private final boolean journaled;
+
+    /** Why the service stopped, null while it is running. */
+    private volatile Throwable haltCause;
 
     /**
      * Instantiates a new accounts service.
      *
      * @param accountsRepository the accounts repository
-     * @param notificationService the notification service
+     * @param notificationDispatcher the notification dispatcher
+     * @param transferValidator the transfer validator
+     * @param accountLocks the account locks
+     * @param transferJournal the transfer journal
+     * @param transferMetrics the transfer metrics
+     */
+    public AccountsService(AccountsRepository accountsRepository, NotificationDispatcher notificationDispatcher,
+                           TransferValidator transferValidator, AccountLocks accountLocks,
+                           TransferJournal transferJournal, TransferMetrics transferMetrics) {
+        this(accountsRepository, notificationDispatcher, transferValidator, accountLocks, transferJournal,
+                transferMetrics, Optional.empty());
+    }
+
+    /**
+     * Instantiates a new accounts service.
+     *
+     * @param accountsRepository the accounts repository
+     * @param notificationDispatcher the notification dispatcher
+     * @param transferValidator the transfer validator
+     * @param accountLocks the account locks
+     * @param transferJournal the transfer journal
+     * @param transferMetrics the transfer metrics
+     * @param transferEngine the engine single transfers are handed to, if any
+     */
+    public AccountsService(AccountsRepository accountsRepository, NotificationDispatcher notificationDispatcher,
+                           TransferValidator transferValidator, AccountLocks accountLocks,
+                           TransferJournal transferJournal, TransferMetrics transferMetrics,
+                           Optional<TransferEngine> transferEngine) {
+        this(accountsRepository, notificationDispatcher, transferValidator, accountLocks, transferJournal,
+                transferMetrics, transferEngine, TransactionHistory.DISABLED, BalancePublisher.DISABLED);
+    }
+
+    /**
+     * Instantiates a new accounts service.
+     *
+     * @param accountsRepository the accounts repository
+     * @param notificationDispatcher the notification dispatcher
+     * @param transferValidator the transfer validator
+     * @param accountLocks the account locks
+     * @param transferJournal the transfer journal
+     * @param transferMetrics the transfer metrics
+     * @param transferEngine the engine single transfers are handed to, if any
+     * @param transactionHistory the transaction history
+     * @param balancePublisher the publisher of balance changes
      */
     @Autowired
-    public AccountsService(AccountsRepository accountsRepository, NotificationService notificationService) {
+    public AccountsService(AccountsRepository accountsRepository, NotificationDispatcher notificationDispatcher,
+                           TransferValidator transferValidator, AccountLocks accountLocks,
+                           TransferJournal transferJournal, TransferMetrics transferMetrics,
+                           Optional<TransferEngine> transferEngine, TransactionHistory transactionHistory,
+                           BalancePublisher balancePublisher) {
         this.accountsRepository = accountsRepository;
-        this.notificationService = notificationService;
+        this.notificationDispatcher = notificationDispatcher;
+        this.transferValidator = transferValidator;
+        this.accountLocks = accountLocks;
+        this.transferJournal = transferJournal;
+        this.transferMetrics = transferMetrics;
+        this.transferEngine = transferEngine.orElse(null);
+        this.transactionHistory = transactionHistory;
+        this.balancePublisher = balancePublisher;
+        this.journaled = transferJournal != TransferJournal.DISABLED;
+        this.hotCreditsUnlocked = !journaled;
     }
 
     /**
-     * Creates the account.
+     * Creates the account, returning once its creation is journaled.
      *
      * @param account the account
      */
     public void createAccount(Account account) {
-        this.accountsRepository.createAccount(account);
+        checkRunning();
+        final long sequence;
+        try (AccountLocks.Guard ignored = accountLocks.lock(account.getAccountId())) {
+            sequence = applyCreation(account);
+        }
+        awaitDurable(sequence);
+    }
+
+    /**
+     * Creates accounts under one acquisition of their locks and one wait for the journal, returning
+     * once all the creations are journaled. An account whose id is taken is skipped, the others are
+     * still created.
+     *
+     * @param accounts the accounts
+     * @return for each account in the same order, null if created, otherwise why not
+     */
+    public List<String> createAccounts(List<Account> accounts) {
+        final List<String> accountIds = new ArrayList<>(accounts.size());
+        for (Account account : accounts) {
+            accountIds.add(account.getAccountId());
+        }
+
+        checkRunning();
+        final List<String> failures = new ArrayList<>(accounts.size());
+        long lastSequence = 0L;
+        try (AccountLocks.Guard ignored = accountLocks.lockAll(accountIds)) {
+            for (Account account : accounts) {
+                try {
+                    lastSequence = Math.max(lastSequence, applyCreation(account));
+                } catch (DuplicateAccountIdException e) {
+                    failures.add(e.getMessage());
+                    continue;
+                }
+                failures.add(null);
+            }
+        }
+        awaitDurable(lastSequence);
+        return failures;
     }
 
     /**
@@ -70,9 +208,60 @@ public class AccountsService {
      * @return the account
      */
     public Account getAccount(String accountId) {
+        checkRunning();
         return this.accountsRepository.getAccount(accountId);
     }
 
+    /**
+     * Gets a consistent, immutable view of the account, read without taking the account locks.
+     *
+     * @param accountId the account id
+     * @return the account snapshot, null if the account does not exist
+     */
+    public AccountSnapshot getAccountSnapshot(String accountId) {
+        checkRunning();
+        return this.accountsRepository.getAccountSnapshot(accountId);
+    }
+
+    /**
+     * Gets a page of the transactions of an account, newest first.
+     *
+     * @param accountId the account id
+     * @param cursor the cursor returned with the previous page, {@link Long#MAX_VALUE} for the latest
+     *        transactions
+     * @param limit the largest number of transactions to return
+     * @return the transaction page
+     * @throws AccountNotFoundException When the account does not exist
+     */
+    public TransactionPage getTransactions(String accountId, long cursor, int limit) throws AccountNotFoundException {
+        checkRunning();
+        if (this.accountsRepository.getAccount(accountId) == null) {
+            throw new AccountNotFoundException("Account " + accountId + " not found.");
+        }
+        return this.transactionHistory.page(accountId, cursor, limit);
+    }
+
+    /**
+     * Marks an account as hot, one that most transfers pay into. Credits to it are then kept apart
+     * from its balance so that concurrent credits do not queue up behind each other, and unless the
+     * journal is enabled they no longer take its lock either; debits still wait for the lock and are
+     * checked against the full balance. The mark lasts until the process stops.
+     *
+     * @param accountId the account id
+     * @return true, if the account is hot; false if the repository cannot make accounts hot
+     * @throws AccountNotFoundException When the account does not exist
+     */
+    public boolean markHot(String accountId) throws AccountNotFoundException {
+        checkRunning();
+        if (this.accountsRepository.markHot(accountId)) {
+            return true;
+        }
+        if (this.accountsRepository.getAccount(accountId) == null) {
+            throw new AccountNotFoundException("Account " + accountId + " not found.");
+        }
+        return false;
+    }
+
     /**
      * Makes a transfer between two accounts for the balance specified by the {@link Transfer} object.
      *
@@ -80,25 +269,506 @@ public class AccountsService {
      * @throws AccountNotFoundException When an account does not exist
      * @throws NotEnoughFundsException When there are not enough funds to complete the transfer
      * @throws TransferBetweenSameAccountException Transfer to self account is not permitted
+     * @see #tryTransfer(Transfer)
      */
     public void makeTransfer(Transfer transfer) throws AccountNotFoundException, NotEnoughFundsException, TransferBetweenSameAccountException {
+        tryTransfer(transfer).throwIfRejected();
+    }
+
+    /**
+     * Makes a transfer between two accounts, reporting a rejection as a result instead of throwing.
+     * <p>
+     * Validation, debit, credit and the journal append happen atomically while holding the locks of
+     * both accounts, or only that of the source account when paying into a hot account without the
+     * journal (see {@link #markHot(String)}). Once the locks are released the transfer waits for the
+     * journal, then notifies.
+     * The time of each of these stages and the outcome are recorded in the {@link TransferMetrics}.
+     * <p>
+     * With a {@link TransferEngine}, the transfer is handed to it instead and this waits for the result.
+     *
+     * @param transfer the transfer
+     * @return the transfer result
+     */
+    public TransferResult tryTransfer(Transfer transfer) {
+        checkRunning();
+        if (transferEngine != null) {
+            return join(transferEngine.submit(transfer));
+        }
+
+        final Account accountFrom;
+        final Account accountTo;
+        final long sequence;
+        final long started = transferMetrics.start();
+        long mark;
+
+        try (AccountLocks.Guard ignored = lockAccounts(transfer)) {
+            mark = transferMetrics.record(TransferStage.LOCK, started);
+            accountFrom = accountsRepository.getAccount(transfer.getAccountFromId());
+            accountTo = accountsRepository.getAccount(transfer.getAccountToId());
+            mark = transferMetrics.record(TransferStage.LOOKUP, mark);
+
+            final TransferResult result = transferValidator.evaluate(accountFrom, accountTo, transfer);
+            if (!result.isOk()) {
+                transferMetrics.recordOutcome(result.getStatus());
+                return result;
+            }
+            mark = transferMetrics.record(TransferStage.VALIDATION, mark);
+
+            sequence = applyTransfer(accountFrom, accountTo, transfer);
+            mark = transferMetrics.record(TransferStage.UPDATE, mark);
+        }
+
+        if (sequence >= 0){
+            awaitDurable(sequence);
+            mark = transferMetrics.record(TransferStage.DURABILITY, mark);
+            notifyAboutTransfer(accountFrom, accountTo, transfer);
+            transferMetrics.record(TransferStage.NOTIFICATION, mark);
+            transferMetrics.recordOutcome(TransferStatus.OK);
+        }
+        transferMetrics.record(TransferStage.TOTAL, started);
+        return TransferResult.OK;
+    }
+
+    /**
+     * Makes a transfer without waiting for the journal. The future completes with the result
+     * {@link #tryTransfer(Transfer)} would return, or exceptionally with what it would throw.
+     * <p>
+     * The transfer is validated and applied under the locks of both accounts on the calling thread,
+     * as by {@link #tryTransfer(Transfer)}; the notification and the completion of the future follow
+     * on a journal completion thread once the record is durable, so no thread waits for the disk and
+     * a slow notification does not hold up the journal writer. With a
+     * {@link TransferEngine}, the transfer is handed to it instead.
+     *
+     * @param transfer the transfer
+     * @return the future
+     */
+    public CompletableFuture<TransferResult> submitTransfer(Transfer transfer) {
+        checkRunning();
+        if (transferEngine != null) {
+            return transferEngine.submit(transfer);
+        }
+
+        final Account accountFrom;
+        final Account accountTo;
+        final long sequence;
+        final long started = transferMetrics.start();
+        try (AccountLocks.Guard ignored = lockAccounts(transfer)) {
+            accountFrom = accountsRepository.getAccount(transfer.getAccountFromId());
+            accountTo = accountsRepository.getAccount(transfer.getAccountToId());
+            final TransferResult result = transferValidator.evaluate(accountFrom, accountTo, transfer);
+            if (!result.isOk()) {
+                transferMetrics.recordOutcome(result.getStatus());
+                return CompletableFuture.completedFuture(result);
+            }
+            sequence = applyTransfer(accountFrom, accountTo, transfer);
+        } catch (RuntimeException e) {
+            final CompletableFuture<TransferResult> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+
+        if (sequence < 0) {
+            return CompletableFuture.completedFuture(TransferResult.OK);
+        }
+        return whenDurable(sequence).thenApply(durable -> {
+            notifyAboutTransfer(accountFrom, accountTo, transfer);
+            transferMetrics.recordOutcome(TransferStatus.OK);
+            transferMetrics.record(TransferStage.TOTAL, started);
+            return TransferResult.OK;
+        });
+    }
+
+    /**
+     * Makes a batch of transfers in one pass, reporting a status per transfer instead of throwing.
+     * <p>
+     * The locks of every account touched by the batch are acquired once, in stripe order, and the
+     * transfers are then validated and applied in the order given, so each transfer sees the
+     * balances left by the ones before it. Once the locks are released the batch waits for the
+     * journal, then notifies.
+     * <p>
+     * With a {@link TransferEngine}, the transfers are handed to it one after the other instead, each
+     * once the one before it has completed.
+     *
+     * @param transfers the transfers
+     * @return the status of each transfer, in the same order
+     */
+    public List<TransferStatus> makeTransfers(List<Transfer> transfers) {
+        return join(submitTransfers(transfers));
+    }
 
-        final Account accountFrom = accountsRepository.getAccount(transfer.getAccountFromId());
-        final Account accountTo = accountsRepository.getAccount(transfer.getAccountToId());
-        final BigDecimal amount = transfer.getAmount();
+    /**
+     * Makes a batch of transfers as {@link #makeTransfers(List)} does, without waiting for the
+     * journal. The future completes with the status of each transfer on a journal completion thread
+     * once the records are durable.
+     *
+     * @param transfers the transfers
+     * @return the future of the status of each transfer, in the same order
+     */
+    public CompletableFuture<List<TransferStatus>> submitTransfers(List<Transfer> transfers) {
+        checkRunning();
+        if (transferEngine != null) {
+            CompletableFuture<List<TransferStatus>> chain =
+                    CompletableFuture.completedFuture(new ArrayList<>(transfers.size()));
+            for (Transfer transfer : transfers) {
+                chain = chain.thenCompose(statuses -> transferEngine.submit(transfer).thenApply(result -> {
+                    statuses.add(result.getStatus());
+                    return statuses;
+                }));
+            }
+            return chain;
+        }
+
+        final List<String> accountIds = new ArrayList<>(transfers.size() * 2);
+        for (Transfer transfer : transfers) {
+            accountIds.add(transfer.getAccountFromId());
+            accountIds.add(transfer.getAccountToId());
+        }
 
-        transferValidator.validate(accountFrom, accountTo, transfer);
+        final List<TransferStatus> statuses = new ArrayList<>(transfers.size());
+        final List<Account[]> completed = new ArrayList<>(transfers.size());
+        long lastSequence = 0L;
 
-        //ideally atomic operation in production
-        boolean successful = accountsRepository.updateAccountsBatch(Arrays.asList(
-                new AccountUpdate(accountFrom.getAccountId(), amount.negate()),
-                new AccountUpdate(accountTo.getAccountId(), amount)
-                ));
+        try (AccountLocks.Guard ignored = accountLocks.lockAll(accountIds)) {
+            for (Transfer transfer : transfers) {
+                final Account accountFrom = accountsRepository.getAccount(transfer.getAccountFromId());
+                final Account accountTo = accountsRepository.getAccount(transfer.getAccountToId());
 
-        if (successful){
-            notificationService.notifyAboutTransfer(accountFrom, "The transfer to the account with ID " + accountTo.getAccountId() + " is now complete for the amount of " + transfer.getAmount() + ".");
-            notificationService.notifyAboutTransfer(accountTo, "The account with ID + " + accountFrom.getAccountId() + " has transferred " + transfer.getAmount() + " into your account.");
+                TransferStatus status = transferValidator.check(accountFrom, accountTo, transfer);
+                if (status == TransferStatus.OK) {
+                    lastSequence = Math.max(lastSequence, applyTransfer(accountFrom, accountTo, transfer));
+                    completed.add(new Account[] {accountFrom, accountTo});
+                } else {
+                    completed.add(null);
+                }
+                transferMetrics.recordOutcome(status);
+                statuses.add(status);
+            }
+        } catch (RuntimeException e) {
+            final CompletableFuture<List<TransferStatus>> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+
+        return whenDurable(lastSequence).thenApply(durable -> {
+            for (int i = 0; i < transfers.size(); i++) {
+                final Account[] accounts = completed.get(i);
+                if (accounts != null) {
+                    notifyAboutTransfer(accounts[0], accounts[1], transfers.get(i));
+                }
+            }
+            return statuses;
+        });
+    }
+
+    /**
+     * Tells whether {@link #tryMultiLegTransfer(MultiLegTransfer)} can be used, which it cannot with a
+     * {@link TransferEngine} that applies transfers without holding the account locks.
+     *
+     * @return true, if multi-leg transfers are supported
+     */
+    public boolean supportsMultiLegTransfers() {
+        return transferEngine == null || transferEngine.holdsAccountLocks();
+    }
+
+    /**
+     * Makes a transfer between any number of accounts, reporting a rejection as a result instead of
+     * throwing.
+     * <p>
+     * The locks of every account of the transfer are acquired once, in stripe order. Every account
+     * is then looked up, every debit checked against its balance and every credit against overflow
+     * before anything is changed, so either all the legs are applied, in one repository batch and
+     * one journal record, or none is. Once the locks are released the transfer waits for the
+     * journal, then notifies the owners as if each debit had been paid out to the credits in turn.
+     *
+     * @param transfer the transfer
+     * @return the transfer result, about the first account found missing or short of funds if rejected
+     * @throws IllegalArgumentException if the transfer is malformed (see {@link MultiLegTransfer#findProblem()})
+     * @throws UnsupportedOperationException if multi-leg transfers are not supported
+     * @see #supportsMultiLegTransfers()
+     */
+    public TransferResult tryMultiLegTransfer(MultiLegTransfer transfer) {
+        return join(submitMultiLegTransfer(transfer));
+    }
+
+    /**
+     * Makes a transfer between any number of accounts as {@link #tryMultiLegTransfer(MultiLegTransfer)}
+     * does, without waiting for the journal. The future completes with the result on a journal
+     * completion thread once the record is durable.
+     *
+     * @param transfer the transfer
+     * @return the future
+     * @throws IllegalArgumentException if the transfer is malformed (see {@link MultiLegTransfer#findProblem()})
+     * @throws UnsupportedOperationException if multi-leg transfers are not supported
+     */
+    public CompletableFuture<TransferResult> submitMultiLegTransfer(MultiLegTransfer transfer) {
+        checkRunning();
+        if (!supportsMultiLegTransfers()) {
+            throw new UnsupportedOperationException("Multi-leg transfers need the account locks, which the transfer engine does not take.");
+        }
+        final String problem = transfer.findProblem();
+        if (problem != null) {
+            throw new IllegalArgumentException(problem);
+        }
+
+        final List<TransferLeg> legs = transfer.getLegs();
+        final List<String> accountIds = new ArrayList<>(legs.size());
+        for (TransferLeg leg : legs) {
+            accountIds.add(leg.getAccountId());
+        }
+
+        final Account[] accounts = new Account[legs.size()];
+        final long sequence;
+        final long started = transferMetrics.start();
+        try (AccountLocks.Guard ignored = accountLocks.lockAll(accountIds)) {
+            for (int i = 0; i < accounts.length; i++) {
+                accounts[i] = accountsRepository.getAccount(accountIds.get(i));
+                if (accounts[i] == null) {
+                    transferMetrics.recordOutcome(TransferStatus.NOT_FOUND);
+                    return CompletableFuture.completedFuture(TransferResult.notFound(accountIds.get(i)));
+                }
+            }
+
+            final List<AccountUpdate> accountUpdates = new ArrayList<>(legs.size());
+            for (int i = 0; i < accounts.length; i++) {
+                final long balanceMinor = accounts[i].getBalanceMinor();
+                final long amountMinor = legs.get(i).getAmountMinor();
+                final long updatedMinor = Money.add(balanceMinor, amountMinor);
+                if (amountMinor < 0L && updatedMinor < 0L) {
+                    transferMetrics.recordOutcome(TransferStatus.INSUFFICIENT_FUNDS);
+                    return CompletableFuture.completedFuture(TransferResult.insufficientFunds(accountIds.get(i), balanceMinor));
+                }
+                accountUpdates.add(new AccountUpdate(accountIds.get(i), amountMinor));
+            }
+            sequence = applyUpdates(accountUpdates);
+        } catch (RuntimeException e) {
+            final CompletableFuture<TransferResult> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+
+        if (sequence < 0) {
+            return CompletableFuture.completedFuture(TransferResult.OK);
+        }
+        return whenDurable(sequence).thenApply(durable -> {
+            notifyAboutLegs(accounts, legs);
+            transferMetrics.recordOutcome(TransferStatus.OK);
+            transferMetrics.record(TransferStage.TOTAL, started);
+            return TransferResult.OK;
+        });
+    }
+
+    /**
+     * Locks the accounts of a transfer: both, or only the source account if the transfer is a
+     * credit to a hot account that may skip its lock.
+     *
+     * @param transfer the transfer
+     * @return the guard releasing the locks when closed
+     */
+    private AccountLocks.Guard lockAccounts(final Transfer transfer) {
+        if (hotCreditsUnlocked && accountsRepository.isHot(transfer.getAccountToId())) {
+            return accountLocks.lock(transfer.getAccountFromId());
+        }
+        return accountLocks.lock(transfer.getAccountFromId(), transfer.getAccountToId());
+    }
+
+    /**
+     * Appends the creation of an account to the journal, then adds the account to the repository.
+     * Must be called holding the lock of the account.
+     *
+     * @param account the account
+     * @return the journal sequence number of the creation
+     * @throws DuplicateAccountIdException if the account id is taken, in which case nothing is appended
+     */
+    private long applyCreation(final Account account) throws DuplicateAccountIdException {
+        if (accountsRepository.getAccount(account.getAccountId()) != null) {
+            throw new DuplicateAccountIdException("Account id " + account.getAccountId() + " already exists!");
+        }
+        final long sequence = transferJournal.appendAccount(account);
+        try {
+            accountsRepository.createAccount(account);
+        } catch (RuntimeException e) {
+            throw journaled ? halt(e) : e;
+        }
+        return sequence;
+    }
+
+    /**
+     * Appends a validated transfer to the journal and applies it to the repository. The credit is
+     * checked against overflow first, so that nothing is appended that cannot be applied, and goes
+     * first in the batch: failing on it still leaves both balances untouched.
+     *
+     * @param accountFrom the account from
+     * @param accountTo the account to
+     * @param transfer the transfer
+     * @return the journal sequence number of the transfer, or -1 if it was not applied
+     */
+    private long applyTransfer(final Account accountFrom, final Account accountTo, final Transfer transfer) {
+        final long amountMinor = transfer.getAmountMinor();
+        Money.add(accountTo.getBalanceMinor(), amountMinor);
+        final List<AccountUpdate> accountUpdates = Arrays.asList(
+                new AccountUpdate(accountTo.getAccountId(), amountMinor),
+                new AccountUpdate(accountFrom.getAccountId(), Money.negate(amountMinor))
+                );
+        return applyUpdates(accountUpdates);
+    }
+
+    /**
+     * Appends validated updates to the journal as one record, then applies them to the repository in
+     * one batch, records and publishes them. If the append fails nothing is changed; once it has
+     * succeeded the updates will be replayed after a restart, so failing to apply them halts the
+     * service (see {@link #halt(Throwable)}).
+     *
+     * @param accountUpdates the account updates
+     * @return the journal sequence number of the updates, or -1 if they were not applied
+     */
+    private long applyUpdates(final List<AccountUpdate> accountUpdates) {
+        final long sequence = transferJournal.appendUpdates(accountUpdates);
+        try {
+            if (!accountsRepository.updateAccountsBatch(accountUpdates)) {
+                if (!journaled) {
+                    return -1L;
+                }
+                throw new IllegalStateException("Journaled updates " + accountUpdates + " could not be applied.");
+            }
+        } catch (RuntimeException e) {
+            throw journaled ? halt(e) : e;
+        }
+        try {
+            transactionHistory.record(accountUpdates);
+            balancePublisher.publish(accountUpdates);
+        } catch (RuntimeException e) {
+            throw halt(e);
+        }
+        return sequence;
+    }
+
+    /**
+     * Waits until a journal record is durable, halting the service if it cannot be made so.
+     *
+     * @param sequence the sequence number
+     * @throws JournalException if the journal failed or the wait was interrupted
+     */
+    private void awaitDurable(final long sequence) throws JournalException {
+        try {
+            transferJournal.awaitDurable(sequence);
+        } catch (JournalException e) {
+            throw halt(e);
+        }
+    }
+
+    /**
+     * Tells when a journal record is durable, halting the service if it cannot be made so.
+     *
+     * @param sequence the sequence number
+     * @return the future
+     */
+    private CompletableFuture<Void> whenDurable(final long sequence) {
+        return transferJournal.whenDurable(sequence).whenComplete((durable, failure) -> {
+            if (failure != null) {
+                halt(failure);
+            }
+        });
+    }
+
+    /**
+     * Stops the service from accepting anything more. Called when changes already applied may not
+     * be durable, or changes already journaled could not be applied: the balances in memory can no
+     * longer be trusted to match the journal, so they are no longer served, and a restart replays
+     * the journal instead.
+     *
+     * @param cause the cause
+     * @return the cause if it is unchecked, otherwise a journal exception wrapping it, to be thrown
+     */
+    private RuntimeException halt(final Throwable cause) {
+        if (haltCause == null) {
+            haltCause = cause;
+        }
+        return cause instanceof RuntimeException ? (RuntimeException) cause
+                : new JournalException("The accounts service stopped.", cause);
+    }
+
+    /**
+     * Checks that the service has not been halted.
+     *
+     * @throws JournalException if it has
+     */
+    private void checkRunning() throws JournalException {
+        final Throwable cause = haltCause;
+        if (cause != null) {
+            throw new JournalException("The accounts service stopped after a journal failure.", cause);
+        }
+    }
+
+    /**
+     * Waits for a future, rethrowing what it failed with.
+     *
+     * @param <T> the type of the result
+     * @param future the future
+     * @return the result
+     */
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+    }
+
+    /**
+     * Notifies the owners of both accounts about a completed transfer.
+     *
+     * @param accountFrom the account from
+     * @param accountTo the account to
+     * @param transfer the transfer
+     */
+    private void notifyAboutTransfer(final Account accountFrom, final Account accountTo, final Transfer transfer) {
+        notificationDispatcher.notifyAboutTransfer(accountFrom, accountTo, transfer);
+    }
+
+    /**
+     * Notifies the owners of the accounts of a completed multi-leg transfer, splitting it into the
+     * pairwise transfers that pay each debit out to the credits in the order of the legs.
+     *
+     * @param accounts the accounts, in the order of the legs
+     * @param legs the legs
+     */
+    private void notifyAboutLegs(final Account[] accounts, final List<TransferLeg> legs) {
+        int debit = nextLeg(legs, -1, true);
+        int credit = nextLeg(legs, -1, false);
+        long debitLeft = debit < 0 ? 0L : -legs.get(debit).getAmountMinor();
+        long creditLeft = credit < 0 ? 0L : legs.get(credit).getAmountMinor();
+        while (debit >= 0 && credit >= 0) {
+            final long amountMinor = Math.min(debitLeft, creditLeft);
+            notifyAboutTransfer(accounts[debit], accounts[credit],
+                    new Transfer(accounts[debit].getAccountId(), accounts[credit].getAccountId(), amountMinor));
+            debitLeft -= amountMinor;
+            creditLeft -= amountMinor;
+            if (debitLeft == 0L) {
+                debit = nextLeg(legs, debit, true);
+                debitLeft = debit < 0 ? 0L : -legs.get(debit).getAmountMinor();
+            }
+            if (creditLeft == 0L) {
+                credit = nextLeg(legs, credit, false);
+                creditLeft = credit < 0 ? 0L : legs.get(credit).getAmountMinor();
+            }
+        }
+    }
+
+    /**
+     * Finds the next debit or credit leg.
+     *
+     * @param legs the legs
+     * @param after the index to search after, -1 to search from the start
+     * @param debit whether to look for a debit rather than a credit
+     * @return the index of the leg, -1 if there is none
+     */
+    private static int nextLeg(final List<TransferLeg> legs, final int after, final boolean debit) {
+        for (int i = after + 1; i < legs.size(); i++) {
+            if (legs.get(i).isDebit() == debit) {
+                return i;
+            }
         }
+        return -1;
     }
 
 }
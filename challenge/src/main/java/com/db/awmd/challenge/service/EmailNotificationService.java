@@ -1,6 +1,7 @@
 package com.db.awmd.challenge.service;
 
 import com.db.awmd.challenge.domain.Account;
+import java.util.List;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 import org.springframework.stereotype.Service;
@@ -20,4 +21,15 @@ public class EmailNotificationService implements NotificationService {
       .info("Sending notification to owner of {}: {}", account.getAccountId(), transferDescription);
   }
 
+  /* (non-Javadoc)
+   * @see com.db.awmd.challenge.service.NotificationService#notifyAboutTransfers(com.db.awmd.challenge.domain.Account, java.util.List)
+   */
+  @Override
+  public void notifyAboutTransfers(Account account, List<String> transferDescriptions) {
+    //ONE EMAIL OR SMS FOR ALL OF THE TRANSFERS
+    log
+      .info("Sending {} notifications to owner of {}: {}", transferDescriptions.size(), account.getAccountId(),
+        String.join(" ", transferDescriptions));
+  }
+
 }
@@ -0,0 +1,470 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountUpdate;
+import com.db.awmd.challenge.domain.Money;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.domain.TransferResult;
+import com.db.awmd.challenge.domain.TransferStatus;
+import com.db.awmd.challenge.exception.JournalException;
+import com.db.awmd.challenge.history.TransactionHistory;
+import com.db.awmd.challenge.journal.TransferJournal;
+import com.db.awmd.challenge.metrics.TransferMetrics;
+import com.db.awmd.challenge.metrics.TransferStage;
+import com.db.awmd.challenge.notification.BalancePublisher;
+import com.db.awmd.challenge.notification.NotificationDispatcher;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PreDestroy;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Applies transfers in micro-batches: a single thread collects the transfers submitted within a short
+ * window, or until a batch is full, and applies each batch as a whole.
+ * <p>
+ * The thread takes the stripe locks of every account of the batch at once, then validates the
+ * transfers in the order they arrived against running balances, so that each one sees the transfers
+ * accepted before it. The accepted transfers are netted into one update per account, appended as a
+ * single journal record, then applied with a single
+ * {@link AccountsRepository#updateAccountsBatch(List) repository batch}, and the journal is waited
+ * for once per batch. Every transfer still gets its own result, its own movements in the history and
+ * its own notifications.
+ * <p>
+ * Once its record is appended a batch is committed: the journal replays it after a restart. If
+ * applying, recording or publishing it then fails, or the journal cannot make it durable, the
+ * balances in memory no longer match the journal, so the engine stops and fails every later batch.
+ * <p>
+ * A transfer thus waits for up to the window before it is applied, in exchange for far less
+ * repository and journal work when many transfers meet on the same accounts. This engine replaces
+ * the locking path of {@link AccountsService#makeTransfer(Transfer)} when
+ * {@code accounts.engine.type=netting}.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "accounts.engine.type", havingValue = "netting")
+public class NettingTransferEngine implements TransferEngine, Closeable {
+
+    /** How long the batching thread waits for a first transfer before checking whether it is closed. */
+    private static final long IDLE_MILLIS = 100L;
+
+    /** The accounts repository. */
+    private final AccountsRepository accountsRepository;
+
+    /** The notification dispatcher. */
+    private final NotificationDispatcher notificationDispatcher;
+
+    /** The transfer validator. */
+    private final TransferValidator transferValidator;
+
+    /** The account locks. */
+    private final AccountLocks accountLocks;
+
+    /** The transfer journal. */
+    private final TransferJournal transferJournal;
+
+    /** The transfer metrics. */
+    private final TransferMetrics transferMetrics;
+
+    /** The transaction history. */
+    private final TransactionHistory transactionHistory;
+
+    /** The publisher of balance changes. */
+    private final BalancePublisher balancePublisher;
+
+    /** How long a batch stays open after its first transfer, in nanoseconds. */
+    private final long windowNanos;
+
+    /** The most transfers in a batch. */
+    private final int maxBatch;
+
+    /** The transfers submitted and not yet taken into a batch. */
+    private final BlockingQueue<Pending> queue;
+
+    /** The number of batches applied. */
+    private final LongAdder batches = new LongAdder();
+
+    /** The batching thread. */
+    private final Thread thread;
+
+    /** Whether the engine is closed. */
+    private volatile boolean closed;
+
+    /** Why the engine stopped applying batches, null while it is running. */
+    private volatile RuntimeException haltCause;
+
+    /**
+     * Instantiates a new netting transfer engine and starts its thread.
+     *
+     * @param accountsRepository the accounts repository
+     * @param notificationDispatcher the notification dispatcher
+     * @param transferValidator the transfer validator
+     * @param accountLocks the account locks
+     * @param transferJournal the transfer journal
+     * @param transferMetrics the transfer metrics
+     * @param windowMicros how long a batch stays open after its first transfer, in microseconds
+     * @param maxBatch the most transfers in a batch
+     * @param queueCapacity the most transfers waiting for a batch, beyond which callers wait
+     */
+    public NettingTransferEngine(AccountsRepository accountsRepository, NotificationDispatcher notificationDispatcher,
+                                 TransferValidator transferValidator, AccountLocks accountLocks,
+                                 TransferJournal transferJournal, TransferMetrics transferMetrics,
+                                 long windowMicros, int maxBatch, int queueCapacity) {
+        this(accountsRepository, notificationDispatcher, transferValidator, accountLocks, transferJournal,
+                transferMetrics, TransactionHistory.DISABLED, BalancePublisher.DISABLED, windowMicros, maxBatch,
+                queueCapacity);
+    }
+
+    /**
+     * Instantiates a new netting transfer engine and starts its thread.
+     *
+     * @param accountsRepository the accounts repository
+     * @param notificationDispatcher the notification dispatcher
+     * @param transferValidator the transfer validator
+     * @param accountLocks the account locks
+     * @param transferJournal the transfer journal
+     * @param transferMetrics the transfer metrics
+     * @param transactionHistory the transaction history
+     * @param balancePublisher the publisher of balance changes
+     * @param windowMicros how long a batch stays open after its first transfer, in microseconds
+     * @param maxBatch the most transfers in a batch
+     * @param queueCapacity the most transfers waiting for a batch, beyond which callers wait
+     */
+    @Autowired
+    public NettingTransferEngine(AccountsRepository accountsRepository, NotificationDispatcher notificationDispatcher,
+                                 TransferValidator transferValidator, AccountLocks accountLocks,
+                                 TransferJournal transferJournal, TransferMetrics transferMetrics,
+                                 TransactionHistory transactionHistory, BalancePublisher balancePublisher,
+                                 @Value("${accounts.engine.netting.window-micros:500}") long windowMicros,
+                                 @Value("${accounts.engine.netting.max-batch:1024}") int maxBatch,
+                                 @Value("${accounts.engine.netting.queue-capacity:65536}") int queueCapacity) {
+        if (windowMicros < 0) {
+            throw new IllegalArgumentException("Netting window must not be negative: " + windowMicros);
+        }
+        if (maxBatch < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("Netting batch size and queue capacity must be positive: "
+                    + maxBatch + ", " + queueCapacity);
+        }
+        this.accountsRepository = accountsRepository;
+        this.notificationDispatcher = notificationDispatcher;
+        this.transferValidator = transferValidator;
+        this.accountLocks = accountLocks;
+        this.transferJournal = transferJournal;
+        this.transferMetrics = transferMetrics;
+        this.transactionHistory = transactionHistory;
+        this.balancePublisher = balancePublisher;
+        this.windowNanos = TimeUnit.MICROSECONDS.toNanos(windowMicros);
+        this.maxBatch = maxBatch;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.thread = new Thread(this::run, "transfer-netting");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /* (non-Javadoc)
+     * @see com.db.awmd.challenge.service.TransferEngine#submit(com.db.awmd.challenge.domain.Transfer)
+     */
+    @Override
+    public CompletableFuture<TransferResult> submit(Transfer transfer) {
+        if (closed) {
+            throw new IllegalStateException("The transfer engine is closed.");
+        }
+        final Pending pending = new Pending(transfer, transferMetrics.start());
+        try {
+            queue.put(pending);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while submitting a transfer.", e);
+        }
+        // the batching thread may have drained the queue for the last time in between
+        if (closed && queue.remove(pending)) {
+            throw new IllegalStateException("The transfer engine is closed.");
+        }
+        return pending.future;
+    }
+
+    /**
+     * Refuses further transfers, then waits for the submitted ones to complete.
+     */
+    @PreDestroy
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Gets the number of batches applied so far.
+     *
+     * @return the number of batches
+     */
+    public long getBatches() {
+        return batches.sum();
+    }
+
+    /**
+     * Collects and applies batches until closed and drained, on the batching thread.
+     */
+    private void run() {
+        final List<Pending> batch = new ArrayList<>();
+        try {
+            while (!closed || !queue.isEmpty()) {
+                final Pending first = queue.poll(IDLE_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                final long deadline = System.nanoTime() + windowNanos;
+                while (batch.size() < maxBatch) {
+                    if (queue.drainTo(batch, maxBatch - batch.size()) > 0) {
+                        continue;
+                    }
+                    final long remaining = deadline - System.nanoTime();
+                    final Pending next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                applyBatch(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Netting thread interrupted, failing {} waiting transfers", queue.size() + batch.size());
+            queue.drainTo(batch);
+            final IllegalStateException failure = new IllegalStateException("The transfer engine was interrupted.");
+            for (Pending pending : batch) {
+                pending.future.completeExceptionally(failure);
+            }
+        }
+    }
+
+    /**
+     * Validates, nets and applies a batch of transfers, then notifies about the accepted ones and
+     * completes the futures.
+     *
+     * @param batch the batch, in arrival order
+     */
+    private void applyBatch(List<Pending> batch) {
+        if (haltCause != null) {
+            final JournalException failure =
+                    new JournalException("The transfer engine stopped after a journal failure.", haltCause);
+            for (Pending pending : batch) {
+                pending.failure = failure;
+                complete(pending);
+            }
+            return;
+        }
+
+        final Set<String> accountIds = new LinkedHashSet<>();
+        for (Pending pending : batch) {
+            accountIds.add(pending.transfer.getAccountFromId());
+            accountIds.add(pending.transfer.getAccountToId());
+        }
+
+        long journalSequence = -1L;
+        try (AccountLocks.Guard ignored = accountLocks.lockAll(accountIds)) {
+            final Map<String, Account> initial = new LinkedHashMap<>();
+            final Map<String, Account> running = new LinkedHashMap<>();
+            for (String accountId : accountIds) {
+                final Account account = accountsRepository.getAccount(accountId);
+                if (account != null) {
+                    final long balanceMinor = account.getBalanceMinor();
+                    initial.put(accountId, new Account(accountId, balanceMinor));
+                    running.put(accountId, new Account(accountId, balanceMinor));
+                }
+            }
+
+            final List<AccountUpdate> movements = new ArrayList<>();
+            for (Pending pending : batch) {
+                evaluate(pending, running, movements);
+            }
+
+            final List<AccountUpdate> netUpdates = new ArrayList<>();
+            for (Account account : running.values()) {
+                // both balances are within [0, Long.MAX_VALUE], so their difference cannot overflow
+                final long delta = account.getBalanceMinor() - initial.get(account.getAccountId()).getBalanceMinor();
+                if (delta != 0L) {
+                    netUpdates.add(new AccountUpdate(account.getAccountId(), delta));
+                }
+            }
+            if (!netUpdates.isEmpty()) {
+                journalSequence = transferJournal.appendUpdates(netUpdates);
+                commit(netUpdates, movements);
+            } else if (!movements.isEmpty()) {
+                transactionHistory.record(movements);
+            }
+            batches.increment();
+        } catch (RuntimeException e) {
+            log.error("Cannot apply a batch of {} transfers", batch.size(), e);
+            for (Pending pending : batch) {
+                if (pending.failure == null && (pending.result == null || pending.result.isOk())) {
+                    pending.failure = e;
+                }
+            }
+        }
+
+        if (journalSequence >= 0) {
+            try {
+                transferJournal.awaitDurable(journalSequence);
+            } catch (RuntimeException e) {
+                log.error("Journal failed, failing a batch of {} transfers and stopping", batch.size(), e);
+                haltCause = e;
+                failAccepted(batch, e);
+            }
+        }
+        for (Pending pending : batch) {
+            complete(pending);
+        }
+    }
+
+    /**
+     * Applies the net updates of a journaled batch to the repository, records its movements and
+     * publishes the updates. Any failure stops the engine: the batch is in the journal, so it is not
+     * failed, but the balances in memory may be left short of it.
+     *
+     * @param netUpdates the net update of each account
+     * @param movements the movements of the accepted transfers
+     */
+    private void commit(List<AccountUpdate> netUpdates, List<AccountUpdate> movements) {
+        try {
+            if (!accountsRepository.updateAccountsBatch(netUpdates)) {
+                throw new IllegalStateException("An account of the batch disappeared while it was applied.");
+            }
+            transactionHistory.record(movements);
+            balancePublisher.publish(netUpdates);
+        } catch (RuntimeException e) {
+            log.error("Cannot apply a journaled batch, stopping", e);
+            haltCause = e;
+        }
+    }
+
+    /**
+     * Validates a transfer against the running balances and, if it is accepted, applies it to them.
+     *
+     * @param pending the transfer
+     * @param running the running balances of the accounts found, by id
+     * @param movements the movements of the accepted transfers, to add the ones of this transfer to
+     */
+    private void evaluate(Pending pending, Map<String, Account> running, List<AccountUpdate> movements) {
+        final Transfer transfer = pending.transfer;
+        final Account accountFrom = running.get(transfer.getAccountFromId());
+        final Account accountTo = running.get(transfer.getAccountToId());
+        final TransferResult result = transferValidator.evaluate(accountFrom, accountTo, transfer);
+        if (!result.isOk()) {
+            transferMetrics.recordOutcome(result.getStatus());
+            pending.result = result;
+            return;
+        }
+
+        try {
+            final long balanceFromMinor = Money.subtract(accountFrom.getBalanceMinor(), transfer.getAmountMinor());
+            final long balanceToMinor = Money.add(accountTo.getBalanceMinor(), transfer.getAmountMinor());
+            accountFrom.setBalanceMinor(balanceFromMinor);
+            accountTo.setBalanceMinor(balanceToMinor);
+            pending.accountFrom = new Account(accountFrom.getAccountId(), balanceFromMinor);
+            pending.accountTo = new Account(accountTo.getAccountId(), balanceToMinor);
+            pending.result = TransferResult.OK;
+            movements.add(new AccountUpdate(accountTo.getAccountId(), transfer.getAmountMinor()));
+            movements.add(new AccountUpdate(accountFrom.getAccountId(), Money.negate(transfer.getAmountMinor())));
+        } catch (ArithmeticException e) {
+            pending.failure = e;
+        }
+    }
+
+    /**
+     * Fails the accepted transfers of a batch.
+     *
+     * @param batch the batch
+     * @param failure why they failed
+     */
+    private static void failAccepted(List<Pending> batch, RuntimeException failure) {
+        for (Pending pending : batch) {
+            if (pending.accountFrom != null && pending.failure == null) {
+                pending.failure = failure;
+            }
+        }
+    }
+
+    /**
+     * Notifies about a transfer if it was applied, and completes its future.
+     *
+     * @param pending the transfer
+     */
+    private void complete(Pending pending) {
+        RuntimeException failure = pending.failure;
+        if (failure == null && pending.accountFrom != null) {
+            try {
+                notificationDispatcher.notifyAboutTransfer(pending.accountFrom, pending.accountTo, pending.transfer);
+                transferMetrics.recordOutcome(TransferStatus.OK);
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+        }
+        transferMetrics.record(TransferStage.TOTAL, pending.started);
+        if (failure == null) {
+            pending.future.complete(pending.result);
+        } else {
+            pending.future.completeExceptionally(failure);
+        }
+    }
+
+    /**
+     * A transfer waiting for its batch, and what the batch learns about it.
+     */
+    private static final class Pending {
+
+        /** The transfer. */
+        private final Transfer transfer;
+
+        /** The mark taken on submission. */
+        private final long started;
+
+        /** The future of the caller. */
+        private final CompletableFuture<TransferResult> future = new CompletableFuture<>();
+
+        /** The account from, with its balance after this transfer, once accepted. */
+        private Account accountFrom;
+
+        /** The account to, with its balance after this transfer, once accepted. */
+        private Account accountTo;
+
+        /** The result, once validated. */
+        private TransferResult result;
+
+        /** Why the transfer failed, null unless it did. */
+        private RuntimeException failure;
+
+        /**
+         * Instantiates a new pending transfer.
+         *
+         * @param transfer the transfer
+         * @param started the mark taken on submission
+         */
+        private Pending(Transfer transfer, long started) {
+            this.transfer = transfer;
+            this.started = started;
+        }
+    }
+}
@@ -2,6 +2,8 @@ package com.db.awmd.challenge.service;
 
 import com.db.awmd.challenge.domain.Account;
 
+import java.util.List;
+
 /**
  * The Interface NotificationService.
  */
@@ -14,4 +16,17 @@ public interface NotificationService {
    * @param transferDescription the transfer description
    */
   void notifyAboutTransfer(Account account, String transferDescription);
+
+  /**
+   * Notify about several transfers of the same account at once. Backends able to send them as one
+   * message should override this.
+   *
+   * @param account the account
+   * @param transferDescriptions the transfer descriptions, oldest first
+   */
+  default void notifyAboutTransfers(Account account, List<String> transferDescriptions) {
+    for (String transferDescription : transferDescriptions) {
+      notifyAboutTransfer(account, transferDescription);
+    }
+  }
 }
@@ -0,0 +1,195 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountSnapshot;
+import com.db.awmd.challenge.domain.AccountUpdate;
+import com.db.awmd.challenge.domain.Money;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.domain.TransferResult;
+import com.db.awmd.challenge.domain.TransferStatus;
+import com.db.awmd.challenge.history.TransactionHistory;
+import com.db.awmd.challenge.journal.TransferJournal;
+import com.db.awmd.challenge.metrics.TransferMetrics;
+import com.db.awmd.challenge.metrics.TransferStage;
+import com.db.awmd.challenge.notification.BalancePublisher;
+import com.db.awmd.challenge.notification.NotificationDispatcher;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import com.db.awmd.challenge.repository.AccountsRepositoryOptimistic;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Applies each transfer on the calling thread without taking the account locks: it reads the states
+ * of both accounts, validates the transfer against them and commits both new balances with one
+ * {@link AccountsRepositoryOptimistic#compareAndSetBalances compare-and-set}. If either account
+ * changed in between, the transfer starts over after a random pause that doubles with each
+ * conflict, so that transfers meeting on a hot account spread out instead of colliding again.
+ * <p>
+ * Uncontended transfers thus never wait, and contended ones never block each other. The returned
+ * futures are already complete. As there are no account locks to take a consistent journal snapshot
+ * under, this engine cannot be combined with the journal. It is used when
+ * {@code accounts.engine.type=optimistic}, and needs {@code accounts.repository.type=optimistic}.
+ */
+@Component
+@ConditionalOnProperty(name = "accounts.engine.type", havingValue = "optimistic")
+public class OptimisticTransferEngine implements TransferEngine {
+
+    /** The longest pause after a conflict. */
+    private static final long MAX_BACKOFF_NANOS = 1_000_000L;
+
+    /** The pause after the second conflict in a row; the first is retried at once. */
+    private static final long MIN_BACKOFF_NANOS = 1_000L;
+
+    /** The accounts repository. */
+    private final AccountsRepositoryOptimistic accountsRepository;
+
+    /** The notification dispatcher. */
+    private final NotificationDispatcher notificationDispatcher;
+
+    /** The transfer validator. */
+    private final TransferValidator transferValidator;
+
+    /** The transfer metrics. */
+    private final TransferMetrics transferMetrics;
+
+    /** The transaction history. */
+    private final TransactionHistory transactionHistory;
+
+    /** The publisher of balance changes. */
+    private final BalancePublisher balancePublisher;
+
+    /** The number of commits that found an account changed. */
+    private final LongAdder conflicts = new LongAdder();
+
+    /**
+     * Instantiates a new optimistic transfer engine.
+     *
+     * @param accountsRepository the accounts repository, which must be an {@link AccountsRepositoryOptimistic}
+     * @param notificationDispatcher the notification dispatcher
+     * @param transferValidator the transfer validator
+     * @param transferJournal the transfer journal, which must be disabled
+     * @param transferMetrics the transfer metrics
+     * @param transactionHistory the transaction history
+     * @param balancePublisher the publisher of balance changes
+     */
+    @Autowired
+    public OptimisticTransferEngine(AccountsRepository accountsRepository, NotificationDispatcher notificationDispatcher,
+                                    TransferValidator transferValidator, TransferJournal transferJournal,
+                                    TransferMetrics transferMetrics, TransactionHistory transactionHistory,
+                                    BalancePublisher balancePublisher) {
+        if (!(accountsRepository instanceof AccountsRepositoryOptimistic)) {
+            throw new IllegalStateException("The optimistic engine commits transfers by compare-and-set; "
+                    + "set accounts.repository.type=optimistic.");
+        }
+        if (transferJournal != TransferJournal.DISABLED) {
+            throw new IllegalStateException("The optimistic engine takes no account locks to snapshot the journal under "
+                    + "and cannot be used with it; set accounts.journal.enabled=false.");
+        }
+        this.accountsRepository = (AccountsRepositoryOptimistic) accountsRepository;
+        this.notificationDispatcher = notificationDispatcher;
+        this.transferValidator = transferValidator;
+        this.transferMetrics = transferMetrics;
+        this.transactionHistory = transactionHistory;
+        this.balancePublisher = balancePublisher;
+    }
+
+    /* (non-Javadoc)
+     * @see com.db.awmd.challenge.service.TransferEngine#submit(com.db.awmd.challenge.domain.Transfer)
+     */
+    @Override
+    public CompletableFuture<TransferResult> submit(Transfer transfer) {
+        final long started = transferMetrics.start();
+        try {
+            return CompletableFuture.completedFuture(apply(transfer, started));
+        } catch (RuntimeException e) {
+            final CompletableFuture<TransferResult> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see com.db.awmd.challenge.service.TransferEngine#holdsAccountLocks()
+     */
+    @Override
+    public boolean holdsAccountLocks() {
+        return false;
+    }
+
+    /**
+     * Gets the number of commits that found an account changed since it was read, and were retried.
+     *
+     * @return the number of conflicts
+     */
+    public long getConflicts() {
+        return conflicts.sum();
+    }
+
+    /**
+     * Validates and commits a transfer, starting over for as long as the commit meets a change.
+     *
+     * @param transfer the transfer
+     * @param started the mark taken on submission
+     * @return the transfer result
+     */
+    private TransferResult apply(Transfer transfer, long started) {
+        final long amountMinor = transfer.getAmountMinor();
+        long backoff = 0L;
+        while (true) {
+            final AccountSnapshot from = accountsRepository.getAccountSnapshot(transfer.getAccountFromId());
+            final AccountSnapshot to = accountsRepository.getAccountSnapshot(transfer.getAccountToId());
+            final Account accountFrom = from == null ? null : new Account(from.getAccountId(), from.getBalanceMinor());
+            final Account accountTo = to == null ? null : new Account(to.getAccountId(), to.getBalanceMinor());
+            final TransferResult result = transferValidator.evaluate(accountFrom, accountTo, transfer);
+            if (!result.isOk()) {
+                transferMetrics.recordOutcome(result.getStatus());
+                return result;
+            }
+
+            final long balanceFromMinor = Money.subtract(from.getBalanceMinor(), amountMinor);
+            final long balanceToMinor = Money.add(to.getBalanceMinor(), amountMinor);
+            if (accountsRepository.compareAndSetBalances(from, balanceFromMinor, to, balanceToMinor)) {
+                accountFrom.setBalanceMinor(balanceFromMinor);
+                accountTo.setBalanceMinor(balanceToMinor);
+                complete(accountFrom, accountTo, transfer, started);
+                return TransferResult.OK;
+            }
+
+            conflicts.increment();
+            if (backoff > 0L) {
+                LockSupport.parkNanos(ThreadLocalRandom.current().nextLong(backoff) + 1L);
+            }
+            backoff = backoff == 0L ? MIN_BACKOFF_NANOS : Math.min(backoff * 2, MAX_BACKOFF_NANOS);
+        }
+    }
+
+    /**
+     * Records, publishes and notifies about a committed transfer.
+     *
+     * @param accountFrom the account from, with its new balance
+     * @param accountTo the account to, with its new balance
+     * @param transfer the transfer
+     * @param started the mark taken on submission
+     */
+    private void complete(Account accountFrom, Account accountTo, Transfer transfer, long started) {
+        final List<AccountUpdate> accountUpdates = Arrays.asList(
+                new AccountUpdate(accountTo.getAccountId(), transfer.getAmountMinor()),
+                new AccountUpdate(accountFrom.getAccountId(), Money.negate(transfer.getAmountMinor())));
+        transactionHistory.record(accountUpdates);
+        balancePublisher.publish(accountUpdates);
+        transferMetrics.recordOutcome(TransferStatus.OK);
+        try {
+            notificationDispatcher.notifyAboutTransfer(accountFrom, accountTo, transfer);
+        } finally {
+            transferMetrics.record(TransferStage.TOTAL, started);
+        }
+    }
+}
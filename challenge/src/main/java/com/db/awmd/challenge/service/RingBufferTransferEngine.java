@@ -0,0 +1,541 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountUpdate;
+import com.db.awmd.challenge.domain.Money;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.domain.TransferResult;
+import com.db.awmd.challenge.domain.TransferStatus;
+import com.db.awmd.challenge.exception.JournalException;
+import com.db.awmd.challenge.history.TransactionHistory;
+import com.db.awmd.challenge.journal.TransferJournal;
+import com.db.awmd.challenge.metrics.TransferMetrics;
+import com.db.awmd.challenge.metrics.TransferStage;
+import com.db.awmd.challenge.notification.BalancePublisher;
+import com.db.awmd.challenge.notification.NotificationDispatcher;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import java.io.Closeable;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.annotation.PreDestroy;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Applies transfers from a single thread, fed through a preallocated ring buffer, so that transfers
+ * on hot accounts no longer queue up on their locks.
+ * <p>
+ * Callers claim the next sequence number, fill the slot it maps to and publish it. Three threads
+ * then follow each other around the ring, each handling every slot the one before it has finished:
+ * the business thread validates the transfer, appends it to the journal and applies it, the
+ * durability thread waits for the journal once per batch of slots, and the completion thread
+ * notifies the account owners and completes the futures. A caller waits only when the ring is full.
+ * Once a journaled transfer cannot be applied, or the journal cannot make one durable, the engine
+ * fails every later transfer rather than leave the balances and the journal apart.
+ * <p>
+ * The business thread still takes the stripe locks of both accounts. It never has to wait for
+ * another transfer, and the locks keep account creation, transfer batches and journal snapshots,
+ * which do not go through the ring, consistent with it. This engine replaces the locking path of
+ * {@link AccountsService#makeTransfer(Transfer)} when {@code accounts.engine.type=ring-buffer}.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "accounts.engine.type", havingValue = "ring-buffer")
+public class RingBufferTransferEngine implements TransferEngine, Closeable {
+
+    /** The flag set on the claim count once closed, after which nothing more is claimed. */
+    private static final long CLOSED = 1L << 62;
+
+    /** The number of busy spins before an idle thread starts yielding. */
+    private static final int SPINS = 100;
+
+    /** The number of yields before an idle thread starts parking. */
+    private static final int YIELDS = 100;
+
+    /** How long an idle thread parks at a time. */
+    private static final long PARK_NANOS = 1_000L;
+
+    /** The most slots a stage handles before publishing its progress. */
+    private static final int MAX_BATCH = 256;
+
+    /** The accounts repository. */
+    private final AccountsRepository accountsRepository;
+
+    /** The notification dispatcher. */
+    private final NotificationDispatcher notificationDispatcher;
+
+    /** The transfer validator. */
+    private final TransferValidator transferValidator;
+
+    /** The account locks. */
+    private final AccountLocks accountLocks;
+
+    /** The transfer journal. */
+    private final TransferJournal transferJournal;
+
+    /** The transfer metrics. */
+    private final TransferMetrics transferMetrics;
+
+    /** The transaction history. */
+    private final TransactionHistory transactionHistory;
+
+    /** The publisher of balance changes. */
+    private final BalancePublisher balancePublisher;
+
+    /** The slots. */
+    private final Slot[] slots;
+
+    /** The mask mapping a sequence number onto its slot. */
+    private final int mask;
+
+    /** The sequence number last published in each slot. */
+    private final AtomicLongArray published;
+
+    /** The number of sequence numbers claimed, with {@link #CLOSED} set once closed. */
+    private final AtomicLong claimed = new AtomicLong();
+
+    /** The business stage. */
+    private final Stage business;
+
+    /** The durability stage. */
+    private final Stage durability;
+
+    /** The completion stage. */
+    private final Stage completion;
+
+    /** Why the engine stopped applying transfers, null while it is running. */
+    private volatile RuntimeException haltCause;
+
+    /**
+     * Instantiates a new ring buffer transfer engine and starts its threads.
+     *
+     * @param accountsRepository the accounts repository
+     * @param notificationDispatcher the notification dispatcher
+     * @param transferValidator the transfer validator
+     * @param accountLocks the account locks
+     * @param transferJournal the transfer journal
+     * @param transferMetrics the transfer metrics
+     * @param ringSize the number of slots, rounded up to a power of two
+     */
+    public RingBufferTransferEngine(AccountsRepository accountsRepository,
+                                    NotificationDispatcher notificationDispatcher,
+                                    TransferValidator transferValidator, AccountLocks accountLocks,
+                                    TransferJournal transferJournal, TransferMetrics transferMetrics, int ringSize) {
+        this(accountsRepository, notificationDispatcher, transferValidator, accountLocks, transferJournal,
+                transferMetrics, TransactionHistory.DISABLED, BalancePublisher.DISABLED, ringSize);
+    }
+
+    /**
+     * Instantiates a new ring buffer transfer engine and starts its threads.
+     *
+     * @param accountsRepository the accounts repository
+     * @param notificationDispatcher the notification dispatcher
+     * @param transferValidator the transfer validator
+     * @param accountLocks the account locks
+     * @param transferJournal the transfer journal
+     * @param transferMetrics the transfer metrics
+     * @param transactionHistory the transaction history
+     * @param balancePublisher the publisher of balance changes
+     * @param ringSize the number of slots, rounded up to a power of two
+     */
+    @Autowired
+    public RingBufferTransferEngine(AccountsRepository accountsRepository,
+                                    NotificationDispatcher notificationDispatcher,
+                                    TransferValidator transferValidator, AccountLocks accountLocks,
+                                    TransferJournal transferJournal, TransferMetrics transferMetrics,
+                                    TransactionHistory transactionHistory, BalancePublisher balancePublisher,
+                                    @Value("${accounts.engine.ring-size:65536}") int ringSize) {
+        if (ringSize < 1 || ringSize > 1 << 30) {
+            throw new IllegalArgumentException("Ring size must be between 1 and 2^30: " + ringSize);
+        }
+        this.accountsRepository = accountsRepository;
+        this.notificationDispatcher = notificationDispatcher;
+        this.transferValidator = transferValidator;
+        this.accountLocks = accountLocks;
+        this.transferJournal = transferJournal;
+        this.transferMetrics = transferMetrics;
+        this.transactionHistory = transactionHistory;
+        this.balancePublisher = balancePublisher;
+
+        final int size = Integer.highestOneBit(ringSize) < ringSize ? Integer.highestOneBit(ringSize) << 1 : ringSize;
+        this.slots = new Slot[size];
+        this.published = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            slots[i] = new Slot();
+            published.set(i, -1L);
+        }
+        this.mask = size - 1;
+
+        this.business = new Stage("transfer-business") {
+            @Override
+            long available(long next) {
+                final long limit = next + MAX_BATCH;
+                long sequence = next;
+                while (sequence < limit && published.get(index(sequence)) == sequence) {
+                    sequence++;
+                }
+                return sequence - 1;
+            }
+
+            @Override
+            boolean upstreamDone(long next) {
+                final long count = claimed.get();
+                return (count & CLOSED) != 0 && next >= (count & ~CLOSED);
+            }
+
+            @Override
+            void process(long from, long to) {
+                for (long sequence = from; sequence <= to; sequence++) {
+                    apply(slots[index(sequence)]);
+                }
+            }
+        };
+        this.durability = new Stage("transfer-durability") {
+            @Override
+            long available(long next) {
+                return business.cursor.get();
+            }
+
+            @Override
+            boolean upstreamDone(long next) {
+                return !business.thread.isAlive();
+            }
+
+            @Override
+            void process(long from, long to) {
+                awaitDurable(from, to);
+            }
+        };
+        this.completion = new Stage("transfer-completion") {
+            @Override
+            long available(long next) {
+                return durability.cursor.get();
+            }
+
+            @Override
+            boolean upstreamDone(long next) {
+                return !durability.thread.isAlive();
+            }
+
+            @Override
+            void process(long from, long to) {
+                for (long sequence = from; sequence <= to; sequence++) {
+                    complete(slots[index(sequence)]);
+                }
+            }
+        };
+        business.thread.start();
+        durability.thread.start();
+        completion.thread.start();
+    }
+
+    /* (non-Javadoc)
+     * @see com.db.awmd.challenge.service.TransferEngine#submit(com.db.awmd.challenge.domain.Transfer)
+     */
+    @Override
+    public CompletableFuture<TransferResult> submit(Transfer transfer) {
+        final long started = transferMetrics.start();
+        final long sequence = claim();
+        int idle = 0;
+        while (sequence - slots.length > completion.cursor.get()) {
+            idle = idle(idle);
+        }
+        final Slot slot = slots[index(sequence)];
+        final CompletableFuture<TransferResult> future = new CompletableFuture<>();
+        slot.transfer = transfer;
+        slot.future = future;
+        slot.started = started;
+        published.lazySet(index(sequence), sequence);
+        return future;
+    }
+
+    /**
+     * Refuses further transfers, then waits for the submitted ones to complete.
+     */
+    @PreDestroy
+    @Override
+    public void close() {
+        long count;
+        do {
+            count = claimed.get();
+        } while ((count & CLOSED) == 0 && !claimed.compareAndSet(count, count | CLOSED));
+        try {
+            completion.thread.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Claims the next sequence number.
+     *
+     * @return the sequence number
+     * @throws IllegalStateException if the engine is closed
+     */
+    private long claim() {
+        while (true) {
+            final long count = claimed.get();
+            if ((count & CLOSED) != 0) {
+                throw new IllegalStateException("The transfer engine is closed.");
+            }
+            if (claimed.compareAndSet(count, count + 1)) {
+                return count;
+            }
+        }
+    }
+
+    /**
+     * Validates and applies the transfer of a slot, on the business thread.
+     *
+     * @param slot the slot
+     */
+    private void apply(Slot slot) {
+        final Transfer transfer = slot.transfer;
+        if (haltCause != null) {
+            slot.failure = new JournalException("The transfer engine stopped after a journal failure.", haltCause);
+            return;
+        }
+        try (AccountLocks.Guard ignored = accountLocks.lock(transfer.getAccountFromId(), transfer.getAccountToId())) {
+            final Account accountFrom = accountsRepository.getAccount(transfer.getAccountFromId());
+            final Account accountTo = accountsRepository.getAccount(transfer.getAccountToId());
+            final TransferResult result = transferValidator.evaluate(accountFrom, accountTo, transfer);
+            if (!result.isOk()) {
+                transferMetrics.recordOutcome(result.getStatus());
+                slot.result = result;
+                slot.journalSequence = -1L;
+                return;
+            }
+
+            Money.add(accountTo.getBalanceMinor(), transfer.getAmountMinor());
+            final List<AccountUpdate> accountUpdates = Arrays.asList(
+                    new AccountUpdate(accountTo.getAccountId(), transfer.getAmountMinor()),
+                    new AccountUpdate(accountFrom.getAccountId(), Money.negate(transfer.getAmountMinor())));
+            final long journalSequence = transferJournal.appendUpdates(accountUpdates);
+            try {
+                if (!accountsRepository.updateAccountsBatch(accountUpdates)) {
+                    throw new IllegalStateException("Journaled transfer " + transfer + " could not be applied.");
+                }
+                transactionHistory.record(accountUpdates);
+                balancePublisher.publish(accountUpdates);
+            } catch (RuntimeException e) {
+                haltCause = e;
+                throw e;
+            }
+            slot.accountFrom = accountFrom;
+            slot.accountTo = accountTo;
+            slot.result = TransferResult.OK;
+            slot.journalSequence = journalSequence;
+        } catch (RuntimeException e) {
+            log.error("Cannot apply transfer {}", transfer, e);
+            slot.failure = e;
+        }
+    }
+
+    /**
+     * Waits for the journal to make the applied transfers of a range of slots durable, on the
+     * durability thread.
+     *
+     * @param from the first sequence number
+     * @param to the last sequence number
+     */
+    private void awaitDurable(long from, long to) {
+        long journalSequence = -1L;
+        for (long sequence = from; sequence <= to; sequence++) {
+            final Slot slot = slots[index(sequence)];
+            if (slot.failure == null) {
+                journalSequence = Math.max(journalSequence, slot.journalSequence);
+            }
+        }
+        if (journalSequence < 0) {
+            return;
+        }
+        try {
+            transferJournal.awaitDurable(journalSequence);
+        } catch (RuntimeException e) {
+            log.error("Journal failed, failing transfers {} to {}", from, to, e);
+            haltCause = e;
+            for (long sequence = from; sequence <= to; sequence++) {
+                final Slot slot = slots[index(sequence)];
+                if (slot.failure == null && slot.journalSequence >= 0) {
+                    slot.failure = e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Notifies about the transfer of a slot, completes its future and clears the slot, on the
+     * completion thread.
+     *
+     * @param slot the slot
+     */
+    private void complete(Slot slot) {
+        final CompletableFuture<TransferResult> future = slot.future;
+        final TransferResult result = slot.result;
+        RuntimeException failure = slot.failure;
+        if (failure == null && slot.journalSequence >= 0) {
+            try {
+                notificationDispatcher.notifyAboutTransfer(slot.accountFrom, slot.accountTo, slot.transfer);
+                transferMetrics.recordOutcome(TransferStatus.OK);
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+        }
+        transferMetrics.record(TransferStage.TOTAL, slot.started);
+        slot.clear();
+        if (failure == null) {
+            future.complete(result);
+        } else {
+            future.completeExceptionally(failure);
+        }
+    }
+
+    /**
+     * Gets the slot index of a sequence number.
+     *
+     * @param sequence the sequence number
+     * @return the index
+     */
+    private int index(long sequence) {
+        return (int) sequence & mask;
+    }
+
+    /**
+     * Waits a little, spinning first, then yielding, then parking.
+     *
+     * @param idle the number of times waited so far
+     * @return the number of times waited, this one included
+     */
+    private static int idle(int idle) {
+        if (idle < SPINS) {
+            return idle + 1;
+        }
+        if (idle < SPINS + YIELDS) {
+            Thread.yield();
+            return idle + 1;
+        }
+        LockSupport.parkNanos(PARK_NANOS);
+        return idle;
+    }
+
+    /**
+     * A transfer and what the stages learn about it.
+     */
+    private static final class Slot {
+
+        /** The transfer. */
+        private Transfer transfer;
+
+        /** The future of the caller. */
+        private CompletableFuture<TransferResult> future;
+
+        /** The mark taken on submission. */
+        private long started;
+
+        /** The account from, once applied. */
+        private Account accountFrom;
+
+        /** The account to, once applied. */
+        private Account accountTo;
+
+        /** The journal sequence number, or -1 if the transfer was not applied. */
+        private long journalSequence;
+
+        /** The result, once validated. */
+        private TransferResult result;
+
+        /** Why the transfer failed, null unless it did. */
+        private RuntimeException failure;
+
+        /**
+         * Drops the references held, so that completed transfers can be collected.
+         */
+        private void clear() {
+            transfer = null;
+            future = null;
+            accountFrom = null;
+            accountTo = null;
+            journalSequence = 0L;
+            result = null;
+            failure = null;
+        }
+    }
+
+    /**
+     * A thread handling the slots its upstream has finished with, in batches.
+     */
+    private abstract static class Stage implements Runnable {
+
+        /** The last sequence number handled. */
+        private final AtomicLong cursor = new AtomicLong(-1L);
+
+        /** The thread. */
+        private final Thread thread;
+
+        /**
+         * Instantiates a new stage.
+         *
+         * @param name the thread name
+         */
+        private Stage(String name) {
+            this.thread = new Thread(this, name);
+            this.thread.setDaemon(true);
+        }
+
+        /**
+         * Gets the last sequence number ready for this stage.
+         *
+         * @param next the next sequence number to handle
+         * @return the last sequence number ready, below next if none is
+         */
+        abstract long available(long next);
+
+        /**
+         * Tells whether nothing more will become ready.
+         *
+         * @param next the next sequence number to handle
+         * @return true, if the stage can stop once caught up
+         */
+        abstract boolean upstreamDone(long next);
+
+        /**
+         * Handles a range of slots.
+         *
+         * @param from the first sequence number
+         * @param to the last sequence number
+         */
+        abstract void process(long from, long to);
+
+        /* (non-Javadoc)
+         * @see java.lang.Runnable#run()
+         */
+        @Override
+        public void run() {
+            long next = 0L;
+            int idle = 0;
+            while (true) {
+                final long available = available(next);
+                if (available >= next) {
+                    process(next, available);
+                    cursor.lazySet(available);
+                    next = available + 1;
+                    idle = 0;
+                } else if (upstreamDone(next) && available(next) < next) {
+                    return;
+                } else {
+                    idle = idle(idle);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,460 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountUpdate;
+import com.db.awmd.challenge.domain.Money;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.domain.TransferResult;
+import com.db.awmd.challenge.domain.TransferStatus;
+import com.db.awmd.challenge.history.TransactionHistory;
+import com.db.awmd.challenge.journal.TransferJournal;
+import com.db.awmd.challenge.metrics.TransferMetrics;
+import com.db.awmd.challenge.metrics.TransferStage;
+import com.db.awmd.challenge.notification.BalancePublisher;
+import com.db.awmd.challenge.notification.NotificationDispatcher;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import java.io.Closeable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedTransferQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PreDestroy;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Partitions the accounts into shards by id hash, each owned by a thread that alone updates its
+ * accounts, so that transfers scale with the number of cores instead of meeting on shared locks.
+ * <p>
+ * A transfer goes to the shard of its source account. If the destination account is in the same
+ * shard, the owner validates and applies both legs at once, without locking. Otherwise it
+ * validates the transfer and reserves the amount by debiting the source account, then hands the
+ * credit to the owner of the destination account; should the credit fail, the amount goes back to
+ * the source account. The two balances are briefly out of step while the credit is in flight.
+ * <p>
+ * As the owners do not take the account locks, transfer batches go through the engine too (see
+ * {@link AccountsService#makeTransfers(java.util.List)}). The journal records both legs of a
+ * transfer atomically, which the split legs cannot honour, so this engine cannot be combined with
+ * it. It is used when {@code accounts.engine.type=sharded}.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "accounts.engine.type", havingValue = "sharded")
+public class ShardedTransferEngine implements TransferEngine, Closeable {
+
+    /** How long {@link #close()} waits for the submitted transfers to complete. */
+    private static final long CLOSE_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    /** The accounts repository. */
+    private final AccountsRepository accountsRepository;
+
+    /** The notification dispatcher. */
+    private final NotificationDispatcher notificationDispatcher;
+
+    /** The transfer validator. */
+    private final TransferValidator transferValidator;
+
+    /** The transfer metrics. */
+    private final TransferMetrics transferMetrics;
+
+    /** The transaction history. */
+    private final TransactionHistory transactionHistory;
+
+    /** The publisher of balance changes. */
+    private final BalancePublisher balancePublisher;
+
+    /** The shards. */
+    private final Shard[] shards;
+
+    /** Whether new transfers are refused. */
+    private volatile boolean closed;
+
+    /**
+     * Instantiates a new sharded transfer engine and starts the shard owners.
+     *
+     * @param accountsRepository the accounts repository
+     * @param notificationDispatcher the notification dispatcher
+     * @param transferValidator the transfer validator
+     * @param transferJournal the transfer journal, which must be disabled
+     * @param transferMetrics the transfer metrics
+     * @param shards the number of shards, 0 for one per available processor
+     */
+    public ShardedTransferEngine(AccountsRepository accountsRepository, NotificationDispatcher notificationDispatcher,
+                                 TransferValidator transferValidator, TransferJournal transferJournal,
+                                 TransferMetrics transferMetrics, int shards) {
+        this(accountsRepository, notificationDispatcher, transferValidator, transferJournal, transferMetrics,
+                TransactionHistory.DISABLED, BalancePublisher.DISABLED, shards);
+    }
+
+    /**
+     * Instantiates a new sharded transfer engine and starts the shard owners.
+     *
+     * @param accountsRepository the accounts repository
+     * @param notificationDispatcher the notification dispatcher
+     * @param transferValidator the transfer validator
+     * @param transferJournal the transfer journal, which must be disabled
+     * @param transferMetrics the transfer metrics
+     * @param transactionHistory the transaction history
+     * @param balancePublisher the publisher of balance changes
+     * @param shards the number of shards, 0 for one per available processor
+     */
+    @Autowired
+    public ShardedTransferEngine(AccountsRepository accountsRepository, NotificationDispatcher notificationDispatcher,
+                                 TransferValidator transferValidator, TransferJournal transferJournal,
+                                 TransferMetrics transferMetrics, TransactionHistory transactionHistory,
+                                 BalancePublisher balancePublisher,
+                                 @Value("${accounts.engine.shards:0}") int shards) {
+        if (transferJournal != TransferJournal.DISABLED) {
+            throw new IllegalStateException("The sharded engine applies the legs of a cross-shard transfer separately "
+                    + "and cannot be used with the journal; set accounts.journal.enabled=false.");
+        }
+        if (shards < 0) {
+            throw new IllegalArgumentException("Number of shards must not be negative: " + shards);
+        }
+        this.accountsRepository = accountsRepository;
+        this.notificationDispatcher = notificationDispatcher;
+        this.transferValidator = transferValidator;
+        this.transferMetrics = transferMetrics;
+        this.transactionHistory = transactionHistory;
+        this.balancePublisher = balancePublisher;
+        this.shards = new Shard[shards == 0 ? Runtime.getRuntime().availableProcessors() : shards];
+        for (int i = 0; i < this.shards.length; i++) {
+            this.shards[i] = new Shard(i);
+        }
+        for (Shard shard : this.shards) {
+            shard.thread.start();
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see com.db.awmd.challenge.service.TransferEngine#submit(com.db.awmd.challenge.domain.Transfer)
+     */
+    @Override
+    public CompletableFuture<TransferResult> submit(Transfer transfer) {
+        final Shard source = shardOf(transfer.getAccountFromId());
+        // counted before checking, so that close() either sees the transfer or it is refused
+        source.inFlight.incrementAndGet();
+        if (closed) {
+            source.inFlight.decrementAndGet();
+            throw new IllegalStateException("The transfer engine is closed.");
+        }
+        final long started = transferMetrics.start();
+        final CompletableFuture<TransferResult> future = new CompletableFuture<>();
+        future.whenComplete((result, failure) -> source.inFlight.decrementAndGet());
+        source.execute(future, () -> debit(transfer, future, started), null);
+        return future;
+    }
+
+    /* (non-Javadoc)
+     * @see com.db.awmd.challenge.service.TransferEngine#holdsAccountLocks()
+     */
+    @Override
+    public boolean holdsAccountLocks() {
+        return false;
+    }
+
+    /**
+     * Refuses further transfers, waits for the submitted ones to complete, then stops the shards. A
+     * transfer still in flight when the wait times out is failed; if its amount was already reserved,
+     * it is handed back to the source account first, so that it does not disappear.
+     */
+    @PreDestroy
+    @Override
+    public void close() {
+        closed = true;
+        final long deadline = System.currentTimeMillis() + CLOSE_TIMEOUT_MILLIS;
+        try {
+            // a transfer stays counted on the shard of its source account until its future completes,
+            // credit and refund included, so no shard is stopped while a credit may still be handed to it
+            while (System.currentTimeMillis() < deadline && !allCompleted()) {
+                Thread.sleep(1L);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Shard shard : shards) {
+            shard.stop();
+        }
+    }
+
+    /**
+     * Tells whether every submitted transfer has completed.
+     *
+     * @return true, if no transfer is in flight
+     */
+    private boolean allCompleted() {
+        for (Shard shard : shards) {
+            if (shard.inFlight.get() > 0L) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the number of shards.
+     *
+     * @return the number of shards
+     */
+    public int getShards() {
+        return shards.length;
+    }
+
+    /**
+     * Validates a transfer and applies it, or reserves its amount, on the shard of the source
+     * account.
+     *
+     * @param transfer the transfer
+     * @param future the future of the caller
+     * @param started the mark taken on submission
+     */
+    private void debit(Transfer transfer, CompletableFuture<TransferResult> future, long started) {
+        final Account accountFrom = accountsRepository.getAccount(transfer.getAccountFromId());
+        final Account accountTo = accountsRepository.getAccount(transfer.getAccountToId());
+        final TransferResult result = transferValidator.evaluate(accountFrom, accountTo, transfer);
+        if (!result.isOk()) {
+            transferMetrics.recordOutcome(result.getStatus());
+            future.complete(result);
+            return;
+        }
+
+        final long amountMinor = transfer.getAmountMinor();
+        final Shard target = shardOf(transfer.getAccountToId());
+        if (target == shardOf(transfer.getAccountFromId())) {
+            // the credit goes first: it is the only leg that can overflow
+            final List<AccountUpdate> accountUpdates = Arrays.asList(
+                    new AccountUpdate(accountTo.getAccountId(), amountMinor),
+                    new AccountUpdate(accountFrom.getAccountId(), Money.negate(amountMinor)));
+            if (accountsRepository.updateAccountsBatch(accountUpdates)) {
+                transactionHistory.record(accountUpdates);
+                balancePublisher.publish(accountUpdates);
+                complete(accountFrom, accountTo, transfer, future, started);
+            } else {
+                future.complete(TransferResult.OK);
+            }
+            return;
+        }
+
+        if (!update(accountFrom.getAccountId(), Money.negate(amountMinor))) {
+            future.complete(TransferResult.OK);
+            return;
+        }
+        target.execute(future, () -> credit(accountFrom, accountTo, transfer, future, started),
+                () -> update(accountFrom.getAccountId(), amountMinor));
+    }
+
+    /**
+     * Credits the destination account of a cross-shard transfer whose amount is reserved, on its
+     * shard, or hands the amount back to the source account if that fails.
+     *
+     * @param accountFrom the account from
+     * @param accountTo the account to
+     * @param transfer the transfer
+     * @param future the future of the caller
+     * @param started the mark taken on submission
+     */
+    private void credit(Account accountFrom, Account accountTo, Transfer transfer, CompletableFuture<TransferResult> future,
+                        long started) {
+        RuntimeException failure = null;
+        try {
+            if (update(accountTo.getAccountId(), transfer.getAmountMinor())) {
+                complete(accountFrom, accountTo, transfer, future, started);
+                return;
+            }
+        } catch (RuntimeException e) {
+            failure = e;
+        }
+        final RuntimeException cause = failure;
+        final Runnable refund = () -> update(accountFrom.getAccountId(), transfer.getAmountMinor());
+        shardOf(accountFrom.getAccountId()).execute(future, () -> {
+            refund.run();
+            if (cause == null) {
+                future.complete(TransferResult.OK);
+            } else {
+                future.completeExceptionally(cause);
+            }
+        }, refund);
+    }
+
+    /**
+     * Notifies about an applied transfer and completes its future.
+     *
+     * @param accountFrom the account from
+     * @param accountTo the account to
+     * @param transfer the transfer
+     * @param future the future of the caller
+     * @param started the mark taken on submission
+     */
+    private void complete(Account accountFrom, Account accountTo, Transfer transfer, CompletableFuture<TransferResult> future,
+                          long started) {
+        transferMetrics.recordOutcome(TransferStatus.OK);
+        try {
+            notificationDispatcher.notifyAboutTransfer(accountFrom, accountTo, transfer);
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            return;
+        } finally {
+            transferMetrics.record(TransferStage.TOTAL, started);
+        }
+        future.complete(TransferResult.OK);
+    }
+
+    /**
+     * Updates the balance of a single account.
+     *
+     * @param accountId the account id
+     * @param amountMinor the amount in minor units
+     * @return true, if successful
+     */
+    private boolean update(String accountId, long amountMinor) {
+        final List<AccountUpdate> accountUpdates = Collections.singletonList(new AccountUpdate(accountId, amountMinor));
+        if (!accountsRepository.updateAccountsBatch(accountUpdates)) {
+            return false;
+        }
+        transactionHistory.record(accountUpdates);
+        balancePublisher.publish(accountUpdates);
+        return true;
+    }
+
+    /**
+     * Gets the shard owning an account.
+     *
+     * @param accountId the account id
+     * @return the shard
+     */
+    private Shard shardOf(String accountId) {
+        final int hash = accountId.hashCode();
+        return shards[Math.floorMod(hash ^ (hash >>> 16), shards.length)];
+    }
+
+    /**
+     * A shard owner: a thread running the tasks queued for its accounts, one at a time.
+     */
+    private static final class Shard implements Runnable {
+
+        /** The tasks. */
+        private final BlockingQueue<Task> queue = new LinkedTransferQueue<>();
+
+        /** The thread. */
+        private final Thread thread;
+
+        /** The number of transfers submitted from the accounts of this shard and not yet completed. */
+        private final AtomicLong inFlight = new AtomicLong();
+
+        /** Whether the owner has stopped. */
+        private volatile boolean stopped;
+
+        /**
+         * Instantiates a new shard.
+         *
+         * @param index the index
+         */
+        private Shard(int index) {
+            this.thread = new Thread(this, "transfer-shard-" + index);
+            this.thread.setDaemon(true);
+        }
+
+        /**
+         * Queues a task with the owner.
+         *
+         * @param future the future the task completes
+         * @param action the action
+         * @param abandon what to do instead if the owner stops before running the task, null for nothing
+         */
+        private void execute(CompletableFuture<TransferResult> future, Runnable action, Runnable abandon) {
+            queue.add(new Task(future, action, abandon));
+            if (stopped) {
+                failQueued();
+            }
+        }
+
+        /**
+         * Stops the owner, failing the tasks it leaves behind.
+         */
+        private void stop() {
+            stopped = true;
+            thread.interrupt();
+            try {
+                thread.join(CLOSE_TIMEOUT_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            failQueued();
+        }
+
+        /**
+         * Fails the tasks still queued, after running what they leave to do when abandoned.
+         */
+        private void failQueued() {
+            Task task;
+            while ((task = queue.poll()) != null) {
+                if (task.abandon != null) {
+                    try {
+                        task.abandon.run();
+                    } catch (RuntimeException e) {
+                        log.error("Cannot hand back the amount of an abandoned transfer", e);
+                    }
+                }
+                task.future.completeExceptionally(new IllegalStateException("The transfer engine is closed."));
+            }
+        }
+
+        /* (non-Javadoc)
+         * @see java.lang.Runnable#run()
+         */
+        @Override
+        public void run() {
+            while (!stopped) {
+                final Task task;
+                try {
+                    task = queue.take();
+                } catch (InterruptedException e) {
+                    continue;
+                }
+                try {
+                    task.action.run();
+                } catch (RuntimeException e) {
+                    log.error("Transfer task failed", e);
+                    task.future.completeExceptionally(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * A step of a transfer, run by a shard owner.
+     */
+    private static final class Task {
+
+        /** The future of the transfer. */
+        private final CompletableFuture<TransferResult> future;
+
+        /** The action. */
+        private final Runnable action;
+
+        /** What to do instead of the action if it is never run, null for nothing. */
+        private final Runnable abandon;
+
+        /**
+         * Instantiates a new task.
+         *
+         * @param future the future of the transfer
+         * @param action the action
+         * @param abandon what to do instead of the action if it is never run, null for nothing
+         */
+        private Task(CompletableFuture<TransferResult> future, Runnable action, Runnable abandon) {
+            this.future = future;
+            this.action = action;
+            this.abandon = abandon;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.domain.TransferResult;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Applies transfers on behalf of {@link AccountsService} instead of the calling thread.
+ */
+public interface TransferEngine {
+
+    /**
+     * Submits a transfer. The future completes with {@link TransferResult#OK} once the transfer is
+     * applied, durable and notified, or with the rejection if it is rejected; it completes
+     * exceptionally only if the transfer fails for another reason.
+     *
+     * @param transfer the transfer
+     * @return the future
+     * @throws IllegalStateException if the engine is closed
+     */
+    CompletableFuture<TransferResult> submit(Transfer transfer);
+
+    /**
+     * Tells whether the engine holds the {@link AccountLocks} of both accounts while it applies a
+     * transfer, so that other updates made under those locks can run alongside it.
+     *
+     * @return true, if the engine holds the account locks
+     */
+    default boolean holdsAccountLocks() {
+        return true;
+    }
+}
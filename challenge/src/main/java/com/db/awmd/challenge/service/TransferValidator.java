@@ -2,13 +2,15 @@ package com.db.awmd.challenge.service;
 
 import com.db.awmd.challenge.domain.Account;
 import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.domain.TransferResult;
+import com.db.awmd.challenge.domain.TransferStatus;
 import com.db.awmd.challenge.exception.AccountNotFoundException;
 import com.db.awmd.challenge.exception.NotEnoughFundsException;
 
 /**
  * The Interface TransferValidator.
  */
-interface TransferValidator {
+public interface TransferValidator {
 
     /**
      * Validate.
@@ -21,4 +23,25 @@ interface TransferValidator {
      */
     void validate(final Account accountFrom, final Account accountTo, final Transfer transfer) throws AccountNotFoundException, NotEnoughFundsException;
 
+    /**
+     * Checks the transfer without throwing, reporting the first rule it breaks.
+     *
+     * @param accountFrom the account from
+     * @param accountTo the account to
+     * @param transfer the transfer
+     * @return the transfer status, {@link TransferStatus#OK} when the transfer is valid
+     */
+    TransferStatus check(final Account accountFrom, final Account accountTo, final Transfer transfer);
+
+    /**
+     * Checks the transfer without throwing, reporting the first rule it breaks together with what
+     * its message needs.
+     *
+     * @param accountFrom the account from
+     * @param accountTo the account to
+     * @param transfer the transfer
+     * @return the transfer result, {@link TransferResult#OK} when the transfer is valid
+     */
+    TransferResult evaluate(final Account accountFrom, final Account accountTo, final Transfer transfer);
+
 }
@@ -2,13 +2,13 @@ package com.db.awmd.challenge.service;
 
 import com.db.awmd.challenge.domain.Account;
 import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.domain.TransferResult;
+import com.db.awmd.challenge.domain.TransferStatus;
 import com.db.awmd.challenge.exception.AccountNotFoundException;
 import com.db.awmd.challenge.exception.NotEnoughFundsException;
 import com.db.awmd.challenge.exception.TransferBetweenSameAccountException;
 import org.springframework.stereotype.Component;
 
-import java.math.BigDecimal;
-
 /**
  * The Class TransferValidatorImpl.
  */
@@ -29,21 +29,44 @@ public class TransferValidatorImpl implements TransferValidator {
     public void validate(final Account currAccountFrom, final Account currAccountTo, final Transfer transfer)
             throws AccountNotFoundException, NotEnoughFundsException, TransferBetweenSameAccountException{
 
-        if (currAccountFrom == null){
-            throw new AccountNotFoundException("Account " + transfer.getAccountFromId() + " not found.");
+        evaluate(currAccountFrom, currAccountTo, transfer).throwIfRejected();
+    }
+
+    /* (non-Javadoc)
+     * @see com.db.awmd.challenge.service.TransferValidator#evaluate(com.db.awmd.challenge.domain.Account, com.db.awmd.challenge.domain.Account, com.db.awmd.challenge.domain.Transfer)
+     */
+    @Override
+    public TransferResult evaluate(final Account currAccountFrom, final Account currAccountTo, final Transfer transfer) {
+        switch (check(currAccountFrom, currAccountTo, transfer)) {
+            case NOT_FOUND:
+                return TransferResult.notFound(currAccountFrom == null ? transfer.getAccountFromId() : transfer.getAccountToId());
+            case SAME_ACCOUNT:
+                return TransferResult.SAME_ACCOUNT;
+            case INSUFFICIENT_FUNDS:
+                return TransferResult.insufficientFunds(currAccountFrom.getAccountId(), currAccountFrom.getBalanceMinor());
+            default:
+                return TransferResult.OK;
         }
+    }
 
-        if (currAccountTo == null) {
-            throw new AccountNotFoundException("Account " + transfer.getAccountToId() + " not found.");
+    /* (non-Javadoc)
+     * @see com.db.awmd.challenge.service.TransferValidator#check(com.db.awmd.challenge.domain.Account, com.db.awmd.challenge.domain.Account, com.db.awmd.challenge.domain.Transfer)
+     */
+    @Override
+    public TransferStatus check(final Account currAccountFrom, final Account currAccountTo, final Transfer transfer) {
+        if (currAccountFrom == null || currAccountTo == null) {
+            return TransferStatus.NOT_FOUND;
         }
 
-        if (sameAccount(transfer)){
-            throw new TransferBetweenSameAccountException("Transfer to self not permitted.");
+        if (sameAccount(transfer)) {
+            return TransferStatus.SAME_ACCOUNT;
         }
 
-        if (!enoughFunds(currAccountFrom, transfer.getAmount())){
-            throw new NotEnoughFundsException("Not enough funds on account " + currAccountFrom.getAccountId() + " balance="+currAccountFrom.getBalance());
+        if (!enoughFunds(currAccountFrom, transfer.getAmountMinor())) {
+            return TransferStatus.INSUFFICIENT_FUNDS;
         }
+
+        return TransferStatus.OK;
     }
 
     /**
@@ -61,11 +84,11 @@ public class TransferValidatorImpl implements TransferValidator {
      * Enough funds.
      *
      * @param account the account
-     * @param amount the amount
+     * @param amountMinor the amount in minor units
      * @return true, if successful
      */
-    private boolean enoughFunds(final Account account, final BigDecimal amount) {
-        return account.getBalance().subtract(amount).compareTo(BigDecimal.ZERO) >= 0;
+    private boolean enoughFunds(final Account account, final long amountMinor) {
+        return account.getBalanceMinor() >= amountMinor;
     }
 
 }
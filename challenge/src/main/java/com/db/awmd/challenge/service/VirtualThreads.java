@@ -0,0 +1,96 @@
+package com.db.awmd.challenge.service;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Creates virtual threads when the running JDK has them (Java 21 and later), through reflection
+ * so that the code still compiles for and runs on Java 8.
+ */
+public final class VirtualThreads {
+
+    /** {@code Thread.ofVirtual()}, null if the JDK has no virtual threads. */
+    private static final Method OF_VIRTUAL;
+
+    /** {@code Thread.Builder.name(String, long)}. */
+    private static final Method NAME;
+
+    /** {@code Thread.Builder.factory()}. */
+    private static final Method FACTORY;
+
+    /** {@code Executors.newThreadPerTaskExecutor(ThreadFactory)}. */
+    private static final Method NEW_THREAD_PER_TASK_EXECUTOR;
+
+    static {
+        Method ofVirtual = null;
+        Method name = null;
+        Method factory = null;
+        Method newThreadPerTaskExecutor = null;
+        try {
+            final Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            name = builder.getMethod("name", String.class, long.class);
+            factory = builder.getMethod("factory");
+            newThreadPerTaskExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+        } catch (ClassNotFoundException | NoSuchMethodException e) {
+            ofVirtual = null;
+        }
+        OF_VIRTUAL = ofVirtual;
+        NAME = name;
+        FACTORY = factory;
+        NEW_THREAD_PER_TASK_EXECUTOR = newThreadPerTaskExecutor;
+    }
+
+    /**
+     * Instantiates a new virtual threads.
+     */
+    private VirtualThreads() {
+    }
+
+    /**
+     * Tells whether the running JDK has virtual threads.
+     *
+     * @return true, if supported
+     */
+    public static boolean isSupported() {
+        return OF_VIRTUAL != null;
+    }
+
+    /**
+     * Creates a factory of virtual threads named with a prefix and a counter.
+     *
+     * @param namePrefix the name prefix
+     * @return the thread factory
+     * @throws UnsupportedOperationException if the JDK has no virtual threads
+     */
+    public static ThreadFactory factory(String namePrefix) {
+        if (!isSupported()) {
+            throw new UnsupportedOperationException("Virtual threads need Java 21 or later, running on "
+                    + System.getProperty("java.version") + ".");
+        }
+        try {
+            return (ThreadFactory) FACTORY.invoke(NAME.invoke(OF_VIRTUAL.invoke(null), namePrefix, 0L));
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalStateException("Cannot create a virtual thread factory.", e);
+        }
+    }
+
+    /**
+     * Creates an executor starting a new virtual thread for each task.
+     *
+     * @param namePrefix the name prefix of the threads
+     * @return the executor service
+     * @throws UnsupportedOperationException if the JDK has no virtual threads
+     */
+    public static ExecutorService newThreadPerTaskExecutor(String namePrefix) {
+        final ThreadFactory factory = factory(namePrefix);
+        try {
+            return (ExecutorService) NEW_THREAD_PER_TASK_EXECUTOR.invoke(null, factory);
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalStateException("Cannot create a virtual thread executor.", e);
+        }
+    }
+}
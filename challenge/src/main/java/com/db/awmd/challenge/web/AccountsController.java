@@ -1,13 +1,15 @@
 package com.db.awmd.challenge.web;
 
 import com.db.awmd.challenge.domain.Account;
-import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.domain.AccountSnapshot;
+import com.db.awmd.challenge.domain.ImportSummary;
 import com.db.awmd.challenge.exception.AccountNotFoundException;
 import com.db.awmd.challenge.exception.DuplicateAccountIdException;
-import com.db.awmd.challenge.exception.NotEnoughFundsException;
-import com.db.awmd.challenge.exception.TransferBetweenSameAccountException;
+import com.db.awmd.challenge.service.AccountImporter;
 import com.db.awmd.challenge.service.AccountsService;
 
+import java.io.IOException;
+import java.io.InputStream;
 import javax.validation.Valid;
 
 import lombok.extern.slf4j.Slf4j;
@@ -18,7 +20,8 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 /**
- * The Class AccountsController.
+ * The Class AccountsController. The transfer routes under the same path are served by
+ * {@link TransfersController} or {@link AsyncTransfersController}.
  */
 @RestController
 @RequestMapping("/v1/accounts")
@@ -27,17 +30,25 @@ import org.springframework.web.bind.annotation.*;
 @Slf4j
 public class AccountsController {
 
+    /** The largest number of transactions served in one page. */
+    static final int MAX_TRANSACTIONS_PAGE = 1000;
+
     /** The accounts service. */
     private final AccountsService accountsService;
 
+    /** The bulk account importer. */
+    private final AccountImporter accountImporter;
+
     /**
      * Instantiates a new accounts controller.
      *
      * @param accountsService the accounts service
+     * @param accountImporter the bulk account importer
      */
     @Autowired
-    public AccountsController(AccountsService accountsService) {
+    public AccountsController(AccountsService accountsService, AccountImporter accountImporter) {
         this.accountsService = accountsService;
+        this.accountImporter = accountImporter;
     }
 
     /**
@@ -60,39 +71,89 @@ public class AccountsController {
     }
 
     /**
-     * Gets the account.
+     * Imports accounts from newline-delimited JSON, one account per line. The body is streamed, so
+     * uploads of any size are accepted; invalid lines are reported in the summary and skipped.
+     *
+     * @param body the request body
+     * @return the import summary
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    @PostMapping(path = "/import", consumes = {"application/x-ndjson", MediaType.TEXT_PLAIN_VALUE})
+    public ImportSummary importAccounts(InputStream body) throws IOException {
+        final ImportSummary summary = this.accountImporter.importAccounts(body);
+        log.info("Imported {} accounts from {} lines, {} failed", summary.getCreated(), summary.getLines(),
+                summary.getFailed());
+        return summary;
+    }
+
+    /**
+     * Gets the account. The response carries an ETag made of the version and the balance of the
+     * account, so that a request whose {@code If-None-Match} still holds it is answered with 304; the
+     * balance is part of it because versions start over with the process, and repositories returning
+     * detached copies report version 0.
      *
      * @param accountId the account id
-     * @return the account
+     * @return the response entity holding the account snapshot
      */
     @GetMapping(path = "/{accountId}")
-    public Account getAccount(@PathVariable String accountId) {
+    public ResponseEntity<AccountSnapshot> getAccount(@PathVariable String accountId) {
         log.info("Retrieving account for id {}", accountId);
-        return this.accountsService.getAccount(accountId);
+        final AccountSnapshot snapshot = this.accountsService.getAccountSnapshot(accountId);
+        if (snapshot == null) {
+            return new ResponseEntity<>(HttpStatus.OK);
+        }
+        return ResponseEntity.ok()
+                .eTag("\"" + snapshot.getVersion() + "-" + snapshot.getBalanceMinor() + "\"")
+                .body(snapshot);
     }
 
     /**
-     * Make transfer.
+     * Gets a page of the transactions of an account, newest first. The next, older page is asked
+     * for with the {@code nextCursor} of the response, until it is null.
      *
-     * @param transfer the transfer
-     * @return the response entity
+     * @param accountId the account id
+     * @param cursor the cursor returned with the previous page, absent for the latest transactions
+     * @param limit the largest number of transactions to return
+     * @return the response entity holding the transaction page
      */
-    @PutMapping(path = "/transfer", consumes = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<Object> makeTransfer(@RequestBody @Valid Transfer transfer) {
-        log.info("Making transfer {}", transfer);
+    @GetMapping(path = "/{accountId}/transactions")
+    public ResponseEntity<Object> getTransactions(@PathVariable String accountId,
+                                                  @RequestParam(name = "cursor", required = false) Long cursor,
+                                                  @RequestParam(name = "limit", defaultValue = "100") int limit) {
+        if (limit < 1 || limit > MAX_TRANSACTIONS_PAGE) {
+            return new ResponseEntity<>("limit must be between 1 and " + MAX_TRANSACTIONS_PAGE + ".",
+                    HttpStatus.BAD_REQUEST);
+        }
+        if (cursor != null && cursor < 0) {
+            return new ResponseEntity<>("cursor must not be negative.", HttpStatus.BAD_REQUEST);
+        }
 
         try {
-            this.accountsService.makeTransfer(transfer);
-        } catch (AccountNotFoundException ane) {
-            return new ResponseEntity<>(ane.getMessage(), HttpStatus.NOT_FOUND);
-        } catch (NotEnoughFundsException nbe) {
-            return new ResponseEntity<>(nbe.getMessage(), HttpStatus.UNPROCESSABLE_ENTITY);
-        } catch (TransferBetweenSameAccountException ex) {
-            return new ResponseEntity<>(ex.getMessage(), HttpStatus.BAD_REQUEST);
+            return new ResponseEntity<>(this.accountsService.getTransactions(accountId,
+                    cursor == null ? Long.MAX_VALUE : cursor, limit), HttpStatus.OK);
+        } catch (AccountNotFoundException anfe) {
+            return new ResponseEntity<>(anfe.getMessage(), HttpStatus.NOT_FOUND);
         }
-
-        return new ResponseEntity<>(HttpStatus.OK);
     }
 
+    /**
+     * Marks an account as hot, so that concurrent credits to it are not serialized.
+     *
+     * @param accountId the account id
+     * @return the response entity
+     */
+    @PutMapping(path = "/{accountId}/hot")
+    public ResponseEntity<Object> markHot(@PathVariable String accountId) {
+        log.info("Marking account {} as hot", accountId);
 
+        try {
+            if (!this.accountsService.markHot(accountId)) {
+                return new ResponseEntity<>("The accounts repository cannot make accounts hot.",
+                        HttpStatus.NOT_IMPLEMENTED);
+            }
+        } catch (AccountNotFoundException anfe) {
+            return new ResponseEntity<>(anfe.getMessage(), HttpStatus.NOT_FOUND);
+        }
+        return new ResponseEntity<>(HttpStatus.OK);
+    }
 }
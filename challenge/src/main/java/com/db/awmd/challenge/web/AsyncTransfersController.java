@@ -0,0 +1,183 @@
+package com.db.awmd.challenge.web;
+
+import com.db.awmd.challenge.admission.AdmissionPermit;
+import com.db.awmd.challenge.admission.TransferAdmission;
+import com.db.awmd.challenge.domain.MultiLegTransfer;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.service.AccountsService;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import javax.servlet.http.HttpServletRequest;
+import javax.validation.Valid;
+import javax.validation.Validator;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * The transfer routes of {@code /v1/accounts}, answered asynchronously when
+ * {@code accounts.web.async=true}.
+ * <p>
+ * Each handler returns a future, and Spring MVC puts the request in Servlet asynchronous mode: the
+ * container thread goes back to the pool once the transfer is applied, without waiting for the
+ * journal or the engine, and the response is written when the future completes. Connections are
+ * held by the non-blocking connector rather than by threads, so a small thread pool serves many
+ * transfers in flight.
+ */
+@RestController
+@RequestMapping("/v1/accounts")
+@ConditionalOnProperty(name = "accounts.web.async", havingValue = "true")
+
+/** The Constant log. */
+@Slf4j
+public class AsyncTransfersController {
+
+    /** The accounts service. */
+    private final AccountsService accountsService;
+
+    /** The validator, applied to each element of a transfer batch. */
+    private final Validator validator;
+
+    /** The responses given to idempotency keys. */
+    private final IdempotencyCache idempotencyCache;
+
+    /** The admission of transfer requests. */
+    private final TransferAdmission transferAdmission;
+
+    /** The most transfers a batch may hold. */
+    private final int maxBatch;
+
+    /**
+     * Instantiates a new async transfers controller.
+     *
+     * @param accountsService the accounts service
+     * @param validator the validator
+     * @param idempotencyCache the responses given to idempotency keys
+     * @param transferAdmission the admission of transfer requests
+     * @param maxBatch the most transfers a batch may hold
+     */
+    @Autowired
+    public AsyncTransfersController(AccountsService accountsService, Validator validator,
+                                    IdempotencyCache idempotencyCache, TransferAdmission transferAdmission,
+                                    @Value("${accounts.transfers.max-batch:1000}") int maxBatch) {
+        this.accountsService = accountsService;
+        this.validator = validator;
+        this.idempotencyCache = idempotencyCache;
+        this.transferAdmission = transferAdmission;
+        this.maxBatch = maxBatch;
+    }
+
+    /**
+     * Make transfer. A transfer sent again with the same idempotency key is not made again; the
+     * response to the first one is returned instead, without going through admission. A transfer
+     * the admission rejects is turned away with 429 before anything else is done for it; an
+     * admitted one holds its permit until the response is ready.
+     *
+     * @param transfer the transfer
+     * @param idempotencyKey the idempotency key, if any
+     * @param request the request
+     * @return the future of the response entity
+     */
+    @PutMapping(path = "/transfer", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public CompletableFuture<ResponseEntity<Object>> makeTransfer(@RequestBody @Valid Transfer transfer,
+            @RequestHeader(name = "Idempotency-Key", required = false) String idempotencyKey,
+            HttpServletRequest request) {
+        if (idempotencyKey != null) {
+            final ResponseEntity<Object> replayed = idempotencyCache.replay(idempotencyKey, transfer);
+            if (replayed != null) {
+                return CompletableFuture.completedFuture(replayed);
+            }
+        }
+        final AdmissionPermit permit = transferAdmission.admit(TransferResponses.clientId(request),
+                transfer.getAccountFromId());
+        if (!permit.isGranted()) {
+            return CompletableFuture.completedFuture(TransferResponses.tooManyRequests(permit));
+        }
+        log.info("Making transfer {}", transfer);
+
+        final CompletableFuture<ResponseEntity<Object>> response;
+        try {
+            if (idempotencyKey == null) {
+                response = this.accountsService.submitTransfer(transfer).thenApply(TransferResponses::of);
+            } else {
+                response = idempotencyCache.executeAsync(idempotencyKey, transfer,
+                        () -> this.accountsService.submitTransfer(transfer).thenApply(TransferResponses::of));
+            }
+        } catch (RuntimeException e) {
+            permit.release();
+            throw e;
+        }
+        return response.whenComplete((completed, failure) -> permit.release());
+    }
+
+    /**
+     * Make multi-leg transfer. Its legs are applied all or none. The admission charges the client
+     * for each leg, and each debited account for each debit.
+     *
+     * @param transfer the transfer
+     * @param request the request
+     * @return the future of the response entity
+     */
+    @PutMapping(path = "/transfers/multi-leg", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public CompletableFuture<ResponseEntity<Object>> makeMultiLegTransfer(@RequestBody @Valid MultiLegTransfer transfer,
+                                                                          HttpServletRequest request) {
+        final ResponseEntity<Object> invalid = TransferResponses.invalidMultiLeg(transfer, accountsService);
+        if (invalid != null) {
+            return CompletableFuture.completedFuture(invalid);
+        }
+        final AdmissionPermit permit = transferAdmission.admit(TransferResponses.clientId(request),
+                transfer.getLegs().size(), TransferResponses.debitedAccounts(transfer));
+        if (!permit.isGranted()) {
+            return CompletableFuture.completedFuture(TransferResponses.tooManyRequests(permit));
+        }
+        log.info("Making transfer of {} legs", transfer.getLegs().size());
+
+        final CompletableFuture<ResponseEntity<Object>> response;
+        try {
+            response = this.accountsService.submitMultiLegTransfer(transfer).thenApply(TransferResponses::of);
+        } catch (RuntimeException e) {
+            permit.release();
+            throw e;
+        }
+        return response.whenComplete((completed, failure) -> permit.release());
+    }
+
+    /**
+     * Make transfers. The admission charges the client and the debited account for each transfer.
+     *
+     * @param transfers the transfers
+     * @param request the request
+     * @return the future of the response entity holding the status of each transfer, in request order
+     */
+    @PutMapping(path = "/transfers/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public CompletableFuture<ResponseEntity<Object>> makeTransfers(@RequestBody List<Transfer> transfers,
+                                                                   HttpServletRequest request) {
+        final ResponseEntity<Object> invalid = TransferResponses.invalidBatch(transfers, validator, maxBatch);
+        if (invalid != null) {
+            return CompletableFuture.completedFuture(invalid);
+        }
+        final AdmissionPermit permit = transferAdmission.admit(TransferResponses.clientId(request),
+                transfers.size(), TransferResponses.debitedAccounts(transfers));
+        if (!permit.isGranted()) {
+            return CompletableFuture.completedFuture(TransferResponses.tooManyRequests(permit));
+        }
+        log.info("Making batch of {} transfers", transfers.size());
+
+        final CompletableFuture<ResponseEntity<Object>> response;
+        try {
+            response = this.accountsService.submitTransfers(transfers)
+                    .thenApply(statuses -> new ResponseEntity<>(statuses, HttpStatus.OK));
+        } catch (RuntimeException e) {
+            permit.release();
+            throw e;
+        }
+        return response.whenComplete((completed, failure) -> permit.release());
+    }
+}
@@ -0,0 +1,95 @@
+package com.db.awmd.challenge.web;
+
+import com.db.awmd.challenge.notification.BalancePublisher;
+import com.db.awmd.challenge.notification.BalanceSubscription;
+import com.db.awmd.challenge.service.AccountsService;
+
+import java.io.IOException;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Streams the balances of a set of accounts as Server-Sent Events, in place of polling
+ * {@code GET /v1/accounts/{id}}.
+ */
+@Slf4j
+@RestController
+@RequestMapping("/v1/balances")
+public class BalancesController {
+
+    /** The largest number of accounts one stream subscribes to. */
+    static final int MAX_STREAM_ACCOUNTS = 1000;
+
+    /** The accounts service. */
+    private final AccountsService accountsService;
+
+    /** The publisher of balance changes. */
+    private final BalancePublisher balancePublisher;
+
+    /** How long a stream stays open, in milliseconds. */
+    private final long timeout;
+
+    /**
+     * Instantiates a new balances controller.
+     *
+     * @param accountsService the accounts service
+     * @param balancePublisher the publisher of balance changes
+     * @param timeout how long a stream stays open, in milliseconds, after which the client reconnects
+     */
+    @Autowired
+    public BalancesController(AccountsService accountsService, BalancePublisher balancePublisher,
+                              @Value("${accounts.streams.timeout:1800000}") long timeout) {
+        this.accountsService = accountsService;
+        this.balancePublisher = balancePublisher;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Streams the balances of accounts: a {@code balance} event with the current balance of each
+     * account, then one whenever a balance changes. A client reading slower than the balances change
+     * receives the latest balance of each account, not every intermediate one. Refused with 400 when
+     * there are no ids or more than {@value #MAX_STREAM_ACCOUNTS}, with 404 when an account does not
+     * exist.
+     *
+     * @param accountIds the account ids, comma separated
+     * @return the response entity holding the event stream
+     */
+    @GetMapping(path = "/stream")
+    public ResponseEntity<SseEmitter> streamBalances(@RequestParam("accountIds") List<String> accountIds) {
+        final Set<String> ids = new LinkedHashSet<>(accountIds);
+        if (ids.isEmpty() || ids.size() > MAX_STREAM_ACCOUNTS) {
+            return ResponseEntity.badRequest().build();
+        }
+        for (String accountId : ids) {
+            if (accountsService.getAccountSnapshot(accountId) == null) {
+                return ResponseEntity.notFound().build();
+            }
+        }
+        log.info("Streaming the balances of {} account(s)", ids.size());
+
+        final SseEmitter emitter = new SseEmitter(timeout);
+        final BalanceSubscription subscription = balancePublisher.subscribe(ids, snapshot -> {
+            try {
+                emitter.send(SseEmitter.event().name("balance").data(snapshot, MediaType.APPLICATION_JSON));
+            } catch (IOException e) {
+                emitter.completeWithError(e);
+                throw e;
+            }
+        });
+        emitter.onCompletion(subscription::cancel);
+        emitter.onTimeout(subscription::cancel);
+        return ResponseEntity.ok(emitter);
+    }
+}
@@ -0,0 +1,280 @@
+package com.db.awmd.challenge.web;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+/**
+ * Remembers the response given to each idempotency key, so that a retried request gets the same
+ * response instead of being executed again.
+ * <p>
+ * Entries sit in a concurrent map and, in the order they were added, in a ring of fixed capacity;
+ * adding an entry evicts the one it takes the ring slot of, and an entry older than the time to
+ * live is ignored and replaced. Memory therefore stays bounded however many keys arrive, and every
+ * operation is O(1). A duplicate that arrives while the original request is still executing waits
+ * for its response.
+ */
+@Component
+public class IdempotencyCache {
+
+    /** The header set on a response replayed from the cache. */
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    /** The entries, by key. */
+    private final ConcurrentHashMap<String, Entry> entries;
+
+    /** The entries, in the order they were added. */
+    private final AtomicReferenceArray<Entry> ring;
+
+    /** The number of entries added. */
+    private final AtomicLong added = new AtomicLong();
+
+    /** How long an entry is kept, in milliseconds. */
+    private final long ttlMillis;
+
+    /**
+     * Instantiates a new idempotency cache.
+     *
+     * @param capacity the largest number of keys remembered
+     * @param ttlMillis how long a key is remembered, in milliseconds
+     */
+    @Autowired
+    public IdempotencyCache(@Value("${accounts.idempotency.capacity:65536}") int capacity,
+                            @Value("${accounts.idempotency.ttl:86400000}") long ttlMillis) {
+        if (capacity < 1 || ttlMillis < 1) {
+            throw new IllegalArgumentException("Idempotency cache capacity and time to live must be positive.");
+        }
+        this.entries = new ConcurrentHashMap<>(capacity * 4 / 3 + 1);
+        this.ring = new AtomicReferenceArray<>(capacity);
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * Executes a request once per idempotency key. The first request with a key executes; later
+     * ones with the same key get its response, waiting for it if need be, unless they carry a
+     * different request, which is refused. A request that fails with an exception is forgotten,
+     * so that it can be retried.
+     *
+     * @param key the idempotency key
+     * @param request the request, compared with the one first seen with the key
+     * @param action executes the request
+     * @return the response
+     */
+    public ResponseEntity<Object> execute(String key, Object request, Supplier<ResponseEntity<Object>> action) {
+        final Entry created = new Entry(key, request, System.currentTimeMillis());
+        final Entry entry = putIfAbsent(created);
+        if (entry == created) {
+            return executeFirst(created, action);
+        }
+
+        if (!entry.request.equals(request)) {
+            return conflict(key);
+        }
+        final ResponseEntity<Object> response;
+        try {
+            response = entry.response.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+        return replayed(response);
+    }
+
+    /**
+     * Executes a request once per idempotency key, as {@link #execute(String, Object, Supplier)}
+     * does, without waiting: a duplicate gets a future of the response to the first request.
+     *
+     * @param key the idempotency key
+     * @param request the request, compared with the one first seen with the key
+     * @param action starts executing the request
+     * @return the future of the response
+     */
+    public CompletableFuture<ResponseEntity<Object>> executeAsync(String key, Object request,
+            Supplier<CompletableFuture<ResponseEntity<Object>>> action) {
+        final Entry created = new Entry(key, request, System.currentTimeMillis());
+        final Entry entry = putIfAbsent(created);
+        if (entry == created) {
+            final CompletableFuture<ResponseEntity<Object>> response;
+            try {
+                response = action.get();
+            } catch (RuntimeException e) {
+                forget(created, e);
+                throw e;
+            }
+            return response.whenComplete((completed, failure) -> {
+                if (failure == null) {
+                    created.response.complete(completed);
+                } else {
+                    forget(created, failure);
+                }
+            });
+        }
+
+        if (!entry.request.equals(request)) {
+            return CompletableFuture.completedFuture(conflict(key));
+        }
+        return entry.response.thenApply(IdempotencyCache::replayed);
+    }
+
+    /**
+     * Gets the response to a request already executed with an idempotency key, without executing
+     * anything, so that a retry can be answered before it is admitted. A key whose request is still
+     * executing, failed or expired is not found.
+     *
+     * @param key the idempotency key
+     * @param request the request, compared with the one first seen with the key
+     * @return the replayed response, or the refusal of a key reused for another request; null if
+     *         the key has no response yet
+     */
+    public ResponseEntity<Object> replay(String key, Object request) {
+        final Entry entry = entries.get(key);
+        if (entry == null || System.currentTimeMillis() - entry.createdMillis > ttlMillis) {
+            return null;
+        }
+        if (!entry.request.equals(request)) {
+            return conflict(key);
+        }
+        if (!entry.response.isDone() || entry.response.isCompletedExceptionally()) {
+            return null;
+        }
+        return replayed(entry.response.join());
+    }
+
+    /**
+     * Gets the number of keys remembered.
+     *
+     * @return the size
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Adds the entry of a key, unless an entry that has not expired is already there.
+     *
+     * @param created the new entry
+     * @return the entry of the key: the new one if it was added
+     */
+    private Entry putIfAbsent(Entry created) {
+        Entry entry = entries.get(created.key);
+        if (entry != null && created.createdMillis - entry.createdMillis > ttlMillis) {
+            entries.remove(created.key, entry);
+            entry = null;
+        }
+        if (entry == null) {
+            entry = entries.putIfAbsent(created.key, created);
+            if (entry == null) {
+                admit(created);
+                return created;
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Executes the first request with a key and stores its response.
+     *
+     * @param entry the entry of the key
+     * @param action executes the request
+     * @return the response
+     */
+    private ResponseEntity<Object> executeFirst(Entry entry, Supplier<ResponseEntity<Object>> action) {
+        final ResponseEntity<Object> response;
+        try {
+            response = action.get();
+        } catch (RuntimeException e) {
+            forget(entry, e);
+            throw e;
+        }
+        entry.response.complete(response);
+        return response;
+    }
+
+    /**
+     * Forgets a key whose request failed, failing the duplicates waiting for it.
+     *
+     * @param entry the entry of the key
+     * @param failure the failure
+     */
+    private void forget(Entry entry, Throwable failure) {
+        entries.remove(entry.key, entry);
+        entry.response.completeExceptionally(failure);
+    }
+
+    /**
+     * Refuses a key reused for another request.
+     *
+     * @param key the idempotency key
+     * @return the response
+     */
+    private static ResponseEntity<Object> conflict(String key) {
+        return new ResponseEntity<>("Idempotency key " + key + " was already used for another request.",
+                HttpStatus.UNPROCESSABLE_ENTITY);
+    }
+
+    /**
+     * Copies a response, marked as replayed.
+     *
+     * @param response the response
+     * @return the replayed response
+     */
+    private static ResponseEntity<Object> replayed(ResponseEntity<Object> response) {
+        final HttpHeaders headers = new HttpHeaders();
+        headers.putAll(response.getHeaders());
+        headers.set(REPLAYED_HEADER, "true");
+        return new ResponseEntity<>(response.getBody(), headers, response.getStatusCode());
+    }
+
+    /**
+     * Puts an entry in the next slot of the ring, evicting the entry it held.
+     *
+     * @param entry the entry
+     */
+    private void admit(Entry entry) {
+        final int slot = (int) (added.getAndIncrement() % ring.length());
+        final Entry evicted = ring.getAndSet(slot, entry);
+        if (evicted != null) {
+            entries.remove(evicted.key, evicted);
+        }
+    }
+
+    /**
+     * The response to an idempotency key.
+     */
+    private static final class Entry {
+
+        /** The key. */
+        private final String key;
+
+        /** The request. */
+        private final Object request;
+
+        /** When the entry was created, in epoch milliseconds. */
+        private final long createdMillis;
+
+        /** The response, completed once the request executed. */
+        private final CompletableFuture<ResponseEntity<Object>> response = new CompletableFuture<>();
+
+        /**
+         * Instantiates a new entry.
+         *
+         * @param key the key
+         * @param request the request
+         * @param createdMillis when the entry was created
+         */
+        private Entry(String key, Object request, long createdMillis) {
+            this.key = key;
+            this.request = request;
+            this.createdMillis = createdMillis;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.db.awmd.challenge.web;
+
+import com.db.awmd.challenge.metrics.TransferMetrics;
+import com.db.awmd.challenge.metrics.TransferMetricsSnapshot;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * The Class MetricsController.
+ */
+@RestController
+@RequestMapping("/v1/metrics")
+public class MetricsController {
+
+    /** The transfer metrics. */
+    private final TransferMetrics transferMetrics;
+
+    /**
+     * Instantiates a new metrics controller.
+     *
+     * @param transferMetrics the transfer metrics
+     */
+    @Autowired
+    public MetricsController(TransferMetrics transferMetrics) {
+        this.transferMetrics = transferMetrics;
+    }
+
+    /**
+     * Gets the p50, p99 and p99.9 latencies of each transfer stage, in nanoseconds, and the number
+     * of transfers of each outcome.
+     *
+     * @return the transfer metrics snapshot
+     */
+    @GetMapping(path = "/transfers")
+    public TransferMetricsSnapshot getTransferMetrics() {
+        return transferMetrics.snapshot();
+    }
+}
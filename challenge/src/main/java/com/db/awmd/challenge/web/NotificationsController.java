@@ -0,0 +1,40 @@
+package com.db.awmd.challenge.web;
+
+import com.db.awmd.challenge.notification.NotificationDispatcher;
+import com.db.awmd.challenge.notification.NotificationQueueStatus;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * The Class NotificationsController.
+ */
+@RestController
+@RequestMapping("/v1/notifications")
+public class NotificationsController {
+
+    /** The notification dispatcher. */
+    private final NotificationDispatcher notificationDispatcher;
+
+    /**
+     * Instantiates a new notifications controller.
+     *
+     * @param notificationDispatcher the notification dispatcher
+     */
+    @Autowired
+    public NotificationsController(NotificationDispatcher notificationDispatcher) {
+        this.notificationDispatcher = notificationDispatcher;
+    }
+
+    /**
+     * Gets the depth and lag of the notification queue.
+     *
+     * @return the queue status
+     */
+    @GetMapping(path = "/queue")
+    public NotificationQueueStatus getQueueStatus() {
+        return notificationDispatcher.getStatus();
+    }
+}
@@ -0,0 +1,66 @@
+package com.db.awmd.challenge.web;
+
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.metrics.TransferMetrics;
+import com.db.awmd.challenge.metrics.TransferStage;
+import java.lang.reflect.Type;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.RequestBodyAdviceAdapter;
+
+/**
+ * Times the reading of a {@link Transfer} from a JSON request body as the
+ * {@link TransferStage#BINDING} stage.
+ */
+@ControllerAdvice
+public class TransferBindingTimer extends RequestBodyAdviceAdapter {
+
+    /** The mark taken before the body is read, per request thread; one slot, reused. */
+    private static final ThreadLocal<long[]> MARK = ThreadLocal.withInitial(() -> new long[1]);
+
+    /** The transfer metrics. */
+    private final TransferMetrics transferMetrics;
+
+    /**
+     * Instantiates a new transfer binding timer.
+     *
+     * @param transferMetrics the transfer metrics
+     */
+    @Autowired
+    public TransferBindingTimer(TransferMetrics transferMetrics) {
+        this.transferMetrics = transferMetrics;
+    }
+
+    /* (non-Javadoc)
+     * @see org.springframework.web.servlet.mvc.method.annotation.RequestBodyAdvice#supports(org.springframework.core.MethodParameter, java.lang.reflect.Type, java.lang.Class)
+     */
+    @Override
+    public boolean supports(MethodParameter methodParameter, Type targetType,
+                            Class<? extends HttpMessageConverter<?>> converterType) {
+        return targetType == Transfer.class;
+    }
+
+    /* (non-Javadoc)
+     * @see org.springframework.web.servlet.mvc.method.annotation.RequestBodyAdviceAdapter#beforeBodyRead(org.springframework.http.HttpInputMessage, org.springframework.core.MethodParameter, java.lang.reflect.Type, java.lang.Class)
+     */
+    @Override
+    public HttpInputMessage beforeBodyRead(HttpInputMessage inputMessage, MethodParameter parameter, Type targetType,
+                                           Class<? extends HttpMessageConverter<?>> converterType) {
+        MARK.get()[0] = transferMetrics.start();
+        return inputMessage;
+    }
+
+    /* (non-Javadoc)
+     * @see org.springframework.web.servlet.mvc.method.annotation.RequestBodyAdviceAdapter#afterBodyRead(java.lang.Object, org.springframework.http.HttpInputMessage, org.springframework.core.MethodParameter, java.lang.reflect.Type, java.lang.Class)
+     */
+    @Override
+    public Object afterBodyRead(Object body, HttpInputMessage inputMessage, MethodParameter parameter, Type targetType,
+                                Class<? extends HttpMessageConverter<?>> converterType) {
+        transferMetrics.record(TransferStage.BINDING, MARK.get()[0]);
+        return body;
+    }
+}
@@ -0,0 +1,151 @@
+package com.db.awmd.challenge.web;
+
+import com.db.awmd.challenge.admission.AdmissionPermit;
+import com.db.awmd.challenge.domain.MultiLegTransfer;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.domain.TransferLeg;
+import com.db.awmd.challenge.domain.TransferResult;
+import com.db.awmd.challenge.service.AccountsService;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import javax.servlet.http.HttpServletRequest;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+/**
+ * The responses shared by {@link TransfersController} and {@link AsyncTransfersController}.
+ */
+final class TransferResponses {
+
+    /**
+     * Instantiates a new transfer responses.
+     */
+    private TransferResponses() {
+    }
+
+    /**
+     * Turns the result of a transfer into a response.
+     *
+     * @param result the transfer result
+     * @return the response entity
+     */
+    static ResponseEntity<Object> of(TransferResult result) {
+        switch (result.getStatus()) {
+        case NOT_FOUND:
+            return new ResponseEntity<>(result.getMessage(), HttpStatus.NOT_FOUND);
+        case INSUFFICIENT_FUNDS:
+            return new ResponseEntity<>(result.getMessage(), HttpStatus.UNPROCESSABLE_ENTITY);
+        case SAME_ACCOUNT:
+            return new ResponseEntity<>(result.getMessage(), HttpStatus.BAD_REQUEST);
+        default:
+            return new ResponseEntity<>(HttpStatus.OK);
+        }
+    }
+
+    /**
+     * Identifies the client sending a request, for admission: by the authenticated principal if
+     * there is one, otherwise by the remote address. Nothing the client sends is trusted for it, so
+     * that a client cannot spread its requests over made-up identities.
+     *
+     * @param request the request
+     * @return the client id
+     */
+    static String clientId(HttpServletRequest request) {
+        final Principal principal = request.getUserPrincipal();
+        return principal != null ? "principal:" + principal.getName() : request.getRemoteAddr();
+    }
+
+    /**
+     * Gets the account each transfer of a batch debits.
+     *
+     * @param transfers the transfers
+     * @return the debited account ids, one per transfer
+     */
+    static List<String> debitedAccounts(List<Transfer> transfers) {
+        final List<String> accountIds = new ArrayList<>(transfers.size());
+        for (Transfer transfer : transfers) {
+            accountIds.add(transfer.getAccountFromId());
+        }
+        return accountIds;
+    }
+
+    /**
+     * Gets the account each debit leg of a multi-leg transfer debits.
+     *
+     * @param transfer the transfer
+     * @return the debited account ids, one per debit leg
+     */
+    static List<String> debitedAccounts(MultiLegTransfer transfer) {
+        final List<String> accountIds = new ArrayList<>(transfer.getLegs().size());
+        for (TransferLeg leg : transfer.getLegs()) {
+            if (leg.isDebit()) {
+                accountIds.add(leg.getAccountId());
+            }
+        }
+        return accountIds;
+    }
+
+    /**
+     * Turns away a request the admission rejected.
+     *
+     * @param permit the rejection
+     * @return the response entity
+     */
+    static ResponseEntity<Object> tooManyRequests(AdmissionPermit permit) {
+        final HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, Long.toString(permit.getRetryAfterSeconds()));
+        return new ResponseEntity<>(permit.getRejection(), headers, HttpStatus.TOO_MANY_REQUESTS);
+    }
+
+    /**
+     * Validates the size of a batch and each of its transfers.
+     *
+     * @param transfers the transfers
+     * @param validator the validator
+     * @param maxBatch the most transfers a batch may hold, as it locks all their accounts at once
+     * @return the response refusing the batch, null if every transfer is valid
+     */
+    static ResponseEntity<Object> invalidBatch(List<Transfer> transfers, Validator validator, int maxBatch) {
+        if (transfers.size() > maxBatch) {
+            return new ResponseEntity<>("A batch holds at most " + maxBatch + " transfers.", HttpStatus.BAD_REQUEST);
+        }
+        for (int i = 0; i < transfers.size(); i++) {
+            final Transfer transfer = transfers.get(i);
+            if (transfer == null) {
+                return new ResponseEntity<>("Transfer " + i + " is missing.", HttpStatus.BAD_REQUEST);
+            }
+            final Set<ConstraintViolation<Transfer>> violations = validator.validate(transfer);
+            if (!violations.isEmpty()) {
+                final ConstraintViolation<Transfer> violation = violations.iterator().next();
+                return new ResponseEntity<>("Transfer " + i + ": " + violation.getPropertyPath() + " " + violation.getMessage(),
+                        HttpStatus.BAD_REQUEST);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Checks that a multi-leg transfer is well formed and can be made.
+     *
+     * @param transfer the transfer
+     * @param accountsService the accounts service
+     * @return the response refusing the transfer, null if it can be made
+     */
+    static ResponseEntity<Object> invalidMultiLeg(MultiLegTransfer transfer, AccountsService accountsService) {
+        if (!accountsService.supportsMultiLegTransfers()) {
+            return new ResponseEntity<>("Multi-leg transfers are not supported by the configured transfer engine.",
+                    HttpStatus.NOT_IMPLEMENTED);
+        }
+        final String problem = transfer.findProblem();
+        if (problem != null) {
+            return new ResponseEntity<>(problem, HttpStatus.BAD_REQUEST);
+        }
+        return null;
+    }
+}
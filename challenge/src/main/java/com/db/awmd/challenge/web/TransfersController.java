@@ -0,0 +1,165 @@
+package com.db.awmd.challenge.web;
+
+import com.db.awmd.challenge.admission.AdmissionPermit;
+import com.db.awmd.challenge.admission.TransferAdmission;
+import com.db.awmd.challenge.domain.MultiLegTransfer;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.domain.TransferStatus;
+import com.db.awmd.challenge.service.AccountsService;
+
+import java.util.List;
+import javax.servlet.http.HttpServletRequest;
+import javax.validation.Valid;
+import javax.validation.Validator;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * The transfer routes of {@code /v1/accounts}, holding the request thread until each transfer
+ * completes. This is the default, unless {@code accounts.web.async=true}.
+ */
+@RestController
+@RequestMapping("/v1/accounts")
+@ConditionalOnProperty(name = "accounts.web.async", havingValue = "false", matchIfMissing = true)
+
+/** The Constant log. */
+@Slf4j
+public class TransfersController {
+
+    /** The accounts service. */
+    private final AccountsService accountsService;
+
+    /** The validator, applied to each element of a transfer batch. */
+    private final Validator validator;
+
+    /** The responses given to idempotency keys. */
+    private final IdempotencyCache idempotencyCache;
+
+    /** The admission of transfer requests. */
+    private final TransferAdmission transferAdmission;
+
+    /** The most transfers a batch may hold. */
+    private final int maxBatch;
+
+    /**
+     * Instantiates a new transfers controller.
+     *
+     * @param accountsService the accounts service
+     * @param validator the validator
+     * @param idempotencyCache the responses given to idempotency keys
+     * @param transferAdmission the admission of transfer requests
+     * @param maxBatch the most transfers a batch may hold
+     */
+    @Autowired
+    public TransfersController(AccountsService accountsService, Validator validator, IdempotencyCache idempotencyCache,
+                               TransferAdmission transferAdmission,
+                               @Value("${accounts.transfers.max-batch:1000}") int maxBatch) {
+        this.accountsService = accountsService;
+        this.validator = validator;
+        this.idempotencyCache = idempotencyCache;
+        this.transferAdmission = transferAdmission;
+        this.maxBatch = maxBatch;
+    }
+
+    /**
+     * Make transfer. A transfer sent again with the same idempotency key is not made again; the
+     * response to the first one is returned instead, without going through admission. A transfer
+     * the admission rejects is turned away with 429 before anything else is done for it.
+     *
+     * @param transfer the transfer
+     * @param idempotencyKey the idempotency key, if any
+     * @param request the request
+     * @return the response entity
+     */
+    @PutMapping(path = "/transfer", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Object> makeTransfer(@RequestBody @Valid Transfer transfer,
+                                               @RequestHeader(name = "Idempotency-Key", required = false) String idempotencyKey,
+                                               HttpServletRequest request) {
+        if (idempotencyKey != null) {
+            final ResponseEntity<Object> replayed = idempotencyCache.replay(idempotencyKey, transfer);
+            if (replayed != null) {
+                return replayed;
+            }
+        }
+        final AdmissionPermit permit = transferAdmission.admit(TransferResponses.clientId(request),
+                transfer.getAccountFromId());
+        if (!permit.isGranted()) {
+            return TransferResponses.tooManyRequests(permit);
+        }
+        log.info("Making transfer {}", transfer);
+
+        try {
+            if (idempotencyKey == null) {
+                return TransferResponses.of(this.accountsService.tryTransfer(transfer));
+            }
+            return idempotencyCache.execute(idempotencyKey, transfer,
+                    () -> TransferResponses.of(this.accountsService.tryTransfer(transfer)));
+        } finally {
+            permit.release();
+        }
+    }
+
+    /**
+     * Make multi-leg transfer. Its legs are applied all or none. The admission charges the client
+     * for each leg, and each debited account for each debit.
+     *
+     * @param transfer the transfer
+     * @param request the request
+     * @return the response entity
+     */
+    @PutMapping(path = "/transfers/multi-leg", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Object> makeMultiLegTransfer(@RequestBody @Valid MultiLegTransfer transfer,
+                                                       HttpServletRequest request) {
+        final ResponseEntity<Object> invalid = TransferResponses.invalidMultiLeg(transfer, accountsService);
+        if (invalid != null) {
+            return invalid;
+        }
+        final AdmissionPermit permit = transferAdmission.admit(TransferResponses.clientId(request),
+                transfer.getLegs().size(), TransferResponses.debitedAccounts(transfer));
+        if (!permit.isGranted()) {
+            return TransferResponses.tooManyRequests(permit);
+        }
+        log.info("Making transfer of {} legs", transfer.getLegs().size());
+
+        try {
+            return TransferResponses.of(this.accountsService.tryMultiLegTransfer(transfer));
+        } finally {
+            permit.release();
+        }
+    }
+
+    /**
+     * Make transfers. The admission charges the client and the debited account for each transfer.
+     *
+     * @param transfers the transfers
+     * @param request the request
+     * @return the response entity holding the status of each transfer, in request order
+     */
+    @PutMapping(path = "/transfers/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Object> makeTransfers(@RequestBody List<Transfer> transfers, HttpServletRequest request) {
+        final ResponseEntity<Object> invalid = TransferResponses.invalidBatch(transfers, validator, maxBatch);
+        if (invalid != null) {
+            return invalid;
+        }
+        final AdmissionPermit permit = transferAdmission.admit(TransferResponses.clientId(request),
+                transfers.size(), TransferResponses.debitedAccounts(transfers));
+        if (!permit.isGranted()) {
+            return TransferResponses.tooManyRequests(permit);
+        }
+        log.info("Making batch of {} transfers", transfers.size());
+
+        try {
+            final List<TransferStatus> statuses = this.accountsService.makeTransfers(transfers);
+            return new ResponseEntity<>(statuses, HttpStatus.OK);
+        } finally {
+            permit.release();
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.db.awmd.challenge.web;
+
+import com.db.awmd.challenge.service.VirtualThreads;
+import java.util.concurrent.ExecutorService;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.coyote.AbstractProtocol;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.embedded.EmbeddedServletContainerCustomizer;
+import org.springframework.boot.context.embedded.tomcat.TomcatEmbeddedServletContainerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Runs the HTTP requests on virtual threads when {@code accounts.threads.virtual=true}: the Tomcat
+ * connector hands each request to a new virtual thread instead of a thread of its bounded pool, so
+ * a request waiting for the journal or the notification service holds no platform thread, and the
+ * number of requests in flight is bounded by {@code server.tomcat.max-connections} only.
+ * <p>
+ * Needs Java 21 or later at runtime; startup fails otherwise.
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(name = "accounts.threads.virtual", havingValue = "true")
+public class VirtualThreadConfiguration {
+
+    /**
+     * The executor of the HTTP requests.
+     *
+     * @return the executor service
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService requestExecutor() {
+        return VirtualThreads.newThreadPerTaskExecutor("http-virtual-");
+    }
+
+    /**
+     * Gives the request executor to the Tomcat connector.
+     *
+     * @param requestExecutor the executor of the HTTP requests
+     * @return the embedded servlet container customizer
+     */
+    @Bean
+    public EmbeddedServletContainerCustomizer virtualThreadContainerCustomizer(
+            @Qualifier("requestExecutor") ExecutorService requestExecutor) {
+        return container -> {
+            if (container instanceof TomcatEmbeddedServletContainerFactory) {
+                ((TomcatEmbeddedServletContainerFactory) container).addConnectorCustomizers(connector -> {
+                    if (connector.getProtocolHandler() instanceof AbstractProtocol) {
+                        ((AbstractProtocol<?>) connector.getProtocolHandler()).setExecutor(requestExecutor);
+                        log.info("Serving HTTP requests on virtual threads");
+                    }
+                });
+            }
+        };
+    }
+}
@@ -1,14 +1,18 @@
 package com.db.awmd.challenge;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsString;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
 
 import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.metrics.TransferMetrics;
+import com.db.awmd.challenge.metrics.TransferMetricsSnapshot;
 import com.db.awmd.challenge.service.AccountsService;
 import java.math.BigDecimal;
 import org.junit.Before;
@@ -38,6 +42,10 @@ public class AccountsControllerTest {
   @Autowired
   private AccountsService accountsService;
 
+  /** The transfer metrics. */
+  @Autowired
+  private TransferMetrics transferMetrics;
+
   /** The web application context. */
   @Autowired
   private WebApplicationContext webApplicationContext;
@@ -132,6 +140,30 @@ public class AccountsControllerTest {
     createAccountWithContent("{\"accountId\":\"\",\"balance\":1000}").andExpect(status().isBadRequest());
   }
 
+  /**
+   * Import accounts.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void importAccounts() throws Exception {
+    createAccountWithContent("{\"accountId\":\"Id-123\",\"balance\":1000}").andExpect(status().isCreated());
+
+    this.mockMvc.perform(post("/v1/accounts/import").contentType("application/x-ndjson")
+            .content("{\"accountId\":\"Id-1\",\"balance\":10.5}\n"
+                    + "{\"accountId\":\"Id-123\",\"balance\":1}\n"
+                    + "{\"accountId\":\"Id-2\",\"balance\":-1}\n"
+                    + "{\"accountId\":\"Id-3\",\"balance\":0}\n"))
+            .andExpect(status().isOk())
+            .andExpect(content().string("{\"lines\":4,\"created\":2,\"failed\":2,\"failures\":["
+                    + "{\"line\":2,\"message\":\"Account id Id-123 already exists!\"},"
+                    + "{\"line\":3,\"message\":\"Initial balance must be positive.\"}]}"));
+
+    assertThat(accountsService.getAccount("Id-1").getBalance()).isEqualByComparingTo("10.50");
+    assertThat(accountsService.getAccount("Id-3").getBalance()).isEqualByComparingTo("0");
+    assertThat(accountsService.getAccount("Id-2")).isNull();
+  }
+
   /**
    * Creates the account with content.
    *
@@ -158,6 +190,64 @@ public class AccountsControllerTest {
     verifyAccountBalance(uniqueAccountId, new BigDecimal("123.45"));
   }
 
+  /**
+   * Get account should tag the response with the version and balance of the account, and answer
+   * 304 while the tag still holds.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void getAccountWithETag() throws Exception {
+    createAccountWithContent("{\"accountId\":\"Id-1\",\"balance\":100}").andExpect(status().isCreated());
+    createAccountWithContent("{\"accountId\":\"Id-2\",\"balance\":0}").andExpect(status().isCreated());
+
+    this.mockMvc.perform(get("/v1/accounts/Id-1"))
+            .andExpect(status().isOk())
+            .andExpect(header().string("ETag", "\"0-10000\""));
+    this.mockMvc.perform(get("/v1/accounts/Id-1").header("If-None-Match", "\"0-10000\""))
+            .andExpect(status().isNotModified());
+
+    makeTransferWithContent("{\"accountFromId\":\"Id-1\",\"accountToId\":\"Id-2\",\"amount\":10}")
+            .andExpect(status().isOk());
+    this.mockMvc.perform(get("/v1/accounts/Id-1").header("If-None-Match", "\"0-10000\""))
+            .andExpect(status().isOk())
+            .andExpect(header().string("ETag", "\"1-9000\""));
+  }
+
+  /**
+   * Get transactions should page through the movements of an account, newest first.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void getTransactions() throws Exception {
+    final String idFrom = "Id-From-" + System.nanoTime();
+    final String idTo = "Id-To-" + System.nanoTime();
+    this.accountsService.createAccount(new Account(idFrom, new BigDecimal("100")));
+    this.accountsService.createAccount(new Account(idTo, BigDecimal.ZERO));
+    makeTransferWithContent("{\"accountFromId\":\"" + idFrom + "\",\"accountToId\":\"" + idTo + "\",\"amount\":10}")
+            .andExpect(status().isOk());
+    makeTransferWithContent("{\"accountFromId\":\"" + idFrom + "\",\"accountToId\":\"" + idTo + "\",\"amount\":2.5}")
+            .andExpect(status().isOk());
+
+    this.mockMvc.perform(get("/v1/accounts/" + idFrom + "/transactions?limit=1"))
+            .andExpect(status().isOk())
+            .andExpect(content().string(containsString("\"transactions\":[{\"index\":1,")))
+            .andExpect(content().string(containsString("\"amount\":-2.50}]")))
+            .andExpect(content().string(containsString("\"nextCursor\":1}")));
+    this.mockMvc.perform(get("/v1/accounts/" + idFrom + "/transactions?cursor=1"))
+            .andExpect(status().isOk())
+            .andExpect(content().string(containsString("\"amount\":-10.00}]")))
+            .andExpect(content().string(containsString("\"nextCursor\":null}")));
+    this.mockMvc.perform(get("/v1/accounts/" + idTo + "/transactions"))
+            .andExpect(status().isOk())
+            .andExpect(content().string(containsString("\"amount\":2.50}")))
+            .andExpect(content().string(containsString("\"amount\":10.00}")));
+
+    this.mockMvc.perform(get("/v1/accounts/Id-unknown/transactions")).andExpect(status().isNotFound());
+    this.mockMvc.perform(get("/v1/accounts/" + idFrom + "/transactions?limit=0")).andExpect(status().isBadRequest());
+  }
+
   /**
    * Verify account balance.
    *
@@ -252,6 +342,20 @@ public class AccountsControllerTest {
             .andExpect(status().isBadRequest());
   }
 
+  /**
+   * Make transfer amount finer than a minor unit.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void makeTransferSubMinorUnitAmount() throws Exception {
+    createAccountWithContent("{\"accountId\":\"Id-1\",\"balance\":100.50}").andExpect(status().isCreated());
+    createAccountWithContent("{\"accountId\":\"Id-2\",\"balance\":1000.50}").andExpect(status().isCreated());
+
+    makeTransferWithContent("{\"accountFromId\":\"Id-1\",\"accountToId\":\"Id-2\",\"amount\":1.005}")
+            .andExpect(status().isBadRequest());
+  }
+
   /**
    * Make transfer empty body.
    *
@@ -305,7 +409,215 @@ public class AccountsControllerTest {
             .andExpect(status().isOk());
 
     verifyAccountBalance("Id-1", new BigDecimal("100.21"));
-    verifyAccountBalance("Id-2", new BigDecimal("11000"));
+    verifyAccountBalance("Id-2", new BigDecimal("11000.00"));
+  }
+
+  /**
+   * Make transfers batch reports a status per transfer.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void makeTransfersBatchReportsStatusPerTransfer() throws Exception {
+    createAccountWithContent("{\"accountId\":\"Id-1\",\"balance\":100}").andExpect(status().isCreated());
+    createAccountWithContent("{\"accountId\":\"Id-2\",\"balance\":50}").andExpect(status().isCreated());
+
+    makeTransfersWithContent("["
+            + "{\"accountFromId\":\"Id-1\",\"accountToId\":\"Id-2\",\"amount\":80},"
+            + "{\"accountFromId\":\"Id-1\",\"accountToId\":\"Id-2\",\"amount\":80},"
+            + "{\"accountFromId\":\"Id-2\",\"accountToId\":\"Id-3\",\"amount\":10},"
+            + "{\"accountFromId\":\"Id-2\",\"accountToId\":\"Id-2\",\"amount\":10},"
+            + "{\"accountFromId\":\"Id-2\",\"accountToId\":\"Id-1\",\"amount\":130}]")
+            .andExpect(status().isOk())
+            .andExpect(content().string("[\"OK\",\"INSUFFICIENT_FUNDS\",\"NOT_FOUND\",\"SAME_ACCOUNT\",\"OK\"]"));
+
+    verifyAccountBalance("Id-1", new BigDecimal("150.00"));
+    verifyAccountBalance("Id-2", new BigDecimal("0.00"));
+  }
+
+  /**
+   * Make transfers batch rejects an invalid transfer.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void makeTransfersBatchInvalidTransfer() throws Exception {
+    createAccountWithContent("{\"accountId\":\"Id-1\",\"balance\":100}").andExpect(status().isCreated());
+    createAccountWithContent("{\"accountId\":\"Id-2\",\"balance\":50}").andExpect(status().isCreated());
+
+    makeTransfersWithContent("["
+            + "{\"accountFromId\":\"Id-1\",\"accountToId\":\"Id-2\",\"amount\":10},"
+            + "{\"accountFromId\":\"Id-1\",\"accountToId\":\"Id-2\",\"amount\":-10}]")
+            .andExpect(status().isBadRequest());
+
+    verifyAccountBalance("Id-1", new BigDecimal("100.00"));
+  }
+
+  /**
+   * Make transfers batch rejects a batch beyond the maximum size.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void makeTransfersBatchTooLarge() throws Exception {
+    createAccountWithContent("{\"accountId\":\"Id-1\",\"balance\":10000}").andExpect(status().isCreated());
+    createAccountWithContent("{\"accountId\":\"Id-2\",\"balance\":50}").andExpect(status().isCreated());
+
+    final StringBuilder batch = new StringBuilder("[");
+    for (int i = 0; i < 1001; i++) {
+      batch.append(i == 0 ? "" : ",").append("{\"accountFromId\":\"Id-1\",\"accountToId\":\"Id-2\",\"amount\":1}");
+    }
+    makeTransfersWithContent(batch.append("]").toString())
+            .andExpect(status().isBadRequest())
+            .andExpect(content().string("A batch holds at most 1000 transfers."));
+
+    verifyAccountBalance("Id-1", new BigDecimal("10000.00"));
+  }
+
+  /**
+   * Make multi-leg transfer applies every leg.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void makeMultiLegTransfer() throws Exception {
+    createAccountWithContent("{\"accountId\":\"Id-1\",\"balance\":100}").andExpect(status().isCreated());
+    createAccountWithContent("{\"accountId\":\"Id-2\",\"balance\":50}").andExpect(status().isCreated());
+    createAccountWithContent("{\"accountId\":\"Id-3\",\"balance\":0}").andExpect(status().isCreated());
+
+    makeMultiLegTransferWithContent("{\"legs\":["
+            + "{\"accountId\":\"Id-1\",\"amount\":-70},"
+            + "{\"accountId\":\"Id-2\",\"amount\":-10.50},"
+            + "{\"accountId\":\"Id-3\",\"amount\":80.50}]}")
+            .andExpect(status().isOk());
+
+    verifyAccountBalance("Id-1", new BigDecimal("30.00"));
+    verifyAccountBalance("Id-2", new BigDecimal("39.50"));
+    verifyAccountBalance("Id-3", new BigDecimal("80.50"));
+  }
+
+  /**
+   * Make multi-leg transfer applies no leg when one of them is rejected or malformed.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void makeMultiLegTransferRejected() throws Exception {
+    createAccountWithContent("{\"accountId\":\"Id-1\",\"balance\":100}").andExpect(status().isCreated());
+    createAccountWithContent("{\"accountId\":\"Id-2\",\"balance\":50}").andExpect(status().isCreated());
+
+    makeMultiLegTransferWithContent("{\"legs\":["
+            + "{\"accountId\":\"Id-1\",\"amount\":-70},"
+            + "{\"accountId\":\"Id-2\",\"amount\":-60},"
+            + "{\"accountId\":\"Id-3\",\"amount\":130}]}")
+            .andExpect(status().isNotFound());
+    makeMultiLegTransferWithContent("{\"legs\":["
+            + "{\"accountId\":\"Id-1\",\"amount\":60.01},"
+            + "{\"accountId\":\"Id-2\",\"amount\":-60.01}]}")
+            .andExpect(status().isUnprocessableEntity());
+    makeMultiLegTransferWithContent("{\"legs\":["
+            + "{\"accountId\":\"Id-1\",\"amount\":-10},"
+            + "{\"accountId\":\"Id-2\",\"amount\":9.99}]}")
+            .andExpect(status().isBadRequest())
+            .andExpect(content().string("Legs sum to -0.01 instead of zero."));
+    makeMultiLegTransferWithContent("{\"legs\":["
+            + "{\"accountId\":\"Id-1\",\"amount\":-10},"
+            + "{\"accountId\":\"Id-1\",\"amount\":10}]}")
+            .andExpect(status().isBadRequest());
+    makeMultiLegTransferWithContent("{\"legs\":[{\"accountId\":\"Id-1\",\"amount\":0}]}")
+            .andExpect(status().isBadRequest());
+
+    verifyAccountBalance("Id-1", new BigDecimal("100.00"));
+    verifyAccountBalance("Id-2", new BigDecimal("50.00"));
+  }
+
+  /**
+   * Make transfer retried with the same idempotency key moves the money once.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void makeTransferRetriedWithIdempotencyKey() throws Exception {
+    createAccountWithContent("{\"accountId\":\"Id-1\",\"balance\":100}").andExpect(status().isCreated());
+    createAccountWithContent("{\"accountId\":\"Id-2\",\"balance\":50}").andExpect(status().isCreated());
+    final String key = "transfer-" + System.nanoTime();
+    final String content = "{\"accountFromId\":\"Id-1\",\"accountToId\":\"Id-2\",\"amount\":30}";
+
+    this.mockMvc.perform(put("/v1/accounts/transfer").header("Idempotency-Key", key)
+            .contentType(MediaType.APPLICATION_JSON).content(content))
+            .andExpect(status().isOk());
+    this.mockMvc.perform(put("/v1/accounts/transfer").header("Idempotency-Key", key)
+            .contentType(MediaType.APPLICATION_JSON).content(content))
+            .andExpect(status().isOk())
+            .andExpect(header().string("Idempotent-Replayed", "true"));
+    this.mockMvc.perform(put("/v1/accounts/transfer").header("Idempotency-Key", key)
+            .contentType(MediaType.APPLICATION_JSON)
+            .content("{\"accountFromId\":\"Id-1\",\"accountToId\":\"Id-2\",\"amount\":40}"))
+            .andExpect(status().isUnprocessableEntity());
+
+    verifyAccountBalance("Id-1", new BigDecimal("70.00"));
+    verifyAccountBalance("Id-2", new BigDecimal("80.00"));
+  }
+
+  /**
+   * Transfer metrics count the outcomes and time the stages.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void getTransferMetrics() throws Exception {
+    createAccountWithContent("{\"accountId\":\"Id-1\",\"balance\":100}").andExpect(status().isCreated());
+    createAccountWithContent("{\"accountId\":\"Id-2\",\"balance\":50}").andExpect(status().isCreated());
+    final TransferMetricsSnapshot before = transferMetrics.snapshot();
+
+    makeTransferWithContent("{\"accountFromId\":\"Id-1\",\"accountToId\":\"Id-2\",\"amount\":10}")
+            .andExpect(status().isOk());
+    makeTransferWithContent("{\"accountFromId\":\"Id-1\",\"accountToId\":\"Id-3\",\"amount\":10}")
+            .andExpect(status().isNotFound());
+    makeTransferWithContent("{\"accountFromId\":\"Id-2\",\"accountToId\":\"Id-1\",\"amount\":1000}")
+            .andExpect(status().isUnprocessableEntity());
+
+    final TransferMetricsSnapshot after = transferMetrics.snapshot();
+    assertThat(after.getOutcomes().get("OK") - before.getOutcomes().get("OK")).isEqualTo(1L);
+    assertThat(after.getOutcomes().get("NOT_FOUND") - before.getOutcomes().get("NOT_FOUND")).isEqualTo(1L);
+    assertThat(after.getOutcomes().get("INSUFFICIENT_FUNDS") - before.getOutcomes().get("INSUFFICIENT_FUNDS"))
+            .isEqualTo(1L);
+    assertThat(after.getStages().get("BINDING").getCount() - before.getStages().get("BINDING").getCount())
+            .isEqualTo(3L);
+    assertThat(after.getStages().get("NOTIFICATION").getCount() - before.getStages().get("NOTIFICATION").getCount())
+            .isEqualTo(1L);
+
+    this.mockMvc.perform(get("/v1/metrics/transfers"))
+            .andExpect(status().isOk())
+            .andExpect(content().string(containsString("\"TOTAL\":{\"count\":")));
+  }
+
+  /**
+   * Make transfers with content.
+   *
+   * @param content the content
+   * @return the result actions
+   * @throws Exception the exception
+   */
+  private ResultActions makeTransfersWithContent(String content) throws Exception {
+    return this.mockMvc.perform(
+            put("/v1/accounts/transfers/batch")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(content));
+  }
+
+  /**
+   * Make multi-leg transfer with content.
+   *
+   * @param content the content
+   * @return the result actions
+   * @throws Exception the exception
+   */
+  private ResultActions makeMultiLegTransferWithContent(String content) throws Exception {
+    return this.mockMvc.perform(
+            put("/v1/accounts/transfers/multi-leg")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(content));
   }
 
 
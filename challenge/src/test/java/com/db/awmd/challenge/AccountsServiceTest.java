@@ -6,16 +6,22 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
 
 import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.MultiLegTransfer;
 import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.domain.TransferLeg;
+import com.db.awmd.challenge.domain.TransferResult;
+import com.db.awmd.challenge.domain.TransferStatus;
 import com.db.awmd.challenge.exception.AccountNotFoundException;
 import com.db.awmd.challenge.exception.DuplicateAccountIdException;
 import com.db.awmd.challenge.exception.NotEnoughFundsException;
 import com.db.awmd.challenge.service.AccountsService;
 
 import java.math.BigDecimal;
+import java.util.Arrays;
 import java.util.UUID;
 
 import com.db.awmd.challenge.service.NotificationService;
+import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mockito;
@@ -40,6 +46,14 @@ public class AccountsServiceTest {
     @Autowired
     private NotificationService notificationService;
 
+    /**
+     * Forgets the notifications of the previous tests.
+     */
+    @Before
+    public void resetNotificationService() {
+        Mockito.reset(notificationService);
+    }
+
     /**
      * Adds the account.
      *
@@ -106,11 +120,29 @@ public class AccountsServiceTest {
             this.accountsService.makeTransfer(transfer);
             fail("Should have failed because account does not have enough funds for the transfer");
         } catch (NotEnoughFundsException nbe) {
-            assertThat(nbe.getMessage()).isEqualTo("Not enough funds on account " + accountFromId + " balance=0");
+            assertThat(nbe.getMessage()).isEqualTo("Not enough funds on account " + accountFromId + " balance=0.00");
         }
         verifyZeroInteractions(notificationService);
     }
 
+    /**
+     * Try transfer should report a rejection without throwing.
+     */
+    @Test
+    public void tryTransfer_should_reportRejection_when_accountNotEnoughFunds() {
+        final String accountFromId = UUID.randomUUID().toString();
+        final String accountToId = UUID.randomUUID().toString();
+        this.accountsService.createAccount(new Account(accountFromId));
+        this.accountsService.createAccount(new Account(accountToId));
+
+        final TransferResult result = this.accountsService.tryTransfer(new Transfer(accountFromId, accountToId, new BigDecimal(100)));
+
+        assertThat(result.getStatus()).isEqualTo(TransferStatus.INSUFFICIENT_FUNDS);
+        assertThat(result.getMessage()).isEqualTo("Not enough funds on account " + accountFromId + " balance=0.00");
+        assertThat(this.accountsService.getAccount(accountFromId).getBalanceMinor()).isEqualTo(0L);
+        verifyZeroInteractions(notificationService);
+    }
+
     /**
      * Make transfer should transfer funds.
      */
@@ -158,6 +190,92 @@ public class AccountsServiceTest {
         verifyNotifications(accountFrom, accountTo, transfer);
     }
 
+    /**
+     * Try multi-leg transfer should pay each debit out to the credits.
+     */
+    @Test
+    public void tryMultiLegTransfer_should_transferFunds() {
+        final Account accountA = new Account(UUID.randomUUID().toString(), new BigDecimal("100.00"));
+        final Account accountB = new Account(UUID.randomUUID().toString(), new BigDecimal("100.00"));
+        final Account accountC = new Account(UUID.randomUUID().toString(), new BigDecimal("0.00"));
+        final Account accountD = new Account(UUID.randomUUID().toString(), new BigDecimal("0.00"));
+        this.accountsService.createAccount(accountA);
+        this.accountsService.createAccount(accountB);
+        this.accountsService.createAccount(accountC);
+        this.accountsService.createAccount(accountD);
+
+        final TransferResult result = this.accountsService.tryMultiLegTransfer(new MultiLegTransfer(Arrays.asList(
+                new TransferLeg(accountA.getAccountId(), new BigDecimal("-30.00")),
+                new TransferLeg(accountC.getAccountId(), new BigDecimal("30.00")),
+                new TransferLeg(accountB.getAccountId(), new BigDecimal("-20.00")),
+                new TransferLeg(accountD.getAccountId(), new BigDecimal("20.00")))));
+
+        assertThat(result.isOk()).isTrue();
+        assertThat(this.accountsService.getAccount(accountA.getAccountId()).getBalance()).isEqualTo(new BigDecimal("70.00"));
+        assertThat(this.accountsService.getAccount(accountB.getAccountId()).getBalance()).isEqualTo(new BigDecimal("80.00"));
+        assertThat(this.accountsService.getAccount(accountC.getAccountId()).getBalance()).isEqualTo(new BigDecimal("30.00"));
+        assertThat(this.accountsService.getAccount(accountD.getAccountId()).getBalance()).isEqualTo(new BigDecimal("20.00"));
+
+        verifyNotifications(accountA, accountC, new Transfer(accountA.getAccountId(), accountC.getAccountId(), new BigDecimal("30.00")));
+        verifyNotifications(accountB, accountD, new Transfer(accountB.getAccountId(), accountD.getAccountId(), new BigDecimal("20.00")));
+    }
+
+    /**
+     * Try multi-leg transfer should apply no leg when one account has not enough funds.
+     */
+    @Test
+    public void tryMultiLegTransfer_should_applyNoLeg_when_accountNotEnoughFunds() {
+        final Account accountA = new Account(UUID.randomUUID().toString(), new BigDecimal("100.00"));
+        final Account accountB = new Account(UUID.randomUUID().toString(), new BigDecimal("100.00"));
+        final Account accountC = new Account(UUID.randomUUID().toString(), new BigDecimal("0.00"));
+        this.accountsService.createAccount(accountA);
+        this.accountsService.createAccount(accountB);
+        this.accountsService.createAccount(accountC);
+
+        final TransferResult result = this.accountsService.tryMultiLegTransfer(new MultiLegTransfer(Arrays.asList(
+                new TransferLeg(accountA.getAccountId(), new BigDecimal("-30.00")),
+                new TransferLeg(accountB.getAccountId(), new BigDecimal("-100.01")),
+                new TransferLeg(accountC.getAccountId(), new BigDecimal("130.01")))));
+
+        assertThat(result.getStatus()).isEqualTo(TransferStatus.INSUFFICIENT_FUNDS);
+        assertThat(result.getMessage()).contains(accountB.getAccountId());
+        assertThat(this.accountsService.getAccount(accountA.getAccountId()).getBalance()).isEqualTo(new BigDecimal("100.00"));
+        assertThat(this.accountsService.getAccount(accountB.getAccountId()).getBalance()).isEqualTo(new BigDecimal("100.00"));
+        assertThat(this.accountsService.getAccount(accountC.getAccountId()).getBalance()).isEqualTo(new BigDecimal("0.00"));
+    }
+
+    /**
+     * Try multi-leg transfer should report a credit overflowing its account as such, applying no leg.
+     */
+    @Test
+    public void tryMultiLegTransfer_should_fail_when_creditOverflows() {
+        final Account accountA = new Account(UUID.randomUUID().toString(), new BigDecimal("100.00"));
+        final Account accountB = new Account(UUID.randomUUID().toString(), Long.MAX_VALUE - 500L);
+        this.accountsService.createAccount(accountA);
+        this.accountsService.createAccount(accountB);
+
+        try {
+            this.accountsService.tryMultiLegTransfer(new MultiLegTransfer(Arrays.asList(
+                    new TransferLeg(accountA.getAccountId(), new BigDecimal("-10.00")),
+                    new TransferLeg(accountB.getAccountId(), new BigDecimal("10.00")))));
+            fail("Should have failed when the credit overflows");
+        } catch (ArithmeticException expected) {
+        }
+
+        assertThat(this.accountsService.getAccount(accountA.getAccountId()).getBalance()).isEqualTo(new BigDecimal("100.00"));
+        assertThat(this.accountsService.getAccount(accountB.getAccountId()).getBalanceMinor()).isEqualTo(Long.MAX_VALUE - 500L);
+    }
+
+    /**
+     * Try multi-leg transfer should refuse legs that do not sum to zero.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void tryMultiLegTransfer_should_fail_when_legsUnbalanced() {
+        this.accountsService.tryMultiLegTransfer(new MultiLegTransfer(Arrays.asList(
+                new TransferLeg("Id-A", new BigDecimal("-30.00")),
+                new TransferLeg("Id-B", new BigDecimal("29.99")))));
+    }
+
     /**
      * Verify notifications.
      *
@@ -166,8 +284,8 @@ public class AccountsServiceTest {
      * @param transfer the transfer
      */
     private void verifyNotifications(final Account accountFrom, final Account accountTo, final Transfer transfer) {
-        verify(notificationService, Mockito.times(1)).notifyAboutTransfer(accountFrom, "The transfer to the account with ID " + accountTo.getAccountId() + " is now complete for the amount of " + transfer.getAmount() + ".");
-        verify(notificationService, Mockito.times(1)).notifyAboutTransfer(accountTo, "The account with ID + " + accountFrom.getAccountId() + " has transferred " + transfer.getAmount() + " into your account.");
+        verify(notificationService, Mockito.timeout(5000).times(1)).notifyAboutTransfer(accountFrom, "The transfer to the account with ID " + accountTo.getAccountId() + " is now complete for the amount of " + transfer.getAmount() + ".");
+        verify(notificationService, Mockito.timeout(5000).times(1)).notifyAboutTransfer(accountTo, "The account with ID + " + accountFrom.getAccountId() + " has transferred " + transfer.getAmount() + " into your account.");
     }
 
 
@@ -0,0 +1,205 @@
+package com.db.awmd.challenge.admission;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.journal.TransferJournal;
+import com.db.awmd.challenge.metrics.LatencyHistogram;
+import com.db.awmd.challenge.metrics.TransferMetrics;
+import com.db.awmd.challenge.notification.DirectNotificationDispatcher;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import com.db.awmd.challenge.service.AccountLocks;
+import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.TransferValidatorImpl;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Measures the p99 latency of well-behaved clients sharing a small request pool, like Tomcat's,
+ * with a client that floods it, with and without admission control. The latencies are only checked
+ * with {@code -Pbenchmarks}, as they swing too much on a shared or single-processor build machine;
+ * otherwise only who was turned away is.
+ */
+public class AdmissionLoadTest {
+
+    /** The Constant log. */
+    private static final Logger log = LoggerFactory.getLogger(AdmissionLoadTest.class);
+
+    /** The number of request threads. */
+    private static final int REQUEST_THREADS = 4;
+
+    /** The number of well-behaved clients. */
+    private static final int CLIENTS = 2;
+
+    /** How long each client waits between its transfers. */
+    private static final long CLIENT_PAUSE_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+
+    /** The transfers the flooding client keeps waiting for the pool at all times. */
+    private static final int FLOOD_BACKLOG = 200;
+
+    /** How long each run lasts. */
+    private static final long RUN_NANOS = TimeUnit.MILLISECONDS.toNanos(1_500);
+
+    /** How long the notification service takes to answer. */
+    private static final long NOTIFICATION_MILLIS = 1L;
+
+    /** The accounts service. */
+    private AccountsService accountsService;
+
+    /** The transfers of the flooding client turned away. */
+    private final LongAdder floodRejected = new LongAdder();
+
+    /**
+     * Creates an account for each client and one it pays into, with balances large enough never to run out.
+     */
+    @Before
+    public void setUp() {
+        accountsService = new AccountsService(new AccountsRepositoryInMemory(),
+                new DirectNotificationDispatcher((account, description) -> sleep()), new TransferValidatorImpl(),
+                new AccountLocks(AccountLocks.DEFAULT_STRIPES), TransferJournal.DISABLED, TransferMetrics.DISABLED);
+        for (int i = 0; i < CLIENTS; i++) {
+            accountsService.createAccount(new Account("Client-" + i, Long.MAX_VALUE / 4));
+            accountsService.createAccount(new Account("Client-" + i + "-payee", 0L));
+        }
+        accountsService.createAccount(new Account("Flood", Long.MAX_VALUE / 4));
+        accountsService.createAccount(new Account("Flood-payee", 0L));
+    }
+
+    /**
+     * With admission control, the flooding client should be turned away and the p99 of the
+     * well-behaved clients stay close to what it is without the flood, while without it the flood
+     * queues them up behind its transfers.
+     *
+     * @throws Exception the exception
+     */
+    @Test(timeout = 60_000)
+    public void admission_should_keepP99Flat_when_oneClientFloods() throws Exception {
+        // warms up, so that compilation does not land in the first measurement
+        run(admission(), true);
+        floodRejected.reset();
+
+        final long alone = run(admission(), false);
+        final long unprotected = run(TransferAdmission.DISABLED, true);
+        final RateLimitingTransferAdmission admission = admission();
+        final long protectedP99 = run(admission, true);
+
+        log.info("p99 of well-behaved clients: {} us alone, {} us with a flood, {} us with a flood and admission; "
+                        + "{} flooding transfers turned away", TimeUnit.NANOSECONDS.toMicros(alone),
+                TimeUnit.NANOSECONDS.toMicros(unprotected), TimeUnit.NANOSECONDS.toMicros(protectedP99),
+                floodRejected.sum());
+        assertThat(admission.getClientRejections()).isGreaterThan(0L);
+        assertThat(floodRejected.sum()).isGreaterThan(0L);
+
+        Assume.assumeTrue("Latencies are only checked with -Pbenchmarks", Boolean.getBoolean("benchmarks"));
+        assertThat(protectedP99).isLessThan(unprotected / 2);
+        assertThat(protectedP99).isLessThan(alone * 3 + TimeUnit.MILLISECONDS.toNanos(10));
+    }
+
+    /**
+     * Creates an admission letting each client, and each account, send 200 transfers per second,
+     * 20 at once.
+     *
+     * @return the admission
+     */
+    private static RateLimitingTransferAdmission admission() {
+        return new RateLimitingTransferAdmission(new TokenBuckets(200.0, 20, 1024, System::nanoTime),
+                new TokenBuckets(200.0, 20, 1024, System::nanoTime),
+                new AdaptiveConcurrencyLimit(64, 8, 200, 2.0, 100));
+    }
+
+    /**
+     * Runs the well-behaved clients, and optionally the flooding one, through a request pool.
+     *
+     * @param admission the admission
+     * @param flood whether the flooding client runs too
+     * @return the p99 latency of the well-behaved clients, in nanoseconds
+     * @throws Exception the exception
+     */
+    private long run(TransferAdmission admission, boolean flood) throws Exception {
+        final ExecutorService requestPool = Executors.newFixedThreadPool(REQUEST_THREADS);
+        final ExecutorService clients = Executors.newFixedThreadPool(CLIENTS + 1);
+        final LatencyHistogram latencies = new LatencyHistogram();
+        final long end = System.nanoTime() + RUN_NANOS;
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < CLIENTS; i++) {
+                final String clientId = "Client-" + i;
+                futures.add(clients.submit(() -> {
+                    while (System.nanoTime() < end) {
+                        final long start = System.nanoTime();
+                        CompletableFuture.runAsync(() -> handle(admission, clientId), requestPool).join();
+                        latencies.record(System.nanoTime() - start);
+                        LockSupport.parkNanos(CLIENT_PAUSE_NANOS);
+                    }
+                }));
+            }
+            if (flood) {
+                futures.add(clients.submit(() -> {
+                    final Semaphore backlog = new Semaphore(FLOOD_BACKLOG);
+                    while (System.nanoTime() < end) {
+                        backlog.acquireUninterruptibly();
+                        CompletableFuture.runAsync(() -> {
+                            if (!handle(admission, "Flood")) {
+                                floodRejected.increment();
+                            }
+                        }, requestPool).whenComplete((ignored, failure) -> backlog.release());
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            clients.shutdown();
+            requestPool.shutdownNow();
+            requestPool.awaitTermination(10, TimeUnit.SECONDS);
+        }
+        return latencies.summarize().getP99();
+    }
+
+    /**
+     * Handles a transfer request as the transfer route does.
+     *
+     * @param admission the admission
+     * @param clientId the client, paying from the account of the same id into its payee
+     * @return true, if the transfer was admitted
+     */
+    private boolean handle(TransferAdmission admission, String clientId) {
+        final AdmissionPermit permit = admission.admit(clientId, clientId);
+        if (!permit.isGranted()) {
+            return false;
+        }
+        try {
+            accountsService.tryTransfer(new Transfer(clientId, clientId + "-payee", 1L));
+            return true;
+        } finally {
+            permit.release();
+        }
+    }
+
+    /**
+     * Sleeps as a slow notification service would.
+     */
+    private static void sleep() {
+        try {
+            Thread.sleep(NOTIFICATION_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.db.awmd.challenge.admission;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The Class RateLimitingTransferAdmissionTest.
+ */
+public class RateLimitingTransferAdmissionTest {
+
+    /** The clock the buckets refill by, moved by hand. */
+    private final AtomicLong clock = new AtomicLong(-TimeUnit.DAYS.toNanos(1));
+
+    /**
+     * A client should get its burst at once, then be rejected until its bucket refills.
+     */
+    @Test
+    public void admit_should_rejectClient_when_burstUsedUp() {
+        final RateLimitingTransferAdmission admission = admission(new AdaptiveConcurrencyLimit(8, 1, 8, 2.0, 100));
+
+        for (int i = 0; i < 3; i++) {
+            grant(admission, "client", "Id-" + i);
+        }
+        final AdmissionPermit rejected = admission.admit("client", "Id-9");
+        assertThat(rejected.isGranted()).isFalse();
+        assertThat(rejected.getRejection()).isEqualTo("Too many transfers from client client.");
+        assertThat(rejected.getRetryAfterSeconds()).isEqualTo(1L);
+        grant(admission, "other-client", "Id-9");
+
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+        grant(admission, "client", "Id-9");
+        assertThat(admission.admit("client", "Id-9").isGranted()).isFalse();
+        assertThat(admission.getClientRejections()).isEqualTo(2L);
+    }
+
+    /**
+     * An account should be debited at most its own rate, whichever clients ask.
+     */
+    @Test
+    public void admit_should_rejectAccount_when_debitedTooOften() {
+        final RateLimitingTransferAdmission admission = admission(new AdaptiveConcurrencyLimit(8, 1, 8, 2.0, 100));
+
+        grant(admission, "client-1", "Id-1");
+        grant(admission, "client-2", "Id-1");
+        final AdmissionPermit rejected = admission.admit("client-3", "Id-1");
+        assertThat(rejected.isGranted()).isFalse();
+        assertThat(rejected.getRejection()).isEqualTo("Too many transfers from account Id-1.");
+        assertThat(rejected.getRetryAfterSeconds()).isEqualTo(1L);
+        assertThat(admission.getAccountRejections()).isEqualTo(1L);
+    }
+
+    /**
+     * A request carrying several transfers should take a token from the client for each, and one
+     * from each account for each debit of it.
+     */
+    @Test
+    public void admit_should_chargeEachTransfer_when_requestCarriesSeveral() {
+        final RateLimitingTransferAdmission admission = admission(new AdaptiveConcurrencyLimit(8, 1, 8, 2.0, 100));
+
+        assertThat(admission.admit("client", 2, Arrays.asList("Id-1", "Id-2")).isGranted()).isTrue();
+        assertThat(admission.admit("client", 2, Arrays.asList("Id-3", "Id-4")).getRejection())
+                .isEqualTo("Too many transfers from client client.");
+        grant(admission, "client", "Id-3");
+
+        assertThat(admission.admit("other-client", 2, Arrays.asList("Id-5", "Id-5")).isGranted()).isTrue();
+        assertThat(admission.admit("third-client", 1, Arrays.asList("Id-5")).getRejection())
+                .isEqualTo("Too many transfers from account Id-5.");
+    }
+
+    /**
+     * A request of more tokens than a bucket holds should be let through a full bucket only, which
+     * is then in debt.
+     */
+    @Test
+    public void tokenBuckets_should_takeBeyondBurst_when_full() {
+        final TokenBuckets buckets = new TokenBuckets(1.0, 2, 16, clock::get);
+
+        assertThat(buckets.tryTake("Id-1", 3)).isZero();
+        assertThat(buckets.tryTake("Id-1")).isEqualTo(TimeUnit.SECONDS.toNanos(2));
+        assertThat(buckets.tryTake("Id-2")).isZero();
+        assertThat(buckets.tryTake("Id-2", 3)).isEqualTo(TimeUnit.SECONDS.toNanos(1));
+    }
+
+    /**
+     * Requests beyond the concurrency limit should be rejected until a permit is released.
+     */
+    @Test
+    public void admit_should_rejectRequest_when_tooManyInProgress() {
+        final RateLimitingTransferAdmission admission = admission(new AdaptiveConcurrencyLimit(2, 1, 2, 2.0, 100));
+
+        final AdmissionPermit first = grant(admission, "client-1", "Id-1");
+        grant(admission, "client-2", "Id-2");
+        final AdmissionPermit rejected = admission.admit("client-3", "Id-3");
+        assertThat(rejected.getRejection()).isEqualTo("Too many transfers in progress.");
+
+        first.release();
+        grant(admission, "client-3", "Id-3");
+        assertThat(admission.getConcurrencyRejections()).isEqualTo(1L);
+    }
+
+    /**
+     * The concurrency limit should grow while latency stays low, and shrink once it climbs.
+     */
+    @Test
+    public void concurrencyLimit_should_followLatency() {
+        final AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(10, 2, 20, 2.0, 10);
+
+        runWindow(limit, TimeUnit.MILLISECONDS.toNanos(1));
+        assertThat(limit.getLimit()).isEqualTo(11);
+        runWindow(limit, TimeUnit.MILLISECONDS.toNanos(1));
+        assertThat(limit.getLimit()).isEqualTo(12);
+
+        runWindow(limit, TimeUnit.MILLISECONDS.toNanos(5));
+        assertThat(limit.getLimit()).isEqualTo(10);
+        for (int i = 0; i < 20; i++) {
+            runWindow(limit, TimeUnit.MILLISECONDS.toNanos(50));
+        }
+        assertThat(limit.getLimit()).isEqualTo(2);
+        assertThat(limit.getInFlight()).isZero();
+    }
+
+    /**
+     * The buckets should stay within their capacity however many keys arrive.
+     */
+    @Test
+    public void tokenBuckets_should_stayBounded_when_manyKeys() {
+        final TokenBuckets buckets = new TokenBuckets(1.0, 1, 16, clock::get);
+
+        for (int i = 0; i < 1_000; i++) {
+            assertThat(buckets.tryTake("Id-" + i)).isZero();
+        }
+        assertThat(buckets.size()).isEqualTo(16);
+        assertThat(buckets.tryTake("Id-999")).isEqualTo(TimeUnit.SECONDS.toNanos(1));
+    }
+
+    /**
+     * Creates an admission of 3 requests at once then 10 per second per client, and 2 at once then
+     * 1 per second per account.
+     *
+     * @param concurrencyLimit the concurrency limit
+     * @return the admission
+     */
+    private RateLimitingTransferAdmission admission(AdaptiveConcurrencyLimit concurrencyLimit) {
+        return new RateLimitingTransferAdmission(new TokenBuckets(10.0, 3, 1024, clock::get),
+                new TokenBuckets(1.0, 2, 1024, clock::get), concurrencyLimit);
+    }
+
+    /**
+     * Admits a request, expecting it to be granted.
+     *
+     * @param admission the admission
+     * @param clientId the client id
+     * @param accountId the account id
+     * @return the permit
+     */
+    private static AdmissionPermit grant(TransferAdmission admission, String clientId, String accountId) {
+        final AdmissionPermit permit = admission.admit(clientId, accountId);
+        assertThat(permit.isGranted()).isTrue();
+        assertThat(permit.getRejection()).isNull();
+        return permit;
+    }
+
+    /**
+     * Runs a window of 10 requests, each taking the same time, as many at once as the limit allows.
+     *
+     * @param limit the concurrency limit
+     * @param latencyNanos the latency of each request
+     */
+    private static void runWindow(AdaptiveConcurrencyLimit limit, long latencyNanos) {
+        int released = 0;
+        while (released < 10) {
+            int acquired = 0;
+            while (acquired < 10 - released && limit.tryAcquire()) {
+                acquired++;
+            }
+            assertThat(acquired).isPositive();
+            for (int i = 0; i < acquired; i++) {
+                limit.release(latencyNanos);
+            }
+            released += acquired;
+        }
+    }
+}
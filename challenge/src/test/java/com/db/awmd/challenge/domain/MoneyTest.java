@@ -0,0 +1,74 @@
+package com.db.awmd.challenge.domain;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * The Class MoneyTest.
+ */
+public class MoneyTest {
+
+    /**
+     * To minor units should scale decimal amounts.
+     */
+    @Test
+    public void toMinorUnits_should_scaleDecimalAmounts() {
+        assertThat(Money.toMinorUnits(new BigDecimal("150.20"))).isEqualTo(15020L);
+        assertThat(Money.toMinorUnits(new BigDecimal("150.2"))).isEqualTo(15020L);
+        assertThat(Money.toMinorUnits(new BigDecimal("1000"))).isEqualTo(100000L);
+        assertThat(Money.toMinorUnits(new BigDecimal("-0.01"))).isEqualTo(-1L);
+    }
+
+    /**
+     * To minor units should reject sub minor unit amounts.
+     */
+    @Test
+    public void toMinorUnits_should_reject_subMinorUnitAmounts() {
+        try {
+            Money.toMinorUnits(new BigDecimal("0.001"));
+            fail("Amounts finer than a minor unit should be rejected");
+        } catch (ArithmeticException expected) {
+            // expected
+        }
+    }
+
+    /**
+     * To minor units should reject amounts beyond the long range.
+     */
+    @Test
+    public void toMinorUnits_should_reject_outOfRangeAmounts() {
+        try {
+            Money.toMinorUnits(new BigDecimal(Long.MAX_VALUE));
+            fail("Amounts beyond the long range should be rejected");
+        } catch (ArithmeticException expected) {
+            // expected
+        }
+    }
+
+    /**
+     * To big decimal should always have the money scale.
+     */
+    @Test
+    public void toBigDecimal_should_haveMoneyScale() {
+        assertThat(Money.toBigDecimal(0L)).isEqualTo(new BigDecimal("0.00"));
+        assertThat(Money.toBigDecimal(1100000L)).isEqualTo(new BigDecimal("11000.00"));
+    }
+
+    /**
+     * Add should fail on overflow.
+     */
+    @Test
+    public void add_should_fail_onOverflow() {
+        assertThat(Money.add(1L, 2L)).isEqualTo(3L);
+        try {
+            Money.add(Long.MAX_VALUE, 1L);
+            fail("Overflow should be detected");
+        } catch (ArithmeticException expected) {
+            // expected
+        }
+    }
+}
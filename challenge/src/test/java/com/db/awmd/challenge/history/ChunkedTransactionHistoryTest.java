@@ -0,0 +1,127 @@
+package com.db.awmd.challenge.history;
+
+import com.db.awmd.challenge.domain.AccountUpdate;
+import com.db.awmd.challenge.domain.Transaction;
+import com.db.awmd.challenge.domain.TransactionPage;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The Class ChunkedTransactionHistoryTest.
+ */
+public class ChunkedTransactionHistoryTest {
+
+    /** The Constant log. */
+    private static final Logger log = LoggerFactory.getLogger(ChunkedTransactionHistoryTest.class);
+
+    /** The temporary folder. */
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /** The Constant ID1. */
+    public static final String ID1 = "Id-1";
+
+    /** The Constant ID2. */
+    public static final String ID2 = "Id-2";
+
+    /**
+     * Pages should walk the history newest first across chunk boundaries.
+     */
+    @Test
+    public void page_should_walkHistoryNewestFirst() {
+        final ChunkedTransactionHistory history = new ChunkedTransactionHistory(8);
+        for (int i = 1; i <= 50; i++) {
+            history.record(Arrays.asList(new AccountUpdate(ID2, i), new AccountUpdate(ID1, -i)));
+        }
+
+        final List<Long> amounts = new ArrayList<>();
+        Long cursor = Long.MAX_VALUE;
+        int pages = 0;
+        while (cursor != null) {
+            final TransactionPage page = history.page(ID1, cursor, 7);
+            for (Transaction transaction : page.getTransactions()) {
+                amounts.add(transaction.getAmountMinor());
+            }
+            cursor = page.getNextCursor();
+            pages++;
+        }
+
+        assertThat(pages).isEqualTo(8);
+        assertThat(amounts).hasSize(50);
+        for (int i = 0; i < 50; i++) {
+            assertThat(amounts.get(i)).isEqualTo(-(50L - i));
+        }
+        assertThat(history.page(ID1, 3, 10).getTransactions()).extracting("index").containsExactly(2L, 1L, 0L);
+        assertThat(history.page(ID1, 3, 10).getNextCursor()).isNull();
+        assertThat(history.page("Id-unknown", Long.MAX_VALUE, 10).getTransactions()).isEmpty();
+    }
+
+    /**
+     * Chunks spilled to disk should read back like the ones in memory, and the file should go on close.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void page_should_readSpilledChunks() throws Exception {
+        final File spillFile = new File(temporaryFolder.getRoot(), "history/transactions.spill");
+        final ChunkedTransactionHistory history = new ChunkedTransactionHistory(4, 1, spillFile);
+        for (int i = 0; i < 100; i++) {
+            history.record(Collections.singletonList(new AccountUpdate(ID1, i)));
+        }
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (history.spilledChunks() < 23 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertThat(history.spilledChunks()).isEqualTo(23L);
+        assertThat(spillFile.length()).isEqualTo(92L * 16);
+        final TransactionPage page = history.page(ID1, Long.MAX_VALUE, 100);
+        assertThat(page.getTransactions()).hasSize(100);
+        for (Transaction transaction : page.getTransactions()) {
+            assertThat(transaction.getAmountMinor()).isEqualTo(transaction.getIndex());
+        }
+        assertThat(page.getNextCursor()).isNull();
+
+        history.close();
+        assertThat(spillFile).doesNotExist();
+    }
+
+    /**
+     * Recording a transfer should take well under a microsecond.
+     */
+    @Test
+    public void record_should_takeLessThanAMicrosecond() {
+        final int accounts = 1024;
+        final int transfers = 1 << 20;
+        final ChunkedTransactionHistory history = new ChunkedTransactionHistory(1024);
+        final List<List<AccountUpdate>> batches = new ArrayList<>(accounts);
+        for (int i = 0; i < accounts; i++) {
+            batches.add(Arrays.asList(new AccountUpdate("To-" + i, 100L), new AccountUpdate("From-" + i, -100L)));
+        }
+
+        for (int i = 0; i < transfers; i++) {
+            history.record(batches.get(i & (accounts - 1)));
+        }
+        final long start = System.nanoTime();
+        for (int i = 0; i < transfers; i++) {
+            history.record(batches.get(i & (accounts - 1)));
+        }
+        final double perTransfer = (System.nanoTime() - start) / (double) transfers;
+
+        log.info("Recording a transfer in the transaction history: {} ns", perTransfer);
+        assertThat(history.size("To-0")).isEqualTo(2L * transfers / accounts);
+        assertThat(perTransfer).isLessThan(1000.0);
+    }
+}
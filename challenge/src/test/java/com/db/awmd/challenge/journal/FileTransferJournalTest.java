@@ -0,0 +1,153 @@
+package com.db.awmd.challenge.journal;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountUpdate;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The Class FileTransferJournalTest.
+ */
+public class FileTransferJournalTest {
+
+    /** The temporary folder. */
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /** The Constant ID1. */
+    public static final String ID1 = "Id-1";
+
+    /** The Constant ID2. */
+    public static final String ID2 = "Id-2";
+
+    /**
+     * Replay should restore accounts and balances.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void replay_should_restoreAccountsAndBalances() throws Exception {
+        final File directory = temporaryFolder.newFolder("journal");
+        FileTransferJournal journal = open(directory, Durability.BATCHED, 1 << 20);
+        journal.appendAccount(new Account(ID1, 1000L));
+        journal.appendAccount(new Account("Konto-ü€", 0L));
+        final long sequence = journal.appendUpdates(Arrays.asList(
+                new AccountUpdate("Konto-ü€", 250L), new AccountUpdate(ID1, -250L)));
+        journal.awaitDurable(sequence);
+        journal.close();
+
+        final AccountsRepository replayed = new AccountsRepositoryInMemory();
+        journal = new FileTransferJournal(directory, Durability.BATCHED, 1 << 20);
+        journal.replay(replayed);
+
+        assertThat(journal.getLastSequence()).isEqualTo(3L);
+        assertThat(replayed.getAccount(ID1).getBalanceMinor()).isEqualTo(750L);
+        assertThat(replayed.getAccount("Konto-ü€").getBalanceMinor()).isEqualTo(250L);
+        assertThat(journal.appendAccount(new Account(ID2))).isEqualTo(4L);
+        journal.close();
+    }
+
+    /**
+     * Replay should cut a torn tail and keep appending after the last complete record.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void replay_should_cutTornTail() throws Exception {
+        final File directory = temporaryFolder.newFolder("journal");
+        FileTransferJournal journal = open(directory, Durability.PER_TRANSFER, 1 << 20);
+        journal.appendAccount(new Account(ID1, 1000L));
+        journal.awaitDurable(journal.appendUpdates(Arrays.asList(new AccountUpdate(ID1, -100L))));
+        journal.close();
+
+        final File segment = journal.segments()[0];
+        try (RandomAccessFile torn = new RandomAccessFile(segment, "rw")) {
+            torn.setLength(torn.length() - 3);
+        }
+
+        final AccountsRepository replayed = new AccountsRepositoryInMemory();
+        journal = new FileTransferJournal(directory, Durability.PER_TRANSFER, 1 << 20);
+        journal.replay(replayed);
+        assertThat(replayed.getAccount(ID1).getBalanceMinor()).isEqualTo(1000L);
+        journal.awaitDurable(journal.appendUpdates(Arrays.asList(new AccountUpdate(ID1, -300L))));
+        journal.close();
+
+        final AccountsRepository again = new AccountsRepositoryInMemory();
+        journal = new FileTransferJournal(directory, Durability.PER_TRANSFER, 1 << 20);
+        journal.replay(again);
+        assertThat(again.getAccount(ID1).getBalanceMinor()).isEqualTo(700L);
+        assertThat(journal.getLastSequence()).isEqualTo(2L);
+        journal.close();
+    }
+
+    /**
+     * Segments should roll once they exceed the segment size.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void segments_should_roll_when_full() throws Exception {
+        final File directory = temporaryFolder.newFolder("journal");
+        FileTransferJournal journal = open(directory, Durability.NONE, 256);
+        journal.appendAccount(new Account(ID1, 0L));
+        for (int i = 0; i < 200; i++) {
+            journal.appendUpdates(Arrays.asList(new AccountUpdate(ID1, 1L)));
+        }
+        journal.close();
+        assertThat(journal.segments().length).isGreaterThan(1);
+        assertThat(journal.segments()[0].getName()).isEqualTo(FileTransferJournal.segmentName(1L));
+
+        final AccountsRepository replayed = new AccountsRepositoryInMemory();
+        journal = new FileTransferJournal(directory, Durability.NONE, 256);
+        journal.replay(replayed);
+        assertThat(replayed.getAccount(ID1).getBalanceMinor()).isEqualTo(200L);
+        assertThat(journal.getLastSequence()).isEqualTo(201L);
+        journal.close();
+    }
+
+    /**
+     * The futures of durability should complete, in any order they were asked for, once the writer
+     * made their records durable.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void whenDurable_should_complete_once_recordWritten() throws Exception {
+        final FileTransferJournal journal = open(temporaryFolder.newFolder("journal"), Durability.BATCHED, 1 << 20);
+        final long first = journal.appendAccount(new Account(ID1, 0L));
+        final long second = journal.appendAccount(new Account(ID2, 0L));
+
+        final CompletableFuture<Void> secondDurable = journal.whenDurable(second);
+        final CompletableFuture<Void> firstDurable = journal.whenDurable(first);
+
+        secondDurable.get(10, TimeUnit.SECONDS);
+        firstDurable.get(10, TimeUnit.SECONDS);
+        assertThat(journal.whenDurable(first).isDone()).isTrue();
+        journal.close();
+    }
+
+    /**
+     * Opens an empty journal.
+     *
+     * @param directory the directory
+     * @param durability the durability
+     * @param segmentSize the segment size
+     * @return the file transfer journal
+     */
+    private static FileTransferJournal open(File directory, Durability durability, long segmentSize) {
+        final FileTransferJournal journal = new FileTransferJournal(directory, durability, segmentSize);
+        journal.replay(new AccountsRepositoryInMemory());
+        return journal;
+    }
+}
@@ -0,0 +1,137 @@
+package com.db.awmd.challenge.journal;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.exception.JournalException;
+import com.db.awmd.challenge.metrics.TransferMetrics;
+import com.db.awmd.challenge.notification.DirectNotificationDispatcher;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import com.db.awmd.challenge.service.AccountLocks;
+import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.TransferValidatorImpl;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The Class JournalSnapshotterTest.
+ */
+public class JournalSnapshotterTest {
+
+    /** The Constant ACCOUNTS. */
+    private static final int ACCOUNTS = 1_000;
+
+    /** The temporary folder. */
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * Recovery from a snapshot taken during transfers should restore every balance.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void recovery_should_restoreBalances_when_snapshotTakenDuringTransfers() throws Exception {
+        final File directory = temporaryFolder.newFolder("journal");
+        final AccountsRepository repository = new AccountsRepositoryInMemory();
+        final FileTransferJournal journal = new FileTransferJournal(directory, Durability.NONE, 16 << 10);
+        journal.replay(repository);
+        final AccountLocks accountLocks = new AccountLocks(AccountLocks.DEFAULT_STRIPES);
+        final AccountsService accountsService = new AccountsService(repository,
+                new DirectNotificationDispatcher((account, description) -> { }),
+                new TransferValidatorImpl(), accountLocks, journal,
+                TransferMetrics.DISABLED);
+        for (int i = 0; i < ACCOUNTS; i++) {
+            accountsService.createAccount(new Account("Id-" + i, 1_000_000L));
+        }
+        final JournalSnapshotter snapshotter = new JournalSnapshotter(journal, repository, accountLocks);
+
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        final List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            final Random random = new Random(t);
+            futures.add(executor.submit(() -> {
+                while (running.get()) {
+                    final int from = random.nextInt(ACCOUNTS);
+                    final int to = (from + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+                    accountsService.makeTransfer(new Transfer("Id-" + from, "Id-" + to, 100L + random.nextInt(900)));
+                }
+            }));
+        }
+        for (int i = 0; i < 5; i++) {
+            snapshotter.snapshot();
+            accountsService.createAccount(new Account("Late-" + i, i));
+        }
+        running.set(false);
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        journal.close();
+
+        assertThat(SnapshotFile.snapshots(directory)).hasSize(1);
+        assertThat(FileTransferJournal.firstSequence(journal.segments()[0])).isGreaterThan(1L);
+
+        final AccountsRepository recovered = new AccountsRepositoryInMemory();
+        final FileTransferJournal reopened = new FileTransferJournal(directory, Durability.NONE, 16 << 10);
+        reopened.replay(recovered);
+        reopened.close();
+
+        long total = 0L;
+        for (int i = 0; i < ACCOUNTS; i++) {
+            final String accountId = "Id-" + i;
+            assertThat(recovered.getAccount(accountId).getBalanceMinor())
+                    .as(accountId).isEqualTo(repository.getAccount(accountId).getBalanceMinor());
+            total += recovered.getAccount(accountId).getBalanceMinor();
+        }
+        assertThat(total).isEqualTo(ACCOUNTS * 1_000_000L);
+        for (int i = 0; i < 5; i++) {
+            assertThat(recovered.getAccount("Late-" + i).getBalanceMinor()).isEqualTo(i);
+        }
+        assertThat(reopened.getLastSequence()).isEqualTo(journal.getLastSequence());
+    }
+
+    /**
+     * Recovery should fail when the journal no longer holds the records after the snapshot.
+     *
+     * @throws Exception the exception
+     */
+    @Test(expected = JournalException.class)
+    public void recovery_should_fail_when_journalHasGapAfterSnapshot() throws Exception {
+        final File directory = temporaryFolder.newFolder("journal");
+        final AccountsRepository repository = new AccountsRepositoryInMemory();
+        final FileTransferJournal journal = new FileTransferJournal(directory, Durability.NONE, 64);
+        journal.replay(repository);
+        final AccountLocks accountLocks = new AccountLocks(AccountLocks.DEFAULT_STRIPES);
+        final AccountsService accountsService = new AccountsService(repository,
+                new DirectNotificationDispatcher((account, description) -> { }),
+                new TransferValidatorImpl(), accountLocks, journal,
+                TransferMetrics.DISABLED);
+        accountsService.createAccount(new Account("Id-1", 1000L));
+        accountsService.createAccount(new Account("Id-2", 0L));
+        new JournalSnapshotter(journal, repository, accountLocks).snapshot();
+        for (int i = 0; i < 10; i++) {
+            accountsService.makeTransfer(new Transfer("Id-1", "Id-2", 50L));
+        }
+        journal.close();
+
+        final File[] segments = journal.segments();
+        assertThat(segments.length).isGreaterThan(1);
+        assertThat(segments[0].delete()).isTrue();
+
+        new FileTransferJournal(directory, Durability.NONE, 64).replay(new AccountsRepositoryInMemory());
+    }
+}
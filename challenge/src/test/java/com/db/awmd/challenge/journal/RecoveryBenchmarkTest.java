@@ -0,0 +1,102 @@
+package com.db.awmd.challenge.journal;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.metrics.TransferMetrics;
+import com.db.awmd.challenge.notification.DirectNotificationDispatcher;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import com.db.awmd.challenge.service.AccountLocks;
+import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.TransferValidatorImpl;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Reports the recovery time against the number of accounts, replaying the whole journal versus
+ * loading a snapshot and replaying the tail.
+ */
+public class RecoveryBenchmarkTest {
+
+    /** The Constant log. */
+    private static final Logger log = LoggerFactory.getLogger(RecoveryBenchmarkTest.class);
+
+    /** The number of transfers journaled after the accounts are created. */
+    private static final int TRANSFERS = 200_000;
+
+    /** The temporary folder. */
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * Recovery time per account count.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void recoveryTime_per_accountCount() throws Exception {
+        for (int accounts : new int[] {10_000, 100_000, 400_000}) {
+            final File directory = temporaryFolder.newFolder("journal-" + accounts);
+            populate(directory, accounts);
+
+            final long journalOnly = recover(directory, accounts, false);
+            final long snapshotAndTail = recover(directory, accounts, true);
+            log.info("Recovery of {} accounts and {} transfers: full journal replay {} ms, snapshot plus tail {} ms",
+                    accounts, TRANSFERS, journalOnly, snapshotAndTail);
+        }
+    }
+
+    /**
+     * Creates accounts and runs transfers through a journal.
+     *
+     * @param directory the journal directory
+     * @param accounts the number of accounts
+     */
+    private static void populate(File directory, int accounts) {
+        final AccountsRepository repository = new AccountsRepositoryInMemory();
+        final FileTransferJournal journal = new FileTransferJournal(directory, Durability.NONE, 64L << 20);
+        journal.replay(repository);
+        final AccountsService accountsService = new AccountsService(repository,
+                new DirectNotificationDispatcher((account, description) -> { }),
+                new TransferValidatorImpl(), new AccountLocks(AccountLocks.DEFAULT_STRIPES), journal,
+                TransferMetrics.DISABLED);
+        for (int i = 0; i < accounts; i++) {
+            accountsService.createAccount(new Account("Id-" + i, 1_000_000L));
+        }
+        for (int i = 0; i < TRANSFERS; i++) {
+            accountsService.makeTransfer(new Transfer("Id-" + (i % accounts), "Id-" + ((i + 1) % accounts), 100L));
+        }
+        journal.close();
+    }
+
+    /**
+     * Recovers the accounts, optionally taking a snapshot afterwards for the next recovery.
+     *
+     * @param directory the journal directory
+     * @param accounts the number of accounts
+     * @param snapshotTaken whether a snapshot was taken by the previous recovery
+     * @return the recovery time, in milliseconds
+     */
+    private static long recover(File directory, int accounts, boolean snapshotTaken) {
+        assertThat(SnapshotFile.snapshots(directory).length > 0).isEqualTo(snapshotTaken);
+        final AccountsRepository repository = new AccountsRepositoryInMemory();
+        final FileTransferJournal journal = new FileTransferJournal(directory, Durability.NONE, 64L << 20);
+        final long start = System.nanoTime();
+        journal.replay(repository);
+        final long elapsed = (System.nanoTime() - start) / 1_000_000;
+
+        assertThat(repository.getAccount("Id-" + (accounts - 1))).isNotNull();
+        if (!snapshotTaken) {
+            new JournalSnapshotter(journal, repository, new AccountLocks(AccountLocks.DEFAULT_STRIPES)).snapshot();
+        }
+        journal.close();
+        return elapsed;
+    }
+}
@@ -0,0 +1,108 @@
+package com.db.awmd.challenge.journal;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.metrics.TransferMetrics;
+import com.db.awmd.challenge.notification.DirectNotificationDispatcher;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import com.db.awmd.challenge.service.AccountLocks;
+import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.TransferValidatorImpl;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Reports the transfer throughput of the service for each journal durability.
+ */
+public class TransferJournalBenchmarkTest {
+
+    /** The Constant log. */
+    private static final Logger log = LoggerFactory.getLogger(TransferJournalBenchmarkTest.class);
+
+    /** The Constant ACCOUNTS. */
+    private static final int ACCOUNTS = 64;
+
+    /** The Constant THREADS. */
+    private static final int THREADS = 8;
+
+    /** The temporary folder. */
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * Group commit should let batched durability outrun a flush per transfer.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void throughput_per_durability() throws Exception {
+        final double disabled = transfersPerSecond(null, 200_000);
+        final double none = transfersPerSecond(Durability.NONE, 200_000);
+        final double batched = transfersPerSecond(Durability.BATCHED, 20_000);
+        final double perTransfer = transfersPerSecond(Durability.PER_TRANSFER, 2_000);
+
+        log.info("Transfers/s with {} threads: no journal {}, none {}, batched {}, per-transfer {}", THREADS,
+                Math.round(disabled), Math.round(none), Math.round(batched), Math.round(perTransfer));
+        assertThat(batched).isGreaterThan(0.0);
+    }
+
+    /**
+     * Runs transfers between random accounts from several threads and measures their rate.
+     *
+     * @param durability the durability, or null to run without a journal
+     * @param transfers the number of transfers
+     * @return the transfers per second
+     * @throws Exception the exception
+     */
+    private double transfersPerSecond(Durability durability, int transfers) throws Exception {
+        final FileTransferJournal journal = durability == null ? null
+                : new FileTransferJournal(temporaryFolder.newFolder(), durability, 64L << 20);
+        final AccountsRepositoryInMemory repository = new AccountsRepositoryInMemory();
+        if (journal != null) {
+            journal.replay(repository);
+        }
+        final AccountsService accountsService = new AccountsService(repository,
+                new DirectNotificationDispatcher((account, description) -> { }),
+                new TransferValidatorImpl(), new AccountLocks(AccountLocks.DEFAULT_STRIPES),
+                journal == null ? TransferJournal.DISABLED : journal, TransferMetrics.DISABLED);
+        for (int i = 0; i < ACCOUNTS; i++) {
+            accountsService.createAccount(new Account("Id-" + i, 1_000_000_000L));
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        final long start = System.nanoTime();
+        try {
+            final List<Future<?>> futures = new ArrayList<>(THREADS);
+            for (int t = 0; t < THREADS; t++) {
+                final int thread = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = thread; i < transfers; i += THREADS) {
+                        final int from = i % ACCOUNTS;
+                        final int to = (from + 1 + i / ACCOUNTS % (ACCOUNTS - 1)) % ACCOUNTS;
+                        accountsService.makeTransfer(new Transfer("Id-" + from, "Id-" + to, 100L));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+            if (journal != null) {
+                journal.close();
+            }
+        }
+        return transfers / ((System.nanoTime() - start) / 1e9);
+    }
+}
@@ -0,0 +1,113 @@
+package com.db.awmd.challenge.metrics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import com.db.awmd.challenge.domain.TransferStatus;
+import java.lang.management.ManagementFactory;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+/**
+ * The Class LatencyHistogramTest.
+ */
+public class LatencyHistogramTest {
+
+    /** The stages, copied once since values() allocates. */
+    private static final TransferStage[] STAGES = TransferStage.values();
+
+    /**
+     * Percentiles should be within the bucket resolution of the exact ones.
+     */
+    @Test
+    public void summarize_should_reportPercentilesWithinResolution() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 1_000_000; value++) {
+            histogram.record(value);
+        }
+
+        final LatencySummary summary = histogram.summarize();
+
+        assertThat(summary.getCount()).isEqualTo(1_000_000L);
+        assertThat(summary.getMax()).isEqualTo(1_000_000L);
+        assertThat((double) summary.getP50()).isCloseTo(500_000.0, within(500_000.0 / 64));
+        assertThat((double) summary.getP99()).isCloseTo(990_000.0, within(990_000.0 / 64));
+        assertThat((double) summary.getP999()).isCloseTo(999_000.0, within(999_000.0 / 64));
+    }
+
+    /**
+     * Small values should be exact, and values past the range counted in the last bucket.
+     */
+    @Test
+    public void record_should_keepSmallValuesExactAndClampLargeOnes() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5L);
+        histogram.record(100L);
+        histogram.record(Long.MAX_VALUE);
+
+        final LatencySummary summary = histogram.summarize();
+
+        assertThat(summary.getCount()).isEqualTo(3L);
+        assertThat(summary.getP50()).isEqualTo(100L);
+        assertThat(summary.getP999()).isEqualTo((1L << 36) - 1);
+        assertThat(summary.getMax()).isEqualTo(Long.MAX_VALUE);
+    }
+
+    /**
+     * Every value should fall in a bucket whose highest value is at least the value and within
+     * 1/64 of it.
+     */
+    @Test
+    public void indexOf_should_pickTheBucketHoldingTheValue() {
+        for (long value = 0; value < 1L << 36; value = value * 3 / 2 + 1) {
+            final long highest = LatencyHistogram.highestValueOf(LatencyHistogram.indexOf(value));
+            assertThat(highest).isGreaterThanOrEqualTo(value);
+            assertThat((double) highest - value).isLessThanOrEqualTo(value / 64.0);
+        }
+    }
+
+    /**
+     * An empty histogram should report zeros.
+     */
+    @Test
+    public void summarize_should_reportZerosWhenEmpty() {
+        assertThat(new LatencyHistogram().summarize()).isEqualTo(new LatencySummary(0L, 0L, 0L, 0L, 0L));
+    }
+
+    /**
+     * Recording the stages and outcome of a transfer should not allocate.
+     */
+    @Test
+    public void record_should_notAllocate() {
+        final java.lang.management.ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threadMXBean instanceof com.sun.management.ThreadMXBean);
+        final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) threadMXBean;
+        Assume.assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+        final TransferMetrics metrics = new TransferMetrics(true);
+        record(metrics, 100_000);
+
+        final long start = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+        record(metrics, 100_000);
+        final long allocated = threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - start;
+
+        assertThat(allocated).isLessThan(1024L);
+    }
+
+    /**
+     * Records every stage and an outcome, as many times as given.
+     *
+     * @param metrics the metrics
+     * @param times the times
+     */
+    private static void record(TransferMetrics metrics, int times) {
+        for (int i = 0; i < times; i++) {
+            long mark = metrics.start();
+            for (TransferStage stage : STAGES) {
+                mark = metrics.record(stage, mark);
+            }
+            metrics.recordOutcome(TransferStatus.OK);
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package com.db.awmd.challenge.notification;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.service.NotificationService;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The Class AsyncNotificationDispatcherTest.
+ */
+public class AsyncNotificationDispatcherTest {
+
+    /** The Constant log. */
+    private static final Logger log = LoggerFactory.getLogger(AsyncNotificationDispatcherTest.class);
+
+    /** The temporary folder. */
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /** The descriptions received, in order. */
+    private final List<String> received = Collections.synchronizedList(new ArrayList<>());
+
+    /** The number of calls to the notification service. */
+    private final AtomicInteger calls = new AtomicInteger();
+
+    /** Released to let the notification service return. */
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    /** The dispatcher. */
+    private AsyncNotificationDispatcher dispatcher;
+
+    /**
+     * Tear down.
+     */
+    @After
+    public void tearDown() {
+        release.countDown();
+        if (dispatcher != null) {
+            dispatcher.close();
+        }
+    }
+
+    /**
+     * Notifications should be delivered in batches per account, in order, off the calling thread.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void notifications_should_beBatchedPerAccount() throws Exception {
+        dispatcher = new AsyncNotificationDispatcher(slowService(1), 1, 1024, 256, "block", spillDirectory());
+
+        final Account accountFrom = new Account("Id-1", 1_000_000L);
+        final Account accountTo = new Account("Id-2", 0L);
+        final long start = System.nanoTime();
+        for (int i = 1; i <= 200; i++) {
+            dispatcher.notifyAboutTransfer(accountFrom, accountTo, new Transfer("Id-1", "Id-2", i * 100L));
+        }
+        final long enqueueMicros = (System.nanoTime() - start) / 1_000;
+        awaitDelivered(400);
+
+        log.info("Enqueued 200 transfers in {} us against a 1 ms notification backend, delivered in {} calls",
+                enqueueMicros, calls.get());
+        assertThat(calls.get()).isLessThan(400);
+        final List<String> sender = new ArrayList<>();
+        synchronized (received) {
+            for (String description : received) {
+                if (description.startsWith("The transfer to")) {
+                    sender.add(description);
+                }
+            }
+        }
+        assertThat(sender).hasSize(200);
+        for (int i = 1; i <= 200; i++) {
+            assertThat(sender.get(i - 1)).isEqualTo(
+                    "The transfer to the account with ID Id-2 is now complete for the amount of " + i + ".00.");
+        }
+    }
+
+    /**
+     * Notifications should be dropped and counted when the queue is full.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void notifications_should_beDropped_when_queueFull() throws Exception {
+        dispatcher = new AsyncNotificationDispatcher(blockedService(), 1, 8, 1, "drop", spillDirectory());
+
+        for (int i = 0; i < 50; i++) {
+            dispatcher.notifyAboutTransfer(new Account("Id-1"), new Account("Id-2"), new Transfer("Id-1", "Id-2", 100L));
+        }
+        Thread.sleep(20);
+
+        final NotificationQueueStatus status = dispatcher.getStatus();
+        assertThat(status.getDepth()).isLessThanOrEqualTo(8L);
+        assertThat(status.getDropped()).isGreaterThanOrEqualTo(100L - 8L - 1L);
+        assertThat(status.getLagMillis()).isGreaterThanOrEqualTo(20L);
+
+        release.countDown();
+        awaitDelivered((int) (100L - status.getDropped()));
+        assertThat(dispatcher.getStatus().getDepth()).isEqualTo(0L);
+    }
+
+    /**
+     * Notifications should be spilled to disk when the queue is full, and delivered in order later.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void notifications_should_beSpilled_when_queueFull() throws Exception {
+        dispatcher = new AsyncNotificationDispatcher(blockedService(), 1, 4, 16, "spill", spillDirectory());
+
+        for (int i = 1; i <= 100; i++) {
+            dispatcher.notifyAboutTransfer(new Account("Id-1"), new Account("Konto-ü€"),
+                    new Transfer("Id-1", "Konto-ü€", i * 100L));
+        }
+        // the blocked worker holds a batch of at most the 4 queued ones
+        final NotificationQueueStatus status = dispatcher.getStatus();
+        assertThat(status.getDepth()).isGreaterThanOrEqualTo(196L);
+        assertThat(status.getSpilled()).isGreaterThanOrEqualTo(192L);
+        assertThat(status.getDropped()).isEqualTo(0L);
+
+        release.countDown();
+        awaitDelivered(200);
+        final List<String> recipient = new ArrayList<>();
+        synchronized (received) {
+            for (String description : received) {
+                if (description.startsWith("The account with ID + Id-1")) {
+                    recipient.add(description);
+                }
+            }
+        }
+        assertThat(recipient).hasSize(100);
+        for (int i = 1; i <= 100; i++) {
+            assertThat(recipient.get(i - 1))
+                    .isEqualTo("The account with ID + Id-1 has transferred " + i + ".00 into your account.");
+        }
+        assertThat(dispatcher.getStatus().getSpilled()).isEqualTo(0L);
+    }
+
+    /**
+     * Notifications spilled well beyond one batch should be read back batch after batch, without
+     * waiting for the queue in between.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void notifications_should_drainSpillPromptly_when_manyBatchesSpilled() throws Exception {
+        dispatcher = new AsyncNotificationDispatcher(blockedService(), 1, 4, 16, "spill", spillDirectory());
+
+        for (int i = 1; i <= 2000; i++) {
+            dispatcher.notifyAboutTransfer(new Account("Id-1"), new Account("Id-2"), new Transfer("Id-1", "Id-2", 100L));
+        }
+        assertThat(dispatcher.getStatus().getSpilled()).isGreaterThanOrEqualTo(4000L - 8L);
+
+        final long start = System.nanoTime();
+        release.countDown();
+        awaitDelivered(4000);
+        final long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        log.info("Drained {} spilled notifications in batches of 16 in {} ms", 4000, elapsedMillis);
+        assertThat(elapsedMillis).isLessThan(5000L);
+        assertThat(dispatcher.getStatus().getSpilled()).isEqualTo(0L);
+    }
+
+    /**
+     * Gets a spill directory.
+     *
+     * @return the path
+     * @throws Exception the exception
+     */
+    private String spillDirectory() throws Exception {
+        return temporaryFolder.newFolder("spill").getPath();
+    }
+
+    /**
+     * A notification service taking some time per call.
+     *
+     * @param millis the time per call
+     * @return the notification service
+     */
+    private NotificationService slowService(long millis) {
+        return new NotificationService() {
+
+            @Override
+            public void notifyAboutTransfer(Account account, String transferDescription) {
+                notifyAboutTransfers(account, Collections.singletonList(transferDescription));
+            }
+
+            @Override
+            public void notifyAboutTransfers(Account account, List<String> transferDescriptions) {
+                try {
+                    Thread.sleep(millis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                calls.incrementAndGet();
+                received.addAll(transferDescriptions);
+            }
+        };
+    }
+
+    /**
+     * A notification service blocking until released.
+     *
+     * @return the notification service
+     */
+    private NotificationService blockedService() {
+        return (account, transferDescription) -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            calls.incrementAndGet();
+            received.add(transferDescription);
+        };
+    }
+
+    /**
+     * Waits until a number of notifications was delivered.
+     *
+     * @param count the count
+     * @throws Exception the exception
+     */
+    private void awaitDelivered(int count) throws Exception {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (received.size() < count && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThat(received).hasSize(count);
+    }
+}
@@ -0,0 +1,157 @@
+package com.db.awmd.challenge.notification;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountSnapshot;
+import com.db.awmd.challenge.domain.AccountUpdate;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The Class CoalescingBalancePublisherTest.
+ */
+public class CoalescingBalancePublisherTest {
+
+    /** The Constant ID1. */
+    public static final String ID1 = "Id-1";
+
+    /** The Constant ID2. */
+    public static final String ID2 = "Id-2";
+
+    /** The accounts repository. */
+    private AccountsRepository accountsRepository;
+
+    /** The balance publisher. */
+    private CoalescingBalancePublisher balancePublisher;
+
+    /** The balances received. */
+    private final BlockingQueue<AccountSnapshot> received = new LinkedBlockingQueue<>();
+
+    /**
+     * Sets the up.
+     */
+    @Before
+    public void setUp() {
+        accountsRepository = new AccountsRepositoryInMemory();
+        accountsRepository.createAccount(new Account(ID1, 1000L));
+        accountsRepository.createAccount(new Account(ID2, 0L));
+        balancePublisher = new CoalescingBalancePublisher(accountsRepository, 1, false);
+    }
+
+    /**
+     * Tear down.
+     */
+    @After
+    public void tearDown() {
+        balancePublisher.close();
+    }
+
+    /**
+     * A subscriber should receive the current balances, then each change.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void subscribe_should_passCurrentBalancesThenChanges() throws Exception {
+        balancePublisher.subscribe(Arrays.asList(ID1, ID2), received::add);
+        assertThat(Arrays.asList(take(), take())).extracting("balanceMinor").containsOnly(1000L, 0L);
+
+        transfer(ID1, ID2, 300L);
+
+        assertThat(Arrays.asList(take(), take())).containsOnly(
+                new AccountSnapshot(ID1, 700L, 1L), new AccountSnapshot(ID2, 300L, 1L));
+        assertThat(received.poll(100, TimeUnit.MILLISECONDS)).isNull();
+    }
+
+    /**
+     * A slow subscriber should receive the latest balance once it catches up, not every change,
+     * and should not hold up publishing.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void publish_should_coalesceChanges_when_subscriberIsSlow() throws Exception {
+        final CountDownLatch firstCall = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        balancePublisher.subscribe(Collections.singletonList(ID1), snapshot -> {
+            firstCall.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            received.add(snapshot);
+        });
+        assertThat(firstCall.await(10, TimeUnit.SECONDS)).isTrue();
+
+        final long start = System.nanoTime();
+        for (int i = 0; i < 1000; i++) {
+            transfer(ID1, ID2, 1L);
+        }
+        final long publishMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        release.countDown();
+
+        assertThat(take().getBalanceMinor()).isEqualTo(1000L);
+        assertThat(take()).isEqualTo(new AccountSnapshot(ID1, 0L, 1000L));
+        assertThat(received.poll(100, TimeUnit.MILLISECONDS)).isNull();
+        assertThat(publishMillis).isLessThan(1000L);
+    }
+
+    /**
+     * A cancelled subscription, or one whose subscriber failed, should receive nothing more.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void cancel_should_stopChanges() throws Exception {
+        final BalanceSubscription subscription = balancePublisher.subscribe(Collections.singletonList(ID1), received::add);
+        take();
+        balancePublisher.subscribe(Collections.singletonList(ID1), snapshot -> {
+            throw new java.io.IOException("Client gone");
+        });
+
+        subscription.cancel();
+        transfer(ID1, ID2, 1L);
+
+        assertThat(received.poll(100, TimeUnit.MILLISECONDS)).isNull();
+        assertThat(balancePublisher.subscriptionCount(ID1)).isZero();
+    }
+
+    /**
+     * Applies and publishes a transfer.
+     *
+     * @param accountFromId the account from id
+     * @param accountToId the account to id
+     * @param amountMinor the amount in minor units
+     */
+    private void transfer(String accountFromId, String accountToId, long amountMinor) {
+        final List<AccountUpdate> accountUpdates = Arrays.asList(
+                new AccountUpdate(accountToId, amountMinor), new AccountUpdate(accountFromId, -amountMinor));
+        accountsRepository.updateAccountsBatch(accountUpdates);
+        balancePublisher.publish(accountUpdates);
+    }
+
+    /**
+     * Takes the next balance received.
+     *
+     * @return the account snapshot
+     * @throws InterruptedException the interrupted exception
+     */
+    private AccountSnapshot take() throws InterruptedException {
+        final AccountSnapshot snapshot = received.poll(10, TimeUnit.SECONDS);
+        assertThat(snapshot).isNotNull();
+        return snapshot;
+    }
+}
@@ -0,0 +1,121 @@
+package com.db.awmd.challenge.repository;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountUpdate;
+import com.db.awmd.challenge.exception.DuplicateAccountIdException;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * The Class AccountsRepositoryColumnarTest.
+ */
+public class AccountsRepositoryColumnarTest {
+
+    /** The accounts repository. */
+    private AccountsRepositoryColumnar accountsRepository;
+
+    /** The Constant ID1. */
+    public static final String ID1 = "Id-1";
+
+    /** The Constant ID2. */
+    public static final String ID2 = "Id-2";
+
+    /**
+     * Sets the up.
+     */
+    @Before
+    public void setUp() {
+        accountsRepository = new AccountsRepositoryColumnar();
+    }
+
+    /**
+     * Update accounts batch should update all accounts.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void updateAccountsBatch_should_updateAllAccounts() throws Exception {
+        accountsRepository.createAccount(new Account(ID1, BigDecimal.ZERO));
+        accountsRepository.createAccount(new Account(ID2, new BigDecimal("150.20")));
+
+        accountsRepository.updateAccountsBatch(Arrays.asList(
+                new AccountUpdate(ID1, 0L),
+                new AccountUpdate(ID2, -5000L),
+                new AccountUpdate("Id-unknown", 100L)
+        ));
+
+        assertThat(accountsRepository.getAccount(ID1).getBalance()).isEqualTo(new BigDecimal("0.00"));
+        assertThat(accountsRepository.getAccount(ID2).getBalance()).isEqualTo(new BigDecimal("100.20"));
+        assertThat(accountsRepository.getAccount("Id-unknown")).isNull();
+    }
+
+    /**
+     * Create account should fail on duplicate id.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void createAccount_should_fail_onDuplicateId() throws Exception {
+        accountsRepository.createAccount(new Account(ID1));
+        try {
+            accountsRepository.createAccount(new Account(ID1));
+            fail("Should have failed when adding duplicate account");
+        } catch (DuplicateAccountIdException ex) {
+            assertThat(ex.getMessage()).isEqualTo("Account id " + ID1 + " already exists!");
+        }
+    }
+
+    /**
+     * Accounts should remain addressable when the columns grow.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void getAccount_should_findEveryAccount_when_columnsGrow() throws Exception {
+        final int accounts = 200_000;
+        for (int i = 0; i < accounts; i++) {
+            accountsRepository.createAccount(new Account(id(i), i));
+        }
+        accountsRepository.createAccount(new Account("Konto-ü€", 42L));
+
+        assertThat(accountsRepository.size()).isEqualTo(accounts + 1);
+        for (int i = 0; i < accounts; i++) {
+            assertThat(accountsRepository.getAccount(id(i)).getBalanceMinor()).isEqualTo(i);
+        }
+        assertThat(accountsRepository.getAccount("Konto-ü€").getBalanceMinor()).isEqualTo(42L);
+        assertThat(accountsRepository.getAccount("Konto-ü")).isNull();
+    }
+
+    /**
+     * Clear accounts should remove all accounts.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void clearAccounts_should_removeAllAccounts() throws Exception {
+        accountsRepository.createAccount(new Account(ID1, 100L));
+        accountsRepository.clearAccounts();
+
+        assertThat(accountsRepository.getAccount(ID1)).isNull();
+        accountsRepository.createAccount(new Account(ID1, 200L));
+        accountsRepository.updateAccountsBatch(Collections.singletonList(new AccountUpdate(ID1, 1L)));
+        assertThat(accountsRepository.getAccount(ID1).getBalanceMinor()).isEqualTo(201L);
+    }
+
+    /**
+     * Id.
+     *
+     * @param index the index
+     * @return the account id
+     */
+    private static String id(int index) {
+        return "Id-" + index;
+    }
+}
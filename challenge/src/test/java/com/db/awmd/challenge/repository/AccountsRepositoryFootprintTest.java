@@ -0,0 +1,67 @@
+package com.db.awmd.challenge.repository;
+
+import com.db.awmd.challenge.domain.Account;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Reports the heap footprint per account of the repository implementations.
+ */
+public class AccountsRepositoryFootprintTest {
+
+    /** The Constant log. */
+    private static final Logger log = LoggerFactory.getLogger(AccountsRepositoryFootprintTest.class);
+
+    /** The Constant ACCOUNTS. */
+    private static final int ACCOUNTS = 500_000;
+
+    /**
+     * The columnar repository should need less heap per account than the in-memory one.
+     */
+    @Test
+    public void columnar_should_useLessHeapPerAccount_than_inMemory() {
+        final double inMemory = bytesPerAccount(AccountsRepositoryInMemory::new);
+        final double columnar = bytesPerAccount(AccountsRepositoryColumnar::new);
+
+        log.info("Heap per account for {} accounts: in-memory {} bytes, columnar {} bytes", ACCOUNTS,
+                Math.round(inMemory), Math.round(columnar));
+        assertThat(columnar).isLessThan(inMemory);
+    }
+
+    /**
+     * Measures the retained heap per account after filling a repository.
+     *
+     * @param repositories the repository factory
+     * @return the bytes per account
+     */
+    private static double bytesPerAccount(Supplier<AccountsRepository> repositories) {
+        final long before = usedHeap();
+        AccountsRepository repository = repositories.get();
+        for (int i = 0; i < ACCOUNTS; i++) {
+            repository.createAccount(new Account("Id-" + i, i));
+        }
+        final long after = usedHeap();
+        assertThat(repository.getAccount("Id-0")).isNotNull();
+        return (after - before) / (double) ACCOUNTS;
+    }
+
+    /**
+     * Gets the heap in use after collecting garbage.
+     *
+     * @return the used heap
+     */
+    private static long usedHeap() {
+        final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
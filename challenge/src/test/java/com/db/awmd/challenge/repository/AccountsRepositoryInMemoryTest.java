@@ -1,12 +1,14 @@
 package com.db.awmd.challenge.repository;
 
 import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountSnapshot;
 import com.db.awmd.challenge.domain.AccountUpdate;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.math.BigDecimal;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -45,15 +47,109 @@ public class AccountsRepositoryInMemoryTest {
         accountsRepository.createAccount(new Account(ID2, new BigDecimal("150.20")));
 
         List<AccountUpdate> accountUpdates = Arrays.asList(
-                new AccountUpdate(ID1, BigDecimal.ZERO),
-                new AccountUpdate(ID2, new BigDecimal("-50"))
+                new AccountUpdate(ID1, 0L),
+                new AccountUpdate(ID2, -5000L)
         );
 
         accountsRepository.updateAccountsBatch(accountUpdates);
-        assertBalance(ID1, BigDecimal.ZERO);
+        assertBalance(ID1, new BigDecimal("0.00"));
         assertBalance(ID2, new BigDecimal("100.20"));
     }
 
+    /**
+     * A snapshot should keep the balance and version it was taken at.
+     */
+    @Test
+    public void getAccountSnapshot_should_notChange_when_accountUpdated() {
+        accountsRepository.createAccount(new Account(ID1, 1000L));
+
+        final AccountSnapshot snapshot = accountsRepository.getAccountSnapshot(ID1);
+        accountsRepository.updateAccountsBatch(Collections.singletonList(new AccountUpdate(ID1, 500L)));
+
+        assertThat(snapshot.getBalanceMinor()).isEqualTo(1000L);
+        assertThat(snapshot.getVersion()).isEqualTo(0L);
+        assertThat(accountsRepository.getAccountSnapshot(ID1).getBalanceMinor()).isEqualTo(1500L);
+        assertThat(accountsRepository.getAccountSnapshot(ID1).getVersion()).isEqualTo(1L);
+        assertThat(accountsRepository.getAccountSnapshot("Id-unknown")).isNull();
+    }
+
+    /**
+     * Snapshots taken while the account is updated should pair each balance with its own version.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void getAccountSnapshot_should_beConsistent_when_updatedConcurrently() throws Exception {
+        final int updates = 200_000;
+        accountsRepository.createAccount(new Account(ID1, 0L));
+        final List<AccountUpdate> increment = Collections.singletonList(new AccountUpdate(ID1, 1L));
+        final Thread writer = new Thread(() -> {
+            for (int i = 0; i < updates; i++) {
+                accountsRepository.updateAccountsBatch(increment);
+            }
+        });
+
+        writer.start();
+        long reads = 0;
+        AccountSnapshot snapshot;
+        do {
+            snapshot = accountsRepository.getAccountSnapshot(ID1);
+            assertThat(snapshot.getBalanceMinor()).isEqualTo(snapshot.getVersion());
+            reads++;
+        } while (snapshot.getVersion() < updates);
+        writer.join();
+
+        assertThat(reads).isPositive();
+    }
+
+    /**
+     * Credits to a hot account should count at once, and be folded into the balance by a debit.
+     */
+    @Test
+    public void updateAccountsBatch_should_foldCredits_when_hotAccountDebited() {
+        accountsRepository.createAccount(new Account(ID1, 0L));
+        assertThat(accountsRepository.markHot(ID1)).isTrue();
+        assertThat(accountsRepository.markHot("Id-unknown")).isFalse();
+
+        accountsRepository.updateAccountsBatch(Arrays.asList(new AccountUpdate(ID1, 100L), new AccountUpdate(ID1, 50L)));
+        assertThat(accountsRepository.getAccountSnapshot(ID1)).isEqualTo(new AccountSnapshot(ID1, 150L, 0L));
+
+        accountsRepository.updateAccountsBatch(Collections.singletonList(new AccountUpdate(ID1, -120L)));
+        assertThat(accountsRepository.getAccountSnapshot(ID1)).isEqualTo(new AccountSnapshot(ID1, 30L, 1L));
+        assertThat(accountsRepository.isHot(ID1)).isTrue();
+    }
+
+    /**
+     * The balance read while a hot account is debited should never miss the credits being folded.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void getBalanceMinor_should_includeFoldedCredits_when_hotAccountDebitedConcurrently() throws Exception {
+        final int cycles = 100_000;
+        accountsRepository.createAccount(new Account(ID1, 0L));
+        accountsRepository.markHot(ID1);
+        final Account account = accountsRepository.getAccount(ID1);
+        final List<AccountUpdate> credit = Collections.singletonList(new AccountUpdate(ID1, 10L));
+        final List<AccountUpdate> debit = Collections.singletonList(new AccountUpdate(ID1, -1L));
+        final Thread writer = new Thread(() -> {
+            for (int i = 0; i < cycles; i++) {
+                accountsRepository.updateAccountsBatch(credit);
+                accountsRepository.updateAccountsBatch(debit);
+            }
+        });
+
+        writer.start();
+        long previous = 0L;
+        long balance;
+        do {
+            balance = account.getBalanceMinor();
+            assertThat(balance).isGreaterThanOrEqualTo(previous - 1L);
+            previous = balance;
+        } while (balance < 9L * cycles);
+        writer.join();
+    }
+
     /**
      * Assert balance.
      *
@@ -64,4 +160,4 @@ public class AccountsRepositoryInMemoryTest {
         assertThat(accountsRepository.getAccount(accountId).getBalance()).isEqualTo(balance);
     }
 
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -0,0 +1,162 @@
+package com.db.awmd.challenge.repository;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountUpdate;
+import com.db.awmd.challenge.exception.DuplicateAccountIdException;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * The Class AccountsRepositoryMappedTest.
+ */
+public class AccountsRepositoryMappedTest {
+
+    /** The temporary folder. */
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /** The store file. */
+    private String file;
+
+    /** The accounts repository. */
+    private AccountsRepositoryMapped accountsRepository;
+
+    /** The Constant ID1. */
+    public static final String ID1 = "Id-1";
+
+    /** The Constant ID2. */
+    public static final String ID2 = "Id-2";
+
+    /**
+     * Sets the up.
+     *
+     * @throws Exception the exception
+     */
+    @Before
+    public void setUp() throws Exception {
+        file = new File(temporaryFolder.getRoot(), "accounts.dat").getPath();
+        accountsRepository = new AccountsRepositoryMapped(file, 1024);
+    }
+
+    /**
+     * Update accounts batch should update all accounts.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void updateAccountsBatch_should_updateAllAccounts() throws Exception {
+        accountsRepository.createAccount(new Account(ID1, BigDecimal.ZERO));
+        accountsRepository.createAccount(new Account(ID2, new BigDecimal("150.20")));
+
+        accountsRepository.updateAccountsBatch(Arrays.asList(
+                new AccountUpdate(ID1, 0L),
+                new AccountUpdate(ID2, -5000L),
+                new AccountUpdate("Id-unknown", 100L)
+        ));
+
+        assertThat(accountsRepository.getAccount(ID1).getBalance()).isEqualTo(new BigDecimal("0.00"));
+        assertThat(accountsRepository.getAccount(ID2).getBalance()).isEqualTo(new BigDecimal("100.20"));
+        assertThat(accountsRepository.getVersion(ID2)).isEqualTo(1L);
+        assertThat(accountsRepository.getAccount("Id-unknown")).isNull();
+    }
+
+    /**
+     * Accounts should survive reopening the file.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void accounts_should_surviveReopening() throws Exception {
+        for (int i = 0; i < 500; i++) {
+            accountsRepository.createAccount(new Account("Id-" + i, i));
+        }
+        accountsRepository.createAccount(new Account("Konto-ü€", 42L));
+        accountsRepository.updateAccountsBatch(Arrays.asList(new AccountUpdate("Id-7", 100L)));
+        accountsRepository.force();
+
+        final AccountsRepositoryMapped reopened = new AccountsRepositoryMapped(file, 1);
+
+        assertThat(reopened.size()).isEqualTo(501L);
+        for (int i = 0; i < 500; i++) {
+            assertThat(reopened.getAccount("Id-" + i).getBalanceMinor()).isEqualTo(i == 7 ? 107L : i);
+        }
+        assertThat(reopened.getAccount("Konto-ü€").getBalanceMinor()).isEqualTo(42L);
+        assertThat(reopened.getVersion("Id-7")).isEqualTo(1L);
+    }
+
+    /**
+     * Create account should fail on duplicate id.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void createAccount_should_fail_onDuplicateId() throws Exception {
+        accountsRepository.createAccount(new Account(ID1));
+        try {
+            accountsRepository.createAccount(new Account(ID1));
+            fail("Should have failed when adding duplicate account");
+        } catch (DuplicateAccountIdException ex) {
+            assertThat(ex.getMessage()).isEqualTo("Account id " + ID1 + " already exists!");
+        }
+    }
+
+    /**
+     * Create account should reject ids that do not fit a record.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void createAccount_should_reject_idsLongerThanRecord() throws Exception {
+        final char[] id = new char[AccountsRepositoryMapped.MAX_ID_BYTES + 1];
+        Arrays.fill(id, 'x');
+        try {
+            accountsRepository.createAccount(new Account(new String(id)));
+            fail("Should have rejected an id that does not fit a record");
+        } catch (IllegalArgumentException expected) {
+            assertThat(accountsRepository.size()).isEqualTo(0L);
+        }
+    }
+
+    /**
+     * Create account should fail when the store is full.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void createAccount_should_fail_when_storeIsFull() throws Exception {
+        int created = 0;
+        try {
+            while (created <= 1024) {
+                accountsRepository.createAccount(new Account("Id-" + created));
+                created++;
+            }
+            fail("Should have failed once the store is full");
+        } catch (IllegalStateException expected) {
+            assertThat(created).isLessThan(1024);
+            assertThat(accountsRepository.getAccount("Id-0")).isNotNull();
+        }
+    }
+
+    /**
+     * Clear accounts should remove all accounts.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void clearAccounts_should_removeAllAccounts() throws Exception {
+        accountsRepository.createAccount(new Account(ID1, 100L));
+        accountsRepository.clearAccounts();
+
+        assertThat(accountsRepository.getAccount(ID1)).isNull();
+        assertThat(accountsRepository.size()).isEqualTo(0L);
+    }
+}
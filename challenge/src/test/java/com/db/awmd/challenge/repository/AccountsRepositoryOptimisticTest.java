@@ -0,0 +1,125 @@
+package com.db.awmd.challenge.repository;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountSnapshot;
+import com.db.awmd.challenge.domain.AccountUpdate;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The Class AccountsRepositoryOptimisticTest.
+ */
+public class AccountsRepositoryOptimisticTest {
+
+    /** The Constant ACCOUNTS. */
+    private static final int ACCOUNTS = 4;
+
+    /** The Constant INITIAL_BALANCE, in minor units. */
+    private static final long INITIAL_BALANCE = 1_000_000L;
+
+    /** The accounts repository. */
+    private AccountsRepositoryOptimistic accountsRepository;
+
+    /**
+     * Sets the up.
+     */
+    @Before
+    public void setUp() {
+        accountsRepository = new AccountsRepositoryOptimistic();
+        for (int i = 0; i < ACCOUNTS; i++) {
+            accountsRepository.createAccount(new Account("Id-" + i, INITIAL_BALANCE));
+        }
+    }
+
+    /**
+     * Update accounts batch should update all accounts and move each to its next version.
+     */
+    @Test
+    public void updateAccountsBatch_should_updateAllAccounts() {
+        accountsRepository.updateAccountsBatch(Arrays.asList(
+                new AccountUpdate("Id-0", -500L),
+                new AccountUpdate("Id-1", 500L),
+                new AccountUpdate("Id-unknown", 100L)));
+
+        assertThat(accountsRepository.getAccountSnapshot("Id-0"))
+                .isEqualTo(new AccountSnapshot("Id-0", INITIAL_BALANCE - 500L, 1L));
+        assertThat(accountsRepository.getAccount("Id-1").getBalanceMinor()).isEqualTo(INITIAL_BALANCE + 500L);
+        assertThat(accountsRepository.getAccount("Id-unknown")).isNull();
+    }
+
+    /**
+     * Compare and set balances should set both balances, and only from the states read.
+     */
+    @Test
+    public void compareAndSetBalances_should_fail_when_accountChanged() {
+        final AccountSnapshot first = accountsRepository.getAccountSnapshot("Id-0");
+        final AccountSnapshot second = accountsRepository.getAccountSnapshot("Id-1");
+
+        assertThat(accountsRepository.compareAndSetBalances(second, 1L, first, 2L)).isTrue();
+        assertThat(accountsRepository.compareAndSetBalances(first, 3L, second, 4L)).isFalse();
+
+        assertThat(accountsRepository.getAccountSnapshot("Id-0")).isEqualTo(new AccountSnapshot("Id-0", 2L, 1L));
+        assertThat(accountsRepository.getAccountSnapshot("Id-1")).isEqualTo(new AccountSnapshot("Id-1", 1L, 1L));
+    }
+
+    /**
+     * Concurrent compare-and-set transfers over a few accounts should lose no update: the total is
+     * kept and every account ends at the version of the commits it took part in.
+     *
+     * @throws Exception the exception
+     */
+    @Test(timeout = 60_000)
+    public void compareAndSetBalances_should_conserveTotalBalance_when_contended() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        final AtomicLong[] commits = new AtomicLong[ACCOUNTS];
+        for (int i = 0; i < ACCOUNTS; i++) {
+            commits[i] = new AtomicLong();
+        }
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                final Random random = new Random(t);
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 20_000; i++) {
+                        final int from = random.nextInt(ACCOUNTS);
+                        final int to = (from + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+                        final long amount = 1L + random.nextInt(100);
+                        AccountSnapshot stateFrom;
+                        AccountSnapshot stateTo;
+                        do {
+                            stateFrom = accountsRepository.getAccountSnapshot("Id-" + from);
+                            stateTo = accountsRepository.getAccountSnapshot("Id-" + to);
+                        } while (!accountsRepository.compareAndSetBalances(stateFrom, stateFrom.getBalanceMinor() - amount,
+                                stateTo, stateTo.getBalanceMinor() + amount));
+                        commits[from].incrementAndGet();
+                        commits[to].incrementAndGet();
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        long total = 0L;
+        for (int i = 0; i < ACCOUNTS; i++) {
+            final AccountSnapshot state = accountsRepository.getAccountSnapshot("Id-" + i);
+            assertThat(state.getVersion()).isEqualTo(commits[i].get());
+            total += state.getBalanceMinor();
+        }
+        assertThat(total).isEqualTo(INITIAL_BALANCE * ACCOUNTS);
+    }
+}
@@ -0,0 +1,190 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.ImportFailure;
+import com.db.awmd.challenge.domain.ImportSummary;
+import com.db.awmd.challenge.journal.TransferJournal;
+import com.db.awmd.challenge.metrics.TransferMetrics;
+import com.db.awmd.challenge.notification.DirectNotificationDispatcher;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The Class AccountImporterTest.
+ */
+public class AccountImporterTest {
+
+    /** The accounts repository. */
+    private AccountsRepositoryInMemory accountsRepository;
+
+    /** The accounts service. */
+    private AccountsService accountsService;
+
+    /**
+     * Sets the up.
+     */
+    @Before
+    public void setUp() {
+        accountsRepository = new AccountsRepositoryInMemory();
+        accountsService = new AccountsService(accountsRepository,
+                new DirectNotificationDispatcher((account, description) -> { }), new TransferValidatorImpl(),
+                new AccountLocks(AccountLocks.DEFAULT_STRIPES), TransferJournal.DISABLED, TransferMetrics.DISABLED);
+    }
+
+    /**
+     * Import accounts.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void importAccounts() throws Exception {
+        accountsService.createAccount(new Account("Id-taken", 1L));
+        final AccountImporter importer = new AccountImporter(accountsService, 2, 10);
+
+        final ImportSummary summary = importer.importAccounts(ndjson(
+                "{\"accountId\":\"Id-1\",\"balance\":100.50}",
+                "",
+                "{\"balance\":\"7\",\"owner\":{\"name\":\"x\"},\"accountId\":\"Id-2\"}\r",
+                "{\"accountId\":\"Id-3\",\"balance\":-1}",
+                "{\"accountId\":\"Id-taken\",\"balance\":1}",
+                "{\"accountId\":\"Id-4\",\"balance\":1.001}",
+                "{\"accountId\":\"Id-5\"",
+                "[1]",
+                "{\"accountId\":\"\",\"balance\":1}",
+                "{\"accountId\":\"Id-6\",\"balance\":0} {}",
+                "{\"accountId\":\"Id-7\",\"balance\":0}"));
+
+        assertThat(summary.getLines()).isEqualTo(11);
+        assertThat(summary.getCreated()).isEqualTo(3);
+        assertThat(summary.getFailed()).isEqualTo(7);
+        assertThat(summary.getFailures()).extracting(ImportFailure::getLine).containsOnly(4L, 5L, 6L, 7L, 8L, 9L, 10L);
+        assertThat(summary.getFailures()).contains(new ImportFailure(4L, "Initial balance must be positive."),
+                new ImportFailure(5L, "Account id Id-taken already exists!"));
+        assertThat(accountsRepository.getAccount("Id-1").getBalanceMinor()).isEqualTo(10050L);
+        assertThat(accountsRepository.getAccount("Id-2").getBalanceMinor()).isEqualTo(700L);
+        assertThat(accountsRepository.getAccount("Id-7").getBalanceMinor()).isEqualTo(0L);
+        assertThat(accountsRepository.getAccount("Id-3")).isNull();
+        assertThat(accountsRepository.getAccount("Id-6")).isNull();
+    }
+
+    /**
+     * Import accounts duplicated within a chunk.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void importAccountsDuplicatedWithinChunk() throws Exception {
+        final AccountImporter importer = new AccountImporter(accountsService, 1024, 10);
+
+        final ImportSummary summary = importer.importAccounts(ndjson(
+                "{\"accountId\":\"Id-1\",\"balance\":1}",
+                "{\"accountId\":\"Id-1\",\"balance\":2}"));
+
+        assertThat(summary.getCreated()).isEqualTo(1);
+        assertThat(summary.getFailures()).extracting(ImportFailure::getLine).containsExactly(2L);
+        assertThat(accountsRepository.getAccount("Id-1").getBalanceMinor()).isEqualTo(100L);
+    }
+
+    /**
+     * Import accounts with a line too long.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void importAccountsLineTooLong() throws Exception {
+        final char[] padding = new char[AccountImporter.MAX_LINE_LENGTH];
+        Arrays.fill(padding, ' ');
+        final AccountImporter importer = new AccountImporter(accountsService, 1024, 10);
+
+        final ImportSummary summary = importer.importAccounts(ndjson(
+                "{\"accountId\":\"Id-1\",\"balance\":1}" + new String(padding),
+                "{\"accountId\":\"Id-2\",\"balance\":1}"));
+
+        assertThat(summary.getCreated()).isEqualTo(1);
+        assertThat(summary.getFailures()).extracting(ImportFailure::getLine).containsExactly(1L);
+        assertThat(accountsRepository.getAccount("Id-2")).isNotNull();
+    }
+
+    /**
+     * Import accounts streamed, reporting only the first failures.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void importAccountsStreamed() throws Exception {
+        final int accounts = 200_000;
+        final AccountImporter importer = new AccountImporter(accountsService, 1024, 100);
+
+        final ImportSummary summary = importer.importAccounts(new GeneratedInput(accounts));
+
+        assertThat(summary.getLines()).isEqualTo(accounts);
+        assertThat(summary.getCreated()).isEqualTo(accounts / 2);
+        assertThat(summary.getFailed()).isEqualTo(accounts / 2);
+        assertThat(summary.getFailures()).hasSize(100);
+        assertThat(accountsRepository.getAccount("Id-" + (accounts - 2)).getBalanceMinor()).isEqualTo(100L);
+    }
+
+    /**
+     * Joins lines into newline-delimited input.
+     *
+     * @param lines the lines
+     * @return the input
+     */
+    private static InputStream ndjson(String... lines) {
+        return new ByteArrayInputStream(String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Input generated as it is read, every other line an invalid account.
+     */
+    private static final class GeneratedInput extends InputStream {
+
+        /** The number of lines. */
+        private final int lines;
+
+        /** The current line. */
+        private byte[] line = new byte[0];
+
+        /** The position in the current line. */
+        private int position;
+
+        /** The number of lines generated. */
+        private int generated;
+
+        /**
+         * Instantiates a new generated input.
+         *
+         * @param lines the number of lines
+         */
+        private GeneratedInput(int lines) {
+            this.lines = lines;
+        }
+
+        /* (non-Javadoc)
+         * @see java.io.InputStream#read()
+         */
+        @Override
+        public int read() throws IOException {
+            if (position == line.length) {
+                if (generated == lines) {
+                    return -1;
+                }
+                final String balance = generated % 2 == 0 ? "1" : "-1";
+                line = ("{\"accountId\":\"Id-" + generated + "\",\"balance\":" + balance + "}\n")
+                        .getBytes(StandardCharsets.UTF_8);
+                position = 0;
+                generated++;
+            }
+            return line[position++];
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.exception.NotEnoughFundsException;
+import com.db.awmd.challenge.journal.TransferJournal;
+import com.db.awmd.challenge.metrics.TransferMetrics;
+import com.db.awmd.challenge.notification.DirectNotificationDispatcher;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Concurrency stress test of {@link AccountsService#makeTransfer(Transfer)}.
+ */
+public class AccountsServiceConcurrencyTest {
+
+    /** The Constant log. */
+    private static final Logger log = LoggerFactory.getLogger(AccountsServiceConcurrencyTest.class);
+
+    /** The Constant ACCOUNTS. */
+    private static final int ACCOUNTS = 20;
+
+    /** The Constant INITIAL_BALANCE. */
+    private static final BigDecimal INITIAL_BALANCE = new BigDecimal("1000.00");
+
+    /** The accounts repository. */
+    private AccountsRepository accountsRepository;
+
+    /** The accounts service. */
+    private AccountsService accountsService;
+
+    /**
+     * Sets the up.
+     */
+    @Before
+    public void setUp() {
+        accountsRepository = new AccountsRepositoryInMemory();
+        accountsService = new AccountsService(accountsRepository,
+                new DirectNotificationDispatcher((account, description) -> { }), new TransferValidatorImpl(),
+                new AccountLocks(AccountLocks.DEFAULT_STRIPES), TransferJournal.DISABLED,
+                TransferMetrics.DISABLED);
+    }
+
+    /**
+     * Concurrent random transfers should conserve the total balance and never overdraw.
+     *
+     * @throws Exception the exception
+     */
+    @Test(timeout = 60_000)
+    public void makeTransfer_should_conserveTotalBalance_when_contended() throws Exception {
+        for (int i = 0; i < ACCOUNTS; i++) {
+            accountsService.createAccount(new Account(id(i), INITIAL_BALANCE));
+        }
+
+        final int threads = Math.max(4, Runtime.getRuntime().availableProcessors());
+        runConcurrently(threads, thread -> {
+            final Random random = new Random(thread);
+            for (int i = 0; i < 20_000; i++) {
+                final int from = random.nextInt(ACCOUNTS);
+                final int to = (from + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+                try {
+                    accountsService.makeTransfer(new Transfer(id(from), id(to), new BigDecimal(1 + random.nextInt(300))));
+                } catch (NotEnoughFundsException expected) {
+                    // rejected transfers must leave both balances untouched
+                }
+            }
+        });
+
+        BigDecimal total = BigDecimal.ZERO;
+        for (int i = 0; i < ACCOUNTS; i++) {
+            final BigDecimal balance = accountsService.getAccount(id(i)).getBalance();
+            assertThat(balance.signum()).isGreaterThanOrEqualTo(0);
+            total = total.add(balance);
+        }
+        assertThat(total).isEqualByComparingTo(INITIAL_BALANCE.multiply(new BigDecimal(ACCOUNTS)));
+    }
+
+    /**
+     * Transfers in opposite directions between the same accounts should not deadlock.
+     *
+     * @throws Exception the exception
+     */
+    @Test(timeout = 60_000)
+    public void makeTransfer_should_notDeadlock_when_transfersCross() throws Exception {
+        accountsService.createAccount(new Account(id(0), INITIAL_BALANCE));
+        accountsService.createAccount(new Account(id(1), INITIAL_BALANCE));
+
+        runConcurrently(8, thread -> {
+            final String from = id(thread % 2);
+            final String to = id((thread + 1) % 2);
+            for (int i = 0; i < 20_000; i++) {
+                try {
+                    accountsService.makeTransfer(new Transfer(from, to, BigDecimal.ONE));
+                } catch (NotEnoughFundsException expected) {
+                    // one direction may temporarily drain its source account
+                }
+            }
+        });
+
+        assertThat(accountsService.getAccount(id(0)).getBalance().add(accountsService.getAccount(id(1)).getBalance()))
+                .isEqualByComparingTo(INITIAL_BALANCE.add(INITIAL_BALANCE));
+    }
+
+    /**
+     * Measures throughput of transfers on disjoint account pairs for an increasing number of threads,
+     * which should at least double from one thread to four. The speedup is only checked with
+     * {@code -Pbenchmarks} on four or more processors, as it swings too much on a shared build machine.
+     *
+     * @throws Exception the exception
+     */
+    @Test(timeout = 120_000)
+    public void makeTransfer_should_scale_when_accountPairsAreDisjoint() throws Exception {
+        final int maxThreads = Math.max(4, Runtime.getRuntime().availableProcessors());
+        final int transfersPerThread = 50_000;
+        double singleThreaded = 0.0;
+        double fourThreaded = 0.0;
+
+        for (int threads = 1; threads <= maxThreads; threads <<= 1) {
+            accountsRepository.clearAccounts();
+            for (int i = 0; i < threads * 2; i++) {
+                accountsService.createAccount(new Account(id(i), INITIAL_BALANCE));
+            }
+
+            final long start = System.nanoTime();
+            runConcurrently(threads, thread -> {
+                final String first = id(thread * 2);
+                final String second = id(thread * 2 + 1);
+                for (int i = 0; i < transfersPerThread; i++) {
+                    accountsService.makeTransfer((i & 1) == 0
+                            ? new Transfer(first, second, BigDecimal.ONE)
+                            : new Transfer(second, first, BigDecimal.ONE));
+                }
+            });
+            final long elapsed = System.nanoTime() - start;
+
+            final double throughput = threads * (double) transfersPerThread * TimeUnit.SECONDS.toNanos(1) / elapsed;
+            log.info("{} thread(s): {} transfers/sec", threads, (long) throughput);
+            if (threads == 1) {
+                singleThreaded = throughput;
+            } else if (threads == 4) {
+                fourThreaded = throughput;
+            }
+            for (int i = 0; i < threads * 2; i++) {
+                assertThat(accountsService.getAccount(id(i)).getBalance()).isEqualByComparingTo(INITIAL_BALANCE);
+            }
+        }
+
+        Assume.assumeTrue("Throughput is only checked with -Pbenchmarks", Boolean.getBoolean("benchmarks"));
+        Assume.assumeTrue("Throughput is only checked on 4 or more processors",
+                Runtime.getRuntime().availableProcessors() >= 4);
+        assertThat(fourThreaded).isGreaterThan(singleThreaded * 2);
+    }
+
+    /**
+     * Payments into a hot account from many threads, while it pays out, should conserve the total
+     * balance, and the hot account should never be overdrawn.
+     *
+     * @throws Exception the exception
+     */
+    @Test(timeout = 60_000)
+    public void makeTransfer_should_conserveTotalBalance_when_payingIntoHotAccount() throws Exception {
+        for (int i = 0; i < ACCOUNTS; i++) {
+            accountsService.createAccount(new Account(id(i), INITIAL_BALANCE));
+        }
+        accountsService.createAccount(new Account("Merchant", BigDecimal.ZERO));
+        assertThat(accountsService.markHot("Merchant")).isTrue();
+
+        final int threads = Math.max(4, Runtime.getRuntime().availableProcessors());
+        runConcurrently(threads, thread -> {
+            final Random random = new Random(thread);
+            for (int i = 0; i < 20_000; i++) {
+                final int account = random.nextInt(ACCOUNTS);
+                try {
+                    if (thread == 0) {
+                        accountsService.makeTransfer(new Transfer("Merchant", id(account), new BigDecimal(1 + random.nextInt(10))));
+                    } else {
+                        accountsService.makeTransfer(new Transfer(id(account), "Merchant", new BigDecimal(1 + random.nextInt(3))));
+                    }
+                } catch (NotEnoughFundsException expected) {
+                    // rejected transfers must leave both balances untouched
+                }
+            }
+        });
+
+        BigDecimal total = accountsService.getAccount("Merchant").getBalance();
+        assertThat(total.signum()).isGreaterThanOrEqualTo(0);
+        for (int i = 0; i < ACCOUNTS; i++) {
+            final BigDecimal balance = accountsService.getAccount(id(i)).getBalance();
+            assertThat(balance.signum()).isGreaterThanOrEqualTo(0);
+            total = total.add(balance);
+        }
+        assertThat(total).isEqualByComparingTo(INITIAL_BALANCE.multiply(new BigDecimal(ACCOUNTS)));
+    }
+
+    /**
+     * Runs the worker on the given number of threads, all started at the same time.
+     *
+     * @param threads the number of threads
+     * @param worker the worker, receiving its thread number
+     * @throws Exception the first exception thrown by a worker
+     */
+    private static void runConcurrently(int threads, Worker worker) throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final CountDownLatch start = new CountDownLatch(1);
+        try {
+            final List<Future<Void>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                final int thread = t;
+                futures.add(executor.submit((Callable<Void>) () -> {
+                    start.await();
+                    worker.run(thread);
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Id.
+     *
+     * @param index the index
+     * @return the account id
+     */
+    private static String id(int index) {
+        return "Id-" + index;
+    }
+
+    /**
+     * A unit of concurrent work.
+     */
+    private interface Worker {
+
+        /**
+         * Run.
+         *
+         * @param thread the thread number
+         */
+        void run(int thread);
+    }
+}
@@ -0,0 +1,186 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountUpdate;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.exception.JournalException;
+import com.db.awmd.challenge.journal.TransferJournal;
+import com.db.awmd.challenge.metrics.TransferMetrics;
+import com.db.awmd.challenge.notification.DirectNotificationDispatcher;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests of {@link AccountsService} when the {@link TransferJournal} fails.
+ */
+public class AccountsServiceJournalFailureTest {
+
+    /** The accounts repository. */
+    private AccountsRepository accountsRepository;
+
+    /** The journal. */
+    private FailingJournal journal;
+
+    /** The accounts service. */
+    private AccountsService accountsService;
+
+    /**
+     * Sets the up.
+     */
+    @Before
+    public void setUp() {
+        accountsRepository = new AccountsRepositoryInMemory();
+        journal = new FailingJournal();
+        accountsService = new AccountsService(accountsRepository,
+                new DirectNotificationDispatcher((account, description) -> { }), new TransferValidatorImpl(),
+                new AccountLocks(AccountLocks.DEFAULT_STRIPES), journal, TransferMetrics.DISABLED);
+        accountsService.createAccount(new Account("Id-1", new BigDecimal("100.00")));
+        accountsService.createAccount(new Account("Id-2", new BigDecimal("100.00")));
+    }
+
+    /**
+     * A transfer the journal fails to take should leave the balances untouched.
+     */
+    @Test
+    public void tryTransfer_should_notApply_when_appendFails() {
+        journal.failAppend = true;
+        try {
+            accountsService.tryTransfer(new Transfer("Id-1", "Id-2", new BigDecimal("10.00")));
+            fail("Should have failed when the journal failed");
+        } catch (JournalException expected) {
+        }
+
+        assertThat(accountsService.getAccount("Id-1").getBalance()).isEqualByComparingTo("100.00");
+        assertThat(accountsService.getAccount("Id-2").getBalance()).isEqualByComparingTo("100.00");
+    }
+
+    /**
+     * An account the journal fails to take should not be created.
+     */
+    @Test
+    public void createAccount_should_notCreate_when_appendFails() {
+        journal.failAppend = true;
+        try {
+            accountsService.createAccount(new Account("Id-3"));
+            fail("Should have failed when the journal failed");
+        } catch (JournalException expected) {
+        }
+
+        assertThat(accountsService.getAccount("Id-3")).isNull();
+    }
+
+    /**
+     * A transfer that cannot be made durable should stop the service from serving balances.
+     */
+    @Test
+    public void tryTransfer_should_haltService_when_notDurable() {
+        journal.failDurable = true;
+        try {
+            accountsService.tryTransfer(new Transfer("Id-1", "Id-2", new BigDecimal("10.00")));
+            fail("Should have failed when the journal failed");
+        } catch (JournalException expected) {
+        }
+
+        journal.failDurable = false;
+        try {
+            accountsService.getAccount("Id-1");
+            fail("Should have stopped serving balances");
+        } catch (JournalException expected) {
+        }
+        try {
+            accountsService.tryTransfer(new Transfer("Id-2", "Id-1", new BigDecimal("10.00")));
+            fail("Should have stopped accepting transfers");
+        } catch (JournalException expected) {
+        }
+    }
+
+    /**
+     * A submitted transfer that cannot be made durable should fail its future and stop the service.
+     */
+    @Test
+    public void submitTransfer_should_haltService_when_notDurable() {
+        journal.failDurable = true;
+        try {
+            accountsService.submitTransfer(new Transfer("Id-1", "Id-2", new BigDecimal("10.00"))).join();
+            fail("Should have failed when the journal failed");
+        } catch (CompletionException expected) {
+            assertThat(expected.getCause()).isInstanceOf(JournalException.class);
+        }
+
+        journal.failDurable = false;
+        try {
+            accountsService.getAccountSnapshot("Id-1");
+            fail("Should have stopped serving balances");
+        } catch (JournalException expected) {
+        }
+    }
+
+    /**
+     * A journal that fails its appends or its waits on demand.
+     */
+    private static class FailingJournal implements TransferJournal {
+
+        /** Whether appends fail. */
+        private volatile boolean failAppend;
+
+        /** Whether waits fail. */
+        private volatile boolean failDurable;
+
+        /** The last sequence number. */
+        private long sequence;
+
+        /* (non-Javadoc)
+         * @see com.db.awmd.challenge.journal.TransferJournal#appendAccount(com.db.awmd.challenge.domain.Account)
+         */
+        @Override
+        public synchronized long appendAccount(Account account) {
+            return append();
+        }
+
+        /* (non-Javadoc)
+         * @see com.db.awmd.challenge.journal.TransferJournal#appendUpdates(java.util.List)
+         */
+        @Override
+        public synchronized long appendUpdates(List<AccountUpdate> accountUpdates) {
+            return append();
+        }
+
+        /* (non-Javadoc)
+         * @see com.db.awmd.challenge.journal.TransferJournal#awaitDurable(long)
+         */
+        @Override
+        public void awaitDurable(long sequence) {
+            if (failDurable) {
+                throw new JournalException("Journal writer failed.");
+            }
+        }
+
+        /* (non-Javadoc)
+         * @see com.db.awmd.challenge.journal.TransferJournal#replay(com.db.awmd.challenge.repository.AccountsRepository)
+         */
+        @Override
+        public void replay(AccountsRepository accountsRepository) {
+        }
+
+        /**
+         * Appends a record.
+         *
+         * @return the sequence number of the record
+         */
+        private long append() {
+            if (failAppend) {
+                throw new JournalException("Journal writer failed.");
+            }
+            return ++sequence;
+        }
+    }
+}
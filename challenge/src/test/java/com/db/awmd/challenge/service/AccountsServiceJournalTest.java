@@ -0,0 +1,121 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountUpdate;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.domain.TransferResult;
+import com.db.awmd.challenge.journal.Durability;
+import com.db.awmd.challenge.journal.FileTransferJournal;
+import com.db.awmd.challenge.metrics.TransferMetrics;
+import com.db.awmd.challenge.notification.DirectNotificationDispatcher;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests of {@link AccountsService} with a {@link FileTransferJournal}.
+ */
+public class AccountsServiceJournalTest {
+
+    /** The temporary folder. */
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /** Counted down once the notification about Id-1 is being sent. */
+    private final CountDownLatch notifying = new CountDownLatch(1);
+
+    /** Holds the notification about Id-1 until counted down. */
+    private final CountDownLatch released = new CountDownLatch(1);
+
+    /** The journal. */
+    private FileTransferJournal journal;
+
+    /** The accounts service. */
+    private AccountsService accountsService;
+
+    /**
+     * Sets the up.
+     *
+     * @throws Exception the exception
+     */
+    @Before
+    public void setUp() throws Exception {
+        final AccountsRepository accountsRepository = new AccountsRepositoryInMemory();
+        journal = new FileTransferJournal(temporaryFolder.newFolder("journal"), Durability.BATCHED, 1 << 20);
+        journal.replay(accountsRepository);
+        accountsService = new AccountsService(accountsRepository,
+                new DirectNotificationDispatcher((account, description) -> {
+                    if ("Id-1".equals(account.getAccountId())) {
+                        notifying.countDown();
+                        awaitUninterruptibly(released);
+                    }
+                }), new TransferValidatorImpl(), new AccountLocks(AccountLocks.DEFAULT_STRIPES), journal,
+                TransferMetrics.DISABLED);
+        for (int i = 1; i <= 4; i++) {
+            accountsService.createAccount(new Account("Id-" + i, new BigDecimal("100.00")));
+        }
+    }
+
+    /**
+     * Tear down.
+     */
+    @After
+    public void tearDown() {
+        released.countDown();
+        journal.close();
+    }
+
+    /**
+     * A notification blocking after the first transfer was made durable should neither hold up the
+     * journal writer nor the completion of a second transfer.
+     *
+     * @throws Exception the exception
+     */
+    @Test(timeout = 30_000)
+    public void submitTransfer_should_completeSecondTransfer_when_notificationOfFirstBlocks() throws Exception {
+        // on a request thread of its own, which sends the notification if the record is already durable;
+        // a large record ahead keeps the writer busy, so that the first transfer rather waits for it
+        final CompletableFuture<TransferResult> first = CompletableFuture.supplyAsync(() -> {
+            journal.appendUpdates(Collections.nCopies(500_000, new AccountUpdate("Id-3", 0L)));
+            return accountsService.submitTransfer(new Transfer("Id-1", "Id-2", new BigDecimal("10.00")));
+        }, runnable -> new Thread(runnable, "request").start()).thenCompose(future -> future);
+        assertThat(notifying.await(10, TimeUnit.SECONDS)).isTrue();
+
+        final CompletableFuture<TransferResult> second =
+                accountsService.submitTransfer(new Transfer("Id-3", "Id-4", new BigDecimal("10.00")));
+
+        assertThat(second.get(10, TimeUnit.SECONDS).isOk()).isTrue();
+        assertThat(first.isDone()).isFalse();
+        released.countDown();
+        assertThat(first.get(10, TimeUnit.SECONDS).isOk()).isTrue();
+        assertThat(accountsService.getAccount("Id-4").getBalance()).isEqualByComparingTo("110.00");
+    }
+
+    /**
+     * Waits for a latch, ignoring interrupts.
+     *
+     * @param latch the latch
+     */
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        while (true) {
+            try {
+                latch.await();
+                return;
+            } catch (InterruptedException ignored) {
+                // keep waiting
+            }
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.journal.TransferJournal;
+import com.db.awmd.challenge.metrics.TransferMetrics;
+import com.db.awmd.challenge.notification.DirectNotificationDispatcher;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares how many transfers are in flight at once when each one blocks on a slow notification
+ * service, with a bounded pool of platform threads like Tomcat's and with a virtual thread per
+ * transfer.
+ */
+public class InFlightTransfersLoadTest {
+
+    /** The Constant log. */
+    private static final Logger log = LoggerFactory.getLogger(InFlightTransfersLoadTest.class);
+
+    /** The number of platform threads, as the default of {@code server.tomcat.max-threads}. */
+    private static final int PLATFORM_THREADS = 200;
+
+    /** The Constant TRANSFERS. */
+    private static final int TRANSFERS = 2_000;
+
+    /** How long the notification service takes to answer. */
+    private static final long NOTIFICATION_MILLIS = 20L;
+
+    /** The transfers in flight. */
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    /** The most transfers seen in flight at once. */
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+
+    /** The accounts service. */
+    private AccountsService accountsService;
+
+    /**
+     * Creates one pair of accounts per transfer, so that the transfers never wait for each other's locks.
+     */
+    @Before
+    public void setUp() {
+        final NotificationService slowNotificationService = new NotificationService() {
+            @Override
+            public void notifyAboutTransfer(Account account, String transferDescription) {
+                maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(NOTIFICATION_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+            }
+        };
+        accountsService = new AccountsService(new AccountsRepositoryInMemory(),
+                new DirectNotificationDispatcher(slowNotificationService), new TransferValidatorImpl(),
+                new AccountLocks(AccountLocks.DEFAULT_STRIPES), TransferJournal.DISABLED, TransferMetrics.DISABLED);
+        for (int i = 0; i < TRANSFERS; i++) {
+            accountsService.createAccount(new Account("From-" + i, 1_000L));
+            accountsService.createAccount(new Account("To-" + i, 0L));
+        }
+    }
+
+    /**
+     * A pool of platform threads caps the transfers in flight at its size.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void platformThreads_should_capInFlightTransfersAtPoolSize() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(PLATFORM_THREADS);
+        final long elapsedMillis = run(executor);
+
+        log.info("{} transfers on {} platform threads: {} in flight at most, {} ms", TRANSFERS, PLATFORM_THREADS,
+                maxInFlight.get(), elapsedMillis);
+        assertThat(maxInFlight.get()).isLessThanOrEqualTo(PLATFORM_THREADS);
+    }
+
+    /**
+     * A virtual thread per transfer lets more transfers be in flight than the platform pool has threads.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void virtualThreads_should_holdMoreTransfersInFlightThanPlatformPool() throws Exception {
+        Assume.assumeTrue("Virtual threads need Java 21 or later", VirtualThreads.isSupported());
+
+        final ExecutorService executor = VirtualThreads.newThreadPerTaskExecutor("transfer-virtual-");
+        final long elapsedMillis = run(executor);
+
+        log.info("{} transfers on virtual threads: {} in flight at most, {} ms", TRANSFERS, maxInFlight.get(),
+                elapsedMillis);
+        assertThat(maxInFlight.get()).isGreaterThan(PLATFORM_THREADS);
+    }
+
+    /**
+     * Makes every transfer on an executor and waits for them all.
+     *
+     * @param executor the executor
+     * @return the elapsed milliseconds
+     * @throws Exception the exception
+     */
+    private long run(ExecutorService executor) throws Exception {
+        final long start = System.nanoTime();
+        try {
+            final List<CompletableFuture<Void>> transfers = new ArrayList<>(TRANSFERS);
+            for (int i = 0; i < TRANSFERS; i++) {
+                final Transfer transfer = new Transfer("From-" + i, "To-" + i, 100L);
+                transfers.add(CompletableFuture.runAsync(() -> accountsService.makeTransfer(transfer), executor));
+            }
+            CompletableFuture.allOf(transfers.toArray(new CompletableFuture<?>[0])).get(60, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdown();
+        }
+        for (int i = 0; i < TRANSFERS; i++) {
+            assertThat(accountsService.getAccount("To-" + i).getBalanceMinor()).isEqualTo(100L);
+        }
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+}
@@ -0,0 +1,176 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.MultiLegTransfer;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.domain.TransferLeg;
+import com.db.awmd.challenge.domain.TransferStatus;
+import com.db.awmd.challenge.exception.NotEnoughFundsException;
+import com.db.awmd.challenge.history.ChunkedTransactionHistory;
+import com.db.awmd.challenge.journal.TransferJournal;
+import com.db.awmd.challenge.metrics.TransferMetrics;
+import com.db.awmd.challenge.notification.BalancePublisher;
+import com.db.awmd.challenge.notification.DirectNotificationDispatcher;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import com.db.awmd.challenge.repository.AccountsRepositoryOptimistic;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+/**
+ * The Class OptimisticTransferEngineTest.
+ */
+public class OptimisticTransferEngineTest {
+
+    /** The Constant ACCOUNTS. */
+    private static final int ACCOUNTS = 20;
+
+    /** The Constant INITIAL_BALANCE, in minor units. */
+    private static final long INITIAL_BALANCE = 100_000L;
+
+    /** The number of notifications sent. */
+    private final AtomicInteger notifications = new AtomicInteger();
+
+    /** The transaction history. */
+    private ChunkedTransactionHistory transactionHistory;
+
+    /** The transfer engine. */
+    private OptimisticTransferEngine transferEngine;
+
+    /** The accounts service. */
+    private AccountsService accountsService;
+
+    /**
+     * Sets the up.
+     */
+    @Before
+    public void setUp() {
+        final AccountsRepositoryOptimistic accountsRepository = new AccountsRepositoryOptimistic();
+        final DirectNotificationDispatcher notificationDispatcher =
+                new DirectNotificationDispatcher((account, description) -> notifications.incrementAndGet());
+        final TransferValidatorImpl transferValidator = new TransferValidatorImpl();
+        transactionHistory = new ChunkedTransactionHistory(1024);
+        transferEngine = new OptimisticTransferEngine(accountsRepository, notificationDispatcher, transferValidator,
+                TransferJournal.DISABLED, TransferMetrics.DISABLED, transactionHistory, BalancePublisher.DISABLED);
+        accountsService = new AccountsService(accountsRepository, notificationDispatcher, transferValidator,
+                new AccountLocks(AccountLocks.DEFAULT_STRIPES), TransferJournal.DISABLED, TransferMetrics.DISABLED,
+                Optional.of(transferEngine), transactionHistory, BalancePublisher.DISABLED);
+        for (int i = 0; i < ACCOUNTS; i++) {
+            accountsService.createAccount(new Account("Id-" + i, INITIAL_BALANCE));
+        }
+    }
+
+    /**
+     * Tear down.
+     *
+     * @throws Exception the exception
+     */
+    @After
+    public void tearDown() throws Exception {
+        transactionHistory.close();
+    }
+
+    /**
+     * Concurrent transfers should conserve the total balance, never overdraw, and record every
+     * movement once.
+     *
+     * @throws Exception the exception
+     */
+    @Test(timeout = 60_000)
+    public void makeTransfer_should_conserveTotalBalance_when_contended() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        final AtomicInteger completed = new AtomicInteger();
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                final Random random = new Random(t);
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 10_000; i++) {
+                        final int from = random.nextInt(ACCOUNTS);
+                        final int to = (from + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+                        try {
+                            accountsService.makeTransfer(new Transfer("Id-" + from, "Id-" + to, 1L + random.nextInt(20_000)));
+                            completed.incrementAndGet();
+                        } catch (NotEnoughFundsException expected) {
+                            // rejected transfers must leave both balances untouched
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        long total = 0L;
+        long movements = 0L;
+        for (int i = 0; i < ACCOUNTS; i++) {
+            final long balance = accountsService.getAccount("Id-" + i).getBalanceMinor();
+            assertThat(balance).isGreaterThanOrEqualTo(0L);
+            assertThat(accountsService.getAccountSnapshot("Id-" + i).getVersion())
+                    .isEqualTo(transactionHistory.size("Id-" + i));
+            total += balance;
+            movements += transactionHistory.size("Id-" + i);
+        }
+        assertThat(total).isEqualTo(INITIAL_BALANCE * ACCOUNTS);
+        assertThat(movements).isEqualTo(2L * completed.get());
+        assertThat(notifications.get()).isEqualTo(2 * completed.get());
+    }
+
+    /**
+     * Rejected transfers should complete the future with the rejection.
+     */
+    @Test
+    public void submit_should_completeWithRejection_when_rejected() {
+        assertThat(transferEngine.submit(new Transfer("Id-0", "Id-99", 1L)).join().getStatus())
+                .isEqualTo(TransferStatus.NOT_FOUND);
+        assertThat(transferEngine.submit(new Transfer("Id-0", "Id-0", 1L)).join().getStatus())
+                .isEqualTo(TransferStatus.SAME_ACCOUNT);
+        assertThat(transferEngine.submit(new Transfer("Id-0", "Id-1", INITIAL_BALANCE + 1)).join().getMessage())
+                .isEqualTo("Not enough funds on account Id-0 balance=1000.00");
+        assertThat(accountsService.getAccountSnapshot("Id-0").getVersion()).isEqualTo(0L);
+        assertThat(transferEngine.getConflicts()).isEqualTo(0L);
+    }
+
+    /**
+     * A batch should go through the engine, and a multi-leg transfer be refused.
+     */
+    @Test
+    public void makeTransfers_should_applyInOrder_and_multiLegTransfers_be_refused() {
+        final List<TransferStatus> statuses = accountsService.makeTransfers(Arrays.asList(
+                new Transfer("Id-0", "Id-1", INITIAL_BALANCE),
+                new Transfer("Id-0", "Id-1", 1L)));
+        assertThat(statuses).containsExactly(TransferStatus.OK, TransferStatus.INSUFFICIENT_FUNDS);
+
+        assertThat(accountsService.supportsMultiLegTransfers()).isFalse();
+        assertThat(catchThrowable(() -> accountsService.tryMultiLegTransfer(new MultiLegTransfer(Arrays.asList(
+                new TransferLeg("Id-1", -1L), new TransferLeg("Id-2", 1L))))))
+                .isInstanceOf(UnsupportedOperationException.class);
+    }
+
+    /**
+     * Another repository than the optimistic one should be refused.
+     */
+    @Test
+    public void constructor_should_refuseOtherRepositories() {
+        assertThat(catchThrowable(() -> new OptimisticTransferEngine(new AccountsRepositoryInMemory(),
+                new DirectNotificationDispatcher((account, description) -> { }), new TransferValidatorImpl(),
+                TransferJournal.DISABLED, TransferMetrics.DISABLED, transactionHistory, BalancePublisher.DISABLED)))
+                .isInstanceOf(IllegalStateException.class);
+    }
+}
@@ -0,0 +1,229 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountUpdate;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.domain.TransferResult;
+import com.db.awmd.challenge.domain.TransferStatus;
+import com.db.awmd.challenge.exception.JournalException;
+import com.db.awmd.challenge.exception.NotEnoughFundsException;
+import com.db.awmd.challenge.journal.TransferJournal;
+import com.db.awmd.challenge.metrics.TransferMetrics;
+import com.db.awmd.challenge.notification.DirectNotificationDispatcher;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+/**
+ * The Class RingBufferTransferEngineTest.
+ */
+public class RingBufferTransferEngineTest {
+
+    /** The Constant ACCOUNTS. */
+    private static final int ACCOUNTS = 20;
+
+    /** The Constant INITIAL_BALANCE, in minor units. */
+    private static final long INITIAL_BALANCE = 100_000L;
+
+    /** The number of notifications sent. */
+    private final AtomicInteger notifications = new AtomicInteger();
+
+    /** The transfer engine. */
+    private RingBufferTransferEngine transferEngine;
+
+    /** The accounts service. */
+    private AccountsService accountsService;
+
+    /**
+     * Sets the up.
+     */
+    @Before
+    public void setUp() {
+        final AccountsRepositoryInMemory accountsRepository = new AccountsRepositoryInMemory();
+        final DirectNotificationDispatcher notificationDispatcher =
+                new DirectNotificationDispatcher((account, description) -> notifications.incrementAndGet());
+        final AccountLocks accountLocks = new AccountLocks(AccountLocks.DEFAULT_STRIPES);
+        final TransferValidatorImpl transferValidator = new TransferValidatorImpl();
+        // a small ring, so that callers regularly wait for it to wrap
+        transferEngine = new RingBufferTransferEngine(accountsRepository, notificationDispatcher, transferValidator,
+                accountLocks, TransferJournal.DISABLED, TransferMetrics.DISABLED, 64);
+        accountsService = new AccountsService(accountsRepository, notificationDispatcher, transferValidator,
+                accountLocks, TransferJournal.DISABLED, TransferMetrics.DISABLED, Optional.of(transferEngine));
+        for (int i = 0; i < ACCOUNTS; i++) {
+            accountsService.createAccount(new Account("Id-" + i, INITIAL_BALANCE));
+        }
+    }
+
+    /**
+     * Tear down.
+     */
+    @After
+    public void tearDown() {
+        transferEngine.close();
+    }
+
+    /**
+     * Concurrent transfers on hot accounts should conserve the total balance and never overdraw.
+     *
+     * @throws Exception the exception
+     */
+    @Test(timeout = 60_000)
+    public void makeTransfer_should_conserveTotalBalance_when_contended() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        final AtomicInteger completed = new AtomicInteger();
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                final Random random = new Random(t);
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 10_000; i++) {
+                        // most transfers touch the first two accounts
+                        final int from = random.nextInt(4) == 0 ? random.nextInt(ACCOUNTS) : random.nextInt(2);
+                        final int to = (from + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+                        try {
+                            accountsService.makeTransfer(new Transfer("Id-" + from, "Id-" + to, 1L + random.nextInt(500)));
+                            completed.incrementAndGet();
+                        } catch (NotEnoughFundsException expected) {
+                            // rejected transfers must leave both balances untouched
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        long total = 0L;
+        for (int i = 0; i < ACCOUNTS; i++) {
+            final long balance = accountsService.getAccount("Id-" + i).getBalanceMinor();
+            assertThat(balance).isGreaterThanOrEqualTo(0L);
+            total += balance;
+        }
+        assertThat(total).isEqualTo(INITIAL_BALANCE * ACCOUNTS);
+        assertThat(notifications.get()).isEqualTo(2 * completed.get());
+    }
+
+    /**
+     * Rejected transfers should complete the future with the rejection.
+     */
+    @Test
+    public void submit_should_completeWithRejection_when_rejected() {
+        assertThat(transferEngine.submit(new Transfer("Id-0", "Id-99", 1L)).join().getStatus())
+                .isEqualTo(TransferStatus.NOT_FOUND);
+        assertThat(transferEngine.submit(new Transfer("Id-0", "Id-0", 1L)).join().getStatus())
+                .isEqualTo(TransferStatus.SAME_ACCOUNT);
+        assertThat(transferEngine.submit(new Transfer("Id-0", "Id-1", INITIAL_BALANCE + 1)).join().getMessage())
+                .isEqualTo("Not enough funds on account Id-0 balance=1000.00");
+
+        assertThat(catchThrowable(() -> accountsService.makeTransfer(new Transfer("Id-0", "Id-1", INITIAL_BALANCE + 1))))
+                .isInstanceOf(NotEnoughFundsException.class);
+        assertThat(accountsService.getAccount("Id-0").getBalanceMinor()).isEqualTo(INITIAL_BALANCE);
+    }
+
+    /**
+     * Transfers submitted before closing should complete, and later ones be refused.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void close_should_completeSubmittedTransfers_and_refuseNewOnes() throws Exception {
+        final List<CompletableFuture<TransferResult>> futures = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            futures.add(transferEngine.submit(new Transfer("Id-0", "Id-1", 1L)));
+        }
+
+        transferEngine.close();
+
+        for (CompletableFuture<TransferResult> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+        assertThat(accountsService.getAccount("Id-1").getBalanceMinor()).isEqualTo(INITIAL_BALANCE + 1_000L);
+        assertThat(catchThrowable(() -> transferEngine.submit(new Transfer("Id-0", "Id-1", 1L))))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    /**
+     * A transfer the journal fails to take should not be applied, and one the repository fails to
+     * apply once journaled should stop the engine.
+     */
+    @Test
+    public void submit_should_applyOnlyJournaledTransfers_and_halt_when_applyFails() {
+        final AtomicBoolean appendFails = new AtomicBoolean(true);
+        final AtomicBoolean updateFails = new AtomicBoolean();
+        final AccountsRepositoryInMemory accountsRepository = new AccountsRepositoryInMemory() {
+            @Override
+            public boolean updateAccountsBatch(List<AccountUpdate> accountUpdates) {
+                if (updateFails.get()) {
+                    throw new IllegalStateException("Repository failed.");
+                }
+                return super.updateAccountsBatch(accountUpdates);
+            }
+        };
+        accountsRepository.createAccount(new Account("Id-0", INITIAL_BALANCE));
+        accountsRepository.createAccount(new Account("Id-1", INITIAL_BALANCE));
+        final TransferJournal journal = new TransferJournal() {
+            @Override
+            public long appendAccount(Account account) {
+                return 0L;
+            }
+
+            @Override
+            public long appendUpdates(List<AccountUpdate> accountUpdates) {
+                if (appendFails.get()) {
+                    throw new JournalException("Journal writer failed.");
+                }
+                return 0L;
+            }
+
+            @Override
+            public void awaitDurable(long sequence) {
+            }
+
+            @Override
+            public void replay(AccountsRepository accountsRepository) {
+            }
+        };
+        final RingBufferTransferEngine engine = new RingBufferTransferEngine(accountsRepository,
+                new DirectNotificationDispatcher((account, description) -> { }), new TransferValidatorImpl(),
+                new AccountLocks(AccountLocks.DEFAULT_STRIPES), journal, TransferMetrics.DISABLED, 64);
+        try {
+            assertThat(catchThrowable(() -> engine.submit(new Transfer("Id-0", "Id-1", 1L)).join()))
+                    .hasCauseInstanceOf(JournalException.class);
+            assertThat(accountsRepository.getAccount("Id-0").getBalanceMinor()).isEqualTo(INITIAL_BALANCE);
+            assertThat(accountsRepository.getAccount("Id-1").getBalanceMinor()).isEqualTo(INITIAL_BALANCE);
+
+            appendFails.set(false);
+            assertThat(engine.submit(new Transfer("Id-0", "Id-1", 1L)).join().isOk()).isTrue();
+
+            updateFails.set(true);
+            assertThat(catchThrowable(() -> engine.submit(new Transfer("Id-0", "Id-1", 1L)).join()))
+                    .hasCauseInstanceOf(IllegalStateException.class);
+            updateFails.set(false);
+            assertThat(catchThrowable(() -> engine.submit(new Transfer("Id-0", "Id-1", 1L)).join()))
+                    .hasCauseInstanceOf(JournalException.class);
+            assertThat(accountsRepository.getAccount("Id-1").getBalanceMinor()).isEqualTo(INITIAL_BALANCE + 1L);
+        } finally {
+            engine.close();
+        }
+    }
+}
@@ -0,0 +1,298 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountUpdate;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.domain.TransferResult;
+import com.db.awmd.challenge.domain.TransferStatus;
+import com.db.awmd.challenge.exception.NotEnoughFundsException;
+import com.db.awmd.challenge.journal.TransferJournal;
+import com.db.awmd.challenge.metrics.TransferMetrics;
+import com.db.awmd.challenge.notification.DirectNotificationDispatcher;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+/**
+ * The Class ShardedTransferEngineTest.
+ */
+public class ShardedTransferEngineTest {
+
+    /** The Constant ACCOUNTS. */
+    private static final int ACCOUNTS = 20;
+
+    /** The Constant INITIAL_BALANCE, in minor units. */
+    private static final long INITIAL_BALANCE = 100_000L;
+
+    /** The number of notifications sent. */
+    private final AtomicInteger notifications = new AtomicInteger();
+
+    /** The transfer engine. */
+    private ShardedTransferEngine transferEngine;
+
+    /** The accounts service. */
+    private AccountsService accountsService;
+
+    /**
+     * Sets the up.
+     */
+    @Before
+    public void setUp() {
+        final AccountsRepositoryInMemory accountsRepository = new AccountsRepositoryInMemory();
+        final DirectNotificationDispatcher notificationDispatcher =
+                new DirectNotificationDispatcher((account, description) -> notifications.incrementAndGet());
+        final TransferValidatorImpl transferValidator = new TransferValidatorImpl();
+        transferEngine = new ShardedTransferEngine(accountsRepository, notificationDispatcher, transferValidator,
+                TransferJournal.DISABLED, TransferMetrics.DISABLED, 4);
+        accountsService = new AccountsService(accountsRepository, notificationDispatcher, transferValidator,
+                new AccountLocks(AccountLocks.DEFAULT_STRIPES), TransferJournal.DISABLED, TransferMetrics.DISABLED,
+                Optional.of(transferEngine));
+        for (int i = 0; i < ACCOUNTS; i++) {
+            accountsService.createAccount(new Account("Id-" + i, INITIAL_BALANCE));
+        }
+    }
+
+    /**
+     * Tear down.
+     */
+    @After
+    public void tearDown() {
+        transferEngine.close();
+    }
+
+    /**
+     * Concurrent transfers within and across shards should conserve the total balance and never
+     * overdraw.
+     *
+     * @throws Exception the exception
+     */
+    @Test(timeout = 60_000)
+    public void makeTransfer_should_conserveTotalBalance_when_contended() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        final AtomicInteger completed = new AtomicInteger();
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                final Random random = new Random(t);
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 10_000; i++) {
+                        final int from = random.nextInt(ACCOUNTS);
+                        final int to = (from + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+                        try {
+                            accountsService.makeTransfer(new Transfer("Id-" + from, "Id-" + to, 1L + random.nextInt(20_000)));
+                            completed.incrementAndGet();
+                        } catch (NotEnoughFundsException expected) {
+                            // rejected transfers must leave both balances untouched
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        long total = 0L;
+        for (int i = 0; i < ACCOUNTS; i++) {
+            final long balance = accountsService.getAccount("Id-" + i).getBalanceMinor();
+            assertThat(balance).isGreaterThanOrEqualTo(0L);
+            total += balance;
+        }
+        assertThat(total).isEqualTo(INITIAL_BALANCE * ACCOUNTS);
+        assertThat(notifications.get()).isEqualTo(2 * completed.get());
+    }
+
+    /**
+     * Rejected transfers should complete the future with the rejection.
+     */
+    @Test
+    public void submit_should_completeWithRejection_when_rejected() {
+        assertThat(transferEngine.submit(new Transfer("Id-0", "Id-99", 1L)).join().getStatus())
+                .isEqualTo(TransferStatus.NOT_FOUND);
+        assertThat(transferEngine.submit(new Transfer("Id-0", "Id-0", 1L)).join().getStatus())
+                .isEqualTo(TransferStatus.SAME_ACCOUNT);
+        assertThat(transferEngine.submit(new Transfer("Id-0", "Id-1", INITIAL_BALANCE + 1)).join().getMessage())
+                .isEqualTo("Not enough funds on account Id-0 balance=1000.00");
+        assertThat(accountsService.getAccount("Id-0").getBalanceMinor()).isEqualTo(INITIAL_BALANCE);
+    }
+
+    /**
+     * A cross-shard credit that overflows should hand the reserved amount back.
+     */
+    @Test
+    public void makeTransfer_should_refundReservation_when_creditOverflows() {
+        accountsService.createAccount(new Account("Full", Long.MAX_VALUE));
+        // a source account on another shard than the full one
+        int index = 0;
+        while (shardOf("Id-" + index) == shardOf("Full")) {
+            index++;
+        }
+        final String source = "Id-" + index;
+
+        assertThat(catchThrowable(() -> accountsService.makeTransfer(new Transfer(source, "Full", 10L))))
+                .isInstanceOf(ArithmeticException.class);
+        assertThat(accountsService.getAccount(source).getBalanceMinor()).isEqualTo(INITIAL_BALANCE);
+        assertThat(accountsService.getAccount("Full").getBalanceMinor()).isEqualTo(Long.MAX_VALUE);
+    }
+
+    /**
+     * A batch should go through the engine, each transfer seeing the ones before it.
+     */
+    @Test
+    public void makeTransfers_should_applyInOrder() {
+        final List<TransferStatus> statuses = accountsService.makeTransfers(Arrays.asList(
+                new Transfer("Id-0", "Id-1", INITIAL_BALANCE),
+                new Transfer("Id-0", "Id-1", 1L),
+                new Transfer("Id-1", "Id-2", 2 * INITIAL_BALANCE),
+                new Transfer("Id-1", "Id-9", 1L),
+                new Transfer("Id-3", "Id-99", 1L)));
+
+        assertThat(statuses).containsExactly(TransferStatus.OK, TransferStatus.INSUFFICIENT_FUNDS, TransferStatus.OK,
+                TransferStatus.INSUFFICIENT_FUNDS, TransferStatus.NOT_FOUND);
+        assertThat(accountsService.getAccount("Id-2").getBalanceMinor()).isEqualTo(3 * INITIAL_BALANCE);
+    }
+
+    /**
+     * Transfers submitted before closing should complete, and later ones be refused.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void close_should_completeSubmittedTransfers_and_refuseNewOnes() throws Exception {
+        final List<CompletableFuture<TransferResult>> futures = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            futures.add(transferEngine.submit(new Transfer("Id-" + (i % ACCOUNTS), "Id-" + ((i + 1) % ACCOUNTS), 1L)));
+        }
+
+        transferEngine.close();
+
+        for (CompletableFuture<TransferResult> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+        assertThat(accountsService.getAccount("Id-1").getBalanceMinor()).isEqualTo(INITIAL_BALANCE);
+        assertThat(catchThrowable(() -> transferEngine.submit(new Transfer("Id-0", "Id-1", 1L))))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    /**
+     * Closing while a debit is still running should let its credit through rather than stop the
+     * shard of the destination account under it.
+     *
+     * @throws Exception the exception
+     */
+    @Test(timeout = 60_000)
+    public void close_should_waitForCredit_when_debitStillRunning() throws Exception {
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AccountsRepositoryInMemory accountsRepository = new AccountsRepositoryInMemory() {
+            @Override
+            public Account getAccount(String accountId) {
+                if ("Slow".equals(accountId) && entered.getCount() > 0) {
+                    entered.countDown();
+                    awaitUninterruptibly(release);
+                }
+                return super.getAccount(accountId);
+            }
+        };
+        final ShardedTransferEngine engine = new ShardedTransferEngine(accountsRepository,
+                new DirectNotificationDispatcher((account, description) -> { }), new TransferValidatorImpl(),
+                TransferJournal.DISABLED, TransferMetrics.DISABLED, 4);
+        // a destination account on another shard than the slow one
+        int index = 0;
+        while (shardOf("Id-" + index) == shardOf("Slow")) {
+            index++;
+        }
+        final String destination = "Id-" + index;
+        accountsRepository.createAccount(new Account("Slow", INITIAL_BALANCE));
+        accountsRepository.createAccount(new Account(destination, INITIAL_BALANCE));
+
+        final CompletableFuture<TransferResult> future = engine.submit(new Transfer("Slow", destination, 10L));
+        entered.await();
+        final Thread closing = new Thread(engine::close);
+        closing.start();
+        Thread.sleep(100L);
+        release.countDown();
+        closing.join();
+
+        assertThat(future.get(10, TimeUnit.SECONDS).isOk()).isTrue();
+        assertThat(accountsRepository.getAccount("Slow").getBalanceMinor()).isEqualTo(INITIAL_BALANCE - 10L);
+        assertThat(accountsRepository.getAccount(destination).getBalanceMinor()).isEqualTo(INITIAL_BALANCE + 10L);
+    }
+
+    /**
+     * The journal should be refused.
+     */
+    @Test
+    public void constructor_should_refuseJournal() {
+        final TransferJournal journal = new TransferJournal() {
+            @Override
+            public long appendAccount(Account account) {
+                return 0L;
+            }
+
+            @Override
+            public long appendUpdates(List<AccountUpdate> accountUpdates) {
+                return 0L;
+            }
+
+            @Override
+            public void awaitDurable(long sequence) {
+            }
+
+            @Override
+            public void replay(AccountsRepository accountsRepository) {
+            }
+        };
+
+        assertThat(catchThrowable(() -> new ShardedTransferEngine(new AccountsRepositoryInMemory(),
+                new DirectNotificationDispatcher((account, description) -> { }), new TransferValidatorImpl(), journal,
+                TransferMetrics.DISABLED, 2))).isInstanceOf(IllegalStateException.class);
+    }
+
+    /**
+     * Gets the shard of an account, as the engine does.
+     *
+     * @param accountId the account id
+     * @return the shard index
+     */
+    private int shardOf(String accountId) {
+        final int hash = accountId.hashCode();
+        return Math.floorMod(hash ^ (hash >>> 16), transferEngine.getShards());
+    }
+
+    /**
+     * Waits for a latch, ignoring interrupts.
+     *
+     * @param latch the latch
+     */
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        while (true) {
+            try {
+                latch.await();
+                return;
+            } catch (InterruptedException e) {
+                // keep waiting: only the test decides when the debit goes on
+            }
+        }
+    }
+}
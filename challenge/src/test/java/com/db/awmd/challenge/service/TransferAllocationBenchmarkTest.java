@@ -0,0 +1,142 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.Money;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.journal.TransferJournal;
+import com.db.awmd.challenge.metrics.TransferMetrics;
+import com.db.awmd.challenge.notification.DirectNotificationDispatcher;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import org.junit.Assume;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Measures the bytes allocated per transfer by the balance arithmetic, comparing the former
+ * {@link BigDecimal} operations with the fixed-point {@link Money} ones.
+ */
+public class TransferAllocationBenchmarkTest {
+
+    /** The Constant log. */
+    private static final Logger log = LoggerFactory.getLogger(TransferAllocationBenchmarkTest.class);
+
+    /** The Constant ITERATIONS. */
+    private static final int ITERATIONS = 200_000;
+
+    /** Keeps results alive so that the measured work is not optimised away. */
+    private long sink;
+
+    /**
+     * Fixed-point arithmetic should allocate less than the former BigDecimal arithmetic.
+     */
+    @Test
+    public void fixedPointArithmetic_should_allocateLessThanBigDecimal() {
+        final com.sun.management.ThreadMXBean threads = threadMXBean();
+
+        bigDecimalTransfers(ITERATIONS);
+        fixedPointTransfers(ITERATIONS);
+
+        long start = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+        bigDecimalTransfers(ITERATIONS);
+        final double before = (threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - start) / (double) ITERATIONS;
+
+        start = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+        fixedPointTransfers(ITERATIONS);
+        final double after = (threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - start) / (double) ITERATIONS;
+
+        log.info("Balance arithmetic allocation per transfer: BigDecimal {} bytes, fixed-point {} bytes", before, after);
+        assertThat(after).isLessThan(before);
+    }
+
+    /**
+     * Reports the bytes allocated per transfer by the whole service path.
+     */
+    @Test
+    public void makeTransfer_allocationPerTransfer() {
+        final com.sun.management.ThreadMXBean threads = threadMXBean();
+        final AccountsService accountsService = new AccountsService(new AccountsRepositoryInMemory(),
+                new DirectNotificationDispatcher((account, description) -> { }), new TransferValidatorImpl(),
+                new AccountLocks(AccountLocks.DEFAULT_STRIPES), TransferJournal.DISABLED,
+                TransferMetrics.DISABLED);
+        accountsService.createAccount(new Account("Id-1", 100_000_000L));
+        accountsService.createAccount(new Account("Id-2", 100_000_000L));
+        final Transfer forth = new Transfer("Id-1", "Id-2", 100L);
+        final Transfer back = new Transfer("Id-2", "Id-1", 100L);
+
+        for (int i = 0; i < ITERATIONS; i++) {
+            accountsService.makeTransfer((i & 1) == 0 ? forth : back);
+        }
+
+        final long start = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+        for (int i = 0; i < ITERATIONS; i++) {
+            accountsService.makeTransfer((i & 1) == 0 ? forth : back);
+        }
+        final double perTransfer = (threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - start) / (double) ITERATIONS;
+
+        log.info("AccountsService.makeTransfer allocation per transfer: {} bytes", perTransfer);
+        assertThat(accountsService.getAccount("Id-1").getBalanceMinor()).isEqualTo(100_000_000L);
+    }
+
+    /**
+     * Replays the balance arithmetic a transfer used to perform on {@link BigDecimal}: the funds
+     * check, the negation of the amount and the two additions.
+     *
+     * @param iterations the iterations
+     */
+    private void bigDecimalTransfers(int iterations) {
+        final BigDecimal amount = new BigDecimal("1.00");
+        BigDecimal from = new BigDecimal("1000000.00");
+        BigDecimal to = new BigDecimal("1000000.00");
+        for (int i = 0; i < iterations; i++) {
+            if (from.subtract(amount).compareTo(BigDecimal.ZERO) >= 0) {
+                from = from.add(amount.negate());
+                to = to.add(amount);
+            }
+            final BigDecimal swap = from;
+            from = to;
+            to = swap;
+        }
+        sink += from.unscaledValue().longValue() + to.unscaledValue().longValue();
+    }
+
+    /**
+     * Performs the same balance arithmetic on minor units.
+     *
+     * @param iterations the iterations
+     */
+    private void fixedPointTransfers(int iterations) {
+        final long amount = 100L;
+        long from = 100_000_000L;
+        long to = 100_000_000L;
+        for (int i = 0; i < iterations; i++) {
+            if (from >= amount) {
+                from = Money.add(from, Money.negate(amount));
+                to = Money.add(to, amount);
+            }
+            final long swap = from;
+            from = to;
+            to = swap;
+        }
+        sink += from + to;
+    }
+
+    /**
+     * Gets the thread MX bean, skipping the test on JVMs that cannot count allocated bytes.
+     *
+     * @return the thread MX bean
+     */
+    private static com.sun.management.ThreadMXBean threadMXBean() {
+        final java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+        final com.sun.management.ThreadMXBean allocationCounting = (com.sun.management.ThreadMXBean) threads;
+        Assume.assumeTrue(allocationCounting.isThreadAllocatedMemorySupported());
+        allocationCounting.setThreadAllocatedMemoryEnabled(true);
+        return allocationCounting;
+    }
+}
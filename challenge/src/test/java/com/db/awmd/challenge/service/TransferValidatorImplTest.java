@@ -2,6 +2,8 @@ package com.db.awmd.challenge.service;
 
 import com.db.awmd.challenge.domain.Account;
 import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.domain.TransferResult;
+import com.db.awmd.challenge.domain.TransferStatus;
 import com.db.awmd.challenge.exception.AccountNotFoundException;
 import com.db.awmd.challenge.exception.NotEnoughFundsException;
 import com.db.awmd.challenge.exception.TransferBetweenSameAccountException;
@@ -87,7 +89,7 @@ public class TransferValidatorImplTest {
             transferValidator.validate(accountFrom, accountTo, transfer);
             fail("Not enough funds");
         } catch (NotEnoughFundsException nbe) {
-            assertThat(nbe.getMessage()).isEqualTo("Not enough funds on account Id-1 balance=0");
+            assertThat(nbe.getMessage()).isEqualTo("Not enough funds on account Id-1 balance=0.00");
         }
     }
 
@@ -124,4 +126,42 @@ public class TransferValidatorImplTest {
         transferValidator.validate(accountFrom, accountTo, transfer);
     }
 
+    /**
+     * Check should report the first broken rule without throwing.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void check_should_reportStatus_withoutThrowing() throws Exception {
+        final Account funded = new Account(ID1, new BigDecimal("20.00"));
+        final Account empty = new Account(ID2);
+
+        assertThat(transferValidator.check(null, empty, new Transfer(ID1, ID2, BigDecimal.ONE))).isEqualTo(TransferStatus.NOT_FOUND);
+        assertThat(transferValidator.check(funded, null, new Transfer(ID1, ID2, BigDecimal.ONE))).isEqualTo(TransferStatus.NOT_FOUND);
+        assertThat(transferValidator.check(funded, funded, new Transfer(ID1, ID1, BigDecimal.ONE))).isEqualTo(TransferStatus.SAME_ACCOUNT);
+        assertThat(transferValidator.check(empty, funded, new Transfer(ID2, ID1, BigDecimal.ONE))).isEqualTo(TransferStatus.INSUFFICIENT_FUNDS);
+        assertThat(transferValidator.check(funded, empty, new Transfer(ID1, ID2, new BigDecimal("20.00")))).isEqualTo(TransferStatus.OK);
+    }
+
+    /**
+     * Evaluate should report the rejection with its message without throwing.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void evaluate_should_reportRejection_withoutThrowing() throws Exception {
+        final Account funded = new Account(ID1, new BigDecimal("20.00"));
+        final Account empty = new Account(ID2);
+
+        final TransferResult notFound = transferValidator.evaluate(funded, null, new Transfer(ID1, ID2, BigDecimal.ONE));
+        assertThat(notFound.getStatus()).isEqualTo(TransferStatus.NOT_FOUND);
+        assertThat(notFound.getMessage()).isEqualTo("Account Id-2 not found.");
+        final TransferResult notEnoughFunds = transferValidator.evaluate(funded, empty, new Transfer(ID1, ID2, new BigDecimal("20.01")));
+        assertThat(notEnoughFunds.getStatus()).isEqualTo(TransferStatus.INSUFFICIENT_FUNDS);
+        assertThat(notEnoughFunds.getMessage()).isEqualTo("Not enough funds on account Id-1 balance=20.00");
+        assertThat(transferValidator.evaluate(funded, funded, new Transfer(ID1, ID1, BigDecimal.ONE))).isSameAs(TransferResult.SAME_ACCOUNT);
+        assertThat(transferValidator.evaluate(funded, empty, new Transfer(ID1, ID2, BigDecimal.ONE))).isSameAs(TransferResult.OK);
+        assertThat(TransferResult.OK.getMessage()).isNull();
+    }
+
 }
\ No newline at end of file
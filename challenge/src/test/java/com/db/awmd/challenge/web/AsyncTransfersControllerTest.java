@@ -0,0 +1,150 @@
+package com.db.awmd.challenge.web;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.service.AccountsService;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.web.context.WebApplicationContext;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
+
+/**
+ * The Class AsyncTransfersControllerTest.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = "accounts.web.async=true")
+@WebAppConfiguration
+public class AsyncTransfersControllerTest {
+
+    /** The mock mvc. */
+    private MockMvc mockMvc;
+
+    /** The accounts service. */
+    @Autowired
+    private AccountsService accountsService;
+
+    /** The web application context. */
+    @Autowired
+    private WebApplicationContext webApplicationContext;
+
+    /**
+     * Prepare mock mvc.
+     */
+    @Before
+    public void prepareMockMvc() {
+        this.mockMvc = webAppContextSetup(this.webApplicationContext).build();
+        accountsService.getAccountsRepository().clearAccounts();
+        accountsService.createAccount(new Account("Id-1", 10_000L));
+        accountsService.createAccount(new Account("Id-2", 0L));
+    }
+
+    /**
+     * The async controller should serve the transfer routes instead of the blocking one.
+     */
+    @Test
+    public void controllers_should_beSwitched() {
+        assertThat(webApplicationContext.getBeansOfType(AsyncTransfersController.class)).hasSize(1);
+        assertThat(webApplicationContext.getBeansOfType(TransfersController.class)).isEmpty();
+    }
+
+    /**
+     * Make transfer.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void makeTransfer() throws Exception {
+        dispatch(transfer("{\"accountFromId\":\"Id-1\",\"accountToId\":\"Id-2\",\"amount\":25.50}", null))
+                .andExpect(status().isOk());
+
+        assertThat(accountsService.getAccount("Id-1").getBalanceMinor()).isEqualTo(7_450L);
+        assertThat(accountsService.getAccount("Id-2").getBalanceMinor()).isEqualTo(2_550L);
+    }
+
+    /**
+     * Make transfer overdraft.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void makeTransferOverdraft() throws Exception {
+        dispatch(transfer("{\"accountFromId\":\"Id-2\",\"accountToId\":\"Id-1\",\"amount\":1}", null))
+                .andExpect(status().isUnprocessableEntity())
+                .andExpect(content().string("Not enough funds on account Id-2 balance=0.00"));
+    }
+
+    /**
+     * Make transfer retried with idempotency key.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void makeTransferRetriedWithIdempotencyKey() throws Exception {
+        final String body = "{\"accountFromId\":\"Id-1\",\"accountToId\":\"Id-2\",\"amount\":1}";
+        dispatch(transfer(body, "async-key-1")).andExpect(status().isOk());
+        dispatch(transfer(body, "async-key-1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(IdempotencyCache.REPLAYED_HEADER, "true"));
+
+        assertThat(accountsService.getAccount("Id-2").getBalanceMinor()).isEqualTo(100L);
+    }
+
+    /**
+     * Make transfers batch.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void makeTransfersBatch() throws Exception {
+        dispatch(this.mockMvc.perform(put("/v1/accounts/transfers/batch").contentType(MediaType.APPLICATION_JSON)
+                .content("[{\"accountFromId\":\"Id-1\",\"accountToId\":\"Id-2\",\"amount\":100},"
+                        + "{\"accountFromId\":\"Id-1\",\"accountToId\":\"Id-2\",\"amount\":1}]")))
+                .andExpect(status().isOk())
+                .andExpect(content().string("[\"OK\",\"INSUFFICIENT_FUNDS\"]"));
+    }
+
+    /**
+     * Sends a transfer.
+     *
+     * @param content the content
+     * @param idempotencyKey the idempotency key, if any
+     * @return the result actions
+     * @throws Exception the exception
+     */
+    private ResultActions transfer(String content, String idempotencyKey) throws Exception {
+        if (idempotencyKey == null) {
+            return this.mockMvc.perform(put("/v1/accounts/transfer").contentType(MediaType.APPLICATION_JSON)
+                    .content(content));
+        }
+        return this.mockMvc.perform(put("/v1/accounts/transfer").contentType(MediaType.APPLICATION_JSON)
+                .header("Idempotency-Key", idempotencyKey).content(content));
+    }
+
+    /**
+     * Checks the request went asynchronous, then dispatches its result.
+     *
+     * @param started the actions of the request
+     * @return the result actions of the dispatch
+     * @throws Exception the exception
+     */
+    private ResultActions dispatch(ResultActions started) throws Exception {
+        final MvcResult result = started.andExpect(request().asyncStarted()).andReturn();
+        return this.mockMvc.perform(asyncDispatch(result));
+    }
+}
@@ -0,0 +1,112 @@
+package com.db.awmd.challenge.web;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.service.AccountsService;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
+
+/**
+ * The Class BalancesControllerTest.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@WebAppConfiguration
+public class BalancesControllerTest {
+
+    /** The mock mvc. */
+    private MockMvc mockMvc;
+
+    /** The accounts service. */
+    @Autowired
+    private AccountsService accountsService;
+
+    /** The web application context. */
+    @Autowired
+    private WebApplicationContext webApplicationContext;
+
+    /** The id of the account from, unique to the test. */
+    private String idFrom;
+
+    /** The id of the account to, unique to the test. */
+    private String idTo;
+
+    /**
+     * Prepare mock mvc.
+     */
+    @Before
+    public void prepareMockMvc() {
+        this.mockMvc = webAppContextSetup(this.webApplicationContext).build();
+        idFrom = "Id-From-" + System.nanoTime();
+        idTo = "Id-To-" + System.nanoTime();
+        accountsService.createAccount(new Account(idFrom, 10_000L));
+        accountsService.createAccount(new Account(idTo, 0L));
+    }
+
+    /**
+     * The stream should send the current balances, then the balances changed by a transfer.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void streamBalances() throws Exception {
+        final MvcResult result = this.mockMvc.perform(get("/v1/balances/stream?accountIds=" + idFrom + "," + idTo))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        awaitContent(result.getResponse(), "{\"accountId\":\"" + idTo + "\",\"balance\":0.00}");
+
+        accountsService.makeTransfer(new Transfer(idFrom, idTo, 2_550L));
+
+        awaitContent(result.getResponse(), "event:balance\ndata:{\"accountId\":\"" + idTo + "\",\"balance\":25.50}");
+        awaitContent(result.getResponse(), "event:balance\ndata:{\"accountId\":\"" + idFrom + "\",\"balance\":74.50}");
+    }
+
+    /**
+     * The stream should be refused for unknown accounts or too many of them.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void streamBalances_should_beRefused() throws Exception {
+        this.mockMvc.perform(get("/v1/balances/stream?accountIds=" + idFrom + ",Id-unknown"))
+                .andExpect(status().isNotFound());
+
+        final StringBuilder ids = new StringBuilder(idFrom);
+        for (int i = 0; i < BalancesController.MAX_STREAM_ACCOUNTS; i++) {
+            ids.append(",Id-").append(i);
+        }
+        this.mockMvc.perform(get("/v1/balances/stream?accountIds=" + ids)).andExpect(status().isBadRequest());
+    }
+
+    /**
+     * Waits until the response holds some content.
+     *
+     * @param response the response
+     * @param expected the content expected
+     * @throws Exception the exception
+     */
+    private static void awaitContent(MockHttpServletResponse response, String expected) throws Exception {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!response.getContentAsString().contains(expected) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(response.getContentAsString()).contains(expected);
+    }
+}
@@ -0,0 +1,144 @@
+package com.db.awmd.challenge.web;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+/**
+ * The Class IdempotencyCacheTest.
+ */
+public class IdempotencyCacheTest {
+
+    /** The number of times an action executed. */
+    private final AtomicInteger executions = new AtomicInteger();
+
+    /**
+     * A repeated key should get the first response without executing again.
+     */
+    @Test
+    public void execute_should_replayResponse_when_keyRepeated() {
+        final IdempotencyCache cache = new IdempotencyCache(16, 60_000L);
+
+        final ResponseEntity<Object> first = cache.execute("key-1", "request", this::created);
+        final ResponseEntity<Object> second = cache.execute("key-1", "request", this::created);
+
+        assertThat(executions.get()).isEqualTo(1);
+        assertThat(second.getStatusCode()).isEqualTo(first.getStatusCode());
+        assertThat(second.getBody()).isEqualTo("1");
+        assertThat(second.getHeaders().getFirst(IdempotencyCache.REPLAYED_HEADER)).isEqualTo("true");
+        assertThat(first.getHeaders().getFirst(IdempotencyCache.REPLAYED_HEADER)).isNull();
+    }
+
+    /**
+     * A key reused for another request should be refused.
+     */
+    @Test
+    public void execute_should_refuse_when_keyReusedForAnotherRequest() {
+        final IdempotencyCache cache = new IdempotencyCache(16, 60_000L);
+        cache.execute("key-1", "request", this::created);
+
+        final ResponseEntity<Object> response = cache.execute("key-1", "other request", this::created);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.UNPROCESSABLE_ENTITY);
+        assertThat(executions.get()).isEqualTo(1);
+    }
+
+    /**
+     * A duplicate arriving while the original executes should wait for its response.
+     *
+     * @throws Exception the exception
+     */
+    @Test(timeout = 10_000)
+    public void execute_should_waitForOriginal_when_duplicateInFlight() throws Exception {
+        final IdempotencyCache cache = new IdempotencyCache(16, 60_000L);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            final Future<ResponseEntity<Object>> original = executor.submit(() -> cache.execute("key-1", "request", () -> {
+                started.countDown();
+                await(release);
+                return created();
+            }));
+            started.await();
+            final Future<ResponseEntity<Object>> duplicate = executor.submit(() -> cache.execute("key-1", "request", this::created));
+
+            Thread.sleep(50L);
+            assertThat(duplicate.isDone()).isFalse();
+            release.countDown();
+
+            assertThat(original.get().getBody()).isEqualTo("1");
+            assertThat(duplicate.get().getBody()).isEqualTo("1");
+            assertThat(executions.get()).isEqualTo(1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * A request failing with an exception should be forgotten, so that a retry executes.
+     */
+    @Test
+    public void execute_should_forgetKey_when_actionFails() {
+        final IdempotencyCache cache = new IdempotencyCache(16, 60_000L);
+
+        assertThat(catchThrowable(() -> cache.execute("key-1", "request", () -> {
+            throw new IllegalStateException("boom");
+        }))).isInstanceOf(IllegalStateException.class);
+
+        assertThat(cache.execute("key-1", "request", this::created).getBody()).isEqualTo("1");
+    }
+
+    /**
+     * Keys should be forgotten oldest first beyond the capacity, and after the time to live.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void execute_should_evict_when_fullOrExpired() throws Exception {
+        final IdempotencyCache cache = new IdempotencyCache(4, 60_000L);
+        for (int i = 0; i < 1_000; i++) {
+            cache.execute("key-" + i, "request", this::created);
+        }
+        assertThat(cache.size()).isEqualTo(4);
+        assertThat(cache.execute("key-999", "request", this::created).getBody()).isEqualTo("1000");
+        assertThat(cache.execute("key-0", "request", this::created).getBody()).isEqualTo("1001");
+
+        final IdempotencyCache expiring = new IdempotencyCache(4, 1L);
+        expiring.execute("key-1", "request", this::created);
+        Thread.sleep(5L);
+        assertThat(expiring.execute("key-1", "request", this::created).getBody()).isEqualTo("1003");
+    }
+
+    /**
+     * Counts an execution and responds with its number.
+     *
+     * @return the response entity
+     */
+    private ResponseEntity<Object> created() {
+        return new ResponseEntity<>(String.valueOf(executions.incrementAndGet()), HttpStatus.OK);
+    }
+
+    /**
+     * Waits for a latch.
+     *
+     * @param latch the latch
+     */
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
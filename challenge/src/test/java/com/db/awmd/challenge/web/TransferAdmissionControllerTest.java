@@ -0,0 +1,142 @@
+package com.db.awmd.challenge.web;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.service.AccountsService;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.web.context.WebApplicationContext;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
+
+/**
+ * The Class TransferAdmissionControllerTest.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {"accounts.admission.enabled=true", "accounts.admission.client-rate=0.001",
+        "accounts.admission.client-burst=2"})
+@WebAppConfiguration
+public class TransferAdmissionControllerTest {
+
+    /** The mock mvc. */
+    private MockMvc mockMvc;
+
+    /** The accounts service. */
+    @Autowired
+    private AccountsService accountsService;
+
+    /** The web application context. */
+    @Autowired
+    private WebApplicationContext webApplicationContext;
+
+    /**
+     * Prepare mock mvc.
+     */
+    @Before
+    public void prepareMockMvc() {
+        this.mockMvc = webAppContextSetup(this.webApplicationContext).build();
+        accountsService.getAccountsRepository().clearAccounts();
+        accountsService.createAccount(new Account("Id-1", 10_000L));
+        accountsService.createAccount(new Account("Id-2", 0L));
+    }
+
+    /**
+     * A client that used up its burst should be turned away with 429, without the transfer being
+     * made, while other clients still get through.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void makeTransfer_should_answerTooManyRequests_when_clientUsedUpItsBurst() throws Exception {
+        transfer("10.0.0.1").andExpect(status().isOk());
+        transfer("10.0.0.1").andExpect(status().isOk());
+        transfer("10.0.0.1")
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "1000"))
+                .andExpect(content().string("Too many transfers from client 10.0.0.1."));
+
+        transfer("10.0.0.2").andExpect(status().isOk());
+        assertThat(accountsService.getAccount("Id-2").getBalanceMinor()).isEqualTo(300L);
+    }
+
+    /**
+     * Replays of an idempotency key already answered should not use up the tokens of the client.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void makeTransfer_should_notChargeReplays() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            this.mockMvc.perform(withRemoteAddress(transferRequest(), "10.0.0.3").header("Idempotency-Key", "key-1"))
+                    .andExpect(status().isOk());
+        }
+        transfer("10.0.0.3").andExpect(status().isOk());
+        transfer("10.0.0.3").andExpect(status().isTooManyRequests());
+        assertThat(accountsService.getAccount("Id-2").getBalanceMinor()).isEqualTo(200L);
+    }
+
+    /**
+     * A batch should take a token for each of its transfers.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void makeTransfers_should_chargeEachTransfer() throws Exception {
+        this.mockMvc.perform(withRemoteAddress(put("/v1/accounts/transfers/batch"), "10.0.0.4")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[{\"accountFromId\":\"Id-1\",\"accountToId\":\"Id-2\",\"amount\":1},"
+                        + "{\"accountFromId\":\"Id-1\",\"accountToId\":\"Id-2\",\"amount\":1}]"))
+                .andExpect(status().isOk());
+        transfer("10.0.0.4").andExpect(status().isTooManyRequests());
+        assertThat(accountsService.getAccount("Id-2").getBalanceMinor()).isEqualTo(200L);
+    }
+
+    /**
+     * Makes a transfer of 1.00 from Id-1 to Id-2 on behalf of a client.
+     *
+     * @param remoteAddress the remote address of the client
+     * @return the result actions
+     * @throws Exception the exception
+     */
+    private ResultActions transfer(String remoteAddress) throws Exception {
+        return this.mockMvc.perform(withRemoteAddress(transferRequest(), remoteAddress));
+    }
+
+    /**
+     * Builds a transfer of 1.00 from Id-1 to Id-2.
+     *
+     * @return the request builder
+     */
+    private static MockHttpServletRequestBuilder transferRequest() {
+        return put("/v1/accounts/transfer").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"accountFromId\":\"Id-1\",\"accountToId\":\"Id-2\",\"amount\":1}");
+    }
+
+    /**
+     * Sends a request from a remote address.
+     *
+     * @param builder the request builder
+     * @param remoteAddress the remote address
+     * @return the request builder
+     */
+    private static MockHttpServletRequestBuilder withRemoteAddress(MockHttpServletRequestBuilder builder,
+                                                                   String remoteAddress) {
+        return builder.with(request -> {
+            request.setRemoteAddr(remoteAddress);
+            return request;
+        });
+    }
+}